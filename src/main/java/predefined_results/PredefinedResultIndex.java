@@ -0,0 +1,136 @@
+package predefined_results;
+
+import java.util.HashMap;
+import java.util.List;
+
+import app_config.BooleanValue;
+
+/**
+ * Decision tree over the predefined results, with a level for each field of the
+ * search (record type, source, samp event asses) and the confirmatory flag in
+ * the leaves. Each node has a child for each value of the field and a wildcard
+ * child for the results which have the field empty.
+ *
+ * A search visits at most two children for each level, so at most eight leaves,
+ * and returns the first predefined result of the list which matches, as the
+ * linear scan of {@link PredefinedResultList}.
+ *
+ */
+class PredefinedResultIndex {
+
+	private static final PredefinedResultHeader[] LEVELS = { PredefinedResultHeader.RECORD_TYPE,
+			PredefinedResultHeader.SOURCE, PredefinedResultHeader.SAMP_EVENT_ASSES };
+
+	private static final int NOT_FOUND = Integer.MAX_VALUE;
+
+	private static class Node {
+
+		// field value > child
+		private final HashMap<String, Node> children = new HashMap<>();
+
+		// child for the empty fields, which match any value
+		private Node wildcard;
+
+		// position of the first result in the list, for confirmatory tested
+		// or not (only in the leaves)
+		private int firstConfirmatory = NOT_FOUND;
+		private int firstNotConfirmatory = NOT_FOUND;
+	}
+
+	private final List<PredefinedResult> results;
+	private final int modCount;
+	private final Node root = new Node();
+
+	/**
+	 * Build the index of the predefined results
+	 *
+	 * @param results
+	 * @param modCount version of the list which is indexed
+	 */
+	PredefinedResultIndex(List<PredefinedResult> results, int modCount) {
+
+		this.results = results;
+		this.modCount = modCount;
+
+		for (int i = 0; i < results.size(); ++i) {
+			add(results.get(i), i);
+		}
+	}
+
+	private void add(PredefinedResult result, int position) {
+
+		String confTested = result.get(PredefinedResultHeader.CONFIRMATORY_EXECUTED);
+		boolean isTrue = BooleanValue.isTrue(confTested);
+		boolean isFalse = BooleanValue.isFalse(confTested);
+
+		// never matched
+		if (!isTrue && !isFalse)
+			return;
+
+		Node node = root;
+		for (PredefinedResultHeader level : LEVELS) {
+
+			String value = result.get(level);
+
+			if (isWildcard(value)) {
+				if (node.wildcard == null)
+					node.wildcard = new Node();
+				node = node.wildcard;
+			} else {
+				node = node.children.computeIfAbsent(value, k -> new Node());
+			}
+		}
+
+		// the results are added in order, so keep the first one
+		if (isTrue && node.firstConfirmatory == NOT_FOUND)
+			node.firstConfirmatory = position;
+
+		if (isFalse && node.firstNotConfirmatory == NOT_FOUND)
+			node.firstNotConfirmatory = position;
+	}
+
+	int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Get the first predefined result which matches the values
+	 *
+	 * @return the predefined result, null if none matches
+	 */
+	PredefinedResult get(String recordType, String source, boolean confirmatoryTested, String sampEventAsses) {
+
+		int position = find(root, 0, new String[] { recordType, source, sampEventAsses }, confirmatoryTested);
+
+		return position == NOT_FOUND ? null : results.get(position);
+	}
+
+	private static int find(Node node, int level, String[] values, boolean confirmatoryTested) {
+
+		if (node == null)
+			return NOT_FOUND;
+
+		if (level == LEVELS.length)
+			return confirmatoryTested ? node.firstConfirmatory : node.firstNotConfirmatory;
+
+		// an empty field of the result matches any value
+		int position = find(node.wildcard, level + 1, values, confirmatoryTested);
+
+		// a null value matches only empty fields
+		String value = values[level];
+		if (value != null)
+			position = Math.min(position, find(node.children.get(value), level + 1, values, confirmatoryTested));
+
+		return position;
+	}
+
+	/**
+	 * Check if a field of a predefined result matches any value
+	 *
+	 * @param value
+	 * @return
+	 */
+	static boolean isWildcard(String value) {
+		return value == null || value.isEmpty() || value.equals("null");
+	}
+}
@@ -1,18 +1,14 @@
 package predefined_results;
 
-import java.io.IOException;
 import java.util.ArrayList;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 import app_config.BooleanValue;
 
 public class PredefinedResultList extends ArrayList<PredefinedResult> {
-	private static final Logger LOGGER = LogManager.getLogger(PredefinedResultList.class);
 	private static final long serialVersionUID = -6372192676663884532L;
 	
-	private static PredefinedResultList predefinedResultsCache;
+	// index of the list, built again if the list changes
+	private transient volatile PredefinedResultIndex index;
 	
 	/**
 	 * Get a predefined result using the record type and the samp an asses fields
@@ -21,6 +17,47 @@ public class PredefinedResultList extends ArrayList<PredefinedResult> {
 	 * @return
 	 */
 	public PredefinedResult get(String recordType, String source, boolean confirmatoryTested, String sampEventAsses) {
+		return buildIndex().get(recordType, source, confirmatoryTested, sampEventAsses);
+	}
+	
+	// replaced elements, since set does not change the modCount
+	private transient int replaced;
+	
+	/**
+	 * Replace an element, the index is built again
+	 */
+	@Override
+	public PredefinedResult set(int i, PredefinedResult result) {
+		PredefinedResult previous = super.set(i, result);
+		replaced++;
+		return previous;
+	}
+	
+	/**
+	 * Build the index of the list, if not built yet or if the list changed
+	 * @return
+	 */
+	PredefinedResultIndex buildIndex() {
+		// both counters only increase, so their sum changes at each change
+		int version = modCount + replaced;
+		
+		PredefinedResultIndex current = index;
+		if (current == null || current.getModCount() != version) {
+			current = new PredefinedResultIndex(this, version);
+			index = current;
+		}
+		
+		return current;
+	}
+	
+	/**
+	 * Get a predefined result scanning the whole list, same result
+	 * of {@link #get(String, String, boolean, String)}
+	 * @param recordType
+	 * @param sampEventAsses
+	 * @return
+	 */
+	PredefinedResult scan(String recordType, String source, boolean confirmatoryTested, String sampEventAsses) {
 		for (PredefinedResult prh : this) {
 			String thisRecordType = prh.get(PredefinedResultHeader.RECORD_TYPE);
 			String thisSource = prh.get(PredefinedResultHeader.SOURCE);
@@ -64,23 +101,8 @@ public class PredefinedResultList extends ArrayList<PredefinedResult> {
 	 * Get all the predefined results
 	 * @author shahaal
 	 * @return
-	 * @throws IOException
 	 */
 	public static PredefinedResultList getAll() {
-		// if first time
-		if (predefinedResultsCache == null) {
-			predefinedResultsCache = new PredefinedResultList();
-			
-			//solve memory leak
-			try (PredefinedResultsReader reader = new PredefinedResultsReader()){
-				reader.readFirstSheet();
-				predefinedResultsCache = reader.getResults();
-			} catch (IOException e) {
-				LOGGER.error("Cannot retrieve predefined results list", e);
-				e.printStackTrace();
-			}
-		}
-
-		return predefinedResultsCache;
+		return PredefinedResultsCache.get();
 	}
 }
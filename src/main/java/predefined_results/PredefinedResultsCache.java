@@ -0,0 +1,220 @@
+package predefined_results;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tse_config.CustomStrings;
+
+/**
+ * Holds the predefined results read from the configuration file.
+ *
+ * The predefined results are read once and never changed: when the file is
+ * edited, a new list is read and replaces the previous one as a whole. The
+ * searches which are using the previous list are not blocked and complete
+ * with it.
+ *
+ * The configuration folder can be watched in background in order to read the
+ * file again as soon as it changes, without restarting the tool.
+ *
+ */
+public class PredefinedResultsCache {
+
+	private static final Logger LOGGER = LogManager.getLogger(PredefinedResultsCache.class);
+
+	// wait for the end of the saving of the file before reading it
+	private static final long RELOAD_DELAY_MS = 500;
+
+	private static volatile PredefinedResultList snapshot;
+
+	private static Thread watcher;
+
+	private PredefinedResultsCache() {
+	}
+
+	/**
+	 * Get the current predefined results, read from the file the first time
+	 *
+	 * @return
+	 */
+	public static PredefinedResultList get() {
+
+		PredefinedResultList current = snapshot;
+		if (current != null)
+			return current;
+
+		synchronized (PredefinedResultsCache.class) {
+
+			if (snapshot == null) {
+				try {
+					snapshot = read(getWorkbook(), getSnapshot());
+				} catch (IOException e) {
+					LOGGER.error("Cannot retrieve predefined results list", e);
+					e.printStackTrace();
+					snapshot = new PredefinedResultList();
+				}
+			}
+
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Read the predefined results from the file again. If the file cannot be
+	 * read, the current predefined results are kept.
+	 *
+	 * @return true if the predefined results were replaced
+	 */
+	public static boolean reload() {
+		return reload(getWorkbook(), getSnapshot());
+	}
+
+	static boolean reload(Path workbook, Path snapshotFile) {
+
+		PredefinedResultList results;
+		try {
+			results = read(workbook, snapshotFile);
+		} catch (Exception e) {
+			// the file could be still being saved
+			LOGGER.error("Cannot reload the predefined results, the previous ones are kept", e);
+			e.printStackTrace();
+			return false;
+		}
+
+		snapshot = results;
+
+		LOGGER.info("Reloaded " + results.size() + " predefined results from " + workbook);
+
+		return true;
+	}
+
+	/**
+	 * Read the predefined results (from the snapshot of the file, if the file
+	 * did not change) and index them, so that the list is ready before being
+	 * shared
+	 */
+	private static PredefinedResultList read(Path workbook, Path snapshotFile) throws IOException {
+		PredefinedResultList results = PredefinedResultsSnapshot.load(workbook, snapshotFile);
+		results.buildIndex();
+		return results;
+	}
+
+	/**
+	 * Start watching the configuration folder, in order to reload the
+	 * predefined results when the file changes. The file is read again in a
+	 * background thread.
+	 */
+	public static void startWatching() {
+		startWatching(getWorkbook(), getSnapshot());
+	}
+
+	static synchronized void startWatching(Path workbook, Path snapshotFile) {
+
+		if (watcher != null)
+			return;
+
+		Path file = workbook.toAbsolutePath();
+		Path folder = file.getParent();
+
+		WatchService service;
+		try {
+			service = folder.getFileSystem().newWatchService();
+			folder.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+		} catch (IOException e) {
+			LOGGER.error("Cannot watch " + folder + ", the predefined results will not be reloaded", e);
+			e.printStackTrace();
+			return;
+		}
+
+		watcher = new Thread(() -> watch(service, file, snapshotFile), "predefined-results-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+
+		LOGGER.info("Watching " + file + " for changes");
+	}
+
+	/**
+	 * Stop watching the configuration folder
+	 */
+	public static synchronized void stopWatching() {
+
+		if (watcher == null)
+			return;
+
+		watcher.interrupt();
+		watcher = null;
+	}
+
+	private static void watch(WatchService watchService, Path workbook, Path snapshotFile) {
+
+		String fileName = workbook.getFileName().toString();
+
+		try (WatchService service = watchService) {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				WatchKey key = service.take();
+
+				boolean changed = isChanged(key, fileName);
+
+				if (!key.reset()) {
+					LOGGER.warn("The configuration folder cannot be watched anymore");
+					return;
+				}
+
+				if (!changed)
+					continue;
+
+				// a single saving raises more events, read the file only once
+				Thread.sleep(RELOAD_DELAY_MS);
+
+				WatchKey pending;
+				while ((pending = service.poll()) != null) {
+					pending.pollEvents();
+					pending.reset();
+				}
+
+				reload(workbook, snapshotFile);
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException | ClosedWatchServiceException e) {
+			LOGGER.error("Error while watching the predefined results file", e);
+			e.printStackTrace();
+		}
+	}
+
+	private static Path getWorkbook() {
+		return Paths.get(CustomStrings.PREDEFINED_RESULTS_FILE);
+	}
+
+	private static Path getSnapshot() {
+		return Paths.get(PredefinedResultsSnapshot.SNAPSHOT_FILE);
+	}
+
+	private static boolean isChanged(WatchKey key, String fileName) {
+
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+
+			Object context = event.context();
+
+			// the configuration file could have a different case
+			if (context instanceof Path && ((Path) context).toString().equalsIgnoreCase(fileName))
+				changed = true;
+		}
+
+		return changed;
+	}
+}
@@ -13,7 +13,16 @@ public class PredefinedResultsReader extends XlsxReader {
 	private PredefinedResult result;
 	
 	public PredefinedResultsReader() throws IOException {
-		super(CustomStrings.PREDEFINED_RESULTS_FILE);
+		this(CustomStrings.PREDEFINED_RESULTS_FILE);
+	}
+
+	/**
+	 * Read the predefined results of a workbook
+	 * @param filename
+	 * @throws IOException
+	 */
+	public PredefinedResultsReader(String filename) throws IOException {
+		super(filename);
 		this.results = new PredefinedResultList();
 	}
 
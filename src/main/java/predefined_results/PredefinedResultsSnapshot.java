@@ -0,0 +1,248 @@
+package predefined_results;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tse_config.CustomStrings;
+
+/**
+ * Binary copy of the predefined results workbook, which is much faster to load
+ * than the workbook itself.
+ *
+ * The snapshot contains the hash of the workbook from which it was created.
+ * When the workbook changes the hash does not match anymore, so the workbook is
+ * read again and the snapshot is replaced.
+ *
+ * Format: magic, version, workbook hash, headers names, then for each result
+ * the number of values and each value as header index and string.
+ *
+ */
+public class PredefinedResultsSnapshot {
+
+	private static final Logger LOGGER = LogManager.getLogger(PredefinedResultsSnapshot.class);
+
+	public static final String SNAPSHOT_FILE = CustomStrings.PREFERENCE_FOLDER + "predefinedResults.snapshot";
+
+	private static final int MAGIC = 0x54534550; // TSEP
+	private static final int VERSION = 1;
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	private PredefinedResultsSnapshot() {
+	}
+
+	/**
+	 * Get the predefined results from the snapshot if it was created from the
+	 * current workbook, otherwise read the workbook and create the snapshot
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public static PredefinedResultList load() throws IOException {
+		return load(Paths.get(CustomStrings.PREDEFINED_RESULTS_FILE), Paths.get(SNAPSHOT_FILE));
+	}
+
+	static PredefinedResultList load(Path workbook, Path snapshot) throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		byte[] hash = hash(workbook);
+
+		if (Files.exists(snapshot)) {
+			try {
+				PredefinedResultList results = read(snapshot, hash);
+				if (results != null) {
+					LOGGER.info("Loaded " + results.size() + " predefined results from " + snapshot + " in "
+							+ (System.currentTimeMillis() - start) + " ms");
+					return results;
+				}
+			} catch (IOException | RuntimeException e) {
+				LOGGER.error("Cannot read " + snapshot + ", the workbook will be read", e);
+			}
+		}
+
+		// the workbook changed or was never read
+		PredefinedResultList results;
+		try (PredefinedResultsReader reader = new PredefinedResultsReader(workbook.toString())) {
+			reader.readFirstSheet();
+			results = reader.getResults();
+		}
+
+		try {
+			write(results, hash, snapshot);
+		} catch (IOException e) {
+			// the snapshot is only needed to be faster the next time
+			LOGGER.error("Cannot save " + snapshot, e);
+		}
+
+		LOGGER.info("Read " + results.size() + " predefined results from " + workbook + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+
+		return results;
+	}
+
+	/**
+	 * Read the snapshot
+	 *
+	 * @param snapshot
+	 * @param hash     hash of the current workbook
+	 * @return the predefined results, null if the snapshot was created from a
+	 *         different workbook or by a different version of the tool
+	 * @throws IOException
+	 */
+	static PredefinedResultList read(Path snapshot, byte[] hash) throws IOException {
+
+		// the snapshot is small, so it is read in memory instead of being mapped:
+		// a mapped file cannot be replaced on Windows until it is unmapped
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+
+		if (buffer.remaining() < 3 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+				|| buffer.getInt() != hash.length || buffer.remaining() < hash.length)
+			return null;
+
+		byte[] snapshotHash = new byte[hash.length];
+		buffer.get(snapshotHash);
+
+		if (!Arrays.equals(hash, snapshotHash))
+			return null;
+
+		// headers of the snapshot, which could be no longer used
+		PredefinedResultHeader[] headers = new PredefinedResultHeader[buffer.getInt()];
+		for (int i = 0; i < headers.length; ++i) {
+			headers[i] = PredefinedResultHeader.fromString(readString(buffer));
+		}
+
+		int size = buffer.getInt();
+		PredefinedResultList results = new PredefinedResultList();
+		results.ensureCapacity(size);
+
+		for (int i = 0; i < size; ++i) {
+
+			PredefinedResult result = new PredefinedResult();
+
+			int values = buffer.getInt();
+			for (int j = 0; j < values; ++j) {
+
+				PredefinedResultHeader column = headers[buffer.getInt()];
+				String value = readString(buffer);
+
+				if (column != null)
+					result.put(column, value);
+			}
+
+			results.add(result);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Save the predefined results in the snapshot. The previous snapshot is
+	 * replaced only when the new one is complete.
+	 *
+	 * @param results
+	 * @param hash     hash of the workbook of the results
+	 * @param snapshot
+	 * @throws IOException
+	 */
+	static void write(PredefinedResultList results, byte[] hash, Path snapshot) throws IOException {
+
+		Path folder = snapshot.toAbsolutePath().getParent();
+		Files.createDirectories(folder);
+
+		Path temp = Files.createTempFile(folder, "predefinedResults", ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(hash.length);
+				out.write(hash);
+
+				PredefinedResultHeader[] headers = PredefinedResultHeader.values();
+				out.writeInt(headers.length);
+				for (PredefinedResultHeader header : headers) {
+					writeString(out, header.getHeaderName());
+				}
+
+				out.writeInt(results.size());
+				for (PredefinedResult result : results) {
+
+					out.writeInt(result.size());
+					for (Map.Entry<PredefinedResultHeader, String> entry : result.entrySet()) {
+						out.writeInt(entry.getKey().ordinal());
+						writeString(out, entry.getValue());
+					}
+				}
+			}
+
+			Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Compute the hash of the content of the workbook
+	 *
+	 * @param workbook
+	 * @return
+	 * @throws IOException
+	 */
+	static byte[] hash(Path workbook) throws IOException {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		byte[] buffer = new byte[8192];
+		try (InputStream input = Files.newInputStream(workbook)) {
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		return digest.digest();
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
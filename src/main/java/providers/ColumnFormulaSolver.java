@@ -0,0 +1,230 @@
+package providers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import formula.FormulaException;
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import xlsx_reader.TableHeaders.XlsxHeader;
+import xlsx_reader.TableSchema;
+
+/**
+ * Solves the formula of a single column, instead of all the formulas of the
+ * row. Only the formulas of the columns which the column depends on (directly
+ * or through other formulas) are solved, in dependency order.
+ *
+ * The dependencies of the columns are compiled once for each schema, from the
+ * {@code %column.label} (or {@code %column.code}) references of their
+ * formulas. The values solved are kept for each version of a row (the values
+ * of all its cells), so that the same row is not solved twice while it does
+ * not change. Values which depend on the parent rows are not invalidated when
+ * a parent changes, call {@link #clear()} in that case.
+ *
+ */
+public class ColumnFormulaSolver {
+
+	private static final Logger LOGGER = LogManager.getLogger(ColumnFormulaSolver.class);
+
+	// references to a column of the same row, e.g. %progId.label
+	private static final Pattern REFERENCE = Pattern.compile("%(\\w+)\\.(code|label)");
+
+	private static final int CACHE_SIZE = 10000;
+
+	// schema > header > column > columns to solve before it, in dependency order
+	private static final Map<String, Map<XlsxHeader, Map<String, List<TableColumn>>>> GRAPHS = new ConcurrentHashMap<>();
+
+	private final IFormulaService formulaService;
+
+	// row version > solved value
+	private final Map<String, String> solved = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+
+	public ColumnFormulaSolver(IFormulaService formulaService) {
+		this.formulaService = formulaService;
+	}
+
+	/**
+	 * Solve the formula of a column of the row. The row is not changed.
+	 *
+	 * @param row
+	 * @param columnId
+	 * @param header   formula to solve ({@link XlsxHeader#LABEL_FORMULA} or
+	 *                 {@link XlsxHeader#CODE_FORMULA})
+	 * @return the solved value
+	 * @throws FormulaException
+	 */
+	public String solve(TableRow row, String columnId, XlsxHeader header) throws FormulaException {
+
+		String key = getVersionKey(row, columnId, header);
+
+		String value = solved.get(key);
+		if (value != null)
+			return value;
+
+		List<TableColumn> closure = getClosure(row.getSchema(), header, columnId);
+
+		// solve the dependencies on a copy, so that the dependent formulas see
+		// the solved values as in a full solve
+		TableRow copy = row;
+		if (closure.size() > 1) {
+			copy = new TableRow(row.getSchema());
+			copy.copyValues(row);
+		}
+
+		for (TableColumn column : closure) {
+
+			value = formulaService.solve(copy, column, header);
+
+			if (!column.getId().equals(columnId))
+				put(copy, column.getId(), header, value);
+		}
+
+		solved.put(key, value);
+
+		return value;
+	}
+
+	/**
+	 * Forget the values solved
+	 */
+	public void clear() {
+		solved.clear();
+	}
+
+	private static void put(TableRow row, String columnId, XlsxHeader header, String value) {
+		if (header == XlsxHeader.CODE_FORMULA)
+			row.put(columnId, new TableCell(value, row.getLabel(columnId)));
+		else
+			row.put(columnId, new TableCell(row.getCode(columnId), value));
+	}
+
+	/**
+	 * Identify the row and the values used by the formula
+	 */
+	private static String getVersionKey(TableRow row, String columnId, XlsxHeader header) {
+
+		StringBuilder key = new StringBuilder();
+		key.append(row.getSchema().getSheetName()).append('|').append(row.getDatabaseId()).append('|')
+				.append(columnId).append('|').append(header);
+
+		for (TableColumn column : row.getSchema()) {
+			key.append('|').append(row.getCode(column.getId())).append('\u0001').append(row.getLabel(column.getId()));
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Get the columns to solve for a column, in dependency order, the column as
+	 * last one
+	 */
+	private static List<TableColumn> getClosure(TableSchema schema, XlsxHeader header, String columnId) {
+
+		Map<String, List<TableColumn>> closures = GRAPHS
+				.computeIfAbsent(schema.getSheetName(), k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(header, k -> new ConcurrentHashMap<>());
+
+		return closures.computeIfAbsent(columnId, k -> compile(schema, header, columnId));
+	}
+
+	private static List<TableColumn> compile(TableSchema schema, XlsxHeader header, String columnId) {
+
+		// column > columns referred by its formula
+		Map<String, Set<String>> dependencies = new HashMap<>();
+		Map<String, TableColumn> columns = new HashMap<>();
+
+		String kind = header == XlsxHeader.CODE_FORMULA ? "code" : "label";
+
+		for (TableColumn column : schema) {
+
+			columns.put(column.getId(), column);
+
+			String formula = getFormula(column, header);
+			if (formula == null || formula.isEmpty())
+				continue;
+
+			Set<String> referred = new HashSet<>();
+			Matcher matcher = REFERENCE.matcher(formula);
+			while (matcher.find()) {
+				// only the references to the same kind of value are solved
+				if (matcher.group(2).equals(kind) && !matcher.group(1).equals(column.getId()))
+					referred.add(matcher.group(1));
+			}
+
+			dependencies.put(column.getId(), referred);
+		}
+
+		List<TableColumn> closure = new ArrayList<>();
+		visit(columnId, columns, dependencies, new HashSet<>(), new HashSet<>(), closure);
+
+		// the requested column is always solved
+		if (closure.isEmpty() || !closure.get(closure.size() - 1).getId().equals(columnId))
+			closure.add(schema.getById(columnId));
+
+		LOGGER.debug("Compiled " + header + " of " + schema.getSheetName() + "." + columnId + ": " + closure.size()
+				+ " formulas to solve");
+
+		return Collections.unmodifiableList(closure);
+	}
+
+	/**
+	 * Depth first visit, the dependencies of a column are added before it
+	 */
+	private static void visit(String columnId, Map<String, TableColumn> columns, Map<String, Set<String>> dependencies,
+			Set<String> visited, Set<String> visiting, List<TableColumn> closure) {
+
+		if (visited.contains(columnId) || !columns.containsKey(columnId))
+			return;
+
+		if (!visiting.add(columnId)) {
+			LOGGER.warn("Circular formula dependency found on column " + columnId);
+			return;
+		}
+
+		Set<String> referred = dependencies.get(columnId);
+
+		// only columns with a formula need to be solved
+		if (referred != null) {
+			for (String dependency : referred) {
+				visit(dependency, columns, dependencies, visited, visiting, closure);
+			}
+		}
+
+		visiting.remove(columnId);
+		visited.add(columnId);
+
+		if (referred != null)
+			closure.add(columns.get(columnId));
+	}
+
+	private static String getFormula(TableColumn column, XlsxHeader header) {
+		switch (header) {
+		case CODE_FORMULA:
+			return column.getCodeFormula();
+		case LABEL_FORMULA:
+			return column.getLabelFormula();
+		default:
+			throw new IllegalArgumentException("Only code and label formulas can be solved, found " + header);
+		}
+	}
+}
@@ -36,7 +36,8 @@ public class PredefinedResultService {
 	}
 	
 	/**
-	 * Create the default results for a case
+	 * Create the default results for a case. The predefined result of the case
+	 * is searched only once for all the tests.
 	 * @param report
 	 * @param summInfo
 	 * @param caseReport
@@ -45,13 +46,16 @@ public class PredefinedResultService {
 	public TableRowList createDefaultResults(Report report, SummarizedInfo summInfo, CaseReport caseReport) {
 		TableRowList results = new TableRowList();
 		
-		AnalyticalResult r = createDefaultResult(report, summInfo, caseReport, 
+		// get the default value, the same for all the tests
+		PredefinedResult defaultResult = getPredefinedResult(summInfo, caseReport);
+		
+		AnalyticalResult r = createDefaultResult(report, summInfo, caseReport, defaultResult,
 				PredefinedResultHeader.SCREENING,
 				CustomStrings.SCREENING_TEST_CODE);
 		if (r != null)
 			results.add(r);
 		
-		r = createDefaultResult(report, summInfo, caseReport, 
+		r = createDefaultResult(report, summInfo, caseReport, defaultResult,
 				PredefinedResultHeader.CONFIRMATORY, 
 				CustomStrings.CONFIRMATORY_TEST_CODE);
 		if (r != null)
@@ -59,14 +63,14 @@ public class PredefinedResultService {
 		
 		// create discriminatory predefined results only for non CWD records
 		if(!summInfo.isCWD()) {
-			r = createDefaultResult(report, summInfo, caseReport, 
+			r = createDefaultResult(report, summInfo, caseReport, defaultResult,
 					PredefinedResultHeader.DISCRIMINATORY,
 					CustomStrings.DISCRIMINATORY_TEST_CODE);
 			if (r != null)
 				results.add(r);
 		}
 		
-		r = createDefaultResult(report, summInfo, caseReport, 
+		r = createDefaultResult(report, summInfo, caseReport, defaultResult,
 				PredefinedResultHeader.GENOTYPING_BASE_TERM,
 				CustomStrings.MOLECULAR_TEST_CODE);
 		if (r != null)
@@ -211,11 +215,12 @@ public class PredefinedResultService {
 	 * @param report
 	 * @param summInfo
 	 * @param caseReport
+	 * @param defaultResult predefined result of the case
 	 * @param testTypeCode
 	 * @throws IOException
 	 */
 	private AnalyticalResult createDefaultResult(Report report, SummarizedInfo summInfo, TableRow caseReport,
-			PredefinedResultHeader test, String testTypeCode) {
+			PredefinedResult defaultResult, PredefinedResultHeader test, String testTypeCode) {
 		
 		AnalyticalResult resultRow = new AnalyticalResult();
 		
@@ -223,9 +228,6 @@ public class PredefinedResultService {
 		Relation.injectParent(report, resultRow);
 		Relation.injectParent(summInfo, resultRow);
 		Relation.injectParent(caseReport, resultRow);
-
-		// get the default value
-		PredefinedResult defaultResult = getPredefinedResult(summInfo, caseReport);
 		
 		// add the param base term and the related default result
 		boolean added = addParamAndResult(resultRow, defaultResult, test);
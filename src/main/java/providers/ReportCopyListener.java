@@ -0,0 +1,19 @@
+package providers;
+
+/**
+ * Listener of the progress of a report copy (see
+ * {@link TseReportService#copyReport(tse_report.TseReport, tse_report.TseReport, ReportCopyListener)}
+ * and {@link TseReportService#amend(tse_report.TseReport, ReportCopyListener)})
+ *
+ */
+public interface ReportCopyListener {
+
+	/**
+	 * Called while the records of the report are copied, in the thread of the
+	 * copy
+	 * 
+	 * @param copied number of records copied
+	 * @param total  number of records to copy, -1 if not known
+	 */
+	void progress(int copied, int total);
+}
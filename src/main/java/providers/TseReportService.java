@@ -1,6 +1,7 @@
 package providers;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -11,14 +12,12 @@ import org.apache.logging.log4j.Logger;
 import dataset.Dataset;
 import dataset.IDataset;
 import dataset.RCLDatasetStatus;
-import formula.Formula;
 import formula.FormulaDecomposer;
 import formula.FormulaException;
-import formula.FormulaSolver;
 import message.MessageConfigBuilder;
 import report.Report;
 import report.ReportType;
-import report_downloader.TSEFormulaDecomposer;
+import report_downloader.CompositeFieldScanner;
 import soap.DetailedSOAPException;
 import soap_interface.IGetAck;
 import soap_interface.IGetDataset;
@@ -29,6 +28,10 @@ import table_skeleton.*;
 import tse_analytical_result.AnalyticalResult;
 import tse_case_report.CaseReport;
 import tse_config.CustomStrings;
+import tse_database_utils.IReportCopier;
+import tse_database_utils.IRowCopier;
+import tse_database_utils.ImportCheckpointStore;
+import tse_database_utils.ReportVersionStore;
 import tse_report.TseReport;
 import tse_summarized_information.SummarizedInfo;
 import tse_validator.CaseReportValidator;
@@ -56,10 +59,293 @@ public class TseReportService extends ReportService {
 
 	private final IFormulaService formulaService1;
 
+	// solves only the formulas needed by a column
+	private final ColumnFormulaSolver columnSolver;
+
+	// copies the records of the reports with a single transaction, if set
+	private IReportCopier bulkCopier;
+
+	// copies the default rows generated from a template, if set
+	private IRowCopier rowCopier;
+
+	// shares the unchanged records of the old versions with the newer ones, if set
+	private ReportVersionStore versionStore;
+
+	// progress of the reports imported from dataset files, if set
+	private ImportCheckpointStore importCheckpointStore;
+
 	public TseReportService(IGetAck getAck, IGetDatasetsList<IDataset> getDatasetsList, ISendMessage sendMessage,
 			IGetDataset getDataset, ITableDaoService daoService, IFormulaService formulaService) {
 		super(getAck, getDatasetsList, sendMessage, getDataset, daoService, formulaService);
 		this.formulaService1 = formulaService;
+		this.columnSolver = new ColumnFormulaSolver(formulaService);
+	}
+
+	/**
+	 * Set the copier used to copy the records of a report when their formulas
+	 * do not need to be solved again (amendments and aggregated reports). If
+	 * not set, records are copied one by one.
+	 * 
+	 * @param bulkCopier
+	 */
+	public void setBulkCopier(IReportCopier bulkCopier) {
+		this.bulkCopier = bulkCopier;
+	}
+
+	/**
+	 * Set the copier used to insert the copies of the default rows. If not set,
+	 * rows are added one by one.
+	 * 
+	 * @param rowCopier
+	 */
+	public void setRowCopier(IRowCopier rowCopier) {
+		this.rowCopier = rowCopier;
+	}
+
+	/**
+	 * Set the store used to share the unchanged records of the old versions of
+	 * the reports with their newer versions. If not set, all the versions keep
+	 * their own records.
+	 * 
+	 * @param versionStore
+	 */
+	public void setVersionStore(ReportVersionStore versionStore) {
+		this.versionStore = versionStore;
+	}
+
+	/**
+	 * Set the store used to save the progress of the reports imported from
+	 * dataset files, so that an interrupted import can be resumed. If not set,
+	 * the progress is not saved.
+	 * 
+	 * @param importCheckpointStore
+	 */
+	public void setImportCheckpointStore(ImportCheckpointStore importCheckpointStore) {
+		this.importCheckpointStore = importCheckpointStore;
+	}
+
+	public ImportCheckpointStore getImportCheckpointStore() {
+		return importCheckpointStore;
+	}
+
+	/**
+	 * Insert again the archived records of a compacted report. Needed before
+	 * the records of the report are read.
+	 * 
+	 * @param report
+	 */
+	public void restoreVersion(TseReport report) {
+		if (versionStore == null || report == null)
+			return;
+
+		try {
+			versionStore.restore(report.getDatabaseId());
+		} catch (SQLException e) {
+			LOGGER.error("Cannot restore the archived records of reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Archive again the records of a report restored to be opened or copied
+	 * (see {@link #restoreVersion(TseReport)}), unless it was released in the
+	 * meanwhile
+	 * 
+	 * @param report
+	 */
+	public void recompactVersion(TseReport report) {
+		if (versionStore == null || report == null)
+			return;
+
+		try {
+			versionStore.recompact(report.getDatabaseId());
+		} catch (SQLException e) {
+			LOGGER.error("Cannot compact again reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Check if a report has archived records which are not restored
+	 * 
+	 * @param report
+	 * @return
+	 */
+	public boolean isVersionCompacted(TseReport report) {
+		if (versionStore == null || report == null)
+			return false;
+
+		try {
+			return versionStore.isCompacted(report.getDatabaseId());
+		} catch (SQLException e) {
+			LOGGER.error("Cannot check the archived records of reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Copy the records of a report which can be compacted. The archived records
+	 * are restored for the copier and archived again after the copy, so they
+	 * do not stay in the tables.
+	 * 
+	 * @param source report whose records are copied
+	 * @param copier copies the records of the report
+	 */
+	public void copyVersion(TseReport source, Runnable copier) {
+		boolean compacted = isVersionCompacted(source);
+		restoreVersion(source);
+
+		try {
+			copier.run();
+		} finally {
+			if (compacted)
+				recompactVersion(source);
+		}
+	}
+
+	/**
+	 * Read the records of a report without restoring its archived records in
+	 * the database: they are visible only to the reader, which must not change
+	 * them.
+	 *
+	 * @param report
+	 * @param reader reads the records of the report
+	 * @throws IllegalStateException if the archived records cannot be read
+	 */
+	public void readVersion(TseReport report, Runnable reader) {
+		if (versionStore == null || report == null) {
+			reader.run();
+			return;
+		}
+
+		try {
+			versionStore.read(report.getDatabaseId(), reader);
+		} catch (SQLException e) {
+			LOGGER.error("Cannot read the archived records of reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+			throw new IllegalStateException("Cannot read the archived records of reportId=" + report.getDatabaseId(),
+					e);
+		}
+	}
+
+	/**
+	 * Restore the report and drop its archive. Needed before the records of the
+	 * report are changed.
+	 * 
+	 * @param report
+	 */
+	public void releaseVersion(TseReport report) {
+		if (versionStore == null || report == null)
+			return;
+
+		try {
+			versionStore.release(report.getDatabaseId());
+		} catch (SQLException e) {
+			LOGGER.error("Cannot release the archived records of reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Drop the archive of a report which is going to be deleted. The archives of
+	 * the reports deleted without calling this method are dropped by
+	 * {@link #compactVersions(TseReport)}.
+	 * 
+	 * @param report
+	 */
+	public void discardVersion(TseReport report) {
+		if (versionStore == null || report == null)
+			return;
+
+		try {
+			versionStore.forget(report.getDatabaseId());
+		} catch (SQLException e) {
+			LOGGER.error("Cannot remove the archived records of reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Archive the records of an old version of a report, which cannot be edited
+	 * anymore
+	 * 
+	 * @param report
+	 * @return the number of summarized information archived
+	 */
+	public int compactVersion(TseReport report) {
+		if (versionStore == null || report == null || report.isEditable())
+			return 0;
+
+		try {
+			return versionStore.compact(report.getDatabaseId());
+		} catch (SQLException e) {
+			LOGGER.error("Cannot compact reportId=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+			return 0;
+		}
+	}
+
+	/**
+	 * Archive the records of the old versions of the reports which cannot be
+	 * edited anymore, and drop the archives of the deleted reports. The last
+	 * version of each report is not compacted.
+	 * 
+	 * @param excluded report which is not compacted (e.g. the opened one), can be
+	 *                 null
+	 * @return the number of summarized information archived
+	 */
+	public int compactVersions(TseReport excluded) {
+
+		if (versionStore == null)
+			return 0;
+
+		List<TseReport> allReports = getAllReports().stream().map(TseReport::new).collect(Collectors.toList());
+
+		try {
+			versionStore.purge(allReports.stream().map(TseReport::getDatabaseId).collect(Collectors.toList()));
+		} catch (SQLException e) {
+			LOGGER.error("Cannot remove the archived records of the deleted reports", e);
+			e.printStackTrace();
+		}
+
+		// sender id > versions of the report
+		Map<String, List<TseReport>> versions = allReports.stream()
+				.collect(Collectors.groupingBy(TseReport::getSenderId));
+
+		int archived = 0;
+		for (List<TseReport> reports : versions.values()) {
+
+			reports.sort(Comparator.comparingInt(TseReportService::getVersionNumber));
+
+			for (int i = 0; i < reports.size() - 1; i++) {
+
+				TseReport old = reports.get(i);
+
+				if (excluded != null && old.getDatabaseId() == excluded.getDatabaseId())
+					continue;
+
+				archived += compactVersion(old);
+			}
+		}
+
+		return archived;
+	}
+
+	/**
+	 * Get the version of a report as number, used to sort the versions
+	 * 
+	 * @param report
+	 * @return the version, -1 if it is not a number (e.g. not set)
+	 */
+	private static int getVersionNumber(TseReport report) {
+		try {
+			return Integer.parseInt(report.getVersion());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Version " + report.getVersion() + " of reportId=" + report.getDatabaseId()
+					+ " is not a number");
+			return -1;
+		}
 	}
 
 	public List<TseReport> getBySenderId(String senderId) {
@@ -87,7 +373,10 @@ public class TseReportService extends ReportService {
 	         throw new RuntimeException(var7);
 	      }
 
-	      this.getBySenderId(senderId).forEach(existingAggrReport -> this.daoService.delete(existingAggrReport));
+	      this.getBySenderId(senderId).forEach(existingAggrReport -> {
+	         this.discardVersion(existingAggrReport);
+	         this.daoService.delete(existingAggrReport);
+	      });
 	      TseReport aggrRepV1 = this.createAggregatedReport(
 	         senderId, "00", reportList.stream().map(r -> (TseReport)r.getPreviousVersion(this.daoService)).collect(Collectors.toList())
 	      );
@@ -100,7 +389,8 @@ public class TseReportService extends ReportService {
 	   }
 	
 	/**
-	 * get sampId field in row
+	 * get sampId field in row. Only the formulas which the sampId depends on are
+	 * solved, and the value is reused until the row changes.
 	 * 
 	 * @author shahaal
 	 * @param summInfo
@@ -108,17 +398,7 @@ public class TseReportService extends ReportService {
 	 * @throws FormulaException
 	 */
 	public String getSampId(SummarizedInfo summInfo) throws FormulaException {
-		// we need all the fields to compute the context id, in order to
-		// solve formula dependencies
-		FormulaSolver solver = new FormulaSolver(summInfo, daoService);
-		ArrayList<Formula> formulas = solver.solveAll(XlsxHeader.LABEL_FORMULA.getHeaderName());
-		LOGGER.info("Formulas: ", Arrays.asList(formulas));
-
-		for (Formula f : formulas) {
-			if (f.getColumn().getId().equals(CustomStrings.SAMPLE_ID_COL))
-				return f.getSolvedFormula();
-		}
-		return null;
+		return columnSolver.solve(summInfo, CustomStrings.SAMPLE_ID_COL, XlsxHeader.LABEL_FORMULA);
 	}
 
 	   private TseReport createAggregatedReport(String senderId, String version, List<TseReport> reports) {
@@ -139,7 +419,7 @@ public class TseReportService extends ReportService {
 	      aggrRep.setYear(templateReport.getYear());
 	      aggrRep.setVersion(version);
 	      this.daoService.add(aggrRep);
-	      reports.forEach(r -> this.copyReportChildren(r, aggrRep, false));
+	      reports.forEach(r -> this.copyReportChildren(r, aggrRep, false, null));
 	      this.daoService.update(aggrRep);
 	      return aggrRep;
 	   }
@@ -188,15 +468,12 @@ public class TseReportService extends ReportService {
 	 * @throws FormulaException
 	 */
 	public static String getOrigSampIdFrom(TableRow result) throws ParseException, FormulaException {
-		// decompose param code
-		TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
-		HashMap<String, TableCell> rowValues = decomposer.decompose(CustomStrings.SAMP_INFO_COL, result.getCode(CustomStrings.SAMP_INFO_COL));
-
-		// get the cell for origSampId
-		TableCell cell = rowValues.get(CustomStrings.ORIG_SAMP_ID_COL);
+		// get the origSampId from the samp info
+		String origSampId = CompositeFieldScanner.find(result.getCode(CustomStrings.SAMP_INFO_COL),
+				CustomStrings.ORIG_SAMP_ID_COL);
 
-		// if the cell is null (old report) then retrieve it from resId
-		if (cell == null) {
+		// if the origSampId is null (old report) then retrieve it from resId
+		if (origSampId == null) {
 			// return the substring if dot present
 			String[] split = result.getCode(RES_ID_COL).split("\\.");
 			
@@ -205,9 +482,9 @@ public class TseReportService extends ReportService {
 				return split[0];
 		}
 		
-		LOGGER.info("Samp orig id=" + cell.getCode() + " for " + result);
+		LOGGER.info("Samp orig id=" + origSampId + " for " + result);
 		// return the sampOrigId
-		return cell.getCode();
+		return origSampId;
 	}
 
 	/**
@@ -327,10 +604,27 @@ public class TseReportService extends ReportService {
 	 * @return the amended report
 	 */
 	public TseReport amend(TseReport report) {
+		return amend(report, null);
+	}
+
+	/**
+	 * Create a new version of the report and save it into the database. The version
+	 * is automatically increased
+	 * 
+	 * @param report
+	 * @param listener notified while the records are copied, can be null
+	 * @return the amended report
+	 */
+	public TseReport amend(TseReport report, ReportCopyListener listener) {
 		TseReport amendedReport = new TseReport();
 		amendedReport.copyValues(report);
 		amendTseReport(amendedReport, report);
-		TseReport tseReport = copyReportChildren(amendedReport, report, false);
+		TseReport tseReport = copyReportChildren(amendedReport, report, false, listener);
+
+		// the report object is now the new version, the old one cannot be
+		// edited anymore and its records are archived
+		compactVersion(amendedReport);
+
 		LOGGER.info("Amended report : {}", report.getDatabaseId());
 		return tseReport;
 	}
@@ -343,6 +637,20 @@ public class TseReportService extends ReportService {
 	 * @return the copied report
 	 */
 	public TseReport copyReport(TseReport source, TseReport target) {
+		return copyReport(source, target, null);
+	}
+
+	/**
+	 * Copy a report and then generate the required fields of the new report
+	 *
+	 * @param source   the report being copied
+	 * @param target   the report that will contain the copied data
+	 * @param listener notified while the records are copied, can be null
+	 * @return the copied report
+	 */
+	public TseReport copyReport(TseReport source, TseReport target, ReportCopyListener listener) {
+		releaseVersion(target);
+
 		List<Relation> directChildren = target.getSchema().getDirectChildren();
 		for (Relation rel: directChildren) {
 			daoService.deleteByParentId(rel.getChildSchema(), target.getSchema().getSheetName(), target.getDatabaseId());
@@ -352,7 +660,7 @@ public class TseReportService extends ReportService {
 		target.setMessageId("");
 		daoService.update(target);
 
-		copyReportChildren(source, target, true);
+		copyReportChildren(source, target, true, listener);
 		LOGGER.info("Imported report {} to {}", source.getDatabaseId(), target.getDatabaseId());
 		return target;
 	}
@@ -365,12 +673,42 @@ public class TseReportService extends ReportService {
 	 * @param source the report being copied
 	 * @param target the report that will contain the copied data
 	 * @param init determines if the report's formula fields will be generated again or copied from source
+	 * @param listener notified while the records are copied, can be null
 	 *
 	 * @return
 	 */
-	private TseReport copyReportChildren(TseReport source, TseReport target, boolean init) {
+	private TseReport copyReportChildren(TseReport source, TseReport target, boolean init,
+			ReportCopyListener listener) {
+
+		// the records of the source may be archived
+		copyVersion(source, () -> copyRestoredChildren(source, target, init, listener));
+		return target;
+	}
+
+	/**
+	 * Copy the child items of a report whose records are not archived (see
+	 * {@link #copyReportChildren(TseReport, TseReport, boolean, ReportCopyListener)})
+	 */
+	private void copyRestoredChildren(TseReport source, TseReport target, boolean init,
+			ReportCopyListener listener) {
+
+		// values are copied as they are, all the records can be copied at once
+		Map<String, Integer> globalParents = !init && bulkCopier != null ? getGlobalParentIds() : null;
+		if (globalParents != null) {
+			try {
+				bulkCopier.copyChildren(source.getDatabaseId(), target.getDatabaseId(), globalParents, listener);
+				return;
+			} catch (SQLException e) {
+				// nothing was copied, copy the records one by one
+				LOGGER.error("Cannot copy the records of reportId=" + source.getDatabaseId()
+						+ " in a single transaction, copying them one by one", e);
+				e.printStackTrace();
+			}
+		}
+
 		Stack<TableRow> elements = new Stack<>();
 		elements.add(source);
+		int copied = 0;
 
 		SummarizedInfo summInfo = null;
 		CaseReport caseReport = null;
@@ -399,13 +737,38 @@ public class TseReportService extends ReportService {
 				copyAnalyticalResult(currentElement, init, target, summInfo, caseReport);
 			}
 
+			if (listener != null && (isSumm || isCase || isRslt))
+				listener.progress(++copied, -1);
+
 			// add the children
 			if (!isRslt)
 				elements.addAll(children);
 		}
-		return target;
 			}
 
+	/**
+	 * Get the ids of the current settings and preferences, which are injected in
+	 * the copied records as {@link #copyTableRow(TableRow, TableRow, TableRow...)}
+	 * does
+	 * 
+	 * @return the ids by sheet, null if they cannot be read
+	 */
+	private Map<String, Integer> getGlobalParentIds() {
+		Map<String, Integer> ids = new HashMap<>();
+		try {
+			for (String sheet : new String[] { CustomStrings.SETTINGS_SHEET, CustomStrings.PREFERENCES_SHEET }) {
+				TableRow parent = Relation.getGlobalParent(sheet, getDaoService());
+				if (parent != null)
+					ids.put(sheet, parent.getDatabaseId());
+			}
+		} catch (Exception e) {
+			LOGGER.error("Cannot get the settings and preferences of the copied records", e);
+			e.printStackTrace();
+			return null;
+		}
+		return ids;
+	}
+
 	private void amendTseReport(TseReport source, TseReport target) {
 		// increase version starting from the current
 		String newVersion = TableVersion.createNewVersion(source.getVersion());
@@ -593,7 +956,11 @@ public class TseReportService extends ReportService {
 
 	/**
 	 * Once a summ info is clicked, create the default cases according to number of
-	 * positive/inconclusive cases
+	 * positive/inconclusive cases.
+	 * 
+	 * The default cases differ only for the assessment and the part, therefore
+	 * the formulas are solved only for the first case of each kind and the others
+	 * are copies of it, inserted with JDBC batches if a row copier is set.
 	 * 
 	 * @param summInfo
 	 * @throws IOException
@@ -603,77 +970,101 @@ public class TseReportService extends ReportService {
 		int positive = summInfo.getNumLabel(CustomStrings.TOT_SAMPLE_POSITIVE_COL);
 		int inconclusive = summInfo.getNumLabel(CustomStrings.TOT_SAMPLE_INCONCLUSIVE_COL);
 
-		TableSchema resultSchema = TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET);
+		TableSchema caseSchema = TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET);
 
 		boolean isCervid = summInfo.getCode(CustomStrings.SUMMARIZED_INFO_TYPE).equals(CustomStrings.SUMMARIZED_INFO_CWD_TYPE);
 
-		// for cervids we need double rows
-		int repeats = isCervid ? 2 : 1;
-
-		// for each inconclusive
-		for (int i = 0; i < inconclusive; ++i) {
+		// for cervids we need double rows, default always obex
+		String[] parts = isCervid ? new String[] { CustomStrings.OBEX_CODE, CustomStrings.RETROPHARYNGEAL_CODE }
+				: new String[] { CustomStrings.OBEX_CODE };
 
-			for (int j = 0; j < repeats; ++j) {
-				TableRow resultRow = new TableRow(resultSchema);
+		// first case of each kind
+		Map<String, TableRow> templates = new HashMap<>();
 
-				// inject the case parent to the result
-				Relation.injectParent(report, resultRow);
-				Relation.injectParent(summInfo, resultRow);
-				formulaService1.Initialise(resultRow);
+		// cases still to be copied from the templates
+		List<TableRow> pending = new ArrayList<>();
 
-				// add result
-				daoService.add(resultRow);
+		// inconclusive cases first, then the positive ones
+		for (int i = 0; i < inconclusive + positive; ++i) {
 
-				formulaService1.Initialise(resultRow);
+			boolean isInconclusive = i < inconclusive;
 
-				// set assessment as inconclusive
-				TableCell value = new TableCell();
-				value.setCode(CustomStrings.DEFAULT_ASSESS_INC_CASE_CODE);
-				value.setLabel(CustomStrings.DEFAULT_ASSESS_INC_CASE_LABEL);
-				resultRow.put(CustomStrings.SAMP_EVENT_ASSES_COL, value);
+			for (String part : parts) {
 
-				// default always obex
-				resultRow.put(CustomStrings.PART_COL, CustomStrings.OBEX_CODE);
+				String kind = isInconclusive + part;
+				TableRow template = templates.get(kind);
 
-				if (isCervid) {
-					if (j == 0) {
-						resultRow.put(CustomStrings.PART_COL, CustomStrings.OBEX_CODE);
-					} else if (j == 1) {
-						resultRow.put(CustomStrings.PART_COL, CustomStrings.RETROPHARYNGEAL_CODE);
-					}
+				if (template != null) {
+					pending.add(template);
+					continue;
 				}
 
-				daoService.update(resultRow);
+				// keep the cases in order
+				copyCases(caseSchema, pending);
+
+				templates.put(kind, createDefaultCase(report, summInfo, caseSchema, isInconclusive, part));
 			}
 		}
 
-		// for each positive
-		for (int i = 0; i < positive; ++i) {
-			for (int j = 0; j < repeats; ++j) {
-				TableRow resultRow = new TableRow(resultSchema);
+		copyCases(caseSchema, pending);
+	}
 
-				// inject the case parent to the result
-				Relation.injectParent(report, resultRow);
-				Relation.injectParent(summInfo, resultRow);
-				formulaService1.Initialise(resultRow);
+	private TableRow createDefaultCase(Report report, TableRow summInfo, TableSchema caseSchema,
+			boolean isInconclusive, String part) {
 
-				// add get the id and update the fields
-				daoService.add(resultRow);
+		TableRow caseRow = new TableRow(caseSchema);
 
-				// default always obex
-				resultRow.put(CustomStrings.PART_COL, CustomStrings.OBEX_CODE);
+		// inject the case parent to the result
+		Relation.injectParent(report, caseRow);
+		Relation.injectParent(summInfo, caseRow);
+		formulaService1.Initialise(caseRow);
+
+		if (isInconclusive) {
+			// set assessment as inconclusive
+			TableCell value = new TableCell();
+			value.setCode(CustomStrings.DEFAULT_ASSESS_INC_CASE_CODE);
+			value.setLabel(CustomStrings.DEFAULT_ASSESS_INC_CASE_LABEL);
+			caseRow.put(CustomStrings.SAMP_EVENT_ASSES_COL, value);
+		}
 
-				if (isCervid) {
-					if (j == 0) {
-						resultRow.put(CustomStrings.PART_COL, CustomStrings.OBEX_CODE);
-					} else if (j == 1) {
-						resultRow.put(CustomStrings.PART_COL, CustomStrings.RETROPHARYNGEAL_CODE);
-					}
-				}
+		caseRow.put(CustomStrings.PART_COL, part);
+
+		daoService.add(caseRow);
 
-				daoService.update(resultRow);
+		return caseRow;
+	}
+
+	/**
+	 * Add a copy of each case into the database and empty the list
+	 * 
+	 * @param caseSchema
+	 * @param cases
+	 */
+	private void copyCases(TableSchema caseSchema, List<TableRow> cases) {
+
+		if (cases.isEmpty())
+			return;
+
+		if (rowCopier != null) {
+			List<Integer> ids = cases.stream().map(TableRow::getDatabaseId).collect(Collectors.toList());
+			try {
+				rowCopier.copyRows(caseSchema.getSheetName(), ids);
+				cases.clear();
+				return;
+			} catch (SQLException e) {
+				// nothing was copied, add the cases one by one
+				LOGGER.error("Cannot copy " + ids.size() + " default cases with the row copier, adding them one by one", e);
+				e.printStackTrace();
 			}
 		}
+
+		for (TableRow source : cases) {
+			TableRow caseRow = new TableRow(caseSchema);
+			caseRow.copyValues(source);
+			daoService.add(caseRow);
+		}
+
+		cases.clear();
 	}
 
 	public TableRowList createDefaultResults(Report report, SummarizedInfo summInfo, CaseReport caseInfo) throws IOException {
@@ -2,16 +2,46 @@ package report_converter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -21,6 +51,9 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Class that parse Excel Spreadsheet to XML.
@@ -32,6 +65,12 @@ public class ExcelXmlConverter {
 	
 	private static final Logger LOGGER = LogManager.getLogger(ExcelXmlConverter.class);
 
+	// enclose the fragments of the sheets
+	private static final String XML_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><message><payload><dataset>";
+	private static final String XML_END = "</dataset></payload></message>";
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
 	/**
 	 * the method convert an excel file into xml format and save it
 	 * 
@@ -176,6 +215,491 @@ public class ExcelXmlConverter {
 		LOGGER.info("File was not found in ExcelXmlConverter.", excelFile);
 		return null;
 	}
+
+	/**
+	 * the method convert an excel file into xml format and save it, as
+	 * {@link #convertXExcelToXml(File)}, but reading the sheets as a stream of
+	 * events and writing each row as soon as it is read, so that the workbook
+	 * is never loaded in memory
+	 * 
+	 * @param excelFile
+	 * @return the xml file, null if the excel file was not found
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 * @throws XMLStreamException
+	 */
+	public static File convertXExcelToXmlStreaming(File excelFile) throws IOException, OpenXML4JException,
+			SAXException, ParserConfigurationException, XMLStreamException {
+
+		// check if the file exists
+		if (!excelFile.exists() || !excelFile.isFile()) {
+			LOGGER.info("File was not found in ExcelXmlConverter: " + excelFile);
+			return null;
+		}
+
+		File xmlFile = new File(excelFile.getAbsolutePath().replace(".xlsx", ".xml"));
+
+		// the xml file is replaced only if the conversion completes
+		Path temp = createTempFile(xmlFile);
+
+		OPCPackage pkg = OPCPackage.open(excelFile, PackageAccess.READ);
+
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+
+			XSSFReader reader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+			XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+			try {
+
+				writer.writeStartDocument("UTF-8", "1.0");
+				writer.writeStartElement("message");
+				writer.writeStartElement("payload");
+				writer.writeStartElement("dataset");
+
+				// the sheets are in the same order of the workbook
+				Iterator<InputStream> sheets = reader.getSheetsData();
+				while (sheets.hasNext()) {
+					try (InputStream sheet = sheets.next()) {
+						convertSheet(sheet, strings, writer);
+					}
+				}
+
+				// close dataset, payload and message
+				writer.writeEndDocument();
+				writer.flush();
+
+			} finally {
+				writer.close();
+			}
+
+			out.close();
+			moveIntoPlace(temp, xmlFile);
+
+		} finally {
+			// the package was opened read only, nothing to save
+			pkg.revert();
+			Files.deleteIfExists(temp);
+		}
+
+		LOGGER.info("Convertion from xlsx to xml file completed: " + xmlFile);
+
+		return xmlFile;
+	}
+
+	/**
+	 * the method convert an excel file into xml format and save it, as
+	 * {@link #convertXExcelToXmlStreaming(File)}, but converting each sheet in
+	 * its own thread into a temporary fragment. The fragments are then appended
+	 * to the xml file in the order of the sheets.
+	 * 
+	 * @param excelFile
+	 * @param gzip      true to compress the xml file (saved as .xml.gz)
+	 * @return the xml file, null if the excel file was not found
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 * @throws XMLStreamException
+	 */
+	public static File convertXExcelToXmlParallel(File excelFile, boolean gzip) throws IOException,
+			OpenXML4JException, SAXException, ParserConfigurationException, XMLStreamException {
+
+		// check if the file exists
+		if (!excelFile.exists() || !excelFile.isFile()) {
+			LOGGER.info("File was not found in ExcelXmlConverter: " + excelFile);
+			return null;
+		}
+
+		String xmlPath = excelFile.getAbsolutePath().replace(".xlsx", ".xml");
+		File xmlFile = new File(gzip ? xmlPath + ".gz" : xmlPath);
+
+		// the xml file is replaced only if all the sheets are converted
+		Path temp = createTempFile(xmlFile);
+
+		OPCPackage pkg = OPCPackage.open(excelFile, PackageAccess.READ);
+
+		ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+				new SheetThreadFactory());
+
+		List<Path> fragments = new ArrayList<>();
+
+		try {
+
+			XSSFReader reader = new XSSFReader(pkg);
+
+			// only read by the workers
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+			List<Future<?>> conversions = new ArrayList<>();
+
+			Iterator<InputStream> sheets = reader.getSheetsData();
+			while (sheets.hasNext()) {
+
+				Path fragment = Files.createTempFile("sheet", ".xml");
+				fragments.add(fragment);
+
+				InputStream sheet = sheets.next();
+				conversions.add(workers.submit(() -> {
+					writeFragment(sheet, strings, fragment);
+					return null;
+				}));
+			}
+
+			try (OutputStream out = openOutput(temp, gzip)) {
+
+				out.write(XML_START.getBytes(StandardCharsets.UTF_8));
+
+				// append each sheet as soon as it is converted, in order
+				for (int i = 0; i < conversions.size(); ++i) {
+					await(conversions.get(i));
+					Files.copy(fragments.get(i), out);
+				}
+
+				out.write(XML_END.getBytes(StandardCharsets.UTF_8));
+			}
+
+			moveIntoPlace(temp, xmlFile);
+
+		} finally {
+
+			// wait the workers which are still reading the package and
+			// writing the fragments (only if a sheet failed)
+			workers.shutdownNow();
+			awaitTermination(workers);
+
+			for (Path fragment : fragments) {
+				try {
+					Files.deleteIfExists(fragment);
+				} catch (IOException e) {
+					LOGGER.error("Cannot delete the temporary file " + fragment, e);
+					e.printStackTrace();
+				}
+			}
+
+			// the package was opened read only, nothing to save
+			pkg.revert();
+			Files.deleteIfExists(temp);
+		}
+
+		LOGGER.info("Convertion from xlsx to xml file completed: " + xmlFile);
+
+		return xmlFile;
+	}
+
+	/**
+	 * Create the temporary file in which the xml file is written, in the same
+	 * folder so that it can be moved into place atomically
+	 * 
+	 * @param xmlFile
+	 * @return
+	 * @throws IOException
+	 */
+	private static Path createTempFile(File xmlFile) throws IOException {
+		return Files.createTempFile(xmlFile.getAbsoluteFile().getParentFile().toPath(), xmlFile.getName(), ".tmp");
+	}
+
+	/**
+	 * Replace the xml file with the completed temporary file
+	 * 
+	 * @param temp
+	 * @param xmlFile
+	 * @throws IOException
+	 */
+	private static void moveIntoPlace(Path temp, File xmlFile) throws IOException {
+		try {
+			Files.move(temp, xmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, xmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static OutputStream openOutput(Path xmlFile, boolean gzip) throws IOException {
+
+		OutputStream out = new BufferedOutputStream(Files.newOutputStream(xmlFile));
+
+		if (!gzip)
+			return out;
+
+		try {
+			return new GZIPOutputStream(out, COPY_BUFFER_SIZE);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Write the result elements of a sheet in a fragment of xml, without
+	 * declaration and root
+	 * 
+	 * @param sheet
+	 * @param strings
+	 * @param fragment
+	 * @throws IOException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 * @throws XMLStreamException
+	 */
+	private static void writeFragment(InputStream sheet, ReadOnlySharedStringsTable strings, Path fragment)
+			throws IOException, SAXException, ParserConfigurationException, XMLStreamException {
+
+		try (InputStream in = sheet;
+				OutputStream out = new BufferedOutputStream(Files.newOutputStream(fragment))) {
+
+			XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+			try {
+				convertSheet(in, strings, writer);
+				writer.flush();
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Convert a sheet of the workbook
+	 * 
+	 * @param sheet
+	 * @param strings shared strings of the workbook
+	 * @param writer
+	 * @throws IOException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 */
+	private static void convertSheet(InputStream sheet, ReadOnlySharedStringsTable strings, XMLStreamWriter writer)
+			throws IOException, SAXException, ParserConfigurationException {
+		XMLReader parser = SAXHelper.newXMLReader();
+		parser.setContentHandler(new SheetHandler(strings, writer));
+		parser.parse(new InputSource(sheet));
+	}
+
+	/**
+	 * Wait the conversion of a sheet
+	 * 
+	 * @param conversion
+	 * @throws IOException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 * @throws XMLStreamException
+	 */
+	private static void await(Future<?> conversion)
+			throws IOException, SAXException, ParserConfigurationException, XMLStreamException {
+		try {
+			conversion.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Conversion interrupted");
+		} catch (ExecutionException e) {
+
+			// throw the exception of the sheet
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof SAXException)
+				throw (SAXException) cause;
+			if (cause instanceof ParserConfigurationException)
+				throw (ParserConfigurationException) cause;
+			if (cause instanceof XMLStreamException)
+				throw (XMLStreamException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw new IOException(cause);
+		}
+	}
+
+	private static void awaitTermination(ExecutorService workers) {
+		try {
+			while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+				LOGGER.info("Waiting the end of the sheets conversion");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class SheetThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "sheet-converter-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Write a result element for each row of a sheet (except the first one,
+	 * which contains the headers) with the same content of
+	 * {@link #convertXExcelToXml(File)}: string, boolean and numeric cells are
+	 * written, formulas and blank cells are skipped.
+	 */
+	private static class SheetHandler extends DefaultHandler {
+
+		private final ReadOnlySharedStringsTable strings;
+		private final XMLStreamWriter writer;
+
+		// column index > header of the column
+		private final Map<Integer, String> headers = new HashMap<>();
+
+		private int firstRowNum = -1;
+		private int rowNum = -1;
+		private int column;
+
+		// current cell
+		private String cellType;
+		private boolean formula;
+		private boolean hasValue;
+		private boolean inValue;
+		private final StringBuilder value = new StringBuilder();
+
+		SheetHandler(ReadOnlySharedStringsTable strings, XMLStreamWriter writer) {
+			this.strings = strings;
+			this.writer = writer;
+		}
+
+		private boolean isDataRow() {
+			return rowNum > firstRowNum;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+				throws SAXException {
+
+			switch (localName) {
+			case "row":
+				String r = attributes.getValue("r");
+				rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+				column = -1;
+
+				if (firstRowNum < 0)
+					firstRowNum = rowNum;
+
+				if (isDataRow())
+					write(() -> writer.writeStartElement("result"));
+				break;
+
+			case "c":
+				String ref = attributes.getValue("r");
+				column = ref != null ? new CellReference(ref).getCol() : column + 1;
+				cellType = attributes.getValue("t");
+				formula = false;
+				hasValue = false;
+				value.setLength(0);
+				break;
+
+			case "f":
+				formula = true;
+				break;
+
+			case "v":
+			case "t": // text of the inline strings
+				inValue = true;
+				hasValue = true;
+				break;
+
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (inValue)
+				value.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+
+			switch (localName) {
+			case "v":
+			case "t":
+				inValue = false;
+				break;
+
+			case "c":
+				String text = getCellValue();
+				if (text == null)
+					break;
+
+				// take the header
+				if (rowNum == 0) {
+					headers.put(column, text);
+					break;
+				}
+
+				String header = headers.get(column);
+				if (header != null && isDataRow()) {
+					write(() -> {
+						writer.writeStartElement(header);
+						writer.writeCharacters(text);
+						writer.writeEndElement();
+					});
+				}
+				break;
+
+			case "row":
+				if (isDataRow())
+					write(() -> writer.writeEndElement());
+				break;
+
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * Get the value of the current cell as it is written in the xml
+		 * 
+		 * @return the value, null if the cell is not written
+		 */
+		private String getCellValue() {
+
+			if (formula || !hasValue)
+				return null;
+
+			String raw = value.toString();
+
+			// numeric
+			if (cellType == null || cellType.equals("n"))
+				return String.valueOf(Double.parseDouble(raw));
+
+			switch (cellType) {
+			case "s":
+				return strings.getItemAt(Integer.parseInt(raw.trim())).getString();
+			case "inlineStr":
+				return raw;
+			case "b":
+				return String.valueOf(raw.trim().equals("1"));
+			default:
+				// errors
+				return null;
+			}
+		}
+
+		private interface XmlWrite {
+			void write() throws XMLStreamException;
+		}
+
+		private static void write(XmlWrite write) throws SAXException {
+			try {
+				write.write();
+			} catch (XMLStreamException e) {
+				throw new SAXException(e);
+			}
+		}
+	}
 	/*
 	 * public static void main(String[] args) {
 	 * 
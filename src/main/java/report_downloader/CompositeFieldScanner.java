@@ -0,0 +1,360 @@
+package report_downloader;
+
+import java.text.ParseException;
+import java.util.Map.Entry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_skeleton.TableCell;
+import tse_config.CustomStrings;
+
+/**
+ * Single pass scanner for the composite fields of the datasets, which gives the
+ * same values of {@link TSEFormulaDecomposer} without creating intermediate
+ * maps and elements:
+ * <ul>
+ * <li>attributes fields: {@code id1=value1$id2=value2}</li>
+ * <li>FoodEx2 codes with facet headers: {@code A04MQ#F01.A057G$F02.A06AM}</li>
+ * <li>FoodEx2 codes with alleles: {@code RF-00004629-PAR#allele=ARR$allele=ARQ}</li>
+ * </ul>
+ * The values are written directly into a {@link FieldSink} (a row or a map).
+ * The attribute ids are shared instances of the column ids.
+ *
+ * Fields which are not in the usual form (empty attributes, attributes
+ * without value, spaces around ids and values...) are decomposed by
+ * {@link TSEFormulaDecomposer}.
+ *
+ */
+public class CompositeFieldScanner {
+
+	private static final Logger LOGGER = LogManager.getLogger(CompositeFieldScanner.class);
+
+	private static final char ATTRIBUTE_SEPARATOR = '$';
+	private static final char VALUE_SEPARATOR = '=';
+	private static final char FACETS_SEPARATOR = '#';
+	private static final char HEADER_SEPARATOR = '.';
+
+	private static final String ALLELE_ATTRIBUTE = "allele";
+
+	// ids of the attributes which can be found in the composite fields
+	private static final String[] KNOWN_IDS = { CustomStrings.PROG_ID_COL, CustomStrings.ORIG_SAMP_ID_COL,
+			CustomStrings.ANIMAL_ID_COL, CustomStrings.HERD_ID_COL, CustomStrings.SAMP_HOLDING_ID_COL,
+			CustomStrings.PSU_ID_COL, CustomStrings.NATIONAL_CASE_ID_COL, CustomStrings.INDEX_CASE_COL,
+			CustomStrings.SAMP_EVENT_ASSES_COL, CustomStrings.EVAL_COMMENT_BREED_ATTRIBUTE_NAME,
+			CustomStrings.BIRTH_COUNTRY_COL, CustomStrings.STATUS_HERD_COL, CustomStrings.BORN_FLOCK_HERD_COL,
+			CustomStrings.BIRTH_YEAR_COL, CustomStrings.BIRTH_MONTH_COL, CustomStrings.TARGET_GROUP_COL,
+			CustomStrings.TOT_SAMPLE_TESTED_COL, CustomStrings.TOT_SAMPLE_POSITIVE_COL,
+			CustomStrings.TOT_SAMPLE_NEGATIVE_COL, CustomStrings.TOT_SAMPLE_INCONCLUSIVE_COL,
+			CustomStrings.TOT_SAMPLE_UNSUITABLE_COL, ALLELE_ATTRIBUTE };
+
+	/**
+	 * Destination of the decomposed values
+	 */
+	public interface FieldSink {
+		void put(String columnId, TableCell value);
+	}
+
+	private CompositeFieldScanner() {
+	}
+
+	/**
+	 * Decompose the value of a composite field
+	 *
+	 * @param columnId id of the composite field
+	 * @param value    value of the field
+	 * @param sink     where the decomposed values are put
+	 * @throws ParseException
+	 */
+	public static void decompose(String columnId, String value, FieldSink sink) throws ParseException {
+
+		if (value.isEmpty())
+			return;
+
+		switch (columnId) {
+		case CustomStrings.SAMP_MAT_CODE_COL:
+			if (isPlainFoodex(value, HEADER_SEPARATOR))
+				scanFacetHeaders(value, sink);
+			else
+				fallback(columnId, value, sink);
+			break;
+		case CustomStrings.PROG_INFO_COL:
+		case CustomStrings.EVAL_INFO_COL:
+		case CustomStrings.SAMP_UNIT_IDS_COL:
+		case CustomStrings.SAMP_EVENT_INFO_COL:
+		case CustomStrings.SAMP_MAT_INFO_COL:
+		case CustomStrings.SAMP_INFO_COL:
+			if (isPlainAttributes(value, 0))
+				scanAttributes(value, sink);
+			else
+				fallback(columnId, value, sink);
+			break;
+		case CustomStrings.PARAM_CODE_COL:
+			if (isPlainFoodex(value, VALUE_SEPARATOR))
+				scanAlleles(value, sink);
+			else
+				fallback(columnId, value, sink);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Get the value of a single attribute of an attributes field
+	 *
+	 * @param value       value of the field
+	 * @param attributeId
+	 * @return the code of the attribute, null if not present
+	 * @throws ParseException
+	 */
+	public static String find(String value, String attributeId) throws ParseException {
+
+		if (value.isEmpty())
+			return null;
+
+		if (!isPlainAttributes(value, 0)) {
+			TableCell cell = new TSEFormulaDecomposer().decompose(CustomStrings.SAMP_INFO_COL, value).get(attributeId);
+			return cell == null ? null : cell.getCode();
+		}
+
+		int start = 0;
+		while (start < value.length()) {
+
+			int end = endOfAttribute(value, start);
+			int eq = value.indexOf(VALUE_SEPARATOR, start);
+
+			if (eq - start == attributeId.length() && value.regionMatches(start, attributeId, 0, eq - start))
+				return value.substring(eq + 1, end);
+
+			start = end + 1;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get the base term of a FoodEx2 code
+	 *
+	 * @param code
+	 * @return
+	 */
+	public static String getBaseTerm(String code) {
+		int facets = code.indexOf(FACETS_SEPARATOR);
+		return facets < 0 ? code : code.substring(0, facets);
+	}
+
+	private static void scanAttributes(String value, FieldSink sink) {
+
+		int start = 0;
+		while (start < value.length()) {
+
+			int end = endOfAttribute(value, start);
+			int eq = value.indexOf(VALUE_SEPARATOR, start);
+
+			String attributeValue = value.substring(eq + 1, end);
+			sink.put(attributeId(value, start, eq), new TableCell(attributeValue, attributeValue));
+
+			start = end + 1;
+		}
+	}
+
+	private static void scanFacetHeaders(String value, FieldSink sink) {
+
+		int start = value.indexOf(FACETS_SEPARATOR) + 1;
+		if (start == 0)
+			return;
+
+		while (start < value.length()) {
+
+			int end = endOfAttribute(value, start);
+			int dot = value.indexOf(HEADER_SEPARATOR, start);
+
+			String columnId = getColumnByHeader(value, start, dot);
+
+			if (columnId == null) {
+				LOGGER.error("This facet header is not supported: " + value.substring(start, dot));
+			} else {
+				// the facet is already in the form header.value
+				TableCell cell = new TableCell();
+				cell.setCode(value.substring(start, end));
+				sink.put(columnId, cell);
+			}
+
+			start = end + 1;
+		}
+	}
+
+	private static void scanAlleles(String value, FieldSink sink) {
+
+		int start = value.indexOf(FACETS_SEPARATOR) + 1;
+		if (start == 0)
+			return;
+
+		int count = 0;
+		while (start < value.length()) {
+
+			int end = endOfAttribute(value, start);
+			int eq = value.indexOf(VALUE_SEPARATOR, start);
+
+			if (eq - start == ALLELE_ATTRIBUTE.length()
+					&& value.regionMatches(start, ALLELE_ATTRIBUTE, 0, ALLELE_ATTRIBUTE.length())) {
+
+				TableCell cell = new TableCell();
+				cell.setCode(value.substring(eq + 1, end));
+
+				sink.put(count == 0 ? CustomStrings.ALLELE_1_COL : CustomStrings.ALLELE_2_COL, cell);
+
+				count++;
+			}
+
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Check that a FoodEx2 code has no empty facet and no spaces, and that each
+	 * facet contains the separator (header separator or value separator)
+	 */
+	private static boolean isPlainFoodex(String value, char facetSeparator) {
+
+		// only the base term
+		int facets = value.indexOf(FACETS_SEPARATOR);
+		if (facets < 0)
+			return true;
+
+		if (facets == 0 || value.indexOf(FACETS_SEPARATOR, facets + 1) >= 0)
+			return false;
+
+		for (int i = 0; i < facets; ++i) {
+			if (Character.isWhitespace(value.charAt(i)))
+				return false;
+		}
+
+		if (facetSeparator == VALUE_SEPARATOR)
+			return isPlainAttributes(value, facets + 1);
+
+		int start = facets + 1;
+		if (start == value.length())
+			return false;
+
+		boolean separator = false;
+		for (int i = start; i <= value.length(); ++i) {
+
+			char c = i == value.length() ? ATTRIBUTE_SEPARATOR : value.charAt(i);
+
+			if (c == ATTRIBUTE_SEPARATOR) {
+				// empty header or empty code
+				if (!separator || value.charAt(i - 1) == facetSeparator)
+					return false;
+				separator = false;
+				start = i + 1;
+			} else if (c == facetSeparator) {
+				if (separator || i == start)
+					return false;
+				separator = true;
+			} else if (Character.isWhitespace(c)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check that all the attributes starting from {@code from} are in the form
+	 * id=value, with no spaces around id and value
+	 */
+	private static boolean isPlainAttributes(String value, int from) {
+
+		if (from >= value.length())
+			return false;
+
+		int start = from;
+		int eq = -1;
+		for (int i = from; i <= value.length(); ++i) {
+
+			char c = i == value.length() ? ATTRIBUTE_SEPARATOR : value.charAt(i);
+
+			if (c == ATTRIBUTE_SEPARATOR) {
+
+				// attribute without value separator, id or value
+				if (eq <= start || i == eq + 1)
+					return false;
+
+				// spaces around the value
+				if (Character.isWhitespace(value.charAt(eq + 1)) || Character.isWhitespace(value.charAt(i - 1)))
+					return false;
+
+				start = i + 1;
+				eq = -1;
+			} else if (c == VALUE_SEPARATOR) {
+
+				// more values in the same attribute
+				if (eq >= 0)
+					return false;
+
+				eq = i;
+			} else if (eq < 0 && Character.isWhitespace(c)) {
+				// spaces in the id
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int endOfAttribute(String value, int start) {
+		int end = value.indexOf(ATTRIBUTE_SEPARATOR, start);
+		return end < 0 ? value.length() : end;
+	}
+
+	/**
+	 * Get the id of an attribute, using the same instance for the same id
+	 */
+	private static String attributeId(String value, int start, int end) {
+
+		int length = end - start;
+		for (String id : KNOWN_IDS) {
+			if (id.length() == length && value.regionMatches(start, id, 0, length))
+				return id;
+		}
+
+		return value.substring(start, end).intern();
+	}
+
+	/**
+	 * Get the column of the row schema which contains the facet code related to
+	 * the facet header
+	 */
+	private static String getColumnByHeader(String value, int start, int end) {
+
+		if (end - start != 3 || value.charAt(start) != 'F')
+			return null;
+
+		int tens = Character.digit(value.charAt(start + 1), 10);
+		int units = Character.digit(value.charAt(start + 2), 10);
+		if (tens < 0 || units < 0)
+			return null;
+
+		switch (tens * 10 + units) {
+		case 1:
+			return CustomStrings.SOURCE_COL;
+		case 2:
+			return CustomStrings.PART_COL;
+		case 21:
+			return CustomStrings.PROD_COL;
+		case 31:
+			return CustomStrings.ANIMAGE_COL;
+		case 32:
+			return CustomStrings.SEX_COL;
+		default:
+			return null;
+		}
+	}
+
+	private static void fallback(String columnId, String value, FieldSink sink) throws ParseException {
+		for (Entry<String, TableCell> entry : new TSEFormulaDecomposer().decompose(columnId, value).entrySet())
+			sink.put(entry.getKey(), entry.getValue());
+	}
+}
@@ -0,0 +1,223 @@
+package report_downloader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Read the rows of a dataset file one at a time, without loading the whole
+ * file in memory. Each {@code result} element of the dataset becomes a row of
+ * the analytical results schema, whose columns are matched by xml tag.
+ *
+ */
+public class DatasetRowReader implements Closeable {
+
+	private static final String RESULT_ELEMENT = "result";
+
+	private final InputStream input;
+	private final XMLStreamReader reader;
+	private final TableSchema schema;
+
+	// xml tag > column id
+	private final Map<String, String> columns = new HashMap<>();
+
+	public DatasetRowReader(File datasetFile) throws IOException, XMLStreamException {
+		this(new BufferedInputStream(Files.newInputStream(datasetFile.toPath())));
+	}
+
+	/**
+	 * @param input dataset xml, closed with the reader
+	 * @throws XMLStreamException
+	 */
+	public DatasetRowReader(InputStream input) throws XMLStreamException {
+
+		this.input = input;
+		this.schema = TableSchemaList.getByName(CustomStrings.RESULT_SHEET);
+
+		for (TableColumn column : schema) {
+			String tag = column.getXmlTag();
+			columns.put(tag == null || tag.isEmpty() ? column.getId() : tag, column.getId());
+		}
+
+		this.reader = newInputFactory().createXMLStreamReader(input);
+	}
+
+	private static XMLInputFactory newInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	/**
+	 * Write a copy of the dataset without its rows, i.e. only the header and the
+	 * operation which precede the rows. The file is read only until the first
+	 * row.
+	 *
+	 * @param datasetFile
+	 * @param target      file where the copy is written
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public static void writeWithoutRows(File datasetFile, File target) throws IOException, XMLStreamException {
+
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(datasetFile.toPath()));
+				OutputStream out = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
+
+			XMLStreamReader reader = newInputFactory().createXMLStreamReader(in);
+			XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+			try {
+				writer.writeStartDocument("UTF-8", "1.0");
+
+				boolean rows = false;
+				while (!rows && reader.hasNext()) {
+
+					switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						rows = RESULT_ELEMENT.equals(reader.getLocalName());
+						if (!rows)
+							writeStartElement(reader, writer);
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						writer.writeEndElement();
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						writer.writeCharacters(reader.getText());
+						break;
+					default:
+						break;
+					}
+				}
+
+				// close the elements still open
+				writer.writeEndDocument();
+				writer.flush();
+			} finally {
+				writer.close();
+				reader.close();
+			}
+		}
+	}
+
+	private static void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+
+		String namespace = reader.getNamespaceURI();
+		if (namespace == null || namespace.isEmpty())
+			writer.writeStartElement(reader.getLocalName());
+		else
+			writer.writeStartElement(nonNull(reader.getPrefix()), reader.getLocalName(), namespace);
+
+		for (int i = 0; i < reader.getNamespaceCount(); i++)
+			writer.writeNamespace(nonNull(reader.getNamespacePrefix(i)), reader.getNamespaceURI(i));
+
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String attributeNamespace = reader.getAttributeNamespace(i);
+			if (attributeNamespace == null || attributeNamespace.isEmpty())
+				writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+			else
+				writer.writeAttribute(nonNull(reader.getAttributePrefix(i)), attributeNamespace,
+						reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+	}
+
+	private static String nonNull(String value) {
+		return value == null ? "" : value;
+	}
+
+	/**
+	 * Read the next row of the dataset
+	 *
+	 * @return the row, null if there are no more rows
+	 * @throws XMLStreamException
+	 */
+	public TableRow next() throws XMLStreamException {
+
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && RESULT_ELEMENT.equals(reader.getLocalName()))
+				return readRow();
+		}
+
+		return null;
+	}
+
+	private TableRow readRow() throws XMLStreamException {
+
+		TableRow row = new TableRow(schema);
+
+		// each child of the result is a field
+		while (reader.hasNext()) {
+
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.END_ELEMENT && RESULT_ELEMENT.equals(reader.getLocalName()))
+				break;
+
+			if (event != XMLStreamConstants.START_ELEMENT)
+				continue;
+
+			String columnId = columns.get(reader.getLocalName());
+			String value = readText();
+
+			if (columnId != null)
+				row.put(columnId, new TableCell(value, value));
+		}
+
+		return row;
+	}
+
+	/**
+	 * Read the text of the current element, including the text of its children
+	 */
+	private String readText() throws XMLStreamException {
+
+		StringBuilder text = new StringBuilder();
+
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+			else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+				text.append(reader.getText());
+		}
+
+		return text.toString().trim();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package report_downloader;
+
+import java.text.ParseException;
+import java.util.HashMap;
+
+import providers.TseReportService;
+import table_skeleton.TableCell;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Row of a dataset with the values of its composite fields (progInfo,
+ * sampInfo, sampMatCode, paramCode...) already decomposed. The decomposition
+ * only depends on the row, therefore the rows can be decomposed in parallel.
+ *
+ */
+public class DecomposedRow {
+
+	private final TableRow row;
+	private final boolean summarizedInfo;
+
+	// values of the summarized information or of the analytical result
+	private HashMap<String, TableCell> values;
+
+	// values of the case, only for analytical results
+	private HashMap<String, TableCell> caseValues;
+
+	private String paramBaseTerm;
+
+	private DecomposedRow(TableRow row, boolean summarizedInfo) {
+		this.row = row;
+		this.summarizedInfo = summarizedInfo;
+	}
+
+	/**
+	 * Check if a row is a summarized information row or not if not the row is an
+	 * analytical result
+	 *
+	 * @param row
+	 * @return
+	 */
+	public static boolean isSummarizedInfo(TableRow row) {
+		return row.getCode(CustomStrings.PARAM_TYPE_COL).equals(CustomStrings.SUMMARIZED_INFO_PARAM_TYPE);
+	}
+
+	/**
+	 * Set the schema of the row and decompose its composite fields
+	 *
+	 * @param row
+	 * @return
+	 * @throws ParseException
+	 */
+	public static DecomposedRow decompose(TableRow row) throws ParseException {
+
+		DecomposedRow decomposed = new DecomposedRow(row, isSummarizedInfo(row));
+
+		if (decomposed.summarizedInfo) {
+
+			// set the summarized information schema
+			row.setSchema(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET));
+
+			HashMap<String, TableCell> rowValues = new HashMap<>();
+			CompositeFieldScanner.decompose(CustomStrings.SAMP_MAT_CODE_COL, row.getCode(CustomStrings.SAMP_MAT_CODE_COL), rowValues::put);
+
+			// extract psu id for cwd
+			CompositeFieldScanner.decompose(CustomStrings.SAMP_UNIT_IDS_COL, row.getCode(CustomStrings.SAMP_UNIT_IDS_COL), rowValues::put);
+
+			// extract prog info
+			CompositeFieldScanner.decompose(CustomStrings.PROG_INFO_COL, row.getCode(CustomStrings.PROG_INFO_COL), rowValues::put);
+
+			// extract the allele if RGT
+			if (TseReportService.isRGTResult(row))
+				CompositeFieldScanner.decompose(CustomStrings.PARAM_CODE_COL, row.getCode(CustomStrings.PARAM_CODE_COL), rowValues::put);
+
+			decomposed.values = rowValues;
+
+			return decomposed;
+		}
+
+		// we are processing a result row, even if we are extracting also the
+		// case information data!
+		row.setSchema(TableSchemaList.getByName(CustomStrings.RESULT_SHEET));
+
+		HashMap<String, TableCell> caseValues = new HashMap<>();
+
+		// get decomposed values, keeping the comments of eval info and samp mat info
+		CommentSink evalInfo = new CommentSink(caseValues);
+		CommentSink sampMatInfo = new CommentSink(caseValues);
+
+		CompositeFieldScanner.decompose(CustomStrings.EVAL_INFO_COL, row.getCode(CustomStrings.EVAL_INFO_COL), evalInfo);
+		CompositeFieldScanner.decompose(CustomStrings.SAMP_UNIT_IDS_COL, row.getCode(CustomStrings.SAMP_UNIT_IDS_COL), caseValues::put);
+		CompositeFieldScanner.decompose(CustomStrings.SAMP_EVENT_INFO_COL, row.getCode(CustomStrings.SAMP_EVENT_INFO_COL), caseValues::put);
+		CompositeFieldScanner.decompose(CustomStrings.SAMP_MAT_INFO_COL, row.getCode(CustomStrings.SAMP_MAT_INFO_COL), sampMatInfo);
+		CompositeFieldScanner.decompose(CustomStrings.SAMP_MAT_CODE_COL, row.getCode(CustomStrings.SAMP_MAT_CODE_COL), caseValues::put);
+
+		// manually convert eval info com into evalCom
+		caseValues.put(CustomStrings.EVAL_COMMENT_COL, evalInfo.comment);
+
+		// manually convert samp event info into breed
+		caseValues.put(CustomStrings.BREED_COL, sampMatInfo.comment);
+
+		decomposed.caseValues = caseValues;
+
+		// decompose param code
+		HashMap<String, TableCell> resultValues = new HashMap<>();
+		CompositeFieldScanner.decompose(CustomStrings.PARAM_CODE_COL, row.getCode(CustomStrings.PARAM_CODE_COL), resultValues::put);
+		CompositeFieldScanner.decompose(CustomStrings.SAMP_INFO_COL, row.getCode(CustomStrings.SAMP_INFO_COL), resultValues::put);
+
+		decomposed.values = resultValues;
+
+		// save also the test aim with base term and test result
+		decomposed.paramBaseTerm = CompositeFieldScanner.getBaseTerm(row.getCode(CustomStrings.PARAM_CODE_COL));
+
+		return decomposed;
+	}
+
+	public TableRow getRow() {
+		return row;
+	}
+
+	public boolean isSummarizedInfo() {
+		return summarizedInfo;
+	}
+
+	/**
+	 * Decomposed values of the summarized information or of the analytical
+	 * result
+	 *
+	 * @return
+	 */
+	public HashMap<String, TableCell> getValues() {
+		return values;
+	}
+
+	/**
+	 * Decomposed values of the case of an analytical result
+	 *
+	 * @return
+	 */
+	public HashMap<String, TableCell> getCaseValues() {
+		return caseValues;
+	}
+
+	public String getParamBaseTerm() {
+		return paramBaseTerm;
+	}
+
+	/**
+	 * Put the values in the map, keeping the comment attribute of the field
+	 */
+	private static class CommentSink implements CompositeFieldScanner.FieldSink {
+
+		private final HashMap<String, TableCell> values;
+		private TableCell comment;
+
+		CommentSink(HashMap<String, TableCell> values) {
+			this.values = values;
+		}
+
+		@Override
+		public void put(String columnId, TableCell value) {
+			values.put(columnId, value);
+			if (CustomStrings.EVAL_COMMENT_BREED_ATTRIBUTE_NAME.equals(columnId))
+				comment = value;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package report_downloader;
+
+/**
+ * Progress of an {@link ImportPipeline}: rows written, throughput and number
+ * of rows waiting to be written. Can be read from any thread while the import
+ * is running.
+ *
+ */
+public class ImportMetrics {
+
+	private volatile long startTime;
+	private volatile long endTime;
+	private volatile long rows;
+	private volatile int queueDepth;
+	private volatile int maxQueueDepth;
+
+	void start() {
+		// the rows of all the runs of the pipeline are counted together
+		if (startTime == 0)
+			startTime = System.currentTimeMillis();
+		endTime = 0;
+	}
+
+	void stop() {
+		endTime = System.currentTimeMillis();
+		queueDepth = 0;
+	}
+
+	void rowWritten() {
+		rows++;
+	}
+
+	void setQueueDepth(int depth) {
+		queueDepth = depth;
+		if (depth > maxQueueDepth)
+			maxQueueDepth = depth;
+	}
+
+	/**
+	 * Number of rows written
+	 *
+	 * @return
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * Rows decomposed or being decomposed which were not written yet
+	 *
+	 * @return
+	 */
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * Elapsed time in milliseconds
+	 *
+	 * @return
+	 */
+	public long getElapsedMillis() {
+		if (startTime == 0)
+			return 0;
+		long end = endTime == 0 ? System.currentTimeMillis() : endTime;
+		return end - startTime;
+	}
+
+	/**
+	 * Rows written per second
+	 *
+	 * @return
+	 */
+	public double getRowsPerSecond() {
+		long elapsed = getElapsedMillis();
+		if (elapsed == 0)
+			return 0;
+		return rows * 1000.0 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return "rows=" + rows + ", rows/sec=" + String.format("%.1f", getRowsPerSecond()) + ", queueDepth="
+				+ queueDepth + ", maxQueueDepth=" + maxQueueDepth + ", elapsed=" + getElapsedMillis() + " ms";
+	}
+}
@@ -0,0 +1,158 @@
+package report_downloader;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_skeleton.TableRow;
+
+/**
+ * Import rows in two stages: the composite fields of the rows are decomposed
+ * in parallel by a pool of workers, while the decomposed rows are written one
+ * at a time by the calling thread, in the same order in which they were read.
+ *
+ * At most {@link #getWindowSize()} rows are decomposed in advance of the
+ * writer.
+ *
+ */
+public class ImportPipeline implements AutoCloseable {
+
+	private static final Logger LOGGER = LogManager.getLogger(ImportPipeline.class);
+
+	/**
+	 * Source of the rows to import
+	 */
+	public interface RowSource {
+		/**
+		 * @return the next row, null if there are no more rows
+		 * @throws Exception
+		 */
+		TableRow next() throws Exception;
+	}
+
+	/**
+	 * Stage which writes the decomposed rows
+	 */
+	public interface RowWriter {
+		void write(DecomposedRow row) throws Exception;
+	}
+
+	private final ExecutorService workers;
+	private final int windowSize;
+	private final ImportMetrics metrics;
+
+	public ImportPipeline() {
+		this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	/**
+	 * @param threads number of threads which decompose the rows
+	 */
+	public ImportPipeline(int threads) {
+		this.workers = Executors.newFixedThreadPool(threads, new DecomposerThreadFactory());
+		this.windowSize = threads * 4;
+		this.metrics = new ImportMetrics();
+	}
+
+	/**
+	 * Decompose all the rows of the source and pass them to the writer in order
+	 *
+	 * @param source
+	 * @param writer
+	 * @throws Exception the first exception thrown by the source, a worker or the
+	 *                   writer. The following rows are not written.
+	 */
+	public void run(RowSource source, RowWriter writer) throws Exception {
+
+		metrics.start();
+
+		ArrayDeque<Future<DecomposedRow>> window = new ArrayDeque<>(windowSize);
+
+		try {
+			TableRow row;
+			while ((row = source.next()) != null) {
+
+				// the writer is the slowest stage, therefore wait for it
+				// when enough rows were decomposed in advance
+				if (window.size() >= windowSize)
+					write(window.poll(), writer);
+
+				final TableRow current = row;
+				window.add(workers.submit(() -> DecomposedRow.decompose(current)));
+
+				metrics.setQueueDepth(window.size());
+			}
+
+			// write the remaining rows
+			while (!window.isEmpty())
+				write(window.poll(), writer);
+
+		} finally {
+			// stop the decomposition of the rows which will not be written
+			for (Future<DecomposedRow> pending : window)
+				pending.cancel(true);
+
+			metrics.stop();
+			LOGGER.info("Import pipeline: " + metrics);
+		}
+	}
+
+	private void write(Future<DecomposedRow> next, RowWriter writer) throws Exception {
+
+		DecomposedRow row;
+		try {
+			row = next.get();
+		} catch (ExecutionException e) {
+			// throw the exception of the decomposition
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw e;
+		}
+
+		writer.write(row);
+		metrics.rowWritten();
+	}
+
+	/**
+	 * Maximum number of rows which are decomposed in advance of the writer
+	 *
+	 * @return
+	 */
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Metrics of all the runs
+	 *
+	 * @return
+	 */
+	public ImportMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	private static class DecomposerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "import-decomposer-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package report_downloader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Temporary file where rows are written in order to be read again later, so
+ * that they do not need to be kept in memory in the meanwhile. Only the values
+ * of the columns of the row schema are saved.
+ *
+ * Rows are first written, then read once in the same order. The file is
+ * deleted when closed.
+ *
+ */
+public class RowSpillFile implements Closeable {
+
+	private final File file;
+	private DataOutputStream output;
+	private DataInputStream input;
+
+	private int written;
+	private int read;
+
+	public RowSpillFile() throws IOException {
+		this.file = File.createTempFile("tse_rows", ".bin");
+		this.file.deleteOnExit();
+		this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())));
+	}
+
+	/**
+	 * Append a row to the file
+	 *
+	 * @param row
+	 * @throws IOException
+	 */
+	public void write(TableRow row) throws IOException {
+
+		if (output == null)
+			throw new IllegalStateException("Cannot write rows after reading them");
+
+		TableSchema schema = row.getSchema();
+		writeString(schema.getSheetName());
+
+		for (TableColumn column : schema) {
+
+			TableCell cell = row.get(column.getId());
+			if (cell == null)
+				continue;
+
+			writeString(column.getId());
+			writeString(cell.getCode());
+			writeString(cell.getLabel());
+		}
+
+		// end of the row
+		writeString(null);
+
+		written++;
+	}
+
+	/**
+	 * Read the next row. The first call ends the writing.
+	 *
+	 * @return the row, null if all the rows were read
+	 * @throws IOException
+	 */
+	public TableRow read() throws IOException {
+
+		if (output != null) {
+			output.close();
+			output = null;
+			input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())));
+		}
+
+		if (read == written)
+			return null;
+
+		TableRow row = new TableRow(TableSchemaList.getByName(readString()));
+
+		String columnId;
+		while ((columnId = readString()) != null) {
+			String code = readString();
+			String label = readString();
+			row.put(columnId, new TableCell(code, label));
+		}
+
+		read++;
+
+		return row;
+	}
+
+	/**
+	 * Number of rows written
+	 *
+	 * @return
+	 */
+	public int size() {
+		return written;
+	}
+
+	private void writeString(String value) throws IOException {
+		if (value == null) {
+			output.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private String readString() throws IOException {
+		int length = input.readInt();
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (output != null)
+				output.close();
+			if (input != null)
+				input.close();
+		} finally {
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+}
@@ -35,6 +35,7 @@ import report.ReportDownloaderDialog;
 import session_manager.TSERestoreableWindowDao;
 import soap.DetailedSOAPException;
 import tse_config.CustomStrings;
+import tse_report.TseReport;
 import window_restorer.RestoreableWindow;
 import xml_catalog_reader.Selection;
 import xml_catalog_reader.XmlContents;
@@ -53,6 +54,8 @@ public class TseReportDownloader extends ReportDownloaderDialog {
 	private TseReportService reportService;
 	private ITableDaoService daoService;
 	
+	private TseReportImporter importer;
+
 	private RestoreableWindow window;
 	private static final String WINDOW_CODE = "TSEReportDownloader";
 	private Shell shell;
@@ -66,8 +69,9 @@ public class TseReportDownloader extends ReportDownloaderDialog {
 
 	@Override
 	public ReportImporter getImporter(DatasetList allVersions) {
-		ReportImporter imp = new TseReportImporter(reportService, daoService);
+		TseReportImporter imp = new TseReportImporter(reportService, daoService);
 		imp.setDatasetVersions(allVersions);
+		this.importer = imp;
 		return imp;
 	}
 	
@@ -199,6 +203,39 @@ public class TseReportDownloader extends ReportDownloaderDialog {
 		}
 		
 		msg.open(shell);
+
+		manageIncompleteImport();
+	}
+
+	/**
+	 * Ask to continue the import of the report which stopped with an error, or
+	 * to delete the data already imported
+	 */
+	private void manageIncompleteImport() {
+
+		TseReport report = importer == null ? null : importer.getIncompleteReport();
+
+		if (report == null)
+			return;
+
+		int val = Warnings.warnUser(shell, TSEMessages.get("warning.title"),
+				TSEMessages.get("download.resume", report.getSenderId()),
+				SWT.YES | SWT.NO | SWT.ICON_WARNING);
+
+		try {
+			if (val == SWT.YES) {
+				importer.resumeImport(report);
+				end();
+			} else {
+				importer.rollbackImport(report);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Cannot complete the import of the report with id=" + report.getDatabaseId(), e);
+			e.printStackTrace();
+
+			// show the error and ask again
+			manageException(e);
+		}
 	}
 
 	@Override
@@ -1,11 +1,20 @@
 package report_downloader;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,10 +23,13 @@ import dataset.Dataset;
 import formula.FormulaException;
 import providers.ITableDaoService;
 import providers.TseReportService;
+import table_database.Database;
 import table_relations.Relation;
 import table_skeleton.TableCell;
 import table_skeleton.TableRow;
 import tse_config.CustomStrings;
+import tse_database_utils.ImportCheckpointStore;
+import tse_database_utils.ImportCheckpointStore.Checkpoint;
 import tse_report.TseReport;
 import tse_summarized_information.SummarizedInfo;
 import xlsx_reader.TableSchemaList;
@@ -33,13 +45,31 @@ public class TseReportImporter extends ReportImporter {
 
 	private static final Logger LOGGER = LogManager.getLogger(TseReportImporter.class);
 
+	// rows imported in each transaction when importing a dataset file
+	private static final int BATCH_SIZE = 500;
+
+	// prefix of the copies of the downloaded datasets, kept to resume the import
+	private static final String DATASET_COPY_PREFIX = "tse_import_";
+
+	// prefix of the downloaded datasets without rows
+	private static final String DATASET_METADATA_PREFIX = "tse_metadata_";
+
+	// passes of the import of a dataset file
+	private static final int SUMMARIZED_INFO_PASS = 1;
+	private static final int CASES_AND_RESULTS_PASS = 2;
+
 	private TseReportService reportService;
 	private ITableDaoService daoService;
 
 	// temporary variables
 	private TseReport mainReport;
 	private Collection<SummarizedInfo> summInfos;
+	private HashMap<String, SummarizedInfo> summInfosBySampId; // sampId, summ info
 	private HashMap<String, TableRow> cases; // caseId, case
+	private ImportMetrics metrics;
+	private int importedRows;
+	private int passRows; // rows committed in the current pass
+	private File datasetFile; // downloaded dataset being imported
 
 	/**
 	 * Download and import a dataset, managing also all the amendments
@@ -49,117 +79,126 @@ public class TseReportImporter extends ReportImporter {
 		this.reportService = reportService;
 		this.daoService = daoService;
 		summInfos = new ArrayList<>();
+		summInfosBySampId = new HashMap<>();
 		cases = new HashMap<>();
 	}
 
 	/**
-	 * Check if a row is a summarized information row or not if not the row is an
-	 * analytical result
-	 * 
-	 * @param row
-	 * @return
-	 */
-	private static boolean isSummarizedInfo(TableRow row) {
-		return row.getCode(CustomStrings.PARAM_TYPE_COL).equals(CustomStrings.SUMMARIZED_INFO_PARAM_TYPE);
-	}
-
-	/**
-	 * Import all the summarized information into the db
+	 * Import a summarized information row into the db
 	 * 
 	 * @param report1
-	 * @param datasetRows
+	 * @param row
 	 * @throws FormulaException
-	 * @throws ParseException
 	 */
-	private void importSummarizedInformation(TseReport report1, Collection<TableRow> datasetRows) throws FormulaException, ParseException {
-		// first process the summarized information
-		for (TableRow row : datasetRows) {
+	private void importSummarizedInfo(TseReport report1, DecomposedRow row) throws FormulaException {
+		SummarizedInfo summInfo = new SummarizedInfo();
 
-			// if we have a summarized information
-			// import it
-			if (isSummarizedInfo(row)) {
-				SummarizedInfo summInfo = new SummarizedInfo();
+		// if random genotyping, create the summarized information
+		if (TseReportService.isRGTResult(row.getRow())) {
+			summInfo = extractSummarizedInfo(report1, row);
 
-				// if random genotyping, create the summarized information
-				if (TseReportService.isRGTResult(row)) {
-					summInfo = extractSummarizedInfo(report1, row, true);
+			// create the summarized information
+			daoService.add(summInfo);
 
-					// create the summarized information
-					daoService.add(summInfo);
+			// add in the cache in order to avoid to save the same summInfo
+			// for the different results
+			cacheSummInfo(summInfo);
 
-					// add in the cache in order to avoid to save the same summInfo
-					// for the different results
-					summInfos.add(summInfo);
-
-					LOGGER.info("Created fake RGT summarized information");
-				} else {
-					SummarizedInfo si = extractSummarizedInfo(report1, row, false);
+			LOGGER.info("Created fake RGT summarized information");
+		} else {
+			SummarizedInfo si = extractSummarizedInfo(report1, row);
 
-					// save it in the database
-					daoService.add(si);
-					LOGGER.info("Imported summ info; sampId=" + reportService.getSampId(si));
+			// save it in the database
+			daoService.add(si);
 
-					// save it in the cache
-					summInfos.add(si);
-				}
-				LOGGER.info(summInfos);
-			}
+			// save it in the cache
+			String sampId = cacheSummInfo(si);
+			LOGGER.info("Imported summ info; sampId=" + sampId);
 		}
 	}
 
 	/**
-	 * Import all the cases and analytical results
+	 * Save the summarized information in the cache, indexed by its sample id,
+	 * which is the origSampId of its cases and results. If more summarized
+	 * information have the same sample id, the first one is kept.
+	 * 
+	 * @param summInfo
+	 * @return the sample id
+	 * @throws FormulaException
+	 */
+	String cacheSummInfo(SummarizedInfo summInfo) throws FormulaException {
+		summInfos.add(summInfo);
+		String sampId = reportService.getSampId(summInfo);
+		if (sampId != null)
+			summInfosBySampId.putIfAbsent(sampId, summInfo);
+		return sampId;
+	}
+
+	/**
+	 * Import the case (if not imported yet) and the analytical result of a row.
+	 * The summarized information must be already imported.
 	 * 
 	 * @param report1
-	 * @param datasetRows
+	 * @param row
 	 * @throws FormulaException
 	 * @throws ParseException
 	 */
-	private void importCasesAndResults(TseReport report1, Collection<TableRow> datasetRows) throws FormulaException, ParseException {
-		// process the cases and analytical results
-		for (TableRow row : datasetRows) {
-			if (!isSummarizedInfo(row)) {
-				SummarizedInfo summInfo = new SummarizedInfo();
+	private void importCaseAndResult(TseReport report1, DecomposedRow decomposed) throws FormulaException, ParseException {
+		TableRow row = decomposed.getRow();
+		SummarizedInfo summInfo = new SummarizedInfo();
 
-				// if random genotyping, create the summarized information
-				if (!TseReportService.isRGTResult(row)) {
-					row.put(CustomStrings.REPORT_ID_COL, report1.getDatabaseId()); // Report is needed for results
-																					// formulas (sampId)
+		// if random genotyping, create the summarized information
+		if (!TseReportService.isRGTResult(row)) {
+			row.put(CustomStrings.REPORT_ID_COL, report1.getDatabaseId()); // Report is needed for results
+																			// formulas (sampId)
 
-					String origSampId = TseReportService.getOrigSampIdFrom(row);
+			String origSampId = TseReportService.getOrigSampIdFrom(row);
 
-					// get the summarized info related to the case/result
-					summInfo = getSummInfoByOrigSampId(origSampId);
+			// get the summarized info related to the case/result
+			summInfo = getSummInfoByOrigSampId(origSampId);
 
-					LOGGER.info("Related summarized info with same origSampId= " + summInfo);
-					// progId, sampEventId
-				}
+			LOGGER.info("Related summarized info with same origSampId= " + summInfo);
+			// progId, sampEventId
+		}
 
-				if (summInfo == null) {
-					String origSampId = TseReportService.getOrigSampIdFrom(row);
-					String hashes = "";
-					for (SummarizedInfo si : summInfos) {
-						hashes += TseReportService.getOrigSampIdFrom(si) + "\n";
-					}
-					
-					if (origSampId == null) {
-						LOGGER.error("Can not find origSampId: " + origSampId + "for row: " + row);
-
-						throw new ParseException(
-								"No aggregated data was found related to sampOrigId=" + origSampId + " for individual case="
-										+ row + ". Available aggregated data are: " + summInfos + "with hashes" + hashes,
-								0);	
-					}
-				}
+		if (summInfo == null) {
+			String origSampId = TseReportService.getOrigSampIdFrom(row);
+			
+			if (origSampId == null) {
+				LOGGER.error("Can not find origSampId: " + origSampId + "for row: " + row);
+				throw missingSummInfo(row, origSampId);
+			}
+		}
 
-				// import the case
-				TableRow caseInfo = importCase(report1, summInfo, row);
+		// import the case
+		TableRow caseInfo = importCase(report1, summInfo, decomposed);
 
-				// import the result
-				TableRow result = importResult(report1, summInfo, caseInfo, row);
-				LOGGER.info("Imported analytical result with database id=" + result.getDatabaseId());
-			}
+		// import the result
+		TableRow result = importResult(report1, summInfo, caseInfo, decomposed);
+		LOGGER.info("Imported analytical result with database id=" + result.getDatabaseId());
+	}
+
+	/**
+	 * Error raised if no summarized information is related to a case/result. The
+	 * origSampIds of the imported summarized information are listed only here,
+	 * since they are needed only for the message.
+	 * 
+	 * @param row
+	 * @param origSampId
+	 * @return
+	 * @throws ParseException
+	 * @throws FormulaException
+	 */
+	ParseException missingSummInfo(TableRow row, String origSampId) throws ParseException, FormulaException {
+
+		String hashes = "";
+		for (SummarizedInfo si : summInfos) {
+			hashes += TseReportService.getOrigSampIdFrom(si) + "\n";
 		}
+
+		return new ParseException("No aggregated data was found related to sampOrigId=" + origSampId
+				+ " for individual case=" + row + ". Available aggregated data are: " + summInfos + "with hashes"
+				+ hashes, 0);
 	}
 
 	/**
@@ -171,7 +210,7 @@ public class TseReportImporter extends ReportImporter {
 	 * @throws FormulaException
 	 * @throws ParseException
 	 */
-	private TableRow importCase(TseReport report1, SummarizedInfo summInfo, TableRow row) throws FormulaException, ParseException {
+	private TableRow importCase(TseReport report1, SummarizedInfo summInfo, DecomposedRow row) throws FormulaException, ParseException {
 		// extract the case from the row
 		TableRow currentCaseInfo = extractCase(report1, summInfo, row);
 
@@ -203,9 +242,8 @@ public class TseReportImporter extends ReportImporter {
 	 * @param caseInfo
 	 * @param row
 	 * @return
-	 * @throws ParseException
 	 */
-	private TableRow importResult(TseReport report1, SummarizedInfo summInfo, TableRow caseInfo, TableRow row) throws ParseException {
+	private TableRow importResult(TseReport report1, SummarizedInfo summInfo, TableRow caseInfo, DecomposedRow row) {
 		// then import the analytical result
 		TableRow result = extractAnalyticalResult(report1, summInfo, caseInfo, row);
 		LOGGER.info("Analytical Results to be imported: ", result);
@@ -220,31 +258,15 @@ public class TseReportImporter extends ReportImporter {
 	 * Extract the summarized information data from the current row
 	 * 
 	 * @param report1
-	 * @param row
+	 * @param row row with the summarized information schema
 	 * @return
-	 * @throws FormulaException
-	 * @throws ParseException
 	 */
-	private SummarizedInfo extractSummarizedInfo(TseReport report1, TableRow row, boolean isRGT) throws ParseException {
-		// set the summarized information schema
-		row.setSchema(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET));
-
-		HashMap<String, TableCell> rowValues = new HashMap<>();
-		TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
-		rowValues.putAll(decomposer.decompose(CustomStrings.SAMP_MAT_CODE_COL, row.getCode(CustomStrings.SAMP_MAT_CODE_COL)));
-
-		// extract psu id for cwd
-		rowValues.putAll(decomposer.decompose(CustomStrings.SAMP_UNIT_IDS_COL, row.getCode(CustomStrings.SAMP_UNIT_IDS_COL)));
+	private SummarizedInfo extractSummarizedInfo(TseReport report1, DecomposedRow row) {
 
-		// extract prog info
-		rowValues.putAll(decomposer.decompose(CustomStrings.PROG_INFO_COL, row.getCode(CustomStrings.PROG_INFO_COL)));
-
-		// extract the allele if RGT
-		if (isRGT)
-			rowValues.putAll(decomposer.decompose(CustomStrings.PARAM_CODE_COL, row.getCode(CustomStrings.PARAM_CODE_COL)));
+		HashMap<String, TableCell> rowValues = row.getValues();
 
 		// copy values into the summarized information
-		SummarizedInfo summInfo = new SummarizedInfo(row);
+		SummarizedInfo summInfo = new SummarizedInfo(row.getRow());
 		for (String key : rowValues.keySet()) {
 			summInfo.put(key, rowValues.get(key));
 		}
@@ -268,15 +290,12 @@ public class TseReportImporter extends ReportImporter {
 	 * 
 	 * @param report1
 	 * @param summInfo
-	 * @param row
+	 * @param decomposed row with the analytical results schema
 	 * @return
-	 * @throws FormulaException
 	 * @throws ParseException
 	 */
-	private TableRow extractCase(TseReport report1, SummarizedInfo summInfo, TableRow row) throws ParseException {
-		// set schema (required for next step), we are processing a result row,
-		// even if we are extracting the case information data!
-		row.setSchema(TableSchemaList.getByName(CustomStrings.RESULT_SHEET));
+	private TableRow extractCase(TseReport report1, SummarizedInfo summInfo, DecomposedRow decomposed) throws ParseException {
+		TableRow row = decomposed.getRow();
 
 		TableCell sampId = row.get(CustomStrings.SAMPLE_ID_COL);
 		if (sampId == null) {
@@ -294,27 +313,8 @@ public class TseReportImporter extends ReportImporter {
 			// extract the relevant information)
 			caseReport = new TableRow(TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET));
 
-			HashMap<String, TableCell> rowValues = new HashMap<>();
-			TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
-
-			// get decomposed values
-			for (String id : new String[] { CustomStrings.EVAL_INFO_COL, CustomStrings.SAMP_UNIT_IDS_COL,
-					CustomStrings.SAMP_EVENT_INFO_COL, CustomStrings.SAMP_MAT_INFO_COL,
-					CustomStrings.SAMP_MAT_CODE_COL }) {
-				rowValues.putAll(decomposer.decompose(id, row.getCode(id)));
-			}
-
-			// manually convert eval info com into evalCom
-			TableCell evalCom = decomposer
-					.decompose(CustomStrings.EVAL_INFO_COL, row.getCode(CustomStrings.EVAL_INFO_COL))
-					.get(CustomStrings.EVAL_COMMENT_BREED_ATTRIBUTE_NAME);
-			rowValues.put(CustomStrings.EVAL_COMMENT_COL, evalCom);
-
-			// manually convert samp event info into breed
-			TableCell breed = decomposer
-					.decompose(CustomStrings.SAMP_MAT_INFO_COL, row.getCode(CustomStrings.SAMP_MAT_INFO_COL))
-					.get(CustomStrings.EVAL_COMMENT_BREED_ATTRIBUTE_NAME);
-			rowValues.put(CustomStrings.BREED_COL, breed);
+			// get decomposed values (evalCom and breed included)
+			HashMap<String, TableCell> rowValues = new HashMap<>(decomposed.getCaseValues());
 
 			// save sample id
 			rowValues.put(CustomStrings.SAMPLE_ID_COL, sampId);
@@ -342,22 +342,18 @@ public class TseReportImporter extends ReportImporter {
 	 * @param report
 	 * @param summInfo
 	 * @param caseInfo
-	 * @param row
+	 * @param decomposed row with the analytical results schema
 	 * @return
-	 * @throws ParseException
 	 */
 	private static TableRow extractAnalyticalResult(TseReport report, SummarizedInfo summInfo, TableRow caseInfo,
-			TableRow row) throws ParseException {
-		// set the summarised information schema
-		row.setSchema(TableSchemaList.getByName(CustomStrings.RESULT_SHEET));
+			DecomposedRow decomposed) {
+		TableRow row = decomposed.getRow();
 
-		// decompose param code
-		TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
-		HashMap<String, TableCell> rowValues = decomposer.decompose(CustomStrings.PARAM_CODE_COL, row.getCode(CustomStrings.PARAM_CODE_COL));
-		rowValues.putAll(decomposer.decompose(CustomStrings.SAMP_INFO_COL, row.getCode(CustomStrings.SAMP_INFO_COL)));
+		// decomposed param code and samp info
+		HashMap<String, TableCell> rowValues = decomposed.getValues();
 
 		// save also the test aim with base term and test result
-		String paramBaseTerm = decomposer.getBaseTerm(row.getCode(CustomStrings.PARAM_CODE_COL));
+		String paramBaseTerm = decomposed.getParamBaseTerm();
 
 		// save the base term also
 		row.put(CustomStrings.PARAM_CODE_BASE_TERM_COL, paramBaseTerm);
@@ -389,15 +385,12 @@ public class TseReportImporter extends ReportImporter {
 	 * 
 	 * @param resultOrigSampId
 	 * @return
-	 * @throws FormulaException
 	 */
-	private SummarizedInfo getSummInfoByOrigSampId(String resultOrigSampId) throws FormulaException {
-		for (SummarizedInfo info : summInfos) {
-			String sampId = reportService.getSampId(info);
-			if (sampId.equals(resultOrigSampId)) {
-				return info;
-			}
-		}
+	SummarizedInfo getSummInfoByOrigSampId(String resultOrigSampId) {
+		SummarizedInfo info = summInfosBySampId.get(resultOrigSampId);
+		if (info != null)
+			return info;
+
         LOGGER.info("Summarized information to given a prog id of an analytical result could not be found");
 		return null;
 	}
@@ -411,20 +404,458 @@ public class TseReportImporter extends ReportImporter {
 		return this.mainReport;
 	}
 
+	/**
+	 * Import the first version of a downloaded dataset. The library reads only
+	 * the metadata of the dataset (a copy without rows) and creates the report,
+	 * then the rows are read from the file with {@link #importDatasetRows(File)}.
+	 * If the import stops, a copy of the file is kept until the import is
+	 * resumed or rolled back.
+	 */
+	@Override
+	public void importFirstDatasetVersion(File file)
+			throws XMLStreamException, IOException, FormulaException, ParseException {
+
+		File metadata = Files.createTempFile(DATASET_METADATA_PREFIX, ".xml").toFile();
+
+		this.datasetFile = file;
+		try {
+			DatasetRowReader.writeWithoutRows(file, metadata);
+			super.importFirstDatasetVersion(metadata);
+		} catch (IllegalStateException e) {
+
+			// errors of the file, wrapped by importDatasetRows(List)
+			if (e.getCause() instanceof XMLStreamException)
+				throw (XMLStreamException) e.getCause();
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+
+			throw e;
+		} finally {
+			this.datasetFile = null;
+			Files.deleteIfExists(metadata.toPath());
+		}
+	}
+
 	@Override
 	public void importDatasetRows(List<TableRow> rows) throws FormulaException, ParseException {
+
+		// the rows of the downloaded dataset are not in the list, they are read
+		// from the file one at a time
+		if (datasetFile != null) {
+
+			LOGGER.info("Importing the rows from " + datasetFile);
+
+			try {
+				importDatasetRows(datasetFile);
+			} catch (Exception e) {
+				if (getIncompleteReport() != null)
+					keepDatasetCopy();
+				else
+					discardIncompleteImport();
+
+				rethrowIf(e, FormulaException.class);
+				rethrowIf(e, ParseException.class);
+				rethrowIf(e, RuntimeException.class);
+				throw new IllegalStateException(e);
+			}
+
+			return;
+		}
+
 		LOGGER.info("Importing the summarized information: ", rows);
 
-		// first import the summarized information
-		importSummarizedInformation(mainReport, rows);
+		try (ImportPipeline pipeline = new ImportPipeline()) {
+
+			this.metrics = pipeline.getMetrics();
+
+			// first import the summarized information, then cases and results
+			pipeline.run(rowsOf(rows, true), row -> importSummarizedInfo(mainReport, row));
+			pipeline.run(rowsOf(rows, false), row -> importCaseAndResult(mainReport, row));
+
+		} catch (Exception e) {
+
+			LOGGER.error("Import of the report with id=" + mainReport.getDatabaseId() + " failed", e);
+			e.printStackTrace();
+
+			discardIncompleteImport();
+
+			rethrowIf(e, FormulaException.class);
+			rethrowIf(e, ParseException.class);
+			rethrowIf(e, RuntimeException.class);
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Copy the downloaded dataset of a stopped import, since the library may
+	 * delete it, and resume the import from the copy
+	 */
+	private void keepDatasetCopy() {
+
+		ImportCheckpointStore checkpoints = reportService.getImportCheckpointStore();
+
+		try {
+			Checkpoint checkpoint = checkpoints.get(mainReport.getDatabaseId());
+
+			File copy = Files.createTempFile(DATASET_COPY_PREFIX, ".xml").toFile();
+			Files.copy(datasetFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+			checkpoints.save(checkpoints.getConnection(), new Checkpoint(checkpoint.getReportId(),
+					copy.getAbsolutePath(), checkpoint.getPass(), checkpoint.getRows()));
+
+			LOGGER.info("The import of " + datasetFile + " can be resumed from " + copy);
+		} catch (IOException | SQLException e) {
+			LOGGER.error("Cannot keep a copy of " + datasetFile + ", the import cannot be resumed", e);
+			e.printStackTrace();
+
+			try {
+				rollbackImport(mainReport);
+			} catch (SQLException e1) {
+				LOGGER.error("Cannot delete the partially imported report with id=" + mainReport.getDatabaseId(), e1);
+				e1.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Remove the report of a failed import, if it cannot be resumed
+	 */
+	private void discardIncompleteImport() {
+
+		if (getIncompleteReport() != null)
+			return;
 
-		// catch the exception when importing old reports
 		try {
+			rollbackImport(mainReport);
+		} catch (SQLException e) {
+			LOGGER.error("Cannot delete the partially imported report with id=" + mainReport.getDatabaseId(), e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Import the rows of a dataset file into the report created with
+	 * {@link #importDatasetMetadata(Dataset)}, without loading them in memory.
+	 * 
+	 * The file is read once: the summarized information are imported while
+	 * reading, the other rows are saved in a temporary file and imported after
+	 * all the summarized information, as in {@link #importDatasetRows(List)}. The
+	 * rows are committed in batches of {@link #BATCH_SIZE}.
+	 * 
+	 * If the report service has an {@link ImportCheckpointStore}, the progress is
+	 * committed before the first row and with each batch. If the import fails or
+	 * is interrupted, the batches already committed are kept and the import can
+	 * be continued with {@link #resumeImport(TseReport)} or undone with
+	 * {@link #rollbackImport(TseReport)}.
+	 * 
+	 * @param datasetFile
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws FormulaException
+	 * @throws ParseException
+	 */
+	public void importDatasetRows(File datasetFile)
+			throws IOException, XMLStreamException, SQLException, FormulaException, ParseException {
+
+		ImportCheckpointStore checkpoints = reportService.getImportCheckpointStore();
+		String source = datasetFile.getAbsolutePath();
+
+		// continue from the last committed batch if the import was interrupted
+		Checkpoint checkpoint = checkpoints == null ? null : checkpoints.get(mainReport.getDatabaseId());
+
+		if (checkpoint != null) {
+
+			if (!checkpoint.getSource().equals(source))
+				throw new IllegalStateException("The report with id=" + mainReport.getDatabaseId()
+						+ " is being imported from " + checkpoint.getSource() + ", not from " + source);
+
+			LOGGER.info("Resuming import: " + checkpoint);
+			loadImportedRows(mainReport);
+		}
+
+		int pass = checkpoint == null ? SUMMARIZED_INFO_PASS : checkpoint.getPass();
+		int committed = checkpoint == null ? 0 : checkpoint.getRows();
+
+		Connection conn = checkpoints == null ? Database.getConnection() : checkpoints.getConnection();
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		importedRows = 0;
+		try (DatasetRowReader reader = new DatasetRowReader(datasetFile);
+				RowSpillFile spill = new RowSpillFile();
+				ImportPipeline pipeline = new ImportPipeline()) {
+
+			this.metrics = pipeline.getMetrics();
+
+			// the report can be resumed even if the first batch is not committed
+			if (checkpoint == null) {
+				saveCheckpoint(conn, source, SUMMARIZED_INFO_PASS, 0);
+				conn.commit();
+			}
+
+			if (pass == SUMMARIZED_INFO_PASS) {
+
+				// first import the summarized information, the other rows
+				// are saved for later
+				passRows = committed;
+				pipeline.run(skip(() -> {
+					TableRow next;
+					while ((next = reader.next()) != null && !DecomposedRow.isSummarizedInfo(next))
+						spill.write(next);
+					return next;
+				}, committed), row -> {
+					importSummarizedInfo(mainReport, row);
+					commitBatch(conn, source, SUMMARIZED_INFO_PASS);
+				});
+
+				committed = 0;
+				saveCheckpoint(conn, source, CASES_AND_RESULTS_PASS, 0);
+				conn.commit();
+			} else {
+
+				// summarized information already imported
+				TableRow row;
+				while ((row = reader.next()) != null) {
+					if (!DecomposedRow.isSummarizedInfo(row))
+						spill.write(row);
+				}
+			}
+
+			LOGGER.info("Imported " + summInfos.size() + " summarized information, importing " + spill.size()
+					+ " cases and results");
+
 			// then import cases and results
-			importCasesAndResults(mainReport, rows);
+			passRows = committed;
+			pipeline.run(skip(spill::read, committed), row -> {
+				importCaseAndResult(mainReport, row);
+				commitBatch(conn, source, CASES_AND_RESULTS_PASS);
+			});
+
+			// the import is completed
+			if (checkpoints != null)
+				checkpoints.clear(conn, mainReport.getDatabaseId());
+
+			conn.commit();
+
 		} catch (Exception e) {
-			LOGGER.error("Error upon importing cases and results", e);
+			// the batches already committed are kept
+			conn.rollback();
+
+			LOGGER.error("Import of " + source + " into the report with id=" + mainReport.getDatabaseId()
+					+ " stopped after " + importedRows + " rows", e);
+
+			rethrowIf(e, IOException.class);
+			rethrowIf(e, XMLStreamException.class);
+			rethrowIf(e, SQLException.class);
+			rethrowIf(e, FormulaException.class);
+			rethrowIf(e, ParseException.class);
+			rethrowIf(e, RuntimeException.class);
+			throw new IllegalStateException(e);
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+
+		LOGGER.info("Imported " + importedRows + " rows of " + datasetFile + ": " + metrics);
+	}
+
+	/**
+	 * Continue the import of a report from the last committed batch
+	 * 
+	 * @param report report whose import failed or was interrupted
+	 * @return true if the import was completed, false if the report was not
+	 *         being imported
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws SQLException
+	 * @throws FormulaException
+	 * @throws ParseException
+	 */
+	public boolean resumeImport(TseReport report)
+			throws IOException, XMLStreamException, SQLException, FormulaException, ParseException {
+
+		ImportCheckpointStore checkpoints = reportService.getImportCheckpointStore();
+		Checkpoint checkpoint = checkpoints == null ? null : checkpoints.get(report.getDatabaseId());
+
+		if (checkpoint == null) {
+			LOGGER.info("The report with id=" + report.getDatabaseId() + " is not being imported");
+			return false;
+		}
+
+		this.mainReport = report;
+		importDatasetRows(new File(checkpoint.getSource()));
+
+		deleteDatasetCopy(new File(checkpoint.getSource()));
+
+		return true;
+	}
+
+	/**
+	 * Delete a report whose import failed or was interrupted, with all the rows
+	 * already imported
+	 * 
+	 * @param report
+	 * @throws SQLException
+	 */
+	public void rollbackImport(TseReport report) throws SQLException {
+
+		LOGGER.info("Deleting the partially imported report with id=" + report.getDatabaseId());
+
+		reportService.discardVersion(report);
+
+		// children first
+		for (String sheet : new String[] { CustomStrings.RESULT_SHEET, CustomStrings.CASE_INFO_SHEET,
+				CustomStrings.SUMMARIZED_INFO_SHEET }) {
+			daoService.deleteByParentId(TableSchemaList.getByName(sheet), CustomStrings.REPORT_SHEET,
+					report.getDatabaseId());
+		}
+
+		daoService.delete(report);
+
+		ImportCheckpointStore checkpoints = reportService.getImportCheckpointStore();
+		if (checkpoints == null)
+			return;
+
+		Checkpoint checkpoint = checkpoints.get(report.getDatabaseId());
+		if (checkpoint != null)
+			deleteDatasetCopy(new File(checkpoint.getSource()));
+
+		checkpoints.clear(checkpoints.getConnection(), report.getDatabaseId());
+	}
+
+	/**
+	 * Delete a file if it is a copy made by
+	 * {@link #importFirstDatasetVersion(File)}
+	 * 
+	 * @param file
+	 */
+	private static void deleteDatasetCopy(File file) {
+
+		if (!file.getName().startsWith(DATASET_COPY_PREFIX))
+			return;
+
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (IOException e) {
+			LOGGER.error("Cannot delete the dataset copy " + file, e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Get the report of the last import if the import stopped before the end
+	 * and can be resumed with {@link #resumeImport(TseReport)}
+	 * 
+	 * @return the report, null if the import was completed or cannot be resumed
+	 */
+	public TseReport getIncompleteReport() {
+
+		ImportCheckpointStore checkpoints = reportService.getImportCheckpointStore();
+		if (mainReport == null || checkpoints == null)
+			return null;
+
+		try {
+			return checkpoints.get(mainReport.getDatabaseId()) == null ? null : mainReport;
+		} catch (SQLException e) {
+			LOGGER.error("Cannot read the checkpoint of the report with id=" + mainReport.getDatabaseId(), e);
 			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Load the rows already imported into the report, as if they were imported
+	 * by this importer
+	 * 
+	 * @param report
+	 * @throws FormulaException
+	 */
+	private void loadImportedRows(TseReport report) throws FormulaException {
+
+		// the cache may contain the rows of a failed import, not committed
+		summInfos.clear();
+		summInfosBySampId.clear();
+		cases.clear();
+
+		for (TableRow row : daoService.getByParentId(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET),
+				CustomStrings.REPORT_SHEET, report.getDatabaseId(), true)) {
+			cacheSummInfo(new SummarizedInfo(row));
+		}
+
+		for (TableRow caseInfo : daoService.getByParentId(TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET),
+				CustomStrings.REPORT_SHEET, report.getDatabaseId(), true)) {
+			String sampId = caseInfo.getLabel(CustomStrings.SAMPLE_ID_COL);
+			if (sampId != null)
+				cases.put(sampId, caseInfo);
+		}
+
+		LOGGER.info("Loaded " + summInfos.size() + " summarized information and " + cases.size()
+				+ " cases already imported");
+	}
+
+	private void saveCheckpoint(Connection conn, String source, int pass, int rows) throws SQLException {
+		ImportCheckpointStore checkpoints = reportService.getImportCheckpointStore();
+		if (checkpoints != null)
+			checkpoints.save(conn, new Checkpoint(mainReport.getDatabaseId(), source, pass, rows));
+	}
+
+	/**
+	 * Metrics of the last import of the dataset rows (rows/sec, rows waiting
+	 * to be written), null if no rows were imported yet
+	 * 
+	 * @return
+	 */
+	public ImportMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Rows of the list, only summarized information or only cases and results
+	 */
+	private static ImportPipeline.RowSource rowsOf(List<TableRow> rows, boolean summarizedInfo) {
+		Iterator<TableRow> iterator = rows.iterator();
+		return () -> {
+			while (iterator.hasNext()) {
+				TableRow row = iterator.next();
+				if (DecomposedRow.isSummarizedInfo(row) == summarizedInfo)
+					return row;
+			}
+			return null;
+		};
+	}
+
+	/**
+	 * Skip the first rows of a source
+	 */
+	private static ImportPipeline.RowSource skip(ImportPipeline.RowSource source, int rows) {
+		return new ImportPipeline.RowSource() {
+
+			private int skipped;
+
+			@Override
+			public TableRow next() throws Exception {
+				TableRow row = source.next();
+				while (row != null && skipped < rows) {
+					skipped++;
+					row = source.next();
+				}
+				return row;
+			}
+		};
+	}
+
+	private void commitBatch(Connection conn, String source, int pass) throws SQLException {
+		importedRows++;
+		passRows++;
+		if (passRows % BATCH_SIZE == 0) {
+			// the progress is committed together with the rows
+			saveCheckpoint(conn, source, pass, passRows);
+			conn.commit();
 		}
 	}
+
+	private static <E extends Exception> void rethrowIf(Exception e, Class<E> type) throws E {
+		if (type.isInstance(e))
+			throw type.cast(e);
+	}
 }
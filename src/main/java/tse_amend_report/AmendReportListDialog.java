@@ -248,6 +248,7 @@ public class AmendReportListDialog extends Dialog {
       } else {
          TseReport aggrReport = report.getAllVersions(this.daoService).stream().peek(r -> {
             if (Boolean.FALSE.equals(report.getVersion().equals(r.getVersion()))) {
+               this.reportService.discardVersion((TseReport)r);
                this.daoService.delete((Report)r);
             }
          }).filter(r -> report.getVersion().equals(r.getVersion())).map(TseReport.class::cast).findAny().get();
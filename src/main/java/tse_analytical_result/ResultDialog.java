@@ -30,6 +30,7 @@ import tse_components.TableDialogWithMenu;
 import tse_config.CustomStrings;
 import tse_summarized_information.SummarizedInfo;
 import tse_validator.ResultValidator;
+import tse_validator.RowValidationStore;
 import window_restorer.RestoreableWindow;
 import xlsx_reader.TableSchema;
 import xlsx_reader.TableSchemaList;
@@ -98,6 +99,7 @@ public class ResultDialog extends TableDialogWithMenu {
 			}
 
 			try {
+				RowValidationStore.markAddedOrRemoved(caseInfo);
 				TableRowList results = reportService.createDefaultResults(report, summInfo, caseInfo);
 				this.setRows(results);
 				// warn user only if not RGT
@@ -156,6 +158,8 @@ public class ResultDialog extends TableDialogWithMenu {
 
 	@Override
 	public void processNewRow(TableRow row) {
+		RowValidationStore.markAddedOrRemoved(row);
+
 		TableRowList results = this.getRows();
 		if (results.size() <= 1)
 			return;
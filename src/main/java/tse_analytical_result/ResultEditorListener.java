@@ -9,6 +9,7 @@ import table_skeleton.TableRow;
 import tse_case_report.CaseReport;
 import tse_config.CustomStrings;
 import tse_summarized_information.SummarizedInfo;
+import tse_validator.RowValidationStore;
 
 class ResultEditorListener implements EditorListener {
 
@@ -30,6 +31,8 @@ class ResultEditorListener implements EditorListener {
     @Override
     public void editEnded(TableRow row, TableColumn field, boolean changed) {
         if (changed) {
+            RowValidationStore.markDirty(row);
+
             // reset the testaim and the anmethcode if anmethtype is changed
             String fieldId = field.getId();
             if (fieldId.equals(CustomStrings.AN_METH_TYPE_COL)) {
@@ -33,6 +33,7 @@ import tse_components.TableDialogWithMenu;
 import tse_config.CustomStrings;
 import tse_summarized_information.SummarizedInfo;
 import tse_validator.CaseReportValidator;
+import tse_validator.RowValidationStore;
 import window_restorer.RestoreableWindow;
 import xlsx_reader.TableSchema;
 import xlsx_reader.TableSchemaList;
@@ -95,6 +96,9 @@ public class CaseReportDialog extends TableDialogWithMenu {
 
 			@Override
 			public void editEnded(TableRow row, TableColumn field, boolean changed) {
+				if (changed)
+					RowValidationStore.markDirty(row);
+
 				if (changed && field.getId().equals(CustomStrings.STATUS_HERD_COL)) {
 					row.remove(CustomStrings.INDEX_CASE_COL);
 				}
@@ -119,6 +123,8 @@ public class CaseReportDialog extends TableDialogWithMenu {
 				LOGGER.debug("End warn user");
 			}
 
+			RowValidationStore.markAddedOrRemoved(summInfo);
+
 			try {
 			if (hasExpectedCases) {
 					reportService.createDefaultCases(report, summInfo);
@@ -214,6 +220,7 @@ public class CaseReportDialog extends TableDialogWithMenu {
 
 	@Override
 	public void processNewRow(TableRow caseRow) {
+		RowValidationStore.markAddedOrRemoved(caseRow);
 	}
 
 	@Override
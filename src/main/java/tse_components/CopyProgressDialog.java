@@ -0,0 +1,101 @@
+package tse_components;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.ProgressBar;
+import org.eclipse.swt.widgets.Shell;
+
+import providers.ReportCopyListener;
+
+/**
+ * Dialog which shows the progress of a report copy. The copy runs in a worker
+ * thread (see {@link tse_report.ReportCopyThread}), therefore the progress is
+ * posted to the ui thread. Only the latest progress is shown, an update is not
+ * posted while the previous one is still pending.
+ *
+ */
+public class CopyProgressDialog implements ReportCopyListener {
+
+	private final Shell parent;
+	private final String message;
+
+	private Shell dialog;
+	private Label label;
+	private ProgressBar bar;
+
+	// latest progress notified by the copy
+	private volatile int copied;
+	private volatile int total;
+	private final AtomicBoolean updatePending = new AtomicBoolean();
+
+	public CopyProgressDialog(Shell parent, String message) {
+		this.parent = parent;
+		this.message = message;
+	}
+
+	public void open() {
+
+		dialog = new Shell(parent, SWT.TITLE | SWT.APPLICATION_MODAL);
+		dialog.setText(message);
+		dialog.setLayout(new GridLayout(1, false));
+
+		label = new Label(dialog, SWT.NONE);
+		label.setText(message);
+		label.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+		bar = new ProgressBar(dialog, SWT.SMOOTH);
+		bar.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		bar.setMinimum(0);
+		bar.setMaximum(100);
+
+		dialog.setSize(350, 110);
+		dialog.setLocation(parent.getLocation().x + (parent.getSize().x - 350) / 2,
+				parent.getLocation().y + (parent.getSize().y - 110) / 2);
+		dialog.open();
+	}
+
+	@Override
+	public void progress(int copied, int total) {
+
+		this.copied = copied;
+		this.total = total;
+
+		if (dialog == null || dialog.isDisposed() || !updatePending.compareAndSet(false, true))
+			return;
+
+		try {
+			dialog.getDisplay().asyncExec(this::update);
+		} catch (SWTException e) {
+			// the dialog was closed in the meantime
+			updatePending.set(false);
+		}
+	}
+
+	private void update() {
+
+		updatePending.set(false);
+
+		if (dialog.isDisposed())
+			return;
+
+		int copied = this.copied;
+		int total = this.total;
+
+		if (total > 0) {
+			bar.setSelection(Math.min(100, copied * 100 / total));
+			label.setText(message + " (" + copied + "/" + total + ")");
+		} else {
+			label.setText(message + " (" + copied + ")");
+		}
+	}
+
+	public void close() {
+		if (dialog != null && !dialog.isDisposed())
+			dialog.dispose();
+	}
+}
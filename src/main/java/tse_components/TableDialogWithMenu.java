@@ -21,6 +21,7 @@ import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
 import tse_case_report.CaseReportDialog;
 import tse_config.DebugConfig;
+import tse_validator.RowValidationStore;
 
 /**
  * Generic class that provides an interface to create {@link TableRow} objects
@@ -238,6 +239,7 @@ public abstract class TableDialogWithMenu extends TableDialog {
 
 				if (val == SWT.YES) {
 					getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
+					RowValidationStore.markAddedOrRemoved(getSelection());
 					removeSelectedRow();
 					getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
 				}
@@ -278,6 +280,7 @@ public abstract class TableDialogWithMenu extends TableDialog {
 			public void widgetSelected(SelectionEvent arg0) {
 
 				getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
+				RowValidationStore.markAddedOrRemoved(getSelection());
 				cloneSelectedRow();
 				getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
 
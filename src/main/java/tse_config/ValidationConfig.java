@@ -0,0 +1,28 @@
+package tse_config;
+
+/**
+ * Settings of the report validation
+ *
+ */
+public class ValidationConfig {
+
+	// check the rows of the loaded report on several threads (the database and
+	// the formulas are used only by the thread which loads the report)
+	public static boolean parallel = true;
+
+	// number of threads used by the parallel validation
+	public static int parallelism = Runtime.getRuntime().availableProcessors();
+
+	// check again only the rows changed since the last validation of the report
+	// (always used by the report dialog)
+	public static boolean incremental = false;
+
+	// reports whose validation results are kept for the incremental validation
+	public static int incrementalReports = 1;
+
+	// errors of the validation kept in memory, the others are only written to file
+	public static int errorsInMemory = 1000;
+
+	// errors in each page of the validation errors
+	public static int errorsPageSize = 500;
+}
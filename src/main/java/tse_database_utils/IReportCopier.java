@@ -0,0 +1,31 @@
+package tse_database_utils;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import providers.ReportCopyListener;
+
+/**
+ * Copies the records of a report (summarized information, cases and
+ * analytical results) into another report, keeping their values
+ *
+ */
+public interface IReportCopier {
+
+	/**
+	 * Copy the records of the source report into the target report. Either all
+	 * the records are copied or none.
+	 *
+	 * @param sourceReportId
+	 * @param targetReportId
+	 * @param globalParents  id of the current row of each global parent table
+	 *                       (settings and preferences), which replaces the one
+	 *                       of the source records as when the rows are copied
+	 *                       one by one
+	 * @param listener       notified while the records are copied, can be null
+	 * @return the number of records copied
+	 * @throws SQLException if the records cannot be copied
+	 */
+	int copyChildren(int sourceReportId, int targetReportId, Map<String, Integer> globalParents,
+			ReportCopyListener listener) throws SQLException;
+}
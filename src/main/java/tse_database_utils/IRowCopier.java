@@ -0,0 +1,22 @@
+package tse_database_utils;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Copies rows of a table inside the database, keeping their values
+ *
+ */
+public interface IRowCopier {
+
+	/**
+	 * Insert a copy of the source rows, in the given order. The same row can be
+	 * copied several times. Either all the copies are inserted or none.
+	 *
+	 * @param table     name of the table
+	 * @param sourceIds ids of the rows to copy
+	 * @return the ids of the copies, in the order of the sources
+	 * @throws SQLException if the rows cannot be copied
+	 */
+	List<Integer> copyRows(String table, List<Integer> sourceIds) throws SQLException;
+}
@@ -0,0 +1,226 @@
+package tse_database_utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_database.Database;
+
+/**
+ * Stores the progress of the reports which are being imported from a dataset
+ * file, in {@link #CHECKPOINT_TABLE}.
+ *
+ * The progress is saved with the same transaction of the imported rows, so
+ * that the checkpoint of a report always tells how many rows of the file were
+ * committed. A report which still has a checkpoint was not completely
+ * imported: the import can be resumed from the checkpoint or the report can be
+ * deleted.
+ *
+ */
+public class ImportCheckpointStore {
+
+	private static final Logger LOGGER = LogManager.getLogger(ImportCheckpointStore.class);
+
+	private static final String CHECKPOINT_TABLE = "REPORTIMPORTCHECKPOINT";
+
+	// Derby error raised if the table already exists
+	private static final String ALREADY_EXISTS_STATE = "X0Y32";
+
+	private boolean tableCreated;
+
+	/**
+	 * Progress of the import of a report
+	 */
+	public static class Checkpoint {
+
+		private final int reportId;
+		private final String source;
+		private final int pass;
+		private final int rows;
+
+		public Checkpoint(int reportId, String source, int pass, int rows) {
+			this.reportId = reportId;
+			this.source = source;
+			this.pass = pass;
+			this.rows = rows;
+		}
+
+		public int getReportId() {
+			return reportId;
+		}
+
+		/**
+		 * Path of the dataset file which is imported
+		 *
+		 * @return
+		 */
+		public String getSource() {
+			return source;
+		}
+
+		/**
+		 * Pass of the import (summarized information first, then cases and
+		 * results)
+		 *
+		 * @return
+		 */
+		public int getPass() {
+			return pass;
+		}
+
+		/**
+		 * Number of rows of the pass which were committed
+		 *
+		 * @return
+		 */
+		public int getRows() {
+			return rows;
+		}
+
+		@Override
+		public String toString() {
+			return "reportId=" + reportId + ", source=" + source + ", pass=" + pass + ", rows=" + rows;
+		}
+	}
+
+	/**
+	 * Connection where the imported rows and their checkpoints are written
+	 *
+	 * @return
+	 * @throws SQLException
+	 */
+	public Connection getConnection() throws SQLException {
+		return Database.getConnection();
+	}
+
+	private synchronized void createTable(Connection conn) throws SQLException {
+
+		if (tableCreated)
+			return;
+
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("CREATE TABLE " + CHECKPOINT_TABLE + " (REPORTID INTEGER NOT NULL PRIMARY KEY, "
+					+ "SOURCE VARCHAR(4000) NOT NULL, PASS INTEGER NOT NULL, ROWSDONE INTEGER NOT NULL)");
+		} catch (SQLException e) {
+			if (!ALREADY_EXISTS_STATE.equals(e.getSQLState()))
+				throw e;
+		}
+
+		tableCreated = true;
+	}
+
+	/**
+	 * Save the progress of the import of a report. The progress is committed
+	 * with the current transaction of the connection.
+	 *
+	 * @param conn
+	 * @param checkpoint
+	 * @throws SQLException
+	 */
+	public void save(Connection conn, Checkpoint checkpoint) throws SQLException {
+
+		createTable(conn);
+
+		try (PreparedStatement st = conn.prepareStatement(
+				"UPDATE " + CHECKPOINT_TABLE + " SET SOURCE = ?, PASS = ?, ROWSDONE = ? WHERE REPORTID = ?")) {
+
+			st.setString(1, checkpoint.getSource());
+			st.setInt(2, checkpoint.getPass());
+			st.setInt(3, checkpoint.getRows());
+			st.setInt(4, checkpoint.getReportId());
+
+			if (st.executeUpdate() > 0)
+				return;
+		}
+
+		try (PreparedStatement st = conn.prepareStatement(
+				"INSERT INTO " + CHECKPOINT_TABLE + " (REPORTID, SOURCE, PASS, ROWSDONE) VALUES (?, ?, ?, ?)")) {
+
+			st.setInt(1, checkpoint.getReportId());
+			st.setString(2, checkpoint.getSource());
+			st.setInt(3, checkpoint.getPass());
+			st.setInt(4, checkpoint.getRows());
+
+			st.executeUpdate();
+		}
+	}
+
+	/**
+	 * Remove the checkpoint of a report, when the import is completed or the
+	 * report is deleted. The removal is committed with the current transaction
+	 * of the connection.
+	 *
+	 * @param conn
+	 * @param reportId
+	 * @throws SQLException
+	 */
+	public void clear(Connection conn, int reportId) throws SQLException {
+
+		createTable(conn);
+
+		try (PreparedStatement st = conn
+				.prepareStatement("DELETE FROM " + CHECKPOINT_TABLE + " WHERE REPORTID = ?")) {
+			st.setInt(1, reportId);
+			st.executeUpdate();
+		}
+	}
+
+	/**
+	 * Get the checkpoint of a report
+	 *
+	 * @param reportId
+	 * @return the checkpoint, null if the report is not being imported
+	 * @throws SQLException
+	 */
+	public Checkpoint get(int reportId) throws SQLException {
+
+		Connection conn = getConnection();
+		createTable(conn);
+
+		try (PreparedStatement st = conn.prepareStatement(
+				"SELECT SOURCE, PASS, ROWSDONE FROM " + CHECKPOINT_TABLE + " WHERE REPORTID = ?")) {
+
+			st.setInt(1, reportId);
+
+			try (ResultSet rs = st.executeQuery()) {
+				if (!rs.next())
+					return null;
+
+				return new Checkpoint(reportId, rs.getString(1), rs.getInt(2), rs.getInt(3));
+			}
+		}
+	}
+
+	/**
+	 * Get the checkpoints of all the reports whose import was not completed
+	 *
+	 * @return
+	 * @throws SQLException
+	 */
+	public List<Checkpoint> getAll() throws SQLException {
+
+		Connection conn = getConnection();
+		createTable(conn);
+
+		List<Checkpoint> checkpoints = new ArrayList<>();
+
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT REPORTID, SOURCE, PASS, ROWSDONE FROM " + CHECKPOINT_TABLE)) {
+
+			while (rs.next()) {
+				checkpoints.add(new Checkpoint(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4)));
+			}
+		}
+
+		LOGGER.debug("Incomplete imports: " + checkpoints.size());
+
+		return checkpoints;
+	}
+}
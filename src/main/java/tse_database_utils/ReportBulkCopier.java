@@ -0,0 +1,304 @@
+package tse_database_utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import providers.ReportCopyListener;
+import table_database.Database;
+import table_relations.Relation;
+import tse_config.CustomStrings;
+
+/**
+ * Copy the summarized information, cases and analytical results of a report
+ * into another report with JDBC batches inside a single transaction. The copy
+ * is committed only if all the records were copied, otherwise nothing is
+ * changed.
+ *
+ * Each table is read once. The ids of the copied rows are collected in a
+ * translation table (old id > new id), which is used to remap the foreign keys
+ * of the children. The values of the records are copied as they are: formulas
+ * are not solved again. Only the foreign keys of the global parents (settings
+ * and preferences) are set to the current ones, as the row by row copy does.
+ *
+ */
+public class ReportBulkCopier implements IReportCopier {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReportBulkCopier.class);
+
+	private static final int BATCH_SIZE = 500;
+
+	// tables of the report, parents first
+	private static final String[] TABLES = { CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.CASE_INFO_SHEET,
+			CustomStrings.RESULT_SHEET };
+
+	private final int batchSize;
+
+	public ReportBulkCopier() {
+		this(BATCH_SIZE);
+	}
+
+	/**
+	 * @param batchSize number of rows inserted with each batch
+	 */
+	public ReportBulkCopier(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * The primary key of a table has the same name of the foreign keys which
+	 * refer to it
+	 *
+	 * @param table
+	 * @return
+	 */
+	private static String getIdColumn(String table) {
+		return Relation.foreignKeyFromParent(table);
+	}
+
+	/**
+	 * Copy the records of the source report into the target report. The
+	 * listener is notified after each batch.
+	 */
+	@Override
+	public int copyChildren(int sourceReportId, int targetReportId, Map<String, Integer> globalParents,
+			ReportCopyListener listener) throws SQLException {
+
+		if (sourceReportId == targetReportId)
+			throw new IllegalArgumentException("Cannot copy the report " + sourceReportId + " into itself");
+
+		long start = System.currentTimeMillis();
+
+		Connection conn = Database.getConnection();
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try {
+			int copied = copyRecords(conn, sourceReportId, targetReportId, globalParents, listener);
+
+			conn.commit();
+
+			LOGGER.info("Copied " + copied + " records from reportId=" + sourceReportId + " to reportId="
+					+ targetReportId + " in " + (System.currentTimeMillis() - start) + " ms");
+
+			return copied;
+
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.error("Cannot copy reportId=" + sourceReportId + " to reportId=" + targetReportId
+					+ ", rolling back", e);
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Copy the records of the source report into the target report using the
+	 * given connection, without committing
+	 *
+	 * @return the number of records copied
+	 * @throws SQLException
+	 */
+	int copyRecords(Connection conn, int sourceReportId, int targetReportId, Map<String, Integer> globalParents,
+			ReportCopyListener listener) throws SQLException {
+
+		int total = 0;
+		for (String table : TABLES) {
+			total += count(conn, table, sourceReportId);
+		}
+
+		// parent table > old id > new id
+		Map<String, Map<Integer, Integer>> translations = new HashMap<>();
+
+		int copied = 0;
+		for (String table : TABLES) {
+			copied = copyTable(conn, table, sourceReportId, targetReportId, translations, globalParents, copied,
+					total, listener);
+		}
+
+		return copied;
+	}
+
+	private static int count(Connection conn, String table, int reportId) throws SQLException {
+		String sql = "SELECT COUNT(*) FROM " + table + " WHERE " + getIdColumn(CustomStrings.REPORT_SHEET) + " = ?";
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, reportId);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : 0;
+			}
+		}
+	}
+
+	private int copyTable(Connection conn, String table, int sourceReportId, int targetReportId,
+			Map<String, Map<Integer, Integer>> translations, Map<String, Integer> globalParents, int copied, int total,
+			ReportCopyListener listener) throws SQLException {
+
+		String idColumn = getIdColumn(table);
+		String reportColumn = getIdColumn(CustomStrings.REPORT_SHEET);
+
+		// ids of the rows copied before, in order to find the new ones
+		int lastId = getMaxId(conn, table);
+
+		List<Integer> sourceIds = new ArrayList<>();
+
+		String select = "SELECT * FROM " + table + " WHERE " + reportColumn + " = ? ORDER BY " + idColumn;
+		try (PreparedStatement read = conn.prepareStatement(select)) {
+			read.setInt(1, sourceReportId);
+
+			try (ResultSet rs = read.executeQuery()) {
+
+				ResultSetMetaData meta = rs.getMetaData();
+
+				// columns copied (all but the id), their translation table and
+				// their fixed value (global parents)
+				List<Integer> columns = new ArrayList<>();
+				List<Map<Integer, Integer>> columnTranslations = new ArrayList<>();
+				List<Integer> fixedValues = new ArrayList<>();
+				StringBuilder names = new StringBuilder();
+				StringBuilder params = new StringBuilder();
+
+				int reportIndex = -1;
+				for (int i = 1; i <= meta.getColumnCount(); i++) {
+					String name = meta.getColumnName(i);
+					if (name.equalsIgnoreCase(idColumn))
+						continue;
+
+					if (name.equalsIgnoreCase(reportColumn))
+						reportIndex = columns.size();
+
+					columns.add(i);
+					columnTranslations.add(getTranslation(translations, name));
+					fixedValues.add(ReportSqlCopier.getGlobalParentId(name, globalParents));
+
+					if (names.length() > 0) {
+						names.append(", ");
+						params.append(", ");
+					}
+					names.append(name);
+					params.append('?');
+				}
+
+				String insert = "INSERT INTO " + table + " (" + names + ") VALUES (" + params + ")";
+				try (PreparedStatement write = conn.prepareStatement(insert)) {
+
+					int pending = 0;
+					while (rs.next()) {
+
+						sourceIds.add(rs.getInt(idColumn));
+
+						for (int c = 0; c < columns.size(); c++) {
+							int index = columns.get(c);
+							Map<Integer, Integer> translation = columnTranslations.get(c);
+
+							if (c == reportIndex) {
+								write.setInt(c + 1, targetReportId);
+							} else if (fixedValues.get(c) != null) {
+								write.setObject(c + 1, fixedValues.get(c), meta.getColumnType(index));
+							} else if (translation != null && rs.getObject(index) != null) {
+								Integer newId = translation.get(rs.getInt(index));
+								if (newId == null)
+									throw new SQLException("No copy found for " + meta.getColumnName(index) + "="
+											+ rs.getInt(index) + " of " + table);
+								write.setInt(c + 1, newId);
+							} else {
+								write.setObject(c + 1, rs.getObject(index), meta.getColumnType(index));
+							}
+						}
+
+						write.addBatch();
+						pending++;
+
+						if (pending == batchSize) {
+							write.executeBatch();
+							copied += pending;
+							pending = 0;
+							if (listener != null)
+								listener.progress(copied, total);
+						}
+					}
+
+					if (pending > 0) {
+						write.executeBatch();
+						copied += pending;
+						if (listener != null)
+							listener.progress(copied, total);
+					}
+				}
+			}
+		}
+
+		translations.put(table, getTranslation(conn, table, targetReportId, lastId, sourceIds));
+
+		return copied;
+	}
+
+	/**
+	 * Get the translation table of the parent referred by a foreign key column,
+	 * null if the column does not refer to a copied table
+	 *
+	 * @param translations
+	 * @param columnName
+	 * @return
+	 */
+	private static Map<Integer, Integer> getTranslation(Map<String, Map<Integer, Integer>> translations,
+			String columnName) {
+		for (Map.Entry<String, Map<Integer, Integer>> entry : translations.entrySet()) {
+			if (getIdColumn(entry.getKey()).equalsIgnoreCase(columnName))
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	private static int getMaxId(Connection conn, String table) throws SQLException {
+		String sql = "SELECT MAX(" + getIdColumn(table) + ") FROM " + table;
+		try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	/**
+	 * Match the ids of the source rows with the ids generated for the copies.
+	 * Ids are generated in ascending order, so the copies have the same order of
+	 * their sources.
+	 *
+	 * @return
+	 * @throws SQLException
+	 */
+	private static Map<Integer, Integer> getTranslation(Connection conn, String table, int targetReportId,
+			int lastId, List<Integer> sourceIds) throws SQLException {
+
+		String idColumn = getIdColumn(table);
+		String sql = "SELECT " + idColumn + " FROM " + table + " WHERE " + getIdColumn(CustomStrings.REPORT_SHEET)
+				+ " = ? AND " + idColumn + " > ? ORDER BY " + idColumn;
+
+		Map<Integer, Integer> translation = new HashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, targetReportId);
+			ps.setInt(2, lastId);
+
+			try (ResultSet rs = ps.executeQuery()) {
+				int i = 0;
+				while (rs.next()) {
+					if (i >= sourceIds.size())
+						throw new SQLException("Unexpected rows found in " + table + " for reportId=" + targetReportId);
+					translation.put(sourceIds.get(i++), rs.getInt(1));
+				}
+
+				if (i != sourceIds.size())
+					throw new SQLException("Copied " + i + " rows of " + sourceIds.size() + " in " + table);
+			}
+		}
+
+		return translation;
+	}
+}
@@ -0,0 +1,545 @@
+package tse_database_utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import providers.ReportCopyListener;
+import table_database.Database;
+import table_relations.Relation;
+import tse_config.CustomStrings;
+
+/**
+ * Copy the summarized information, cases and analytical results of a report
+ * into another report inside the database. Each table is copied with a single
+ * {@code INSERT ... SELECT} statement, ordered by id: no row is read in Java,
+ * therefore the copy of big reports (e.g. amendments) requires the same memory
+ * of small ones.
+ *
+ * Ids are generated in ascending order, so the n-th copy is the copy of the
+ * n-th source. The ids of the copies are paired with the ids of their sources
+ * by their row number and saved in a temporary key map table
+ * ({@link #KEY_MAP}), which is joined to remap the foreign keys of the
+ * children. A child whose parent was not copied is not copied either and makes
+ * the copy fail. Everything runs in a single transaction.
+ *
+ * If the copy fails and a fallback copier is given, the records are copied
+ * with the fallback copier.
+ *
+ * Single rows can also be copied several times with one batch (e.g. to
+ * generate default records from a template row).
+ *
+ */
+public class ReportSqlCopier implements IReportCopier, IRowCopier {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReportSqlCopier.class);
+
+	private static final String KEY_MAP = "SESSION.REPORT_KEY_MAP";
+
+	private static final int BATCH_SIZE = 500;
+
+	// Derby error raised if the temporary table was already declared
+	private static final String ALREADY_EXISTS_STATE = "X0Y32";
+
+	// tables of the report, parents first
+	private static final String[] TABLES = { CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.CASE_INFO_SHEET,
+			CustomStrings.RESULT_SHEET };
+
+	private final IReportCopier fallback;
+
+	public ReportSqlCopier() {
+		this(null);
+	}
+
+	/**
+	 * @param fallback copier used if the records cannot be copied with sql, can
+	 *                 be null
+	 */
+	public ReportSqlCopier(IReportCopier fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * The primary key of a table has the same name of the foreign keys which
+	 * refer to it
+	 *
+	 * @param table
+	 * @return
+	 */
+	private static String getIdColumn(String table) {
+		return Relation.foreignKeyFromParent(table);
+	}
+
+	/**
+	 * Copy the records of the source report into the target report. The
+	 * listener is notified after each table.
+	 */
+	@Override
+	public int copyChildren(int sourceReportId, int targetReportId, Map<String, Integer> globalParents,
+			ReportCopyListener listener) throws SQLException {
+
+		if (sourceReportId == targetReportId)
+			throw new IllegalArgumentException("Cannot copy the report " + sourceReportId + " into itself");
+
+		try {
+			return copy(sourceReportId, targetReportId, globalParents, listener);
+		} catch (SQLException e) {
+			if (fallback == null)
+				throw e;
+
+			LOGGER.warn("Cannot copy reportId=" + sourceReportId + " with sql, using " + fallback.getClass().getSimpleName(),
+					e);
+			return fallback.copyChildren(sourceReportId, targetReportId, globalParents, listener);
+		}
+	}
+
+	private int copy(int sourceReportId, int targetReportId, Map<String, Integer> globalParents,
+			ReportCopyListener listener) throws SQLException {
+
+		long start = System.currentTimeMillis();
+
+		Connection conn = Database.getConnection();
+
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try {
+			int copied = copyRecords(conn, sourceReportId, targetReportId, -1, globalParents, listener);
+
+			// the key map is emptied with the commit
+			conn.commit();
+
+			LOGGER.info("Copied " + copied + " records from reportId=" + sourceReportId + " to reportId="
+					+ targetReportId + " with sql in " + (System.currentTimeMillis() - start) + " ms");
+
+			return copied;
+
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.error("Cannot copy reportId=" + sourceReportId + " to reportId=" + targetReportId
+					+ ", rolling back", e);
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Copy the records of a report, or only a summarized information with its
+	 * cases and results, using the current transaction of the connection
+	 *
+	 * @param conn
+	 * @param sourceReportId
+	 * @param targetReportId
+	 * @param summInfoId     id of the summarized information to copy, -1 to
+	 *                       copy all the records
+	 * @param globalParents  global parent table > id written in the copies,
+	 *                       the values of the sources are kept if empty
+	 * @param listener       notified after each table, can be null
+	 * @return number of records copied
+	 * @throws SQLException
+	 */
+	static int copyRecords(Connection conn, int sourceReportId, int targetReportId, int summInfoId,
+			Map<String, Integer> globalParents, ReportCopyListener listener) throws SQLException {
+
+		declareKeyMap(conn);
+
+		// keys of the previous copies of the transaction
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("DELETE FROM " + KEY_MAP);
+		}
+
+		int[] counts = new int[TABLES.length];
+		int total = 0;
+		for (int i = 0; i < TABLES.length; i++) {
+			counts[i] = count(conn, TABLES[i], sourceReportId, getFilter(summInfoId, ""));
+			total += counts[i];
+		}
+
+		int copied = 0;
+		for (int i = 0; i < TABLES.length; i++) {
+
+			// the last table has no children, its keys are not needed
+			boolean mapKeys = i < TABLES.length - 1;
+
+			int tableCopied = copyTable(conn, TABLES[i], i, sourceReportId, targetReportId,
+					getFilter(summInfoId, "c."), globalParents, mapKeys);
+
+			// rows whose parents were not copied are left out by the joins
+			if (tableCopied != counts[i])
+				throw new SQLException("Copied " + tableCopied + " rows of " + counts[i] + " in " + TABLES[i]);
+
+			copied += tableCopied;
+
+			if (listener != null)
+				listener.progress(copied, total);
+		}
+
+		return copied;
+	}
+
+	/**
+	 * Condition on the source rows
+	 *
+	 * @param summInfoId id of the summarized information to copy, -1 to copy
+	 *                   all the records
+	 * @param alias      prefix of the columns, as {@code c.}
+	 * @return
+	 */
+	private static String getFilter(int summInfoId, String alias) {
+		// the id of the summarized information is also the foreign key of its children
+		return summInfoId == -1 ? ""
+				: " AND " + alias + getIdColumn(CustomStrings.SUMMARIZED_INFO_SHEET) + " = " + summInfoId;
+	}
+
+	/**
+	 * Declare the key map for the connection, if not declared yet. The rows are
+	 * deleted at each commit and rollback.
+	 *
+	 * @param conn
+	 * @throws SQLException
+	 */
+	private static void declareKeyMap(Connection conn) throws SQLException {
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("DECLARE GLOBAL TEMPORARY TABLE " + KEY_MAP
+					+ " (TABLENAME VARCHAR(128) NOT NULL, OLDID INTEGER NOT NULL, NEWID INTEGER NOT NULL)"
+					+ " ON COMMIT DELETE ROWS NOT LOGGED ON ROLLBACK DELETE ROWS");
+			st.executeUpdate("CREATE INDEX " + KEY_MAP + "_IDX ON " + KEY_MAP + " (TABLENAME, OLDID)");
+		} catch (SQLException e) {
+			if (!ALREADY_EXISTS_STATE.equals(e.getSQLState()))
+				throw e;
+		}
+	}
+
+	private static int count(Connection conn, String table, int reportId, String filter) throws SQLException {
+		String sql = "SELECT COUNT(*) FROM " + table + " WHERE " + getIdColumn(CustomStrings.REPORT_SHEET) + " = ?"
+				+ filter;
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, reportId);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : 0;
+			}
+		}
+	}
+
+	private static boolean isChar(int sqlType) {
+		return sqlType == Types.CHAR || sqlType == Types.VARCHAR || sqlType == Types.LONGVARCHAR;
+	}
+
+	/**
+	 * Integer value as sql literal for a column of the type
+	 */
+	private static String literal(int value, int sqlType) {
+		return isChar(sqlType) ? "'" + value + "'" : String.valueOf(value);
+	}
+
+	/**
+	 * Copy the rows of a table with a single statement, remapping the foreign
+	 * keys of the parent tables with the key map. If the keys of the copies are
+	 * needed, they are added to the key map with a second statement.
+	 *
+	 * @param conn
+	 * @param table
+	 * @param tableIndex     index of the table in {@link #TABLES}, the
+	 *                       previous ones are its parents
+	 * @param sourceReportId
+	 * @param targetReportId
+	 * @param filter         additional condition on the source rows (alias
+	 *                       {@code c})
+	 * @param globalParents  global parent table > id written in the copies
+	 * @param mapKeys        save the keys of the copies in the key map
+	 * @return number of rows copied
+	 * @throws SQLException
+	 */
+	private static int copyTable(Connection conn, String table, int tableIndex, int sourceReportId,
+			int targetReportId, String filter, Map<String, Integer> globalParents, boolean mapKeys)
+			throws SQLException {
+
+		String idColumn = getIdColumn(table);
+		String reportColumn = getIdColumn(CustomStrings.REPORT_SHEET);
+
+		int reportColumnType = Types.INTEGER;
+		List<String> columns = new ArrayList<>();
+		List<String> values = new ArrayList<>();
+		StringBuilder joins = new StringBuilder();
+
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+
+			ResultSetMetaData meta = rs.getMetaData();
+
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+
+				String name = meta.getColumnName(i);
+				int type = meta.getColumnType(i);
+
+				if (name.equalsIgnoreCase(idColumn))
+					continue;
+
+				columns.add(name);
+
+				if (name.equalsIgnoreCase(reportColumn)) {
+					reportColumnType = type;
+					values.add(literal(targetReportId, type));
+					continue;
+				}
+
+				Integer globalParentId = getGlobalParentId(name, globalParents);
+				if (globalParentId != null) {
+					values.add(literal(globalParentId, type));
+					continue;
+				}
+
+				String parent = getParentTable(name, tableIndex);
+				if (parent == null) {
+					values.add("c." + name);
+					continue;
+				}
+
+				// new id of the parent from the key map
+				String alias = "k" + values.size();
+				String oldId = isChar(type) ? "CAST(c." + name + " AS INTEGER)" : "c." + name;
+				String newId = isChar(type) ? "TRIM(CAST(" + alias + ".NEWID AS CHAR(11)))" : alias + ".NEWID";
+
+				joins.append(" JOIN ").append(KEY_MAP).append(' ').append(alias).append(" ON ").append(alias)
+						.append(".TABLENAME = '").append(parent).append("' AND ").append(alias).append(".OLDID = ")
+						.append(oldId);
+
+				values.add(newId);
+			}
+		}
+
+		String from = " FROM " + table + " c" + joins + " WHERE c." + reportColumn + " = "
+				+ literal(sourceReportId, reportColumnType) + filter + " ORDER BY c." + idColumn;
+
+		// ids of the rows copied before, in order to find the new ones
+		int lastId = getMaxId(conn, table);
+
+		int copied;
+		try (Statement st = conn.createStatement()) {
+			copied = st.executeUpdate("INSERT INTO " + table + " (" + String.join(", ", columns) + ") SELECT "
+					+ String.join(", ", values) + from);
+		}
+
+		if (!mapKeys)
+			return copied;
+
+		// the n-th source is paired with the n-th copy
+		String sources = "SELECT c." + idColumn + " AS ID" + from;
+		String copies = "SELECT " + idColumn + " AS ID FROM " + table + " WHERE " + reportColumn + " = "
+				+ literal(targetReportId, reportColumnType) + " AND " + idColumn + " > " + lastId + " ORDER BY "
+				+ idColumn;
+
+		String keys = "INSERT INTO " + KEY_MAP + " (TABLENAME, OLDID, NEWID) SELECT '" + table + "', src.ID, cpy.ID"
+				+ " FROM (SELECT ROW_NUMBER() OVER () AS R, ID FROM (" + sources + ") AS S) src"
+				+ " JOIN (SELECT ROW_NUMBER() OVER () AS R, ID FROM (" + copies + ") AS N) cpy ON src.R = cpy.R";
+
+		try (Statement st = conn.createStatement()) {
+			int mapped = st.executeUpdate(keys);
+			if (mapped != copied)
+				throw new SQLException("Mapped " + mapped + " keys of " + copied + " copies in " + table);
+		}
+
+		return copied;
+	}
+
+	private static int getMaxId(Connection conn, String table) throws SQLException {
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT MAX(" + getIdColumn(table) + ") FROM " + table)) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	/**
+	 * Copy the rows with JDBC batches in a single transaction. The ids of the
+	 * copies are read after the inserts, since they are generated in ascending
+	 * order.
+	 */
+	@Override
+	public List<Integer> copyRows(String table, List<Integer> sourceIds) throws SQLException {
+
+		List<Integer> copies = new ArrayList<>();
+		if (sourceIds.isEmpty())
+			return copies;
+
+		long start = System.currentTimeMillis();
+
+		Connection conn = Database.getConnection();
+
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try {
+			copies.addAll(copyRows(conn, table, sourceIds));
+
+			conn.commit();
+
+			LOGGER.info("Copied " + copies.size() + " rows of " + table + " with sql in "
+					+ (System.currentTimeMillis() - start) + " ms");
+
+			return copies;
+
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.error("Cannot copy the rows of " + table + ", rolling back", e);
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Copy the rows using the current transaction of the connection
+	 *
+	 * @param conn
+	 * @param table
+	 * @param sourceIds
+	 * @return the ids of the copies, in the order of the sources
+	 * @throws SQLException
+	 */
+	static List<Integer> copyRows(Connection conn, String table, List<Integer> sourceIds) throws SQLException {
+
+		if (sourceIds.isEmpty())
+			return new ArrayList<>();
+
+		String idColumn = getIdColumn(table);
+
+		// values of each source (usually a few templates copied several times)
+		Map<Integer, Object[]> sources = new HashMap<>();
+		List<String> columns = new ArrayList<>();
+		int[] types;
+		int idIndex = -1;
+
+		StringBuilder ids = new StringBuilder();
+		for (int sourceId : new LinkedHashSet<>(sourceIds)) {
+			if (ids.length() > 0)
+				ids.append(", ");
+			ids.append(sourceId);
+		}
+
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery(
+						"SELECT * FROM " + table + " WHERE " + idColumn + " IN (" + ids + ")")) {
+
+			ResultSetMetaData meta = rs.getMetaData();
+
+			types = new int[meta.getColumnCount() + 1];
+			for (int i = 1; i <= meta.getColumnCount(); i++) {
+				types[i] = meta.getColumnType(i);
+				if (meta.getColumnName(i).equalsIgnoreCase(idColumn))
+					idIndex = i;
+				else
+					columns.add(meta.getColumnName(i));
+			}
+
+			while (rs.next()) {
+				Object[] values = new Object[types.length];
+				for (int i = 1; i < types.length; i++) {
+					values[i] = rs.getObject(i);
+				}
+				sources.put(rs.getInt(idIndex), values);
+			}
+		}
+
+		// ids of the rows copied before, in order to find the new ones
+		int lastId = getMaxId(conn, table);
+
+		StringBuilder params = new StringBuilder();
+		for (int i = 0; i < columns.size(); i++) {
+			params.append(i == 0 ? "?" : ", ?");
+		}
+
+		try (PreparedStatement insert = conn.prepareStatement(
+				"INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + params + ")")) {
+
+			int pending = 0;
+			for (int sourceId : sourceIds) {
+
+				Object[] values = sources.get(sourceId);
+				if (values == null)
+					throw new SQLException("No row with id=" + sourceId + " in " + table);
+
+				int param = 1;
+				for (int i = 1; i < types.length; i++) {
+					// the id is generated
+					if (i == idIndex)
+						continue;
+
+					if (values[i] == null)
+						insert.setNull(param++, types[i]);
+					else
+						insert.setObject(param++, values[i], types[i]);
+				}
+
+				insert.addBatch();
+				pending++;
+
+				if (pending == BATCH_SIZE) {
+					insert.executeBatch();
+					pending = 0;
+				}
+			}
+
+			if (pending > 0)
+				insert.executeBatch();
+		}
+
+		List<Integer> copies = new ArrayList<>();
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " > "
+						+ lastId + " ORDER BY " + idColumn)) {
+			while (rs.next()) {
+				copies.add(rs.getInt(1));
+			}
+		}
+
+		if (copies.size() != sourceIds.size())
+			throw new SQLException("Copied " + copies.size() + " rows of " + sourceIds.size() + " in " + table);
+
+		return copies;
+	}
+
+	/**
+	 * Get the id of the global parent referred by a foreign key column, null if
+	 * the column does not refer to a global parent
+	 *
+	 * @param columnName
+	 * @param globalParents
+	 * @return
+	 */
+	static Integer getGlobalParentId(String columnName, Map<String, Integer> globalParents) {
+		for (Map.Entry<String, Integer> entry : globalParents.entrySet()) {
+			if (getIdColumn(entry.getKey()).equalsIgnoreCase(columnName))
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Get the parent table referred by a foreign key column, null if the column
+	 * does not refer to a table copied before
+	 *
+	 * @param columnName
+	 * @param tableIndex
+	 * @return
+	 */
+	private static String getParentTable(String columnName, int tableIndex) {
+		for (int i = 0; i < tableIndex; i++) {
+			if (getIdColumn(TABLES[i]).equalsIgnoreCase(columnName))
+				return TABLES[i];
+		}
+		return null;
+	}
+}
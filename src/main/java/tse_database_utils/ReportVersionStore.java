@@ -0,0 +1,828 @@
+package tse_database_utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import table_database.Database;
+import table_relations.Relation;
+import tse_config.CustomStrings;
+
+/**
+ * Stores the old versions of a report in a compact form.
+ *
+ * When a version is compacted, each summarized information (with all its cases
+ * and results) is serialized without its ids, compressed and saved in
+ * {@link #ARCHIVE_TABLE}. Identical summarized information, as the ones which
+ * did not change between two versions, are saved only once: the versions refer
+ * to the same archive through {@link #ARCHIVED_TABLE}. The records of the
+ * version are then removed from the report tables.
+ *
+ * The archives do not depend on the records of the other versions, therefore
+ * any version can be edited or deleted without affecting the others.
+ *
+ * A compacted version is restored (the archived records are inserted again)
+ * before being opened or copied. The archive is kept, so that the version is
+ * compacted again without writing new archives when it is closed or after the
+ * copy (see {@link #recompact(int)}). A version which is only read (e.g.
+ * validated) is restored in a transaction which is rolled back after the
+ * reading, so nothing is written back.
+ * A version which is edited is released: its records are restored and its
+ * archive is dropped.
+ *
+ */
+public class ReportVersionStore {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReportVersionStore.class);
+
+	// serialized summarized information, shared by the versions
+	private static final String ARCHIVE_TABLE = "REPORTARCHIVE";
+
+	// summarized information of a version > archive
+	private static final String ARCHIVED_TABLE = "REPORTARCHIVEDSUMMINFO";
+
+	// Derby error raised if the table already exists
+	private static final String ALREADY_EXISTS_STATE = "X0Y32";
+
+	private static final String REPORT_ID = Relation.foreignKeyFromParent(CustomStrings.REPORT_SHEET);
+	private static final String SUMM_ID = Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET);
+	private static final String CASE_ID = Relation.foreignKeyFromParent(CustomStrings.CASE_INFO_SHEET);
+	private static final String RESULT_ID = Relation.foreignKeyFromParent(CustomStrings.RESULT_SHEET);
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private boolean tableCreated;
+
+	synchronized void createTable(Connection conn) throws SQLException {
+
+		if (tableCreated)
+			return;
+
+		createTable(conn, "CREATE TABLE " + ARCHIVE_TABLE
+				+ " (ARCHIVEID INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY, FINGERPRINT BIGINT NOT NULL,"
+				+ " DATA BLOB NOT NULL)",
+				"CREATE INDEX " + ARCHIVE_TABLE + "_FINGERPRINT ON " + ARCHIVE_TABLE + " (FINGERPRINT)");
+
+		createTable(conn, "CREATE TABLE " + ARCHIVED_TABLE
+				+ " (REFERENCEID INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY, REPORTID INTEGER NOT NULL,"
+				+ " ARCHIVEID INTEGER NOT NULL, RESTOREDSUMMID INTEGER)",
+				"CREATE INDEX " + ARCHIVED_TABLE + "_REPORT ON " + ARCHIVED_TABLE + " (REPORTID)",
+				"CREATE INDEX " + ARCHIVED_TABLE + "_ARCHIVE ON " + ARCHIVED_TABLE + " (ARCHIVEID)");
+
+		tableCreated = true;
+	}
+
+	private static void createTable(Connection conn, String... statements) throws SQLException {
+		try (Statement st = conn.createStatement()) {
+			for (String sql : statements) {
+				st.executeUpdate(sql);
+			}
+		} catch (SQLException e) {
+			if (!ALREADY_EXISTS_STATE.equals(e.getSQLState()))
+				throw e;
+		}
+	}
+
+	private interface Operation<T> {
+		T run(Connection conn) throws SQLException;
+	}
+
+	/**
+	 * Run an operation in a single transaction
+	 */
+	private <T> T inTransaction(String description, Operation<T> operation) throws SQLException {
+
+		Connection conn = Database.getConnection();
+		createTable(conn);
+
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try {
+			T result = operation.run(conn);
+			conn.commit();
+			return result;
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.error("Cannot " + description + ", rolling back", e);
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Archive the records of a version of a report, which must not be editable.
+	 * The records restored since the last compaction are removed again.
+	 *
+	 * @param reportId database id of the version
+	 * @return the number of summarized information archived
+	 * @throws SQLException
+	 */
+	public int compact(int reportId) throws SQLException {
+		return inTransaction("compact reportId=" + reportId, conn -> compact(conn, reportId));
+	}
+
+	static int compact(Connection conn, int reportId) throws SQLException {
+
+		long start = System.currentTimeMillis();
+
+		// the restored records are archived again, the archive is reused if
+		// they did not change
+		List<Integer> released = new ArrayList<>();
+		deleteReferences(conn, reportId, "RESTOREDSUMMID IS NOT NULL", released);
+
+		List<Integer> summIds = getIds(conn, CustomStrings.SUMMARIZED_INFO_SHEET, REPORT_ID, reportId);
+
+		int newArchives = 0;
+		try (PreparedStatement add = conn.prepareStatement(
+				"INSERT INTO " + ARCHIVED_TABLE + " (REPORTID, ARCHIVEID, RESTOREDSUMMID) VALUES (?, ?, NULL)")) {
+
+			for (int summId : summIds) {
+
+				byte[] data = serialize(conn, summId);
+
+				Integer archiveId = findArchive(conn, data);
+				if (archiveId == null) {
+					archiveId = addArchive(conn, data);
+					newArchives++;
+				}
+
+				add.setInt(1, reportId);
+				add.setInt(2, archiveId);
+				add.addBatch();
+			}
+
+			add.executeBatch();
+		}
+
+		deleteRecords(conn, summIds);
+		deleteUnusedArchives(conn, released);
+
+		LOGGER.info("Compacted reportId=" + reportId + ": " + summIds.size() + " summarized information archived ("
+				+ newArchives + " new archives) in " + (System.currentTimeMillis() - start) + " ms");
+
+		return summIds.size();
+	}
+
+	/**
+	 * Serialize a summarized information with its cases and results. The ids
+	 * are replaced by the position of the rows, so that identical summarized
+	 * information of different versions give the same bytes.
+	 */
+	private static byte[] serialize(Connection conn, int summId) throws SQLException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+
+			writeRows(conn, CustomStrings.SUMMARIZED_INFO_SHEET, SUMM_ID, summId, null, out);
+
+			// case id > position
+			Map<Integer, Integer> cases = writeRows(conn, CustomStrings.CASE_INFO_SHEET, SUMM_ID, summId, null,
+					out);
+
+			writeRows(conn, CustomStrings.RESULT_SHEET, SUMM_ID, summId, cases, out);
+
+		} catch (IOException e) {
+			throw new SQLException("Cannot serialize the summarized information " + summId, e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Write the rows of a table which refer to a parent, ordered by id
+	 *
+	 * @param cases case id > position, used to write the case of each result
+	 * @return row id > position
+	 */
+	private static Map<Integer, Integer> writeRows(Connection conn, String table, String parentColumn,
+			int parentId, Map<Integer, Integer> cases, DataOutputStream out) throws SQLException, IOException {
+
+		String idColumn = Relation.foreignKeyFromParent(table);
+
+		Map<Integer, Integer> positions = new HashMap<>();
+
+		String sql = "SELECT * FROM " + table + " WHERE " + parentColumn + " = ? ORDER BY " + idColumn;
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, parentId);
+
+			try (ResultSet rs = ps.executeQuery()) {
+
+				ResultSetMetaData meta = rs.getMetaData();
+
+				List<Integer> columns = new ArrayList<>();
+				for (int i = 1; i <= meta.getColumnCount(); i++) {
+					if (!isKey(meta.getColumnName(i)))
+						columns.add(i);
+				}
+
+				out.writeInt(columns.size());
+				for (int index : columns) {
+					writeString(out, meta.getColumnName(index));
+					out.writeInt(meta.getColumnType(index));
+				}
+
+				List<String[]> rows = new ArrayList<>();
+				List<Integer> rowCases = new ArrayList<>();
+				while (rs.next()) {
+
+					positions.put(rs.getInt(idColumn), rows.size());
+
+					String[] values = new String[columns.size()];
+					for (int c = 0; c < values.length; c++) {
+						values[c] = rs.getString(columns.get(c));
+					}
+					rows.add(values);
+
+					if (cases != null) {
+						Integer position = rs.getObject(CASE_ID) == null ? null : cases.get(rs.getInt(CASE_ID));
+						rowCases.add(position == null ? -1 : position);
+					}
+				}
+
+				out.writeInt(rows.size());
+				for (int r = 0; r < rows.size(); r++) {
+
+					if (cases != null)
+						out.writeInt(rowCases.get(r));
+
+					for (String value : rows.get(r)) {
+						out.writeBoolean(value != null);
+						if (value != null)
+							writeString(out, value);
+					}
+				}
+			}
+		}
+
+		return positions;
+	}
+
+	private static boolean isKey(String columnName) {
+		return columnName.equalsIgnoreCase(REPORT_ID) || columnName.equalsIgnoreCase(SUMM_ID)
+				|| columnName.equalsIgnoreCase(CASE_ID) || columnName.equalsIgnoreCase(RESULT_ID);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long fingerprint(byte[] data) {
+		long hash = FNV_OFFSET;
+		for (byte b : data) {
+			hash ^= b & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Find an archive with the same data
+	 *
+	 * @return the archive id, null if not found
+	 */
+	private static Integer findArchive(Connection conn, byte[] data) throws SQLException {
+
+		try (PreparedStatement ps = conn
+				.prepareStatement("SELECT ARCHIVEID, DATA FROM " + ARCHIVE_TABLE + " WHERE FINGERPRINT = ?")) {
+			ps.setLong(1, fingerprint(data));
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					if (Arrays.equals(data, rs.getBytes(2)))
+						return rs.getInt(1);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static int addArchive(Connection conn, byte[] data) throws SQLException {
+
+		try (PreparedStatement ps = conn.prepareStatement(
+				"INSERT INTO " + ARCHIVE_TABLE + " (FINGERPRINT, DATA) VALUES (?, ?)",
+				Statement.RETURN_GENERATED_KEYS)) {
+
+			ps.setLong(1, fingerprint(data));
+			ps.setBytes(2, data);
+			ps.executeUpdate();
+
+			try (ResultSet rs = ps.getGeneratedKeys()) {
+				if (!rs.next())
+					throw new SQLException("No id generated for the archive");
+				return rs.getInt(1);
+			}
+		}
+	}
+
+	private static List<Integer> getIds(Connection conn, String table, String column, int value)
+			throws SQLException {
+
+		String idColumn = Relation.foreignKeyFromParent(table);
+
+		List<Integer> ids = new ArrayList<>();
+		try (PreparedStatement ps = conn.prepareStatement(
+				"SELECT " + idColumn + " FROM " + table + " WHERE " + column + " = ? ORDER BY " + idColumn)) {
+			ps.setInt(1, value);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					ids.add(rs.getInt(1));
+				}
+			}
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Delete the summarized information with their cases and results
+	 */
+	private static void deleteRecords(Connection conn, List<Integer> summIds) throws SQLException {
+
+		if (summIds.isEmpty())
+			return;
+
+		try (PreparedStatement results = conn.prepareStatement(
+				"DELETE FROM " + CustomStrings.RESULT_SHEET + " WHERE " + SUMM_ID + " = ?");
+				PreparedStatement cases = conn.prepareStatement(
+						"DELETE FROM " + CustomStrings.CASE_INFO_SHEET + " WHERE " + SUMM_ID + " = ?");
+				PreparedStatement summ = conn.prepareStatement(
+						"DELETE FROM " + CustomStrings.SUMMARIZED_INFO_SHEET + " WHERE " + SUMM_ID + " = ?")) {
+
+			for (int summId : summIds) {
+				results.setInt(1, summId);
+				results.addBatch();
+				cases.setInt(1, summId);
+				cases.addBatch();
+				summ.setInt(1, summId);
+				summ.addBatch();
+			}
+
+			results.executeBatch();
+			cases.executeBatch();
+			summ.executeBatch();
+		}
+	}
+
+	/**
+	 * Delete the references of a report to its archives
+	 *
+	 * @param condition additional condition on the references
+	 * @param archives  receives the archives which were referenced
+	 */
+	private static void deleteReferences(Connection conn, int reportId, String condition,
+			Collection<Integer> archives) throws SQLException {
+
+		String filter = " WHERE REPORTID = ?" + (condition == null ? "" : " AND " + condition);
+
+		try (PreparedStatement ps = conn.prepareStatement("SELECT ARCHIVEID FROM " + ARCHIVED_TABLE + filter)) {
+			ps.setInt(1, reportId);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					archives.add(rs.getInt(1));
+				}
+			}
+		}
+
+		try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + ARCHIVED_TABLE + filter)) {
+			ps.setInt(1, reportId);
+			ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Delete the archives which are not referenced by any version
+	 *
+	 * @param archiveIds candidates, null to check all the archives
+	 */
+	private static int deleteUnusedArchives(Connection conn, Collection<Integer> archiveIds) throws SQLException {
+
+		String unused = "DELETE FROM " + ARCHIVE_TABLE + " WHERE NOT EXISTS (SELECT 1 FROM " + ARCHIVED_TABLE
+				+ " R WHERE R.ARCHIVEID = " + ARCHIVE_TABLE + ".ARCHIVEID)";
+
+		if (archiveIds == null) {
+			try (Statement st = conn.createStatement()) {
+				return st.executeUpdate(unused);
+			}
+		}
+
+		int deleted = 0;
+		try (PreparedStatement ps = conn.prepareStatement(unused + " AND ARCHIVEID = ?")) {
+			for (int archiveId : archiveIds) {
+				ps.setInt(1, archiveId);
+				deleted += ps.executeUpdate();
+			}
+		}
+
+		return deleted;
+	}
+
+	/**
+	 * Check if a report has archived records which are not restored
+	 *
+	 * @param reportId
+	 * @return
+	 * @throws SQLException
+	 */
+	public boolean isCompacted(int reportId) throws SQLException {
+
+		Connection conn = Database.getConnection();
+		createTable(conn);
+
+		return isCompacted(conn, reportId);
+	}
+
+	static boolean isCompacted(Connection conn, int reportId) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(
+				"SELECT COUNT(*) FROM " + ARCHIVED_TABLE + " WHERE REPORTID = ? AND RESTOREDSUMMID IS NULL")) {
+			ps.setInt(1, reportId);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getInt(1) > 0;
+			}
+		}
+	}
+
+	/**
+	 * Check if a report has archived records which were restored
+	 *
+	 * @param reportId
+	 * @return
+	 * @throws SQLException
+	 */
+	static boolean isRestored(Connection conn, int reportId) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(
+				"SELECT COUNT(*) FROM " + ARCHIVED_TABLE + " WHERE REPORTID = ? AND RESTOREDSUMMID IS NOT NULL")) {
+			ps.setInt(1, reportId);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() && rs.getInt(1) > 0;
+			}
+		}
+	}
+
+	/**
+	 * Archive again the records of a report which were restored to be opened
+	 * or copied. Nothing is done if the report was not restored or was
+	 * released in the meanwhile.
+	 *
+	 * @param reportId
+	 * @return the number of summarized information archived
+	 * @throws SQLException
+	 */
+	public int recompact(int reportId) throws SQLException {
+		return inTransaction("compact again reportId=" + reportId, conn -> recompact(conn, reportId));
+	}
+
+	static int recompact(Connection conn, int reportId) throws SQLException {
+		if (!isRestored(conn, reportId))
+			return 0;
+
+		return compact(conn, reportId);
+	}
+
+	/**
+	 * Insert again the archived records of a compacted report. The archive is
+	 * kept until the report is released.
+	 *
+	 * @param reportId
+	 * @return the number of records inserted
+	 * @throws SQLException
+	 */
+	public int restore(int reportId) throws SQLException {
+
+		Connection conn = Database.getConnection();
+		createTable(conn);
+
+		// nothing to do, avoid the transaction
+		if (!isCompacted(conn, reportId))
+			return 0;
+
+		return inTransaction("restore reportId=" + reportId, c -> restore(c, reportId));
+	}
+
+	static int restore(Connection conn, int reportId) throws SQLException {
+
+		// reference > archive
+		Map<Integer, Integer> references = new LinkedHashMap<>();
+		try (PreparedStatement ps = conn.prepareStatement("SELECT REFERENCEID, ARCHIVEID FROM " + ARCHIVED_TABLE
+				+ " WHERE REPORTID = ? AND RESTOREDSUMMID IS NULL ORDER BY REFERENCEID")) {
+			ps.setInt(1, reportId);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					references.put(rs.getInt(1), rs.getInt(2));
+				}
+			}
+		}
+
+		if (references.isEmpty())
+			return 0;
+
+		long start = System.currentTimeMillis();
+
+		int restored = 0;
+		try (PreparedStatement read = conn
+				.prepareStatement("SELECT DATA FROM " + ARCHIVE_TABLE + " WHERE ARCHIVEID = ?");
+				PreparedStatement mark = conn.prepareStatement(
+						"UPDATE " + ARCHIVED_TABLE + " SET RESTOREDSUMMID = ? WHERE REFERENCEID = ?")) {
+
+			for (Map.Entry<Integer, Integer> reference : references.entrySet()) {
+
+				byte[] data;
+				read.setInt(1, reference.getValue());
+				try (ResultSet rs = read.executeQuery()) {
+					if (!rs.next())
+						throw new SQLException("Missing archive " + reference.getValue() + " of reportId=" + reportId);
+					data = rs.getBytes(1);
+				}
+
+				int[] inserted = new int[1];
+				int summId = deserialize(conn, reportId, data, inserted);
+				restored += inserted[0];
+
+				mark.setInt(1, summId);
+				mark.setInt(2, reference.getKey());
+				mark.addBatch();
+			}
+
+			mark.executeBatch();
+		}
+
+		LOGGER.info("Restored reportId=" + reportId + ": " + restored + " records inserted in "
+				+ (System.currentTimeMillis() - start) + " ms");
+
+		return restored;
+	}
+
+	/**
+	 * Read the records of a report, restoring them only for the reader if the
+	 * report is compacted. The restored records are rolled back after the
+	 * reading, so the report stays compacted.
+	 *
+	 * @param reportId
+	 * @param reader   reads the records from the database connection
+	 * @throws SQLException
+	 */
+	public void read(int reportId, Runnable reader) throws SQLException {
+
+		Connection conn = Database.getConnection();
+		createTable(conn);
+
+		// nothing to restore, avoid the transaction
+		if (!isCompacted(conn, reportId)) {
+			reader.run();
+			return;
+		}
+
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try {
+			read(conn, reportId, reader);
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	static void read(Connection conn, int reportId, Runnable reader) throws SQLException {
+
+		Savepoint savepoint = conn.setSavepoint();
+		try {
+			restore(conn, reportId);
+			reader.run();
+		} finally {
+			// the restored records are not kept
+			conn.rollback(savepoint);
+		}
+	}
+
+	/**
+	 * Insert the records of a serialized summarized information into a report
+	 *
+	 * @param inserted receives the number of records inserted
+	 * @return the id of the summarized information inserted
+	 */
+	private static int deserialize(Connection conn, int reportId, byte[] data, int[] inserted)
+			throws SQLException {
+
+		try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+
+			List<Integer> summIds = new ArrayList<>();
+			readRows(conn, CustomStrings.SUMMARIZED_INFO_SHEET, reportId, -1, null, summIds, in);
+			if (summIds.size() != 1)
+				throw new SQLException("Archive with " + summIds.size() + " summarized information");
+
+			int summId = summIds.get(0);
+
+			List<Integer> caseIds = new ArrayList<>();
+			readRows(conn, CustomStrings.CASE_INFO_SHEET, reportId, summId, null, caseIds, in);
+
+			// the results are not parents of other rows, their ids are not needed
+			int results = readRows(conn, CustomStrings.RESULT_SHEET, reportId, summId, caseIds, null, in);
+
+			inserted[0] = 1 + caseIds.size() + results;
+
+			return summId;
+
+		} catch (IOException e) {
+			throw new SQLException("Cannot read the archived records of reportId=" + reportId, e);
+		}
+	}
+
+	/**
+	 * Insert the rows of a table written by
+	 * {@link #writeRows(Connection, String, String, int, Map, DataOutputStream)}
+	 *
+	 * @param summId  summarized information of the rows, -1 for the
+	 *                summarized information table
+	 * @param caseIds ids of the inserted cases by position, used for the results
+	 * @param ids     receives the ids of the inserted rows by position, null if
+	 *                not needed: the rows are then inserted in a single batch
+	 * @return the number of inserted rows
+	 */
+	private static int readRows(Connection conn, String table, int reportId, int summId, List<Integer> caseIds,
+			List<Integer> ids, DataInputStream in) throws SQLException, IOException {
+
+		int columnsCount = in.readInt();
+
+		List<String> columns = new ArrayList<>();
+		int[] types = new int[columnsCount];
+		for (int c = 0; c < columnsCount; c++) {
+			columns.add(readString(in));
+			types[c] = in.readInt();
+		}
+
+		// keys of the report records
+		columns.add(REPORT_ID);
+		if (summId != -1)
+			columns.add(SUMM_ID);
+		if (caseIds != null)
+			columns.add(CASE_ID);
+
+		StringBuilder params = new StringBuilder();
+		for (int c = 0; c < columns.size(); c++) {
+			params.append(c == 0 ? "?" : ", ?");
+		}
+
+		String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + params + ")";
+
+		int rows;
+		try (PreparedStatement insert = ids != null ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+				: conn.prepareStatement(sql)) {
+
+			rows = in.readInt();
+			for (int r = 0; r < rows; r++) {
+
+				int casePosition = caseIds != null ? in.readInt() : -1;
+
+				for (int c = 0; c < columnsCount; c++) {
+					if (in.readBoolean())
+						insert.setString(c + 1, readString(in));
+					else
+						insert.setNull(c + 1, types[c]);
+				}
+
+				int index = columnsCount + 1;
+				insert.setInt(index++, reportId);
+				if (summId != -1)
+					insert.setInt(index++, summId);
+				if (caseIds != null) {
+					if (casePosition == -1)
+						insert.setNull(index, Types.INTEGER);
+					else
+						insert.setInt(index, caseIds.get(casePosition));
+				}
+
+				if (ids == null) {
+					insert.addBatch();
+					continue;
+				}
+
+				insert.executeUpdate();
+
+				try (ResultSet rs = insert.getGeneratedKeys()) {
+					if (!rs.next())
+						throw new SQLException("No id generated for a row of " + table);
+					ids.add(rs.getInt(1));
+				}
+			}
+
+			if (ids == null)
+				insert.executeBatch();
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Restore a report and drop its archive, since its records are going to
+	 * be changed
+	 *
+	 * @param reportId
+	 * @return the number of records restored
+	 * @throws SQLException
+	 */
+	public int release(int reportId) throws SQLException {
+		return inTransaction("release reportId=" + reportId, conn -> release(conn, reportId));
+	}
+
+	static int release(Connection conn, int reportId) throws SQLException {
+		int restored = restore(conn, reportId);
+		forget(conn, reportId);
+		return restored;
+	}
+
+	/**
+	 * Drop the archive of a report, whose records are deleted
+	 *
+	 * @param reportId
+	 * @throws SQLException
+	 */
+	public void forget(int reportId) throws SQLException {
+		inTransaction("forget reportId=" + reportId, conn -> {
+			forget(conn, reportId);
+			return null;
+		});
+	}
+
+	static void forget(Connection conn, int reportId) throws SQLException {
+		List<Integer> archives = new ArrayList<>();
+		deleteReferences(conn, reportId, null, archives);
+		deleteUnusedArchives(conn, archives);
+	}
+
+	/**
+	 * Drop the archives of the reports which were deleted without being
+	 * forgotten (e.g. a rolled back import)
+	 *
+	 * @param reportIds ids of all the existing reports
+	 * @return the number of reports whose archive was dropped
+	 * @throws SQLException
+	 */
+	public int purge(Collection<Integer> reportIds) throws SQLException {
+		return inTransaction("purge the archives of the deleted reports", conn -> purge(conn, reportIds));
+	}
+
+	static int purge(Connection conn, Collection<Integer> reportIds) throws SQLException {
+
+		Set<Integer> existing = new HashSet<>(reportIds);
+
+		Set<Integer> deleted = new HashSet<>();
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT DISTINCT REPORTID FROM " + ARCHIVED_TABLE)) {
+			while (rs.next()) {
+				if (!existing.contains(rs.getInt(1)))
+					deleted.add(rs.getInt(1));
+			}
+		}
+
+		try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + ARCHIVED_TABLE + " WHERE REPORTID = ?")) {
+			for (int reportId : deleted) {
+				ps.setInt(1, reportId);
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+
+		int archives = deleteUnusedArchives(conn, null);
+
+		if (!deleted.isEmpty())
+			LOGGER.info("Dropped the archives of " + deleted.size() + " deleted reports, " + archives
+					+ " archives removed");
+
+		return deleted.size();
+	}
+}
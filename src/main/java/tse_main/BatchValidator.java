@@ -0,0 +1,526 @@
+package tse_main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.AppPaths;
+import dataset.IDataset;
+import dataset.RCLDatasetStatus;
+import global_utils.EFSARCL;
+import global_utils.FileUtils;
+import providers.FormulaService;
+import providers.IFormulaService;
+import providers.ITableDaoService;
+import providers.TableDaoService;
+import providers.TseReportService;
+import report_validator.ReportError.ErrorType;
+import soap.GetAck;
+import soap.GetDataset;
+import soap.GetDatasetsList;
+import soap.SendMessage;
+import table_database.Database;
+import table_database.DatabaseVersionException;
+import table_database.TableDao;
+import tse_config.CustomStrings;
+import tse_database_utils.ReportVersionStore;
+import tse_config.ValidationConfig;
+import tse_report.TseReport;
+import tse_validator.ReportErrorSink;
+import tse_validator.TseReportValidator;
+
+/**
+ * Validate several reports of the local database without opening the user
+ * interface. The errors of each report are written in a folder (html pages and
+ * csv, see {@link ReportErrorSink}), while the results of all the reports are
+ * written in a summary json and csv file.
+ *
+ * Usage: {@code BatchValidator [--report senderId]... | [--all-drafts]
+ * [--threads n] [--output folder]}. If no report is specified, all the draft
+ * reports are validated.
+ *
+ * The reports share the connection to the database, so only one report at a
+ * time is loaded, while the other workers check the reports they loaded and
+ * write their errors. The archived records of the old versions are read
+ * without being restored in the database. A report which cannot be validated
+ * is recorded as failed and does not stop the others.
+ *
+ * The exit code is 0 if all the reports are correct, 1 if some report has
+ * errors and 2 if some report could not be validated.
+ *
+ */
+public class BatchValidator {
+
+	private static final Logger LOGGER = LogManager.getLogger(BatchValidator.class);
+
+	private static final String SUMMARY_JSON = "summary.json";
+	private static final String SUMMARY_CSV = "summary.csv";
+
+	// the database connection is shared by the workers
+	private static final Object DATABASE_LOCK = new Object();
+
+	private final TseReportService reportService;
+	private final ITableDaoService daoService;
+
+	private final int threads;
+	private final File outputFolder;
+
+	/**
+	 * Result of the validation of a report
+	 *
+	 */
+	public static class Result {
+
+		private final TseReport report;
+		private int records;
+		private int errors;
+		private int warnings;
+		private Map<String, Integer> errorsByType;
+		private long millis;
+		private String failure;
+
+		private Result(TseReport report) {
+			this.report = report;
+		}
+
+		private static Result failed(TseReport report, Throwable cause) {
+			Result result = new Result(report);
+			result.failure = cause.toString();
+			return result;
+		}
+
+		public TseReport getReport() {
+			return report;
+		}
+
+		public int getRecords() {
+			return records;
+		}
+
+		public int getErrors() {
+			return errors;
+		}
+
+		public int getWarnings() {
+			return warnings;
+		}
+
+		public Map<String, Integer> getErrorsByType() {
+			return errorsByType;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * @return the reason why the report could not be validated, null if
+		 *         validated
+		 */
+		public String getFailure() {
+			return failure;
+		}
+	}
+
+	/**
+	 * @param reportService
+	 * @param daoService
+	 * @param threads       number of reports validated at the same time
+	 * @param outputFolder  folder where the results are written
+	 */
+	public BatchValidator(TseReportService reportService, ITableDaoService daoService, int threads,
+			File outputFolder) {
+		this.reportService = reportService;
+		this.daoService = daoService;
+		this.threads = threads;
+		this.outputFolder = outputFolder;
+	}
+
+	/**
+	 * Get the reports with the sender ids, or all the draft reports if no sender
+	 * id is given
+	 *
+	 * @param senderIds
+	 * @return
+	 */
+	public List<TseReport> getReports(Collection<String> senderIds) {
+		return reportService.getAllReports().stream().map(TseReport::new).filter(r -> senderIds.isEmpty()
+				? RCLDatasetStatus.DRAFT.equals(r.getRCLStatus()) : senderIds.contains(r.getSenderId()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Validate the reports with a pool of workers and write the results
+	 *
+	 * @param reports
+	 * @return the results, in the order of the reports
+	 * @throws IOException if the results cannot be written
+	 */
+	public List<Result> validate(List<TseReport> reports) throws IOException {
+
+		FileUtils.createFolder(outputFolder.getPath());
+
+		long start = System.currentTimeMillis();
+
+		List<Result> results = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<>();
+			for (TseReport report : reports) {
+				futures.add(executor.submit(() -> validate(report)));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					TseReport report = reports.get(i);
+					LOGGER.error("Cannot validate the report=" + report.getSenderId(), e.getCause());
+					e.printStackTrace();
+					results.add(Result.failed(report, e.getCause()));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Batch validation interrupted", e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		long millis = System.currentTimeMillis() - start;
+
+		writeJson(results, millis);
+		writeCsv(results);
+
+		int records = results.stream().mapToInt(Result::getRecords).sum();
+		int errors = results.stream().mapToInt(Result::getErrors).sum();
+		LOGGER.info("Validated " + results.size() + " reports (" + records + " records, " + errors + " errors) in "
+				+ millis + " ms with " + threads + " threads: " + getRate(results.size(), millis) + " reports/s, "
+				+ getRate(records, millis) + " records/s");
+
+		return results;
+	}
+
+	private Result validate(TseReport report) {
+
+		Result result = new Result(report);
+		long start = System.currentTimeMillis();
+
+		// the database is read by a single thread and each report is validated only once
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		validator.setParallel(false);
+		validator.setIncremental(false);
+
+		File folder = new File(outputFolder, getFolderName(report));
+
+		try {
+			FileUtils.createFolder(folder.getPath());
+
+			// errors are only written to file
+			ReportErrorSink sink = new ReportErrorSink(folder, 0, ValidationConfig.errorsPageSize);
+			try {
+				synchronized (DATABASE_LOCK) {
+					reportService.readVersion(report, validator::load);
+				}
+
+				// only the loaded rows are read
+				validator.validate(sink);
+			} finally {
+				sink.close();
+			}
+
+			result.records = validator.getValidatedRecordsCount();
+			result.errors = sink.getCount(ErrorType.ERROR);
+			result.warnings = sink.getCount() - result.errors;
+			result.errorsByType = sink.getCountsByError();
+		} catch (Exception e) {
+			LOGGER.error("Cannot validate the report=" + report.getSenderId(), e);
+			e.printStackTrace();
+			result.failure = e.toString();
+		}
+
+		result.millis = System.currentTimeMillis() - start;
+
+		LOGGER.info("Report=" + report.getSenderId() + " version=" + report.getVersion() + " validated in "
+				+ result.millis + " ms with " + result.errors + " errors");
+
+		return result;
+	}
+
+	private static String getFolderName(TseReport report) {
+		return (report.getSenderId() + "_" + report.getVersion() + "_" + report.getDatabaseId())
+				.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	private static String getRate(int count, long millis) {
+		return String.format(Locale.ENGLISH, "%.2f", millis == 0 ? 0 : count * 1000.0 / millis);
+	}
+
+	private void writeJson(List<Result> results, long millis) throws IOException {
+
+		File file = new File(outputFolder, SUMMARY_JSON);
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+
+			int records = results.stream().mapToInt(Result::getRecords).sum();
+
+			writer.write("{\n");
+			writer.write("  \"threads\": " + threads + ",\n");
+			writer.write("  \"millis\": " + millis + ",\n");
+			writer.write("  \"reports\": " + results.size() + ",\n");
+			writer.write("  \"records\": " + records + ",\n");
+			writer.write("  \"reportsPerSecond\": " + getRate(results.size(), millis) + ",\n");
+			writer.write("  \"recordsPerSecond\": " + getRate(records, millis) + ",\n");
+			writer.write("  \"results\": [");
+
+			for (int i = 0; i < results.size(); i++) {
+
+				Result result = results.get(i);
+				TseReport report = result.getReport();
+
+				writer.write(i == 0 ? "\n" : ",\n");
+				writer.write("    {\"senderId\": " + json(report.getSenderId()) + ", \"version\": "
+						+ json(report.getVersion()) + ", \"status\": " + json(String.valueOf(report.getRCLStatus()))
+						+ ", \"records\": " + result.getRecords() + ", \"errors\": " + result.getErrors()
+						+ ", \"warnings\": " + result.getWarnings() + ", \"millis\": " + result.getMillis()
+						+ ", \"folder\": " + json(getFolderName(report)) + ", \"failure\": "
+						+ json(result.getFailure()) + ", \"errorsByType\": {");
+
+				if (result.getErrorsByType() != null) {
+					boolean first = true;
+					for (Map.Entry<String, Integer> entry : result.getErrorsByType().entrySet()) {
+						writer.write((first ? "" : ", ") + json(entry.getKey()) + ": " + entry.getValue());
+						first = false;
+					}
+				}
+
+				writer.write("}}");
+			}
+
+			writer.write("\n  ]\n}\n");
+		}
+	}
+
+	private void writeCsv(List<Result> results) throws IOException {
+
+		File file = new File(outputFolder, SUMMARY_CSV);
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+
+			writer.write("senderId,version,status,records,errors,warnings,millis,folder,failure\r\n");
+
+			for (Result result : results) {
+				TseReport report = result.getReport();
+				writer.write(csv(report.getSenderId()) + "," + csv(report.getVersion()) + ","
+						+ csv(String.valueOf(report.getRCLStatus())) + "," + result.getRecords() + ","
+						+ result.getErrors() + "," + result.getWarnings() + "," + result.getMillis() + ","
+						+ csv(getFolderName(report)) + "," + csv(result.getFailure()) + "\r\n");
+			}
+		}
+	}
+
+	private static String json(String value) {
+
+		if (value == null)
+			return "null";
+
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+		}
+
+		return sb.append('"').toString();
+	}
+
+	private static String csv(String value) {
+		if (value == null)
+			return "";
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private static void printUsage() {
+		System.err.println("Usage: BatchValidator [--report senderId]... | [--all-drafts] [--threads n] "
+				+ "[--output folder]");
+	}
+
+	/**
+	 * Arguments of the batch validation
+	 *
+	 */
+	static class Arguments {
+
+		private final List<String> senderIds = new ArrayList<>();
+		private int threads = ValidationConfig.parallelism;
+		private File output = new File(
+				"batch_validation_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()));
+
+		List<String> getSenderIds() {
+			return senderIds;
+		}
+
+		int getThreads() {
+			return threads;
+		}
+
+		File getOutput() {
+			return output;
+		}
+
+		/**
+		 * Parse the arguments of the command line
+		 *
+		 * @param args
+		 * @return
+		 * @throws IllegalArgumentException if the arguments are wrong
+		 */
+		static Arguments parse(String[] args) {
+
+			Arguments arguments = new Arguments();
+			boolean allDrafts = false;
+
+			try {
+				for (int i = 0; i < args.length; i++) {
+					switch (args[i]) {
+					case "--report":
+						arguments.senderIds.add(args[++i]);
+						break;
+					case "--all-drafts":
+						allDrafts = true;
+						break;
+					case "--threads":
+						arguments.threads = Integer.parseInt(args[++i]);
+						break;
+					case "--output":
+						arguments.output = new File(args[++i]);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown argument " + args[i]);
+					}
+				}
+			} catch (ArrayIndexOutOfBoundsException e) {
+				throw new IllegalArgumentException("Missing value of " + args[args.length - 1], e);
+			}
+
+			if (allDrafts && !arguments.senderIds.isEmpty())
+				throw new IllegalArgumentException("--report and --all-drafts cannot be used together");
+
+			if (arguments.threads <= 0)
+				throw new IllegalArgumentException("The number of threads must be positive");
+
+			return arguments;
+		}
+	}
+
+	/**
+	 * Validate the reports of the local database
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		Arguments arguments;
+		try {
+			arguments = Arguments.parse(args);
+		} catch (IllegalArgumentException e) {
+			LOGGER.error("Wrong arguments", e);
+			printUsage();
+			System.exit(2);
+			return;
+		}
+
+		System.exit(run(arguments.getSenderIds(), arguments.getThreads(), arguments.getOutput()));
+	}
+
+	private static int run(List<String> senderIds, int threads, File output) {
+
+		LOGGER.info("Batch validation started : " + System.currentTimeMillis());
+
+		// connect to the database application, without user interface
+		Database db = new Database();
+
+		try {
+			db.connect();
+
+			FileUtils.createFolder(CustomStrings.PREFERENCE_FOLDER);
+
+			EFSARCL.init();
+			EFSARCL.checkConfigFiles(CustomStrings.PREDEFINED_RESULTS_FILE, AppPaths.CONFIG_FOLDER);
+
+		} catch (IOException | SQLException e) {
+			LOGGER.fatal("Cannot open the database or initialise the EFSARCL library", e);
+			e.printStackTrace();
+			db.shutdown();
+			return 2;
+		} catch (DatabaseVersionException e) {
+			LOGGER.fatal("Old version of the database found, open the tool to update it", e);
+			e.printStackTrace();
+			db.shutdown();
+			return 2;
+		}
+
+		try {
+			ITableDaoService daoService = new TableDaoService(new TableDao());
+			IFormulaService formulaService = new FormulaService(daoService);
+
+			TseReportService reportService = new TseReportService(new GetAck(), new GetDatasetsList<IDataset>(),
+					new SendMessage(), new GetDataset(), daoService, formulaService);
+			reportService.setVersionStore(new ReportVersionStore());
+
+			BatchValidator validator = new BatchValidator(reportService, daoService, threads, output);
+
+			List<TseReport> reports = validator.getReports(senderIds);
+			LOGGER.info("Validating " + reports.size() + " reports in " + output);
+
+			List<Result> results = validator.validate(reports);
+
+			if (results.stream().anyMatch(r -> r.getFailure() != null))
+				return 2;
+
+			return results.stream().anyMatch(r -> r.getErrors() > 0) ? 1 : 0;
+		} catch (IOException e) {
+			LOGGER.fatal("Cannot write the results of the batch validation in " + output, e);
+			e.printStackTrace();
+			return 2;
+		} finally {
+			db.shutdown();
+			LOGGER.info("Batch validation ended : " + System.currentTimeMillis());
+		}
+	}
+}
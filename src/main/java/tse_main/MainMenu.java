@@ -27,6 +27,7 @@ import global_utils.Warnings;
 import i18n_messages.TSEMessages;
 import message.MessageConfigBuilder;
 import message_creator.OperationType;
+import progress_bar.IndeterminateProgressDialog;
 import providers.IFormulaService;
 import providers.ITableDaoService;
 import providers.TseReportService;
@@ -50,6 +51,7 @@ import tse_options.SettingsDialog;
 import tse_report.ReportCreatorDialog;
 import tse_report.ReportListDialog;
 import tse_report.TseReport;
+import tse_validator.RowValidationStore;
 import xlsx_reader.TableSchema;
 import xlsx_reader.TableSchemaList;
 
@@ -86,6 +88,7 @@ public class MainMenu {
 	protected MenuItem copyReport;
 	protected MenuItem downloadReport;
 	protected MenuItem amendReports;
+	protected MenuItem compactVersions;
 	protected MenuItem exportReport;
 	protected MenuItem exitApplication;
 
@@ -292,7 +295,8 @@ public class MainMenu {
 				shell.setCursor(shell.getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
 				TseSummarizedInfoImporter importer = new TseSummarizedInfoImporter(daoService, formulaService);
 				// copy the data into the selected report
-				importer.copyByParent(childSchema, report, mainPanel.getOpenedReport());
+				reportService.copyVersion(dialog.getSelectedReport(),
+						() -> importer.copyByParent(childSchema, report, mainPanel.getOpenedReport()));
 
 				mainPanel.refresh();
 				shell.setCursor(shell.getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
@@ -405,6 +409,43 @@ public class MainMenu {
 			}
 		});
 
+		compactVersions = new MenuItem(fileMenu, SWT.PUSH);
+		compactVersions.setText(TSEMessages.get("compact.versions.item"));
+		compactVersions.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent arg0) {
+
+				MessageBox mb = new MessageBox(shell, SWT.ICON_QUESTION | SWT.OK | SWT.CANCEL);
+				mb.setText(TSEMessages.get("warning.title"));
+				mb.setMessage(TSEMessages.get("compact.versions.confirm"));
+
+				if (mb.open() == SWT.CANCEL)
+					return;
+
+				LOGGER.info("Compacting the versions of the reports");
+
+				IndeterminateProgressDialog progressBar = new IndeterminateProgressDialog(shell,
+						SWT.APPLICATION_MODAL, TSEMessages.get("compact.versions.progress.bar.label"));
+				progressBar.open();
+
+				// the opened report is not compacted, since its records are shown
+				TseReport opened = mainPanel.getOpenedReport();
+
+				new Thread(() -> {
+					int archived = reportService.compactVersions(opened);
+
+					shell.getDisplay().asyncExec(() -> {
+						progressBar.close();
+
+						MessageBox done = new MessageBox(shell, SWT.ICON_INFORMATION);
+						done.setText(TSEMessages.get("success.title"));
+						done.setMessage(TSEMessages.get("compact.versions.done", String.valueOf(archived)));
+						done.open();
+					});
+				}).start();
+			}
+		});
+
 		exportReport = new MenuItem(fileMenu, SWT.PUSH);
 		exportReport.setText(TSEMessages.get("export.report.item"));
 		exportReport.addSelectionListener(new SelectionListener() {
@@ -615,6 +656,8 @@ public class MainMenu {
 				}
 
 				LOGGER.debug("Report " + report.getSenderId() + " deleted from disk");
+				reportService.discardVersion(report);
+				RowValidationStore.invalidate(report.getDatabaseId());
 				report.delete();
 			}
 
@@ -18,6 +18,10 @@ public class MainPanel {
 	private IFormulaService formulaService;
 	
 	private SummarizedInfoDialog reportViewer;
+
+	// opened report whose archived records were restored, archived again when
+	// it is closed
+	private TseReport restored;
 	
 	/**
 	 * Create the main user interface
@@ -46,6 +50,22 @@ public class MainPanel {
 	 * @param report
 	 */
 	public void openReport(TseReport report) {
+
+		// archive again the records of the report opened before
+		if (restored != null && (report == null || restored.getDatabaseId() != report.getDatabaseId())) {
+			reportService.recompactVersion(restored);
+			restored = null;
+		}
+
+		// insert again the archived records, kept until the report is closed
+		if (reportService.isVersionCompacted(report))
+			restored = report;
+		reportService.restoreVersion(report);
+
+		// the records of an editable report cannot be archived
+		if (report != null && report.isEditable())
+			reportService.releaseVersion(report);
+
 		this.reportViewer.setParentFilter(report);
 		GlobalManager.getInstance().setOpenedReport(report);
 	}
@@ -66,6 +86,8 @@ public class MainPanel {
 	}
 	
 	public void closeReport() {
+		reportService.recompactVersion(restored);
+		restored = null;
 		this.reportViewer.clear();
 		GlobalManager.getInstance().setOpenedReport(null);
 	}
@@ -81,5 +103,8 @@ public class MainPanel {
 		mainMenu.create();
 		
 		this.reportViewer = new SummarizedInfoDialog(shell, reportService, daoService, formulaService);
+
+		// the opened report is archived again when the application is closed
+		shell.addDisposeListener(e -> reportService.recompactVersion(restored));
 	}
 }
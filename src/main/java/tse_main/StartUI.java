@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.stream.Stream;
@@ -29,6 +30,7 @@ import global_utils.FileUtils;
 import global_utils.Warnings;
 import html_viewer.HtmlViewer;
 import i18n_messages.TSEMessages;
+import predefined_results.PredefinedResultsCache;
 import providers.FormulaService;
 import providers.IFormulaService;
 import providers.ITableDaoService;
@@ -51,9 +53,14 @@ import table_skeleton.TableRow;
 import tse_config.CustomStrings;
 import tse_config.DebugConfig;
 import tse_database_utils.DatabaseSanityChecker;
+import tse_database_utils.ImportCheckpointStore;
+import tse_database_utils.ReportBulkCopier;
+import tse_database_utils.ReportSqlCopier;
+import tse_database_utils.ReportVersionStore;
 import tse_options.PreferencesDialog;
 import tse_options.SettingsDialog;
 import tse_report.ReportCreatorDialog;
+import tse_validator.RowValidationStore;
 import user.User;
 import xlsx_reader.TableSchema;
 import xlsx_reader.TableSchemaList;
@@ -158,6 +165,8 @@ public class StartUI {
 
 		LOGGER.info("Application closed : " + System.currentTimeMillis());
 
+		PredefinedResultsCache.stopWatching();
+
 		if (display != null)
 			display.dispose();
 
@@ -309,6 +318,23 @@ public class StartUI {
 		TseReportService reportService = new TseReportService(getAck, getDatasetsList, sendMessage, getDataset,
 				daoService, formulaService);
 
+		// copy the records of the reports inside the database, in a single transaction
+		ReportSqlCopier sqlCopier = new ReportSqlCopier(new ReportBulkCopier());
+		reportService.setBulkCopier(sqlCopier);
+		reportService.setRowCopier(sqlCopier);
+
+		// share the unchanged records of the old versions with the newer ones
+		reportService.setVersionStore(new ReportVersionStore());
+
+		// save the progress of the reports imported from dataset files
+		reportService.setImportCheckpointStore(new ImportCheckpointStore());
+
+		// keep the errors of the checked rows between the sessions
+		RowValidationStore.setFolder(Paths.get(CustomStrings.PREFERENCE_FOLDER, "validation"));
+
+		// reload the predefined results when their file is edited
+		PredefinedResultsCache.startWatching();
+
 		// open the main panel
 
 		try {
@@ -1,5 +1,7 @@
 package tse_main.listeners;
 
+import app_config.PropertiesReader;
+import global_utils.Warnings;
 import i18n_messages.TSEMessages;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -8,8 +10,11 @@ import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import providers.TseReportService;
+import report.ThreadFinishedListener;
 import table_skeleton.TableRow;
+import tse_components.CopyProgressDialog;
 import tse_main.MainPanel;
+import tse_report.ReportCopyThread;
 import tse_report.ReportListDialog;
 import tse_report.TseReport;
 
@@ -53,12 +58,37 @@ public class CopySelectionListener implements SelectionListener {
 
         TseReport currentReport = mainPanel.getOpenedReport();
         LOGGER.info("Copying report data from reportId={} to reportId={}", sourceReport.getCode(SENDER_DATASET_ID_COL), currentReport.getSenderId());
-        reportService.copyReport(new TseReport(sourceReport), currentReport);
-        LOGGER.info("Copied report data from reportId={} to reportId={}", sourceReport.getCode(SENDER_DATASET_ID_COL), currentReport.getSenderId());
+        CopyProgressDialog progress = new CopyProgressDialog(shell, TSEMessages.get("copy.report.progress"));
+        progress.open();
 
-        shell.setCursor(shell.getDisplay().getSystemCursor(CURSOR_WAIT));
-        mainPanel.refresh();
-        shell.setCursor(shell.getDisplay().getSystemCursor(CURSOR_ARROW));
+        // the records are copied in a separate thread, the ui is updated when it finishes
+        ReportCopyThread copy = new ReportCopyThread(
+                listener -> reportService.copyReport(new TseReport(sourceReport), currentReport, listener), progress);
+        copy.setListener(new ThreadFinishedListener() {
+            @Override
+            public void finished(Runnable thread) {
+                shell.getDisplay().asyncExec(() -> {
+                    progress.close();
+                    LOGGER.info("Copied report data from reportId={} to reportId={}", sourceReport.getCode(SENDER_DATASET_ID_COL), currentReport.getSenderId());
+
+                    shell.setCursor(shell.getDisplay().getSystemCursor(CURSOR_WAIT));
+                    mainPanel.refresh();
+                    shell.setCursor(shell.getDisplay().getSystemCursor(CURSOR_ARROW));
+                });
+            }
+
+            @Override
+            public void terminated(Runnable thread, Exception e) {
+                shell.getDisplay().asyncExec(() -> {
+                    progress.close();
+                    Warnings.createFatal(TSEMessages.get("copy.report.error", PropertiesReader.getSupportEmail()), currentReport)
+                            .open(shell);
+                    mainPanel.refresh();
+                });
+            }
+        });
+
+        copy.start();
     }
 
     @Override
@@ -66,6 +66,7 @@ public class RefreshStatusThread extends Thread {
             this.daoService.update(rep);
          });
          if (aggrReport.getRCLStatus().isFinalized()) {
+            this.reportService.discardVersion(aggrReport);
             this.daoService.delete(aggrReport);
          }
 
@@ -0,0 +1,64 @@
+package tse_report;
+
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import providers.ReportCopyListener;
+import report.ThreadFinishedListener;
+
+/**
+ * Thread which copies the records of a report (copy or amendment), in order
+ * to keep the ui responsive while the database is written. The progress is
+ * notified from this thread.
+ *
+ */
+public class ReportCopyThread extends Thread {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReportCopyThread.class);
+
+	private final Function<ReportCopyListener, TseReport> copy;
+	private final ReportCopyListener progress;
+	private ThreadFinishedListener listener;
+	private TseReport result;
+
+	/**
+	 * @param copy     the copy to perform, which receives the progress listener
+	 *                 and returns the copied report
+	 * @param progress listener of the progress of the copy
+	 */
+	public ReportCopyThread(Function<ReportCopyListener, TseReport> copy, ReportCopyListener progress) {
+		this.copy = copy;
+		this.progress = progress;
+	}
+
+	public void setListener(ThreadFinishedListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void run() {
+		try {
+			result = copy.apply(progress);
+		} catch (Exception e) {
+			LOGGER.error("Cannot copy the report", e);
+			e.printStackTrace();
+			if (listener != null)
+				listener.terminated(this, e);
+			return;
+		}
+
+		if (listener != null)
+			listener.finished(this);
+	}
+
+	/**
+	 * Get the report returned by the copy
+	 *
+	 * @return
+	 */
+	public TseReport getResult() {
+		return result;
+	}
+}
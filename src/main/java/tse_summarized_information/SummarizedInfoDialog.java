@@ -1,6 +1,7 @@
 package tse_summarized_information;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 
 import org.apache.logging.log4j.LogManager;
@@ -34,11 +35,9 @@ import providers.TseReportService;
 import report.DisplayAckResult;
 import report.DisplayAckThread;
 import report.RefreshStatusThread;
-import report.Report;
 import report.ReportActions;
 import report.ReportActions.ReportAction;
 import report.ThreadFinishedListener;
-import report_validator.ReportError;
 import session_manager.TSERestoreableWindowDao;
 import soap.DetailedSOAPException;
 import table_dialog.DialogBuilder;
@@ -59,8 +58,11 @@ import tse_config.CustomStrings;
 import tse_config.DebugConfig;
 import tse_main.TseFileDialog;
 import tse_report.TseReport;
+import tse_validator.ReportErrorSink;
+import tse_validator.RowValidationStore;
 import tse_validator.SummarizedInfoValidator;
 import tse_validator.TseReportValidator;
+import tse_validator.ValidationRuleRegistry;
 import window_restorer.RestoreableWindow;
 import xlsx_reader.TableSchema;
 import xlsx_reader.TableSchemaList;
@@ -115,6 +117,7 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 			@Override
 			public void editEnded(TableRow row, TableColumn field, boolean changed) {
 				if (changed) {
+					RowValidationStore.markDirty(row);
 					switch (field.getId()) {
 					/*
 					 * Not used case CustomStrings.TARGET_GROUP_COL:
@@ -196,6 +199,8 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 	@Override
 	public void setParentFilter(TableRow parentFilter) {
 		this.report = new TseReport(parentFilter);
+		// the report could be changed while it was closed
+		RowValidationStore.markReloadNeeded(report.getDatabaseId());
 		updateUI();
 		super.setParentFilter(parentFilter);
 	}
@@ -258,6 +263,7 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 
 	@Override
 	public void processNewRow(TableRow row) {
+		RowValidationStore.markAddedOrRemoved(row);
 	}
 
 	@Override
@@ -265,6 +271,49 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 		return new SummarizedInfoValidator(daoService);
 	}
 
+	/**
+	 * Show the result of a report validation, the errors which did not fit in
+	 * memory were already shown while the report was validated
+	 * 
+	 * @param validator
+	 * @param errors
+	 * @param failed    true if the validation did not complete
+	 */
+	private void showValidationResult(TseReportValidator validator, ReportErrorSink errors, boolean failed) {
+
+		if (failed) {
+			warnUser(TSEMessages.get("error.title"), TSEMessages.get("check.report.error", PropertiesReader.getSupportEmail()));
+		} else if (errors.getCount() == 0) { // if no errors update report status
+			report.setStatus(RCLDatasetStatus.LOCALLY_VALIDATED);
+			report.update();
+			updateUI();
+			warnUser(TSEMessages.get("success.title"), TSEMessages.get("check.success"), SWT.ICON_INFORMATION);
+		} else if (!errors.isTruncated()) { // otherwise show them to the user
+			if (showErrors(validator, errors))
+				warnUser(TSEMessages.get("error.title"), TSEMessages.get("check.report.failed"));
+		} else {
+			warnUser(TSEMessages.get("error.title"), TSEMessages.get("check.report.failed.paged",
+					String.valueOf(errors.getCount())));
+		}
+	}
+
+	/**
+	 * Show the errors kept in memory in the browser
+	 * 
+	 * @return false if they cannot be shown
+	 */
+	private boolean showErrors(TseReportValidator validator, ReportErrorSink errors) {
+		try {
+			validator.show(errors.getErrors());
+			return true;
+		} catch (Exception e) {
+			LOGGER.error("Cannot show the errors of the report=" + report.getSenderId(), e);
+			e.printStackTrace();
+			warnUser(TSEMessages.get("error.title"), TSEMessages.get("check.report.error", PropertiesReader.getSupportEmail()));
+			return false;
+		}
+	}
+
 	@Override
 	public void addWidgets(DialogBuilder viewer) {
 		SelectionListener refreshStateListener = new SelectionAdapter() {
@@ -325,6 +374,7 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 					return;
 
 				// yes, overwrite
+				reportService.releaseVersion(report);
 				report.makeEditable();
 				report.update();
 
@@ -341,31 +391,60 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 					return;
 				}
 
-				// validate and show the errors in the browser
+				// validate and show the errors in the browser, only the rows
+				// edited since the last check are checked again
 				TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+				validator.setIncremental(true);
+
+				ReportErrorSink errors;
 				try {
-					getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
-
-					// validate the report
-					Collection<ReportError> errors = validator.validate();
-					getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
-
-					// if no errors update report status
-					if (errors.isEmpty()) {
-						report.setStatus(RCLDatasetStatus.LOCALLY_VALIDATED);
-						report.update();
-						updateUI();
-						warnUser(TSEMessages.get("success.title"), TSEMessages.get("check.success"), SWT.ICON_INFORMATION);
-					} else { // otherwise show them to the user
-						validator.show(errors);
-						warnUser(TSEMessages.get("error.title"), TSEMessages.get("check.report.failed"));
-					}
-				} catch (Exception e) {
-					getDialog().setCursor(getDialog().getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
+					errors = ReportErrorSink.createTemp();
+				} catch (IOException e) {
 					LOGGER.error("Cannot validate the report=" + report.getSenderId(), e);
 					e.printStackTrace();
 					warnUser(TSEMessages.get("error.title"), TSEMessages.get("check.report.error", PropertiesReader.getSupportEmail()));
+					return;
 				}
+
+				Display display = getDialog().getDisplay();
+
+				// too many errors, show the first ones and the pages written so far
+				// while the validation goes on
+				errors.setTruncationListener(sink -> display.asyncExec(() -> {
+					if (showErrors(validator, sink))
+						new HtmlViewer().open(sink.getIndexFile());
+				}));
+
+				IndeterminateProgressDialog progressBar = new IndeterminateProgressDialog(getDialog(),
+						SWT.APPLICATION_MODAL, TSEMessages.get("check.report.progress.bar.label"));
+				progressBar.open();
+
+				// validate the report, errors are written to file while found
+				new Thread(() -> {
+					Exception failure = null;
+					try {
+						validator.validate(errors);
+					} catch (Exception e) {
+						LOGGER.error("Cannot validate the report=" + report.getSenderId(), e);
+						e.printStackTrace();
+						failure = e;
+					} finally {
+						try {
+							errors.close();
+						} catch (IOException e) {
+							LOGGER.error("Cannot write the errors of the report=" + report.getSenderId(), e);
+							e.printStackTrace();
+							if (failure == null)
+								failure = e;
+						}
+					}
+
+					boolean failed = failure != null;
+					display.asyncExec(() -> {
+						progressBar.close();
+						showValidationResult(validator, errors, failed);
+					});
+				}).start();
 			}
 		};
 
@@ -525,14 +604,15 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 				}
 
 				TseReportActions actions = new TseReportActions(getDialog(), report, reportService);
-				Report newVersion = actions.amend();
-				if (newVersion == null){
-					LOGGER.info("There is no new version to continue");
-					return;
-				}
+				actions.amend(newVersion -> {
+					if (newVersion == null){
+						LOGGER.info("There is no new version to continue");
+						return;
+					}
 
-				// open the new version in the tool
-				setParentFilter(newVersion);
+					// open the new version in the tool
+					setParentFilter(newVersion);
+				});
 			}
 		};
 
@@ -624,6 +704,15 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 			}
 		};
 
+		SelectionListener ruleMetricsListener = new SelectionAdapter() {
+
+			@Override
+			public void widgetSelected(SelectionEvent arg0) {
+				String metrics = ValidationRuleRegistry.getDefault().formatMetrics();
+				warnUser(TSEMessages.get("si.debug.rule.metrics"), metrics, SWT.ICON_INFORMATION);
+			}
+		};
+
 		viewer
 			.addHelp(TSEMessages.get("si.help.title"))
 			.addComposite("labelsComp", new GridLayout(1, false), new GridData(SWT.FILL, SWT.FILL, true, false))
@@ -637,13 +726,15 @@ public class SummarizedInfoDialog extends TableDialogWithMenu {
 
 		// if debug add change status button
 		if (DebugConfig.debug) {
-			viewer.addGroup("debugPanel", TSEMessages.get("si.debug.panel"), new GridLayout(3, false), null)
+			viewer.addGroup("debugPanel", TSEMessages.get("si.debug.panel"), new GridLayout(4, false), null)
 					.addButtonToComposite("changeStatusBtn", "debugPanel", TSEMessages.get("si.debug.change.status"),
 							changeStatusListener)
 					.addButtonToComposite("changeMessageIdBtn", "debugPanel", TSEMessages.get("si.debug.change.mexid"),
 							changeMessageIdListener)
 					.addButtonToComposite("changeDatasetIdBtn", "debugPanel", TSEMessages.get("si.debug.change.dataid"),
-							changeDatasetIdListener);
+							changeDatasetIdListener)
+					.addButtonToComposite("ruleMetricsBtn", "debugPanel", TSEMessages.get("si.debug.rule.metrics"),
+							ruleMetricsListener);
 		}
 
 		/*
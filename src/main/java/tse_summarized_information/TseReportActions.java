@@ -1,6 +1,7 @@
 package tse_summarized_information;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -21,8 +22,11 @@ import report.NotOverwritableDcfDatasetException;
 import report.ReportActions;
 import report.ReportException;
 import report.ReportSendOperation;
+import report.ThreadFinishedListener;
 import soap.DetailedSOAPException;
+import tse_components.CopyProgressDialog;
 import tse_config.TSEWarnings;
+import tse_report.ReportCopyThread;
 import tse_report.TseReport;
 
 public class TseReportActions extends ReportActions {
@@ -40,23 +44,47 @@ public class TseReportActions extends ReportActions {
 	}
 	
 	/**
-	 * Amend a report
+	 * Amend a report. The new version is created in a separate thread, the
+	 * callback is called in the ui thread once it is created
+	 * 
+	 * @param callback receives the new version of the report
 	 */
-	public TseReport amend() {
+	public void amend(Consumer<TseReport> callback) {
 		
 		boolean confirm = askConfirmation(ReportAction.AMEND) && this.askBulkAmendmentConfirmation();
 		
 		if (!confirm)
-			return null;
+			return;
 		
 		shell.setCursor(shell.getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
+		CopyProgressDialog progress = new CopyProgressDialog(shell, TSEMessages.get("amend.progress"));
+		progress.open();
+
 		// create a new version of the report in the db
 		// it affects directly the current object
-		TseReport amendedReport = reportService.amend(report);
-		shell.setCursor(shell.getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
-		
-		// we can returned the modified object
-		return amendedReport;
+		ReportCopyThread amend = new ReportCopyThread(listener -> reportService.amend(report, listener), progress);
+		amend.setListener(new ThreadFinishedListener() {
+			@Override
+			public void finished(Runnable thread) {
+				shell.getDisplay().asyncExec(() -> {
+					progress.close();
+					shell.setCursor(shell.getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
+					callback.accept(amend.getResult());
+				});
+			}
+
+			@Override
+			public void terminated(Runnable thread, Exception e) {
+				shell.getDisplay().asyncExec(() -> {
+					progress.close();
+					shell.setCursor(shell.getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
+					Warnings.createFatal(TSEMessages.get("amend.error", PropertiesReader.getSupportEmail()), report)
+							.open(shell);
+				});
+			}
+		});
+
+		amend.start();
 	}
 
 	@Override
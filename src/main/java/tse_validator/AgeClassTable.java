@@ -0,0 +1,266 @@
+package tse_validator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import tse_config.CatalogLists;
+import tse_validator.AgeClassValidator.Check;
+
+/**
+ * Compiled version of the age classes picklist. Each age class code is mapped
+ * to an interval of months (bounds included), so that checking the age of an
+ * animal does not require to access the picklist again.
+ *
+ * The bounds are computed as in {@link AgeClassValidator}: {@code gte} is
+ * applied first, then {@code lt} and finally {@code min}/{@code max} (only if
+ * both are defined). An age class without bounds is never respected.
+ *
+ */
+public class AgeClassTable {
+
+	private static final Logger LOGGER = LogManager.getLogger(AgeClassTable.class);
+
+	public static final String AGE_CLASS_FILE = "picklists" + System.getProperty("file.separator")
+			+ CatalogLists.AGE_CLASS_LIST + ".xml";
+
+	private static final String SELECTION_NODE = "selection";
+	private static final String CODE_ATTR = "code";
+	private static final String GTE = "gte";
+	private static final String LT = "lt";
+	private static final String MIN = "min";
+	private static final String MAX = "max";
+
+	private static AgeClassTable instance;
+
+	private final Map<String, Integer> indexes;
+
+	// bounds of each age class, included
+	private final int[] lower;
+	private final int[] upper;
+
+	private AgeClassTable(Map<String, Integer> indexes, int[] lower, int[] upper) {
+		this.indexes = indexes;
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	/**
+	 * Get the table of the age classes picklist, compiled at the first call
+	 *
+	 * @return
+	 * @throws IOException if the picklist cannot be read
+	 */
+	public static synchronized AgeClassTable getInstance() throws IOException {
+		if (instance == null)
+			instance = load(new File(AGE_CLASS_FILE));
+		return instance;
+	}
+
+	/**
+	 * Compile an age classes picklist
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static AgeClassTable load(File file) throws IOException {
+		try (InputStream input = new FileInputStream(file)) {
+			AgeClassTable table = parse(input);
+			LOGGER.info("Compiled " + table.size() + " age classes from " + file);
+			return table;
+		}
+	}
+
+	/**
+	 * Compile an age classes picklist
+	 *
+	 * @param input
+	 * @return
+	 * @throws IOException
+	 */
+	public static AgeClassTable parse(InputStream input) throws IOException {
+
+		Document doc;
+		try {
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			doc = builder.parse(input);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Cannot parse the " + CatalogLists.AGE_CLASS_LIST + " picklist", e);
+		}
+
+		NodeList selections = doc.getElementsByTagName(SELECTION_NODE);
+
+		Map<String, Integer> indexes = new HashMap<>();
+		int[] lower = new int[selections.getLength()];
+		int[] upper = new int[selections.getLength()];
+
+		for (int i = 0; i < selections.getLength(); i++) {
+
+			Element selection = (Element) selections.item(i);
+			String code = selection.getAttribute(CODE_ATTR);
+
+			// the first definition of a code is used, as in the picklist lookup
+			if (code.isEmpty() || indexes.containsKey(code))
+				continue;
+
+			int index = indexes.size();
+			indexes.put(code, index);
+
+			// not respected by default
+			lower[index] = 1;
+			upper[index] = 0;
+
+			Integer gte = getNumData(selection, GTE);
+			if (gte != null) {
+				lower[index] = gte;
+				upper[index] = Integer.MAX_VALUE;
+			}
+
+			Integer lt = getNumData(selection, LT);
+			if (lt != null) {
+				lower[index] = Integer.MIN_VALUE;
+				upper[index] = lt - 1;
+			}
+
+			Integer min = getNumData(selection, MIN);
+			Integer max = getNumData(selection, MAX);
+			if (min != null && max != null) {
+				lower[index] = min;
+				upper[index] = max;
+			}
+		}
+
+		return new AgeClassTable(indexes, lower, upper);
+	}
+
+	private static Integer getNumData(Element selection, String tag) {
+
+		NodeList children = selection.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			Node child = children.item(i);
+			if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(tag)) {
+				try {
+					return Integer.valueOf(child.getTextContent().trim());
+				} catch (NumberFormatException e) {
+					LOGGER.error("Wrong value for " + tag + " in the age class " + selection.getAttribute(CODE_ATTR), e);
+					return null;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Number of months between the report date and the birth date
+	 *
+	 * @param reportYear
+	 * @param reportMonth
+	 * @param birthYear
+	 * @param birthMonth
+	 * @return
+	 */
+	public static int getMonthsDifference(int reportYear, int reportMonth, int birthYear, int birthMonth) {
+		return (reportYear * 12 + reportMonth) - (birthYear * 12 + birthMonth);
+	}
+
+	/**
+	 * Get the index of an age class, to be used in the checks
+	 *
+	 * @param ageClassCode
+	 * @return the index or -1 if the age class is not in the picklist
+	 */
+	public int indexOf(String ageClassCode) {
+		Integer index = indexes.get(ageClassCode);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Check the age of an animal against its age class
+	 *
+	 * @param ageClassIndex index of the age class (see {@link #indexOf(String)})
+	 * @param months        difference in months between report and birth date
+	 * @return
+	 */
+	public Check check(int ageClassIndex, int months) {
+
+		if (months < 0)
+			return Check.REPORT_DATE_EXCEEDED;
+
+		if (months >= lower[ageClassIndex] && months <= upper[ageClassIndex])
+			return Check.OK;
+
+		return Check.AGE_CLASS_NOT_RESPECTED;
+	}
+
+	/**
+	 * Check several ages against the same age class
+	 *
+	 * @param ageClassIndex index of the age class (see {@link #indexOf(String)})
+	 * @param months        differences in months between report and birth dates
+	 * @param results       filled with the result of each difference, must have
+	 *                      at least the same length of {@code months}
+	 */
+	public void check(int ageClassIndex, int[] months, Check[] results) {
+
+		int min = lower[ageClassIndex];
+		int max = upper[ageClassIndex];
+
+		for (int i = 0; i < months.length; i++) {
+			int value = months[i];
+			if (value < 0)
+				results[i] = Check.REPORT_DATE_EXCEEDED;
+			else if (value >= min && value <= max)
+				results[i] = Check.OK;
+			else
+				results[i] = Check.AGE_CLASS_NOT_RESPECTED;
+		}
+	}
+
+	/**
+	 * Count how many ages do not respect the age class (report date exceeded
+	 * included)
+	 *
+	 * @param ageClassIndex
+	 * @param months
+	 * @return
+	 */
+	public int countErrors(int ageClassIndex, int[] months) {
+
+		int min = lower[ageClassIndex];
+		int max = upper[ageClassIndex];
+
+		int errors = 0;
+		for (int value : months) {
+			if (value < 0 || value < min || value > max)
+				errors++;
+		}
+
+		return errors;
+	}
+
+	/**
+	 * Number of age classes
+	 *
+	 * @return
+	 */
+	public int size() {
+		return indexes.size();
+	}
+}
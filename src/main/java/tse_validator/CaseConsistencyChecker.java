@@ -0,0 +1,183 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import providers.TseReportService;
+import providers.TseReportService.RowType;
+import report_validator.ReportError;
+import table_skeleton.TableRow;
+
+/**
+ * Check that cases with the same identifier (e.g. national case id or animal
+ * id) have the same values in their dependent fields. Several identifiers can
+ * be checked with a single traversal of the records.
+ *
+ * The codes of the involved fields are read once for each case and compared by
+ * column index. Labels and stack traces are computed only for the cases which
+ * produce an error.
+ *
+ */
+public class CaseConsistencyChecker {
+
+	private final Function<TableRow, String> stackTraceProvider;
+	private final List<Rule> rules = new ArrayList<>();
+
+	// all the columns read by the rules, the index is used to access the codes
+	private final Map<String, Integer> columns = new LinkedHashMap<>();
+
+	private static class Rule {
+
+		private final String idField;
+		private final String idFieldLabel;
+		private final String[] fieldsToCheck;
+		private final int[] fieldIndexes;
+
+		private Rule(String idField, String idFieldLabel, String[] fieldsToCheck, int[] fieldIndexes) {
+			this.idField = idField;
+			this.idFieldLabel = idFieldLabel;
+			this.fieldsToCheck = fieldsToCheck;
+			this.fieldIndexes = fieldIndexes;
+		}
+	}
+
+	/**
+	 * @param stackTraceProvider gives the stack trace of a row, used in the
+	 *                           error messages
+	 */
+	public CaseConsistencyChecker(Function<TableRow, String> stackTraceProvider) {
+		this.stackTraceProvider = stackTraceProvider;
+	}
+
+	/**
+	 * Add a rule: cases with the same value in {@code idField} must have the
+	 * same values in the {@code fieldsToCheck}
+	 *
+	 * @param idField
+	 * @param idFieldLabel label of the id used in the errors
+	 * @param fieldsToCheck
+	 * @return
+	 */
+	public CaseConsistencyChecker addRule(String idField, String idFieldLabel, String... fieldsToCheck) {
+
+		int[] indexes = new int[fieldsToCheck.length];
+		for (int i = 0; i < fieldsToCheck.length; i++) {
+			indexes[i] = columns.computeIfAbsent(fieldsToCheck[i], k -> columns.size());
+		}
+
+		rules.add(new Rule(idField, idFieldLabel, fieldsToCheck, indexes));
+
+		return this;
+	}
+
+	/**
+	 * Check all the rules on the cases of the records
+	 *
+	 * @param reportRecords
+	 * @return the errors of each rule, in the order in which the rules were
+	 *         added
+	 */
+	public List<Collection<ReportError>> check(Collection<TableRow> reportRecords) {
+
+		String[] columnIds = columns.keySet().toArray(new String[columns.size()]);
+
+		List<TableRow> cases = new ArrayList<>();
+		List<String[]> casesCodes = new ArrayList<>();
+
+		for (TableRow row : reportRecords) {
+			if (TseReportService.getRowType(row) != RowType.CASE)
+				continue;
+
+			cases.add(row);
+			casesCodes.add(getCodes(row, columnIds));
+		}
+
+		// stack traces are computed when needed and shared by the rules
+		String[] stackTraces = new String[cases.size()];
+
+		List<Collection<ReportError>> errors = new ArrayList<>();
+		for (Rule rule : rules) {
+			Collection<ReportError> ruleErrors = new ArrayList<>();
+			check(rule, cases, casesCodes, stackTraces, (row, error) -> ruleErrors.add(error));
+			errors.add(ruleErrors);
+		}
+
+		return errors;
+	}
+
+	/**
+	 * Check the first rule on cases which have all the same id, in the order of
+	 * the records
+	 *
+	 * @param cases
+	 * @param errors receives each error with the case which raised it
+	 */
+	void checkGroup(List<TableRow> cases, BiConsumer<TableRow, ReportError> errors) {
+
+		String[] columnIds = columns.keySet().toArray(new String[columns.size()]);
+
+		List<String[]> casesCodes = new ArrayList<>(cases.size());
+		for (TableRow row : cases) {
+			casesCodes.add(getCodes(row, columnIds));
+		}
+
+		check(rules.get(0), cases, casesCodes, new String[cases.size()], errors);
+	}
+
+	private static String[] getCodes(TableRow row, String[] columnIds) {
+		String[] codes = new String[columnIds.length];
+		for (int i = 0; i < columnIds.length; i++) {
+			codes[i] = row.getCode(columnIds[i]);
+		}
+		return codes;
+	}
+
+	private void check(Rule rule, List<TableRow> cases, List<String[]> casesCodes, String[] stackTraces,
+			BiConsumer<TableRow, ReportError> errors) {
+
+		// id > index of the last case with the id
+		HashMap<String, Integer> lastById = new HashMap<>();
+
+		for (int i = 0; i < cases.size(); i++) {
+
+			TableRow row = cases.get(i);
+
+			String id = row.getLabel(rule.idField);
+			if (id.isEmpty())
+				continue;
+
+			Integer previous = lastById.put(id, i);
+			if (previous == null)
+				continue;
+
+			String[] currentCodes = casesCodes.get(previous);
+			String[] codes = casesCodes.get(i);
+
+			for (int f = 0; f < rule.fieldIndexes.length; f++) {
+
+				int index = rule.fieldIndexes[f];
+				if (codes[index].equals(currentCodes[index]))
+					continue;
+
+				TableRow current = cases.get(previous);
+				String field = rule.fieldsToCheck[f];
+
+				errors.accept(row, new InconsistentCasesError(getStackTrace(stackTraces, cases, previous),
+						getStackTrace(stackTraces, cases, i), rule.idFieldLabel, id, field,
+						current.getLabel(field), row.getLabel(field)));
+			}
+		}
+	}
+
+	private String getStackTrace(String[] stackTraces, List<TableRow> cases, int index) {
+		if (stackTraces[index] == null)
+			stackTraces[index] = stackTraceProvider.apply(cases.get(index));
+		return stackTraces[index];
+	}
+}
@@ -29,57 +29,55 @@ public class CaseReportValidator extends SimpleRowValidatorLabelProvider {
 	}
 
 	private ITableDaoService daoService;
+	private ReportGraph graph;
 
 	public CaseReportValidator(ITableDaoService daoService) {
 		this.daoService = daoService;
 	}
 
+	/**
+	 * Validator which resolves the parents and the children of the cases from
+	 * the report graph instead of the database
+	 * 
+	 * @param daoService
+	 * @param graph
+	 */
+	public CaseReportValidator(ITableDaoService daoService, ReportGraph graph) {
+		this.daoService = daoService;
+		this.graph = graph;
+	}
+
 	public Collection<Check> isRecordCorrect(TableRow row) {
 
 		Collection<Check> checks = new ArrayList<>();
 
-		String caseId = row.getCode(CustomStrings.NATIONAL_CASE_ID_COL);
-		String sampEventAsses = row.getCode(CustomStrings.SAMP_EVENT_ASSES_COL);
-		// String statusHerd = row.getCode(CustomStrings.STATUS_HERD_COL);
-
 		// Initialise the sum info before in order to get from it the statusHerd
 		// which is not present in the samples anymore
-		TableRow summInfo = daoService.getById(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET),
-				row.getNumCode(Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET)));
+		TableRow summInfo = getSummInfo(row);
 
 		// case id cannot be specified
-		if (!caseId.isEmpty() && sampEventAsses.equals(CustomStrings.DEFAULT_ASSESS_NEG_CASE_CODE)) {
+		if (isCaseIdForNegative(row)) {
 			checks.add(Check.CASE_ID_FOR_NEGATIVE);
 		}
 
-		String indexCase = row.getCode(CustomStrings.INDEX_CASE_COL);
-
 		// index case on negative sample
-		if (!indexCase.isEmpty() && sampEventAsses.equals(CustomStrings.DEFAULT_ASSESS_NEG_CASE_CODE)) {
+		if (isIndexCaseForNegative(row)) {
 			checks.add(Check.INDEX_CASE_FOR_NEGATIVE);
 		}
 
-		// status herd doenst exists anymore in samples, instead is taken from summinfo
 		// TSE48
-		if (indexCase.equals(CustomStrings.INDEX_CASE_YES)
-				&& (summInfo.getCode(CustomStrings.STATUS_HERD_COL).equals(CustomStrings.STATUS_HERD_INFECTED_CODE))) {
+		if (isIndexCaseForInfected(row, summInfo)) {
 			checks.add(Check.INDEX_CASE_FOR_INFECTED);
 		}
 
 		// TSE49
-		if (indexCase.equals(CustomStrings.INDEX_CASE_NO) && (summInfo.getCode(CustomStrings.STATUS_HERD_COL)
-				.equals(CustomStrings.STATUS_HERD_NOT_INFECTED_CODE))) {
+		if (isNotIndexCaseForFree(row, summInfo)) {
 			checks.add(Check.NOT_INDEX_CASE_FOR_FREE);
 		}
 
-		TableSchema childSchema = TableSchemaList.getByName(CustomStrings.RESULT_SHEET);
-
-		Collection<TableRow> results = daoService.getByParentId(childSchema, row.getSchema().getSheetName(),
-				row.getDatabaseId(), false);
-
 		// if in summinfo screening was set, but no screening
 		// was found in the cases
-		if (results.isEmpty()) {
+		if (isTestMissing(row)) {
 			checks.add(Check.NO_TEST_SPECIFIED);
 		}
 
@@ -112,16 +110,113 @@ public class CaseReportValidator extends SimpleRowValidatorLabelProvider {
 		 */
 
 		// if eradication measure for status herd F in scrapie
-		// if (type.equals(CustomStrings.SUMMARIZED_INFO_SCRAPIE_TYPE)) {
-
-		if (summInfo.getCode(CustomStrings.STATUS_HERD_COL).equals(CustomStrings.STATUS_HERD_NOT_INFECTED_CODE)
-				&& summInfo.getCode(CustomStrings.TARGET_GROUP_COL).equals(CustomStrings.EM_TARGET_GROUP)) {
+		if (isEradicationForNotInfected(summInfo)) {
 			checks.add(Check.EM_FOR_NOT_INFECTED);
 		}
 
 		return checks;
 	}
 
+	/**
+	 * Case id specified for a negative sample
+	 * 
+	 * @param row
+	 * @return
+	 */
+	public boolean isCaseIdForNegative(TableRow row) {
+		String caseId = row.getCode(CustomStrings.NATIONAL_CASE_ID_COL);
+		String sampEventAsses = row.getCode(CustomStrings.SAMP_EVENT_ASSES_COL);
+		return !caseId.isEmpty() && sampEventAsses.equals(CustomStrings.DEFAULT_ASSESS_NEG_CASE_CODE);
+	}
+
+	/**
+	 * Index case specified for a negative sample
+	 * 
+	 * @param row
+	 * @return
+	 */
+	public boolean isIndexCaseForNegative(TableRow row) {
+		String indexCase = row.getCode(CustomStrings.INDEX_CASE_COL);
+		String sampEventAsses = row.getCode(CustomStrings.SAMP_EVENT_ASSES_COL);
+		return !indexCase.isEmpty() && sampEventAsses.equals(CustomStrings.DEFAULT_ASSESS_NEG_CASE_CODE);
+	}
+
+	/**
+	 * TSE48: index case for an infected herd (status herd is taken from the
+	 * summarized information, since it is not present in the samples anymore)
+	 * 
+	 * @param row
+	 * @param summInfo
+	 * @return
+	 */
+	public boolean isIndexCaseForInfected(TableRow row, TableRow summInfo) {
+		return row.getCode(CustomStrings.INDEX_CASE_COL).equals(CustomStrings.INDEX_CASE_YES)
+				&& summInfo.getCode(CustomStrings.STATUS_HERD_COL).equals(CustomStrings.STATUS_HERD_INFECTED_CODE);
+	}
+
+	/**
+	 * TSE49: not index case for a not infected herd
+	 * 
+	 * @param row
+	 * @param summInfo
+	 * @return
+	 */
+	public boolean isNotIndexCaseForFree(TableRow row, TableRow summInfo) {
+		return row.getCode(CustomStrings.INDEX_CASE_COL).equals(CustomStrings.INDEX_CASE_NO)
+				&& summInfo.getCode(CustomStrings.STATUS_HERD_COL).equals(CustomStrings.STATUS_HERD_NOT_INFECTED_CODE);
+	}
+
+	/**
+	 * The case has no analytical result
+	 * 
+	 * @param row
+	 * @return
+	 */
+	public boolean isTestMissing(TableRow row) {
+		return getResults(row).isEmpty();
+	}
+
+	/**
+	 * Eradication measure target group for a not infected herd
+	 * 
+	 * @param summInfo
+	 * @return
+	 */
+	public boolean isEradicationForNotInfected(TableRow summInfo) {
+		return summInfo.getCode(CustomStrings.STATUS_HERD_COL).equals(CustomStrings.STATUS_HERD_NOT_INFECTED_CODE)
+				&& summInfo.getCode(CustomStrings.TARGET_GROUP_COL).equals(CustomStrings.EM_TARGET_GROUP);
+	}
+
+	/**
+	 * Get the summarized information of the case
+	 * 
+	 * @param row
+	 * @return
+	 */
+	public TableRow getSummInfo(TableRow row) {
+
+		TableSchema schema = TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET);
+		int summId = row.getNumCode(Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET));
+
+		if (graph != null) {
+			TableRow summInfo = graph.getById(schema, summId);
+			if (summInfo != null)
+				return summInfo;
+		}
+
+		return daoService.getById(schema, summId);
+	}
+
+	private Collection<TableRow> getResults(TableRow row) {
+
+		TableSchema childSchema = TableSchemaList.getByName(CustomStrings.RESULT_SHEET);
+
+		if (graph != null)
+			return graph.getChildren(childSchema, row);
+
+		return daoService.getByParentId(childSchema, row.getSchema().getSheetName(), row.getDatabaseId(), false);
+	}
+
 	public static boolean isAnalysisYearConstant(Collection<TableRow> results) {
 
 		HashSet<String> set = new HashSet<>();
@@ -0,0 +1,181 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import report_validator.ReportError;
+import table_skeleton.TableRow;
+
+/**
+ * Errors of a check across different rows which can be computed separately
+ * for each group of rows (e.g. the cases with the same sample id), kept
+ * between the validations of a report.
+ *
+ * The rows of the records are grouped by key at each validation, but only the
+ * groups whose rows changed (added, removed or with a different signature) are
+ * checked again. The errors are returned in the same order of the check on all
+ * the records, that is by position of the row which raised them.
+ *
+ */
+class CrossRowIndex {
+
+	/**
+	 * Error raised by a row of a group
+	 */
+	static class RowError {
+
+		private final TableRow row;
+		private final ReportError error;
+
+		RowError(TableRow row, ReportError error) {
+			this.row = row;
+			this.error = error;
+		}
+	}
+
+	private static class Group {
+
+		// rows of the group (all of the same schema) and their signatures
+		private final int[] ids;
+		private final long[] signatures;
+
+		// index of the row in the group > error, in order
+		private final int[] errorRows;
+		private final ReportError[] errors;
+
+		private Group(int[] ids, long[] signatures, int[] errorRows, ReportError[] errors) {
+			this.ids = ids;
+			this.signatures = signatures;
+			this.errorRows = errorRows;
+			this.errors = errors;
+		}
+	}
+
+	private static class PositionedError {
+
+		private final int position;
+		private final int order;
+		private final ReportError error;
+
+		private PositionedError(int position, int order, ReportError error) {
+			this.position = position;
+			this.order = order;
+			this.error = error;
+		}
+	}
+
+	// group key > group checked in the last validation
+	private Map<String, Group> groups = new HashMap<>();
+
+	/**
+	 * Check the records, checking again only the groups which changed
+	 *
+	 * @param records    all the records of the report
+	 * @param signatures signature of each record
+	 * @param groupKey   key of the group of a row, null if the row is not
+	 *                   checked
+	 * @param groupCheck check of the rows of a group (in the order of the
+	 *                   records)
+	 * @param store      store of the report, which limits the errors kept in
+	 *                   memory
+	 * @return the errors
+	 */
+	synchronized Collection<ReportError> check(List<TableRow> records, long[] signatures,
+			Function<TableRow, String> groupKey, Function<List<TableRow>, List<RowError>> groupCheck,
+			RowValidationStore store) {
+
+		// key > positions of the rows of the group
+		Map<String, List<Integer>> current = new LinkedHashMap<>();
+		for (int i = 0; i < records.size(); i++) {
+			String key = groupKey.apply(records.get(i));
+			if (key != null)
+				current.computeIfAbsent(key, k -> new ArrayList<>(1)).add(i);
+		}
+
+		Map<String, Group> updated = new HashMap<>();
+		List<PositionedError> errors = new ArrayList<>();
+
+		for (Map.Entry<String, List<Integer>> entry : current.entrySet()) {
+
+			List<Integer> positions = entry.getValue();
+
+			int[] ids = new int[positions.size()];
+			long[] groupSignatures = new long[positions.size()];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = records.get(positions.get(i)).getDatabaseId();
+				groupSignatures[i] = signatures[positions.get(i)];
+			}
+
+			Group group = groups.get(entry.getKey());
+
+			if (group == null || !Arrays.equals(group.ids, ids)
+					|| !Arrays.equals(group.signatures, groupSignatures)) {
+				group = check(records, positions, ids, groupSignatures, groupCheck);
+
+				// groups without errors are always kept, the others only if
+				// there is room in memory
+				if (store.reserveErrors(group.errors.length))
+					updated.put(entry.getKey(), group);
+			} else {
+				groups.remove(entry.getKey());
+				updated.put(entry.getKey(), group);
+			}
+
+			for (int i = 0; i < group.errors.length; i++) {
+				errors.add(new PositionedError(positions.get(group.errorRows[i]), i, group.errors[i]));
+			}
+		}
+
+		// release the errors of the groups which were removed or checked again
+		for (Group removed : groups.values()) {
+			store.releaseErrors(removed.errors.length);
+		}
+
+		groups = updated;
+
+		// a row is part of only one group, so the errors of a row are in the
+		// order of its group
+		errors.sort((e1, e2) -> e1.position != e2.position ? Integer.compare(e1.position, e2.position)
+				: Integer.compare(e1.order, e2.order));
+
+		Collection<ReportError> result = new ArrayList<>(errors.size());
+		for (PositionedError error : errors) {
+			result.add(error.error);
+		}
+
+		return result;
+	}
+
+	private static Group check(List<TableRow> records, List<Integer> positions, int[] ids, long[] signatures,
+			Function<List<TableRow>, List<RowError>> groupCheck) {
+
+		List<TableRow> rows = new ArrayList<>(positions.size());
+		for (int position : positions) {
+			rows.add(records.get(position));
+		}
+
+		List<RowError> rowErrors = groupCheck.apply(rows);
+
+		Map<TableRow, Integer> indexes = new IdentityHashMap<>();
+		for (int i = 0; i < rows.size(); i++) {
+			indexes.put(rows.get(i), i);
+		}
+
+		int[] errorRows = new int[rowErrors.size()];
+		ReportError[] errors = new ReportError[rowErrors.size()];
+		for (int i = 0; i < errors.length; i++) {
+			RowError rowError = rowErrors.get(i);
+			errorRows[i] = indexes.get(rowError.row);
+			errors[i] = rowError.error;
+		}
+
+		return new Group(ids, signatures, errorRows, errors);
+	}
+}
@@ -0,0 +1,111 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import xlsx_reader.TableSchema;
+
+/**
+ * Groups rows by the values of their natural key in a single pass. Each row
+ * is reduced to a fingerprint (the codes of the natural key columns) which is
+ * used as hash key, so that rows with the same natural key end in the same
+ * bucket without comparing each row with all the others.
+ *
+ * Inside a bucket, rows are still confirmed with {@link TableRow#sameAs} to
+ * keep the same semantic of the previous pairwise comparison.
+ *
+ */
+public class NaturalKeyGrouper {
+
+	private static final char SEPARATOR = '\u0001';
+
+	// natural key columns are fixed for a schema, compute them once
+	private static final Map<TableSchema, List<String>> NATURAL_KEYS = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the ids of the natural key columns of the schema
+	 *
+	 * @param schema
+	 * @return
+	 */
+	public static List<String> getNaturalKeyColumns(TableSchema schema) {
+		return NATURAL_KEYS.computeIfAbsent(schema, s -> {
+			List<String> ids = new ArrayList<>();
+			for (TableColumn col : s) {
+				if (col.isNaturalKey())
+					ids.add(col.getId());
+			}
+			return Collections.unmodifiableList(ids);
+		});
+	}
+
+	/**
+	 * Compute the fingerprint of the row, that is the concatenation of the codes
+	 * of the natural key columns
+	 *
+	 * @param row
+	 * @return
+	 */
+	public static String getFingerprint(TableRow row) {
+		StringBuilder sb = new StringBuilder(64);
+		for (String colId : getNaturalKeyColumns(row.getSchema())) {
+			TableCell cell = row.get(colId);
+			if (cell != null && cell.getCode() != null)
+				sb.append(cell.getCode());
+			sb.append(SEPARATOR);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Group the rows which share the same natural key. Only groups with at least
+	 * two rows are returned. Groups are sorted by the position of their first
+	 * row in the input, and the rows of a group keep the input order.
+	 *
+	 * @param rows
+	 * @return
+	 */
+	public static List<List<TableRow>> getDuplicatedGroups(Collection<TableRow> rows) {
+
+		// each bucket contains the groups of rows with the same fingerprint
+		Map<String, List<List<TableRow>>> buckets = new LinkedHashMap<>();
+		List<List<TableRow>> groups = new ArrayList<>();
+
+		for (TableRow row : rows) {
+
+			List<List<TableRow>> bucket = buckets.computeIfAbsent(getFingerprint(row), k -> new ArrayList<>(1));
+
+			List<TableRow> group = null;
+			for (List<TableRow> candidate : bucket) {
+				if (candidate.get(0).sameAs(row)) {
+					group = candidate;
+					break;
+				}
+			}
+
+			if (group == null) {
+				group = new ArrayList<>(2);
+				bucket.add(group);
+				groups.add(group);
+			}
+
+			group.add(row);
+		}
+
+		List<List<TableRow>> duplicates = new ArrayList<>();
+		for (List<TableRow> group : groups) {
+			if (group.size() > 1)
+				duplicates.add(group);
+		}
+
+		return duplicates;
+	}
+}
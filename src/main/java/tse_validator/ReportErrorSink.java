@@ -0,0 +1,442 @@
+package tse_validator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import report_validator.ReportError;
+import report_validator.ReportError.ErrorType;
+import tse_config.ValidationConfig;
+
+/**
+ * Receives the errors of a report validation and writes them incrementally to
+ * paged html files and to a csv file, so that the errors do not need to be
+ * kept in memory until the end of the validation.
+ *
+ * Only the first errors (up to the memory cap) are kept in memory, in order to
+ * show them immediately. The others can be browsed through the html pages,
+ * starting from {@link #getIndexFile()}, which also reports the number of
+ * errors for each type. As soon as the errors exceed the memory cap, a
+ * provisional index is written and the truncation listener is notified, so
+ * that the first errors can be shown while the validation goes on.
+ *
+ */
+public class ReportErrorSink implements Closeable {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReportErrorSink.class);
+
+	private static final String HTML_HEAD_FILE = "config" + System.getProperty("file.separator")
+			+ "ReportErrorsHtmlHead.txt";
+
+	private static final String INDEX_FILE = "index.html";
+	private static final String CSV_FILE = "errors.csv";
+	private static final String VALUES_SEPARATOR = "; ";
+
+	// html entity by code, as &#10148; or &#x27A4;
+	private static final Pattern NUMERIC_ENTITY = Pattern.compile("&#(?:(\\d{1,7})|[xX]([0-9a-fA-F]{1,6}));");
+
+	private final File folder;
+	private final int memoryCap;
+	private final int pageSize;
+	private final String htmlHead;
+
+	// delete the files when the application is closed
+	private final boolean temporary;
+
+	private final List<ReportError> errors = new ArrayList<>();
+
+	// error class > number of errors
+	private final Map<String, Integer> countsByError = new LinkedHashMap<>();
+	private final Map<ErrorType, Integer> countsByType = new EnumMap<>(ErrorType.class);
+	private int count;
+
+	private final Writer csv;
+	private Writer page;
+	private int pages;
+	private int pageCount;
+
+	private boolean closed;
+
+	// notified once, when the first error which does not fit in memory is added
+	private Consumer<ReportErrorSink> truncationListener;
+	private boolean truncationNotified;
+
+	/**
+	 * Create a sink which writes in a new temporary folder, with the memory cap
+	 * and page size of {@link ValidationConfig}
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public static ReportErrorSink createTemp() throws IOException {
+		File folder = Files.createTempDirectory("tse_errors").toFile();
+		folder.deleteOnExit();
+		return new ReportErrorSink(folder, ValidationConfig.errorsInMemory, ValidationConfig.errorsPageSize, true);
+	}
+
+	/**
+	 * @param folder    folder where the html pages and the csv are written
+	 * @param memoryCap maximum number of errors kept in memory
+	 * @param pageSize  number of errors in each html page
+	 * @throws IOException
+	 */
+	public ReportErrorSink(File folder, int memoryCap, int pageSize) throws IOException {
+		this(folder, memoryCap, pageSize, false);
+	}
+
+	private ReportErrorSink(File folder, int memoryCap, int pageSize, boolean temporary) throws IOException {
+
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("The page size must be positive, found " + pageSize);
+
+		this.folder = folder;
+		this.memoryCap = memoryCap;
+		this.pageSize = pageSize;
+		this.temporary = temporary;
+		this.htmlHead = readHtmlHead();
+
+		this.csv = newWriter(new File(folder, CSV_FILE));
+		writeCsvLine("Type", "Error", "Message", "Involved rows", "Erroneous values", "Suggestions");
+	}
+
+	/**
+	 * Set the listener notified (in the thread which adds the errors) when the
+	 * errors do not fit in memory anymore. At that time the errors in memory
+	 * are complete and the index file lists the pages written so far.
+	 *
+	 * @param truncationListener
+	 */
+	public synchronized void setTruncationListener(Consumer<ReportErrorSink> truncationListener) {
+		this.truncationListener = truncationListener;
+	}
+
+	private static String readHtmlHead() {
+		File file = new File(HTML_HEAD_FILE);
+		if (!file.exists()) {
+			LOGGER.warn("Cannot find " + HTML_HEAD_FILE + ", the errors pages will not be styled");
+			return "<head><meta charset=\"utf-8\"></head>";
+		}
+
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			LOGGER.error("Cannot read " + HTML_HEAD_FILE, e);
+			e.printStackTrace();
+			return "<head><meta charset=\"utf-8\"></head>";
+		}
+	}
+
+	private Writer newWriter(File file) throws IOException {
+		if (temporary)
+			file.deleteOnExit();
+		return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Add an error, which is written to the files
+	 *
+	 * @param error
+	 * @throws IOException
+	 */
+	public synchronized void add(ReportError error) throws IOException {
+
+		if (closed)
+			throw new IllegalStateException("The errors sink was already closed");
+
+		count++;
+		countsByError.merge(StoredReportError.getName(error), 1, Integer::sum);
+		countsByType.merge(error.getTypeOfError(), 1, Integer::sum);
+
+		if (errors.size() < memoryCap)
+			errors.add(error);
+
+		writeCsvLine(String.valueOf(error.getTypeOfError()), StoredReportError.getName(error),
+				error.getErrorMessage(), join(error.getInvolvedRowsIdsMessage()), join(error.getErroneousValues()),
+				error.getSuggestions());
+
+		writeHtmlRow(error);
+
+		if (isTruncated() && !truncationNotified) {
+			truncationNotified = true;
+			page.flush();
+			writeIndex(false);
+			if (truncationListener != null)
+				truncationListener.accept(this);
+		}
+	}
+
+	/**
+	 * Add several errors
+	 *
+	 * @param errors
+	 * @throws IOException
+	 */
+	public synchronized void addAll(Collection<ReportError> errors) throws IOException {
+		for (ReportError error : errors) {
+			add(error);
+		}
+	}
+
+	private void writeHtmlRow(ReportError error) throws IOException {
+
+		// the page is full, open the next one
+		if (page != null && pageCount == pageSize) {
+			closePage(true);
+		}
+
+		if (page == null) {
+			openPage();
+		}
+
+		page.write("<tr><td>" + count + "</td><td>" + escape(String.valueOf(error.getTypeOfError())) + "</td><td>"
+				+ escape(error.getErrorMessage()) + "</td><td>" + escape(error.getInvolvedRowsIdsMessage())
+				+ "</td><td>" + escape(error.getErroneousValues()) + "</td><td>" + escape(error.getSuggestions())
+				+ "</td></tr>\n");
+
+		pageCount++;
+	}
+
+	private void openPage() throws IOException {
+
+		pages++;
+		pageCount = 0;
+
+		page = newWriter(getPageFile(pages));
+		page.write("<!DOCTYPE html>\n<html>\n");
+		page.write(htmlHead);
+		page.write("\n<body>\n<div class=\"container-fluid\">\n<h4>Report errors - page " + pages + "</h4>\n");
+		page.write("<table class=\"table table-bordered\">\n");
+		page.write("<thead><tr><th>#</th><th>Type</th><th>Error</th><th>Involved rows</th>"
+				+ "<th>Erroneous values</th><th>Suggestions</th></tr></thead>\n<tbody>\n");
+	}
+
+	private void closePage(boolean hasNext) throws IOException {
+
+		page.write("</tbody>\n</table>\n<p>");
+		if (pages > 1)
+			page.write("<a href=\"" + getPageFile(pages - 1).getName() + "\">&laquo; Previous</a> ");
+		page.write("<a href=\"" + INDEX_FILE + "\">Summary</a>");
+		if (hasNext)
+			page.write(" <a href=\"" + getPageFile(pages + 1).getName() + "\">Next &raquo;</a>");
+		page.write("</p>\n</div>\n</body>\n</html>\n");
+
+		page.close();
+		page = null;
+	}
+
+	/**
+	 * Write the summary page
+	 *
+	 * @param complete false if the validation is still running
+	 * @throws IOException
+	 */
+	private void writeIndex(boolean complete) throws IOException {
+
+		try (Writer index = newWriter(getIndexFile())) {
+			index.write("<!DOCTYPE html>\n<html>\n");
+			index.write(htmlHead);
+			index.write("\n<body>\n<div class=\"container-fluid\">\n<h4>Report errors: " + count
+					+ (complete ? "" : " so far") + "</h4>\n");
+			if (!complete)
+				index.write("<p>The validation is still running, reload this page to see all the errors.</p>\n");
+
+			index.write("<table class=\"table table-bordered\">\n<thead><tr><th>Type</th><th>Count</th></tr></thead>\n"
+					+ "<tbody>\n");
+			for (Map.Entry<ErrorType, Integer> entry : countsByType.entrySet()) {
+				index.write("<tr><td>" + entry.getKey() + "</td><td>" + entry.getValue() + "</td></tr>\n");
+			}
+			index.write("</tbody>\n</table>\n");
+
+			index.write("<table class=\"table table-bordered\">\n<thead><tr><th>Error</th><th>Count</th></tr></thead>\n"
+					+ "<tbody>\n");
+			for (Map.Entry<String, Integer> entry : countsByError.entrySet()) {
+				index.write("<tr><td>" + escape(entry.getKey()) + "</td><td>" + entry.getValue() + "</td></tr>\n");
+			}
+			index.write("</tbody>\n</table>\n<p>Pages:");
+
+			for (int i = 1; i <= pages; i++) {
+				index.write(" <a href=\"" + getPageFile(i).getName() + "\">" + i + "</a>");
+			}
+
+			index.write("</p>\n<p><a href=\"" + CSV_FILE + "\">Download all the errors (csv)</a></p>\n");
+			index.write("</div>\n</body>\n</html>\n");
+		}
+	}
+
+	private void writeCsvLine(String... values) throws IOException {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				line.append(',');
+			line.append(csvEscape(values[i]));
+		}
+		line.append("\r\n");
+		csv.write(line.toString());
+	}
+
+	private static String join(Collection<String> values) {
+		return values == null ? null : String.join(VALUES_SEPARATOR, values);
+	}
+
+	private static String csvEscape(String value) {
+		if (value == null)
+			return "";
+		return "\"" + decodeEntities(value).replace("\"", "\"\"") + "\"";
+	}
+
+	private static String escape(Collection<String> values) {
+		if (values == null)
+			return "";
+
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			if (sb.length() > 0)
+				sb.append("<br>");
+			sb.append(escape(value));
+		}
+		return sb.toString();
+	}
+
+	private static String escape(String value) {
+		if (value == null)
+			return "";
+		return decodeEntities(value).replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+				.replace("\"", "&quot;");
+	}
+
+	/**
+	 * Replace the numeric html entities of the messages (as the arrow of the
+	 * involved rows) with their characters, so that they are not escaped
+	 */
+	private static String decodeEntities(String value) {
+
+		Matcher matcher = NUMERIC_ENTITY.matcher(value);
+		if (!matcher.find())
+			return value;
+
+		StringBuffer sb = new StringBuffer();
+		do {
+			int code = matcher.group(1) != null ? Integer.parseInt(matcher.group(1))
+					: Integer.parseInt(matcher.group(2), 16);
+			String replacement = Character.isValidCodePoint(code) ? new String(Character.toChars(code))
+					: matcher.group();
+			matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+		} while (matcher.find());
+
+		matcher.appendTail(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Close the files and write the summary page
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+
+		if (closed)
+			return;
+
+		closed = true;
+
+		try {
+			if (page != null)
+				closePage(false);
+
+			writeIndex(true);
+		} finally {
+			csv.close();
+		}
+
+		LOGGER.info("Written " + count + " report errors in " + pages + " pages in " + folder);
+	}
+
+	/**
+	 * Get the first errors, up to the memory cap
+	 *
+	 * @return
+	 */
+	public synchronized List<ReportError> getErrors() {
+		return Collections.unmodifiableList(new ArrayList<>(errors));
+	}
+
+	/**
+	 * Check if some errors are only in the files
+	 *
+	 * @return
+	 */
+	public synchronized boolean isTruncated() {
+		return count > errors.size();
+	}
+
+	/**
+	 * Total number of errors
+	 *
+	 * @return
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Number of errors of a type
+	 *
+	 * @param type
+	 * @return
+	 */
+	public synchronized int getCount(ErrorType type) {
+		return countsByType.getOrDefault(type, 0);
+	}
+
+	/**
+	 * Number of errors for each error class, in order of first occurrence
+	 *
+	 * @return
+	 */
+	public synchronized Map<String, Integer> getCountsByError() {
+		return new LinkedHashMap<>(countsByError);
+	}
+
+	public synchronized int getPagesCount() {
+		return pages;
+	}
+
+	/**
+	 * Get the html file of a page
+	 *
+	 * @param page number of the page, starting from 1
+	 * @return
+	 */
+	public File getPageFile(int page) {
+		return new File(folder, "errors_" + page + ".html");
+	}
+
+	/**
+	 * Summary page, with the number of errors and the links to all the pages.
+	 * It is written when the sink is closed.
+	 *
+	 * @return
+	 */
+	public File getIndexFile() {
+		return new File(folder, INDEX_FILE);
+	}
+
+	public File getCsvFile() {
+		return new File(folder, CSV_FILE);
+	}
+}
@@ -0,0 +1,248 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import providers.ITableDaoService;
+import providers.TseReportService;
+import table_relations.Relation;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import tse_report.TseReport;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * In memory snapshot of a report with all its summarized information, cases
+ * and analytical results. The rows are loaded with one query for each schema
+ * and are indexed by database id and by parent id, in order to resolve parents
+ * and children of a row without querying the database again.
+ *
+ * The snapshot is not updated if the database changes, therefore it should be
+ * created just before using it (e.g. at the beginning of a validation), or
+ * refreshed with the rows which changed (see {@link #refresh}).
+ *
+ */
+public class ReportGraph {
+
+	// sheets which can be referenced as parent by the report records
+	private static final String[] PARENT_SHEETS = { CustomStrings.REPORT_SHEET, CustomStrings.SUMMARIZED_INFO_SHEET,
+			CustomStrings.CASE_INFO_SHEET };
+
+	private final TableRow report;
+	private final ArrayList<TableRow> records;
+
+	// schema sheet > database id > row
+	private final Map<String, Map<Integer, TableRow>> rowsById;
+
+	// child sheet > parent sheet > parent database id > children
+	private final Map<String, Map<String, Map<Integer, List<TableRow>>>> rowsByParent;
+
+	private ReportGraph(TableRow report, ArrayList<TableRow> records) {
+		this.report = report;
+		this.records = records;
+		this.rowsById = new HashMap<>();
+		this.rowsByParent = new HashMap<>();
+
+		for (TableRow row : records)
+			index(row);
+	}
+
+	/**
+	 * Load all the records of the report from the database
+	 *
+	 * @param report
+	 * @param reportService
+	 * @return
+	 */
+	public static ReportGraph load(TseReport report, TseReportService reportService) {
+		return new ReportGraph(report, reportService.getAllRecords(report));
+	}
+
+	/**
+	 * Load all the records of the report from the database. The report row is
+	 * also reloaded, in order to have its latest saved values
+	 *
+	 * @param report
+	 * @param reportService
+	 * @param daoService
+	 * @return
+	 */
+	public static ReportGraph load(TseReport report, TseReportService reportService, ITableDaoService daoService) {
+
+		TableRow saved = daoService.getById(TseReport.getReportSchema(), report.getDatabaseId());
+
+		return new ReportGraph(saved == null ? report : saved, reportService.getAllRecords(report));
+	}
+
+	/**
+	 * Get a snapshot where the given rows are read again from the database,
+	 * while the other rows are shared with this snapshot. The report row is
+	 * also reloaded. The rows cannot be added or removed.
+	 *
+	 * @param report
+	 * @param daoService
+	 * @param changed    rows of this snapshot to read again
+	 * @return the snapshot, null if some of the rows were deleted
+	 */
+	public ReportGraph refresh(TseReport report, ITableDaoService daoService, Collection<TableRow> changed) {
+
+		Map<TableRow, TableRow> reloaded = new IdentityHashMap<>();
+		for (TableRow row : changed) {
+			TableRow saved = daoService.getById(row.getSchema(), row.getDatabaseId());
+			if (saved == null)
+				return null;
+			reloaded.put(row, saved);
+		}
+
+		ArrayList<TableRow> refreshed = new ArrayList<>(records.size());
+		for (TableRow row : records)
+			refreshed.add(reloaded.getOrDefault(row, row));
+
+		TableRow saved = daoService.getById(TseReport.getReportSchema(), report.getDatabaseId());
+
+		return new ReportGraph(saved == null ? report : saved, refreshed);
+	}
+
+	private void index(TableRow row) {
+
+		String sheet = row.getSchema().getSheetName();
+
+		rowsById.computeIfAbsent(sheet, k -> new HashMap<>()).put(row.getDatabaseId(), row);
+
+		for (String parentSheet : PARENT_SHEETS) {
+
+			if (parentSheet.equals(sheet))
+				continue;
+
+			int parentId = getParentId(row, parentSheet);
+			if (parentId == -1)
+				continue;
+
+			rowsByParent.computeIfAbsent(sheet, k -> new HashMap<>())
+					.computeIfAbsent(parentSheet, k -> new HashMap<>())
+					.computeIfAbsent(parentId, k -> new ArrayList<>()).add(row);
+		}
+	}
+
+	/**
+	 * Get the database id of the parent of the row, or -1 if not set
+	 *
+	 * @param row
+	 * @param parentSheet
+	 * @return
+	 */
+	private static int getParentId(TableRow row, String parentSheet) {
+
+		String foreignKey = Relation.foreignKeyFromParent(parentSheet);
+
+		if (row.get(foreignKey) == null)
+			return -1;
+
+		String code = row.getCode(foreignKey);
+		if (code == null || code.isEmpty())
+			return -1;
+
+		try {
+			return Integer.parseInt(code);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Get the report row
+	 *
+	 * @return
+	 */
+	public TableRow getReport() {
+		return report;
+	}
+
+	/**
+	 * Get all the records of the report (summarized information, cases and
+	 * results) in the same order of {@link TseReportService#getAllRecords}
+	 *
+	 * @return
+	 */
+	public ArrayList<TableRow> getRecords() {
+		return records;
+	}
+
+	/**
+	 * Get a row by its database id
+	 *
+	 * @param schema
+	 * @param id
+	 * @return the row or null if not contained in the report
+	 */
+	public TableRow getById(TableSchema schema, int id) {
+
+		if (schema.getSheetName().equals(CustomStrings.REPORT_SHEET))
+			return report.getDatabaseId() == id ? report : null;
+
+		Map<Integer, TableRow> rows = rowsById.get(schema.getSheetName());
+
+		if (rows == null)
+			return null;
+
+		return rows.get(id);
+	}
+
+	/**
+	 * Get the parent of the row which belongs to the parent sheet
+	 *
+	 * @param row
+	 * @param parentSheet
+	 * @return the parent or null if not contained in the report
+	 */
+	public TableRow getParent(TableRow row, String parentSheet) {
+
+		int parentId = getParentId(row, parentSheet);
+		if (parentId == -1)
+			return null;
+
+		return getById(TableSchemaList.getByName(parentSheet), parentId);
+	}
+
+	/**
+	 * Get the children of a row
+	 *
+	 * @param childSchema schema of the children
+	 * @param parentSheet sheet of the parent
+	 * @param parentId database id of the parent
+	 * @return the children, empty if none
+	 */
+	public List<TableRow> getByParentId(TableSchema childSchema, String parentSheet, int parentId) {
+
+		Map<String, Map<Integer, List<TableRow>>> byParentSheet = rowsByParent.get(childSchema.getSheetName());
+		if (byParentSheet == null)
+			return Collections.emptyList();
+
+		Map<Integer, List<TableRow>> byParentId = byParentSheet.get(parentSheet);
+		if (byParentId == null)
+			return Collections.emptyList();
+
+		List<TableRow> children = byParentId.get(parentId);
+		if (children == null)
+			return Collections.emptyList();
+
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Get the children of a row
+	 *
+	 * @param childSchema
+	 * @param parent
+	 * @return
+	 */
+	public List<TableRow> getChildren(TableSchema childSchema, TableRow parent) {
+		return getByParentId(childSchema, parent.getSchema().getSheetName(), parent.getDatabaseId());
+	}
+}
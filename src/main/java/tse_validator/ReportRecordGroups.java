@@ -0,0 +1,87 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Groups the records of a report by type and by parent. Cases are grouped by
+ * the id of their summarized information ({@link CustomStrings#SI_ID_COL})
+ * and results by the id of their case ({@link CustomStrings#CASE_ID_COL}).
+ * The groups are built with a single pass over the records, so that checks
+ * across rows can get the children of a row without scanning all the
+ * records again.
+ *
+ */
+public class ReportRecordGroups {
+
+	private final List<TableRow> summInfos = new ArrayList<>();
+	private final List<TableRow> cases = new ArrayList<>();
+	private final List<TableRow> results = new ArrayList<>();
+
+	private final Map<String, List<TableRow>> casesBySummInfoId = new HashMap<>();
+	private final Map<String, List<TableRow>> resultsByCaseId = new HashMap<>();
+
+	public ReportRecordGroups(Collection<TableRow> records) {
+
+		TableSchema summSchema = TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET);
+		TableSchema caseSchema = TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET);
+		TableSchema resultSchema = TableSchemaList.getByName(CustomStrings.RESULT_SHEET);
+
+		for (TableRow row : records) {
+			if (row.getSchema() == summSchema) {
+				summInfos.add(row);
+			} else if (row.getSchema() == caseSchema) {
+				cases.add(row);
+				casesBySummInfoId.computeIfAbsent(row.getLabel(CustomStrings.SI_ID_COL), k -> new ArrayList<>())
+						.add(row);
+			} else if (row.getSchema() == resultSchema) {
+				results.add(row);
+				resultsByCaseId.computeIfAbsent(row.getLabel(CustomStrings.CASE_ID_COL), k -> new ArrayList<>())
+						.add(row);
+			}
+		}
+	}
+
+	public List<TableRow> getSummInfos() {
+		return Collections.unmodifiableList(summInfos);
+	}
+
+	public List<TableRow> getCases() {
+		return Collections.unmodifiableList(cases);
+	}
+
+	public List<TableRow> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * Get the cases of a summarized information, in the order of the records
+	 *
+	 * @param summInfoId value of {@link CustomStrings#SI_ID_COL}
+	 * @return
+	 */
+	public List<TableRow> getCases(String summInfoId) {
+		List<TableRow> children = casesBySummInfoId.get(summInfoId);
+		return children == null ? Collections.emptyList() : Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Get the results of a case, in the order of the records
+	 *
+	 * @param caseId value of {@link CustomStrings#CASE_ID_COL}
+	 * @return
+	 */
+	public List<TableRow> getResults(String caseId) {
+		List<TableRow> children = resultsByCaseId.get(caseId);
+		return children == null ? Collections.emptyList() : Collections.unmodifiableList(children);
+	}
+}
@@ -0,0 +1,693 @@
+package tse_validator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import report_validator.ReportError;
+import report_validator.ReportError.ErrorType;
+import table_relations.Relation;
+import table_skeleton.TableCell;
+import table_skeleton.TableColumn;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import tse_config.ValidationConfig;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Stores the errors of the single row checks of a report, in order to
+ * re-validate only the rows which changed since the last validation.
+ *
+ * A row is checked again if it was marked as dirty (see
+ * {@link #markDirty(TableRow)}) or if its signature changed. The signature is
+ * computed by the validator from the values of the row and of the rows which
+ * are read by its checks (parents and children), so that also the changes
+ * which are not notified (e.g. generated cases) are detected.
+ *
+ * The errors of the checks across different rows are kept by group of rows
+ * (see {@link CrossRowIndex}), so that only the groups of the changed rows
+ * are checked again.
+ *
+ * Only the stores of the last validated reports are kept in memory (see
+ * {@link ValidationConfig#incrementalReports}), and each store keeps at most
+ * {@link ValidationConfig#errorsInMemory} errors: the rows and groups whose
+ * errors do not fit are checked again in the next validation.
+ *
+ * If a folder is set (see {@link #setFolder(Path)}), the errors of the rows
+ * are also saved in a file for each report and read again in the next
+ * sessions, as {@link StoredReportError}. The groups of the checks across
+ * different rows are only kept in memory.
+ *
+ * The store also keeps the rows loaded by the last validation, so that only
+ * the dirty rows are read again from the database. The loaded rows are
+ * dropped when rows are added to or removed from the report (see
+ * {@link #markAddedOrRemoved(TableRow)}), since these changes are not marked
+ * as dirty.
+ *
+ * Format of the file: magic, version, rules of the signatures, the errors of
+ * each row (key, signature and errors), then the dirty rows.
+ *
+ */
+public class RowValidationStore {
+
+	private static final Logger LOGGER = LogManager.getLogger(RowValidationStore.class);
+
+	private static final int MAGIC = 0x54534556; // TSEV
+	private static final int VERSION = 1;
+
+	// folder of the saved stores, null to keep them only in memory
+	private static volatile Path folder;
+
+	// report database id > store, the least recently used is evicted
+	private static final Map<Integer, RowValidationStore> STORES = new LinkedHashMap<Integer, RowValidationStore>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, RowValidationStore> eldest) {
+			return size() > ValidationConfig.incrementalReports;
+		}
+	};
+
+	private final Set<String> dirtyRows = ConcurrentHashMap.newKeySet();
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	// check name > errors of the check across different rows
+	private final Map<String, CrossRowIndex> indexes = new ConcurrentHashMap<>();
+
+	// errors kept by the store
+	private final AtomicInteger storedErrors = new AtomicInteger();
+
+	private final int reportId;
+
+	// rules used to compute the signatures of the rows
+	private String rules;
+
+	// rows loaded by the last validation and hashes of their values
+	private ReportGraph graph;
+	private Map<TableRow, Long> valuesHashes = new IdentityHashMap<>();
+
+	// rows checked or removed since the store was saved
+	private volatile boolean changed;
+
+	private static class Entry {
+
+		private final long signature;
+		private final Collection<ReportError> errors;
+
+		private Entry(long signature, Collection<ReportError> errors) {
+			this.signature = signature;
+			this.errors = errors;
+		}
+	}
+
+	private RowValidationStore(int reportId) {
+		this.reportId = reportId;
+	}
+
+	/**
+	 * Set the folder where the stores are saved
+	 *
+	 * @param folder the folder, null to keep the stores only in memory
+	 */
+	public static void setFolder(Path folder) {
+		RowValidationStore.folder = folder;
+	}
+
+	/**
+	 * Get the store of a report, which is read from its file if not in memory
+	 *
+	 * @param reportId database id of the report
+	 * @return
+	 */
+	public static RowValidationStore getStore(int reportId) {
+		synchronized (STORES) {
+			return STORES.computeIfAbsent(reportId, RowValidationStore::read);
+		}
+	}
+
+	/**
+	 * Remove the stored results of a report
+	 *
+	 * @param reportId
+	 */
+	public static void invalidate(int reportId) {
+		synchronized (STORES) {
+			STORES.remove(reportId);
+		}
+
+		Path file = getFile(reportId);
+		if (file == null)
+			return;
+
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.error("Cannot delete " + file, e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Mark that the report needs to be loaded again from the database in the
+	 * next validation, since it could have been changed without marking its
+	 * rows as dirty (e.g. when it is opened)
+	 *
+	 * @param reportId
+	 */
+	public static void markReloadNeeded(int reportId) {
+		RowValidationStore store;
+		synchronized (STORES) {
+			store = STORES.get(reportId);
+		}
+
+		if (store != null)
+			store.setGraph(null);
+	}
+
+	/**
+	 * Mark that a row was added to its report or removed from it. The report
+	 * will be loaded again from the database in the next validation.
+	 *
+	 * @param row
+	 */
+	public static void markAddedOrRemoved(TableRow row) {
+		if (row == null)
+			return;
+
+		int reportId = getParentId(row, CustomStrings.REPORT_SHEET);
+		if (reportId != -1)
+			markReloadNeeded(reportId);
+	}
+
+	/**
+	 * Mark a row as changed. The row and its parents will be checked again in
+	 * the next validation of the report.
+	 *
+	 * @param row
+	 */
+	public static void markDirty(TableRow row) {
+
+		if (row.getSchema().getSheetName().equals(CustomStrings.REPORT_SHEET)) {
+			invalidate(row.getDatabaseId());
+			return;
+		}
+
+		int reportId = getParentId(row, CustomStrings.REPORT_SHEET);
+		if (reportId == -1)
+			return;
+
+		RowValidationStore store;
+		synchronized (STORES) {
+			store = STORES.get(reportId);
+		}
+
+		if (store == null)
+			return;
+
+		store.changed = true;
+		store.dirtyRows.add(getKey(row));
+
+		int summId = getParentId(row, CustomStrings.SUMMARIZED_INFO_SHEET);
+		if (summId != -1)
+			store.dirtyRows.add(getKey(CustomStrings.SUMMARIZED_INFO_SHEET, summId));
+
+		int caseId = getParentId(row, CustomStrings.CASE_INFO_SHEET);
+		if (caseId != -1)
+			store.dirtyRows.add(getKey(CustomStrings.CASE_INFO_SHEET, caseId));
+	}
+
+	private static int getParentId(TableRow row, String parentSheet) {
+
+		String foreignKey = Relation.foreignKeyFromParent(parentSheet);
+		if (row.get(foreignKey) == null)
+			return -1;
+
+		try {
+			return Integer.parseInt(row.getCode(foreignKey));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	public static String getKey(TableRow row) {
+		return getKey(row.getSchema().getSheetName(), row.getDatabaseId());
+	}
+
+	private static String getKey(String sheetName, int id) {
+		return sheetName + ":" + id;
+	}
+
+	/**
+	 * Hash of the codes of all the columns of the row
+	 *
+	 * @param row
+	 * @return
+	 */
+	public static long getValuesHash(TableRow row) {
+		long hash = 17;
+		for (TableColumn col : row.getSchema()) {
+			TableCell cell = row.get(col.getId());
+			String code = cell == null ? null : cell.getCode();
+			String label = cell == null ? null : cell.getLabel();
+			hash = 31 * hash + (code == null ? 0 : code.hashCode());
+			hash = 31 * hash + (label == null ? 0 : label.hashCode());
+		}
+		return hash;
+	}
+
+	/**
+	 * Hash of the codes of the columns of the row
+	 *
+	 * @param row
+	 * @param columns ids of the columns
+	 * @return
+	 */
+	public static long getValuesHash(TableRow row, Collection<String> columns) {
+		long hash = 17;
+		for (String column : columns) {
+			TableCell cell = row.get(column);
+			String code = cell == null ? null : cell.getCode();
+			String label = cell == null ? null : cell.getLabel();
+			hash = 31 * hash + (code == null ? 0 : code.hashCode());
+			hash = 31 * hash + (label == null ? 0 : label.hashCode());
+		}
+		return hash;
+	}
+
+	/**
+	 * Use the signatures computed with the rules. The stored results are
+	 * removed if the rules changed.
+	 *
+	 * @param rules names and columns of the rules
+	 */
+	public synchronized void setRules(String rules) {
+		if (rules.equals(this.rules))
+			return;
+
+		for (Entry entry : entries.values())
+			releaseErrors(entry.errors.size());
+
+		entries.clear();
+		dirtyRows.clear();
+		this.rules = rules;
+		this.changed = true;
+	}
+
+	/**
+	 * Get the rows loaded by the last validation
+	 *
+	 * @return the rows, null if the report needs to be loaded again
+	 */
+	synchronized ReportGraph getGraph() {
+		return graph;
+	}
+
+	synchronized void setGraph(ReportGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Get the hashes of all the values of the rows loaded by the last
+	 * validation, by row
+	 *
+	 * @return
+	 */
+	synchronized Map<TableRow, Long> getValuesHashes() {
+		return valuesHashes;
+	}
+
+	synchronized void setValuesHashes(Map<TableRow, Long> valuesHashes) {
+		this.valuesHashes = valuesHashes;
+	}
+
+	/**
+	 * Get the keys of the rows marked as dirty
+	 *
+	 * @return
+	 */
+	public Set<String> getDirtyRows() {
+		return new HashSet<>(dirtyRows);
+	}
+
+	/**
+	 * Get the rows of the report marked as dirty
+	 *
+	 * @param graph rows of the report
+	 * @return the dirty rows, null if some of them are not part of the report
+	 */
+	public List<TableRow> getDirtyRows(ReportGraph graph) {
+		List<TableRow> rows = new ArrayList<>();
+		for (String key : getDirtyRows()) {
+			int separator = key.lastIndexOf(':');
+			TableSchema schema = TableSchemaList.getByName(key.substring(0, separator));
+			TableRow row = schema == null ? null : graph.getById(schema, Integer.parseInt(key.substring(separator + 1)));
+			if (row == null)
+				return null;
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Check if the row was marked as dirty
+	 *
+	 * @param row
+	 * @return
+	 */
+	public boolean isDirty(TableRow row) {
+		return dirtyRows.contains(getKey(row));
+	}
+
+	/**
+	 * Check if the row needs to be checked again
+	 *
+	 * @param row
+	 * @param signature
+	 * @return
+	 */
+	public boolean isDirty(TableRow row, long signature) {
+		String key = getKey(row);
+		if (dirtyRows.contains(key))
+			return true;
+
+		Entry entry = entries.get(key);
+		return entry == null || entry.signature != signature;
+	}
+
+	/**
+	 * Get the stored errors of the row
+	 *
+	 * @param row
+	 * @return the errors or null if not stored
+	 */
+	public Collection<ReportError> getErrors(TableRow row) {
+		Entry entry = entries.get(getKey(row));
+		return entry == null ? null : entry.errors;
+	}
+
+	/**
+	 * Store the errors of a checked row
+	 *
+	 * @param row
+	 * @param signature
+	 * @param errors
+	 */
+	public void put(TableRow row, long signature, Collection<ReportError> errors) {
+		String key = getKey(row);
+
+		// the row will be checked again if its errors do not fit
+		Entry entry = reserveErrors(errors.size())
+				? new Entry(signature, errors.isEmpty() ? Collections.emptyList()
+						: Collections.unmodifiableCollection(errors))
+				: null;
+
+		Entry previous = entry == null ? entries.remove(key) : entries.put(key, entry);
+		if (previous != null)
+			releaseErrors(previous.errors.size());
+
+		dirtyRows.remove(key);
+		changed = true;
+	}
+
+	/**
+	 * Remove the stored rows which are not in the set (i.e. deleted rows)
+	 *
+	 * @param keys
+	 */
+	public void retainAll(Set<String> keys) {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Entry> entry = it.next();
+			if (!keys.contains(entry.getKey())) {
+				releaseErrors(entry.getValue().errors.size());
+				it.remove();
+				changed = true;
+			}
+		}
+
+		dirtyRows.retainAll(keys);
+	}
+
+	/**
+	 * Get the errors of a check across different rows
+	 *
+	 * @param checkName
+	 * @return
+	 */
+	CrossRowIndex getIndex(String checkName) {
+		return indexes.computeIfAbsent(checkName, k -> new CrossRowIndex());
+	}
+
+	/**
+	 * Reserve room for errors kept in memory
+	 *
+	 * @param count
+	 * @return true if the errors can be kept
+	 */
+	boolean reserveErrors(int count) {
+		if (count == 0)
+			return true;
+
+		int current;
+		do {
+			current = storedErrors.get();
+			if (current + count > ValidationConfig.errorsInMemory)
+				return false;
+		} while (!storedErrors.compareAndSet(current, current + count));
+
+		return true;
+	}
+
+	/**
+	 * Release the room of errors which are no longer kept
+	 *
+	 * @param count
+	 */
+	void releaseErrors(int count) {
+		storedErrors.addAndGet(-count);
+	}
+
+	/**
+	 * Number of errors kept in memory
+	 *
+	 * @return
+	 */
+	public int getErrorsCount() {
+		return storedErrors.get();
+	}
+
+	/**
+	 * Number of rows stored
+	 *
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private static Path getFile(int reportId) {
+		Path current = folder;
+		return current == null ? null : current.resolve("report" + reportId + ".validation");
+	}
+
+	/**
+	 * Save the store in its file, if changed since it was read
+	 */
+	public void save() {
+		Path file = getFile(reportId);
+		if (file == null || !changed)
+			return;
+
+		try {
+			write(file);
+		} catch (IOException e) {
+			// the rows will be checked again in the next session
+			LOGGER.error("Cannot save " + file, e);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Read the store of a report from its file
+	 *
+	 * @param reportId
+	 * @return the store, empty if not saved or saved by a different version
+	 *         of the tool
+	 */
+	private static RowValidationStore read(int reportId) {
+		RowValidationStore store = new RowValidationStore(reportId);
+
+		Path file = getFile(reportId);
+		if (file == null || !Files.exists(file))
+			return store;
+
+		try {
+			store.read(file);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Cannot read " + file + ", the report will be checked again", e);
+			e.printStackTrace();
+			store = new RowValidationStore(reportId);
+		}
+
+		return store;
+	}
+
+	private void read(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+
+		if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			return;
+
+		rules = readString(buffer);
+
+		int size = buffer.getInt();
+		for (int i = 0; i < size; ++i) {
+			String key = readString(buffer);
+			long signature = buffer.getLong();
+
+			List<ReportError> errors = new ArrayList<>();
+			int count = buffer.getInt();
+			for (int j = 0; j < count; ++j) {
+				String name = readString(buffer);
+				String type = readString(buffer);
+				errors.add(new StoredReportError(name, type == null ? null : ErrorType.valueOf(type),
+						readString(buffer), readStrings(buffer), readString(buffer), readStrings(buffer)));
+			}
+
+			// the rows whose errors do not fit are checked again
+			if (reserveErrors(errors.size()))
+				entries.put(key, new Entry(signature, errors.isEmpty() ? Collections.emptyList()
+						: Collections.unmodifiableCollection(errors)));
+		}
+
+		int dirty = buffer.getInt();
+		for (int i = 0; i < dirty; ++i) {
+			dirtyRows.add(readString(buffer));
+		}
+	}
+
+	/**
+	 * Write the store in the file. The previous file is replaced only when
+	 * the new one is complete.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	private void write(Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+
+		Path temp = Files.createTempFile(parent, "report" + reportId, ".tmp");
+
+		try {
+			changed = false;
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeString(out, rules);
+
+				List<Map.Entry<String, Entry>> saved = new ArrayList<>(entries.entrySet());
+				out.writeInt(saved.size());
+				for (Map.Entry<String, Entry> entry : saved) {
+					writeString(out, entry.getKey());
+					out.writeLong(entry.getValue().signature);
+
+					out.writeInt(entry.getValue().errors.size());
+					for (ReportError error : entry.getValue().errors) {
+						ErrorType type = error.getTypeOfError();
+						writeString(out, StoredReportError.getName(error));
+						writeString(out, type == null ? null : type.name());
+						writeString(out, error.getErrorMessage());
+						writeStrings(out, error.getInvolvedRowsIdsMessage());
+						writeString(out, error.getSuggestions());
+						writeStrings(out, error.getErroneousValues());
+					}
+				}
+
+				List<String> dirty = new ArrayList<>(dirtyRows);
+				out.writeInt(dirty.size());
+				for (String key : dirty) {
+					writeString(out, key);
+				}
+			}
+
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+			changed = true;
+			throw e;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+		if (values == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		List<String> copy = new ArrayList<>(values);
+		out.writeInt(copy.size());
+		for (String value : copy) {
+			writeString(out, value);
+		}
+	}
+
+	private static List<String> readStrings(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		if (size < 0)
+			return null;
+
+		List<String> values = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) {
+			values.add(readString(buffer));
+		}
+		return values;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,97 @@
+package tse_validator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution statistics of a validation rule. It can be updated by several
+ * threads at the same time.
+ *
+ */
+public class RuleMetrics {
+
+	// number of durations kept to compute the percentiles
+	private static final int SAMPLES_SIZE = 4096;
+
+	private final String ruleName;
+
+	private final LongAdder invocations = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+
+	// last durations, overwritten in circle
+	private final AtomicLong samplesCount = new AtomicLong();
+	private final AtomicLongArray samples = new AtomicLongArray(SAMPLES_SIZE);
+
+	public RuleMetrics(String ruleName) {
+		this.ruleName = ruleName;
+	}
+
+	/**
+	 * Record an invocation of the rule
+	 * 
+	 * @param nanos       duration of the invocation
+	 * @param errorsCount number of errors emitted
+	 */
+	public void record(long nanos, int errorsCount) {
+		invocations.increment();
+		totalNanos.add(nanos);
+		errors.add(errorsCount);
+
+		int index = (int) (samplesCount.getAndIncrement() % SAMPLES_SIZE);
+		samples.set(index, nanos);
+	}
+
+	public String getRuleName() {
+		return ruleName;
+	}
+
+	public long getInvocations() {
+		return invocations.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * Get a percentile of the duration of the last invocations
+	 * 
+	 * @param percentile between 0 and 100
+	 * @return the duration in nanoseconds
+	 */
+	public long getPercentileNanos(double percentile) {
+		int size = (int) Math.min(samplesCount.get(), SAMPLES_SIZE);
+		if (size == 0)
+			return 0;
+
+		long[] values = new long[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = samples.get(i);
+		}
+
+		Arrays.sort(values);
+
+		int index = (int) Math.ceil(percentile / 100 * size) - 1;
+		return values[Math.max(0, Math.min(index, size - 1))];
+	}
+
+	public void reset() {
+		invocations.reset();
+		totalNanos.reset();
+		errors.reset();
+		samplesCount.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-28s invocations=%d total=%.1fms p99=%.3fms errors=%d", ruleName, getInvocations(),
+				getTotalNanos() / 1e6, getPercentileNanos(99) / 1e6, getErrors());
+	}
+}
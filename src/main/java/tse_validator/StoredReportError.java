@@ -0,0 +1,83 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import report_validator.ReportError;
+
+/**
+ * Error read from a saved {@link RowValidationStore}. It keeps the messages of
+ * the original error, as they were when the error was found.
+ *
+ */
+public class StoredReportError implements ReportError {
+
+	private final String name;
+	private final ErrorType type;
+	private final String message;
+	private final Collection<String> rowsIds;
+	private final String suggestions;
+	private final Collection<String> values;
+
+	/**
+	 * Copy an error
+	 *
+	 * @param error
+	 */
+	public StoredReportError(ReportError error) {
+		this(getName(error), error.getTypeOfError(), error.getErrorMessage(), copy(error.getInvolvedRowsIdsMessage()),
+				error.getSuggestions(), copy(error.getErroneousValues()));
+	}
+
+	StoredReportError(String name, ErrorType type, String message, Collection<String> rowsIds, String suggestions,
+			Collection<String> values) {
+		this.name = name;
+		this.type = type;
+		this.message = message;
+		this.rowsIds = rowsIds;
+		this.suggestions = suggestions;
+		this.values = values;
+	}
+
+	private static Collection<String> copy(Collection<String> values) {
+		return values == null ? null : new ArrayList<>(values);
+	}
+
+	/**
+	 * Get the name of the error, which is the name of its class or of the class
+	 * of the stored error
+	 *
+	 * @param error
+	 * @return
+	 */
+	public static String getName(ReportError error) {
+		if (error instanceof StoredReportError)
+			return ((StoredReportError) error).name;
+		return error.getClass().getSimpleName();
+	}
+
+	@Override
+	public ErrorType getTypeOfError() {
+		return type;
+	}
+
+	@Override
+	public String getErrorMessage() {
+		return message;
+	}
+
+	@Override
+	public Collection<String> getInvolvedRowsIdsMessage() {
+		return rowsIds;
+	}
+
+	@Override
+	public String getSuggestions() {
+		return suggestions;
+	}
+
+	@Override
+	public Collection<String> getErroneousValues() {
+		return values;
+	}
+}
@@ -22,11 +22,24 @@ public class SummarizedInfoValidator extends SimpleRowValidatorLabelProvider {
 	private static final Logger LOGGER = LogManager.getLogger(SummarizedInfoValidator.class);
 
 	private ITableDaoService daoService;
+	private ReportGraph graph;
 
 	public SummarizedInfoValidator(ITableDaoService daoService) {
 		this.daoService = daoService;
 	}
 
+	/**
+	 * Validator which gets the cases of the summarized information from the
+	 * report graph instead of the database
+	 * 
+	 * @param daoService
+	 * @param graph
+	 */
+	public SummarizedInfoValidator(ITableDaoService daoService, ReportGraph graph) {
+		this.daoService = daoService;
+		this.graph = graph;
+	}
+
 	public enum SampleCheck {
 		OK, MISSING_RGT_CASE, TOO_MANY_INCONCLUSIVES, TOO_FEW_INCONCLUSIVES, TOO_MANY_POSITIVES, TOO_FEW_POSITIVES,
 		NON_WILD_FOR_KILLED, WRONG_CASES
@@ -103,8 +116,12 @@ public class SummarizedInfoValidator extends SimpleRowValidatorLabelProvider {
 
 			TableSchema childSchema = TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET);
 
-			Collection<TableRow> cases = daoService.getByParentId(childSchema, row.getSchema().getSheetName(),
-					row.getDatabaseId(), true);
+			Collection<TableRow> cases;
+			if (graph != null)
+				cases = graph.getChildren(childSchema, row);
+			else
+				cases = daoService.getByParentId(childSchema, row.getSchema().getSheetName(),
+						row.getDatabaseId(), true);
 
 			if (!isRGT) {
 
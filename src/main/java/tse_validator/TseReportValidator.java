@@ -1,14 +1,20 @@
 package tse_validator;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import app_config.AppPaths;
-import date_comparator.TseDate;
 import formula.FormulaException;
 import i18n_messages.TSEMessages;
 import providers.ITableDaoService;
@@ -17,17 +23,14 @@ import providers.TseReportService.RowType;
 import report_validator.ReportError;
 import report_validator.ReportValidator;
 import table_relations.Relation;
-import table_skeleton.TableCell;
 import table_skeleton.TableColumn;
 import table_skeleton.TableRow;
-import tse_analytical_result.AnalyticalResult;
-import tse_case_report.CaseReport;
+import tse_config.CatalogLists;
 import tse_config.CustomStrings;
+import tse_config.ValidationConfig;
 import tse_report.TseReport;
 import tse_summarized_information.SummarizedInfo;
-import tse_validator.CaseReportValidator.Check;
-import tse_validator.ResultValidator.ErrorType;
-import tse_validator.SummarizedInfoValidator.SampleCheck;
+import tse_validator.CrossRowIndex.RowError;
 import xlsx_reader.TableSchema;
 import xlsx_reader.TableSchemaList;
 
@@ -43,15 +46,56 @@ public class TseReportValidator extends ReportValidator {
 	private static final Logger LOGGER = LogManager.getLogger(TseReportValidator.class);
 
 	private static final TableSchema REPORT_SCHEMA = TableSchemaList.getByName(CustomStrings.REPORT_SHEET);
-	private static final TableSchema SUMMARY_INFO_SCHEMA = TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET);
-	private static final TableSchema CASE_INFO_SCHEMA = TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET);
-	private static final TableSchema ANALYTICAL_RESULTS_SCHEMA = TableSchemaList.getByName(CustomStrings.RESULT_SHEET);
+
+	// blocks of rows checked by each thread of the parallel validation
+	private static final int ROW_BLOCKS_PER_THREAD = 4;
+
+	// parents shared by all the reports, read by the formulas
+	private static final String[] GLOBAL_PARENT_SHEETS = { CustomStrings.PREFERENCES_SHEET,
+			CustomStrings.SETTINGS_SHEET };
+
+	// fields which must be equal for cases with the same national case id/animal id
+	private static final String[] NATIONAL_CASE_ID_FIELDS = { CustomStrings.ANIMAL_ID_COL };
+
+	private static final String[] ANIMAL_ID_FIELDS = { CustomStrings.NATIONAL_CASE_ID_COL, CustomStrings.HERD_ID_COL,
+			CustomStrings.STATUS_HERD_COL, CustomStrings.SAMP_HOLDING_ID_COL, CustomStrings.SAMP_DAY_COL,
+			CustomStrings.SAMP_AREA_COL, CustomStrings.INDEX_CASE_COL, CustomStrings.BIRTH_COUNTRY_COL,
+			CustomStrings.BIRTH_YEAR_COL, CustomStrings.BIRTH_MONTH_COL, CustomStrings.BORN_FLOCK_HERD_COL,
+			CustomStrings.BREED_COL, CustomStrings.EVAL_COMMENT_COL };
 
 	private final TseReport report;
 
 	private final TseReportService reportService;
 	private final ITableDaoService daoService;
 
+	// snapshot of the report records, used to resolve parents and children
+	private ReportGraph graph;
+
+	// errors of the rules which read the database, by record, set by load
+	private List<List<Collection<ReportError>>> databaseErrors;
+
+	// stored errors of the records which did not change, null for the others
+	private List<Collection<ReportError>> reusedErrors;
+
+	// incremental validation of the loaded report
+	private RowValidationStore store;
+	private long[] signatures;
+	private long[] crossRowSignatures;
+
+	private ReportRecordGroups recordGroups;
+
+	// thread which runs the parallel validation, the only one which can access
+	// the database and solve the formulas
+	private volatile Thread validationThread;
+
+	private ValidationRuleRegistry registry = ValidationRuleRegistry.getDefault();
+	private CaseReportValidator caseReportValidator;
+	private SummarizedInfoValidator summarizedInfoValidator;
+
+	private boolean parallel = ValidationConfig.parallel;
+	private int parallelism = ValidationConfig.parallelism;
+	private boolean incremental = ValidationConfig.incremental;
+
 	/**
 	 * Validate an entire tse report and returns the errors in a list. It is also
 	 * possible to show the list of errors by using the {@link #show(Collection)}
@@ -63,42 +107,605 @@ public class TseReportValidator extends ReportValidator {
 		this.reportService = reportService;
 	}
 
+	/**
+	 * Check the single rows and run the checks across different rows on
+	 * several threads. Only the rules which read the database or solve
+	 * formulas, which are not thread safe, are run on the calling thread while
+	 * the report is loaded. Errors are returned in the same order of the
+	 * serial validation.
+	 * 
+	 * @param parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Set the number of threads used by the parallel validation
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Reuse the errors of the rows which did not change since the last
+	 * validation of the report (see {@link RowValidationStore})
+	 * 
+	 * @param incremental
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Set the rules checked on the single rows
+	 * 
+	 * @param registry
+	 */
+	public void setRegistry(ValidationRuleRegistry registry) {
+		this.registry = registry;
+	}
+
+	public ValidationRuleRegistry getRegistry() {
+		return registry;
+	}
+
+	public TseReport getReport() {
+		return report;
+	}
+
+	/**
+	 * Number of records checked in the last validation
+	 * 
+	 * @return
+	 */
+	public int getValidatedRecordsCount() {
+		return graph == null ? 0 : graph.getRecords().size();
+	}
+
+	/**
+	 * Get the validator of the cases, which uses the report graph if loaded
+	 * 
+	 * @return
+	 */
+	public synchronized CaseReportValidator getCaseReportValidator() {
+		if (caseReportValidator == null)
+			caseReportValidator = new CaseReportValidator(daoService, graph);
+		return caseReportValidator;
+	}
+
+	/**
+	 * Get the validator of the summarized information, which uses the report
+	 * graph if loaded
+	 * 
+	 * @return
+	 */
+	public synchronized SummarizedInfoValidator getSummarizedInfoValidator() {
+		if (summarizedInfoValidator == null)
+			summarizedInfoValidator = new SummarizedInfoValidator(daoService, graph);
+		return summarizedInfoValidator;
+	}
+
 	@Override
 	public Collection<ReportError> validate() {
 		Collection<ReportError> errors = new ArrayList<>();
-		ArrayList<TableRow> reportRecords = this.reportService.getAllRecords(report);
+		validate(errors::addAll);
+		return errors;
+	}
+
+	/**
+	 * Validate the report writing the errors to the sink while they are found,
+	 * in the same order of {@link #validate()}. The sink is not closed.
+	 * 
+	 * @param sink
+	 * @throws IOException if the errors cannot be written
+	 */
+	public void validate(ReportErrorSink sink) throws IOException {
+		try {
+			validate(errors -> {
+				try {
+					sink.addAll(errors);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Load the report from the database and run the rules which read the
+	 * database or solve formulas (see {@link ValidationRule#readsDatabase()}).
+	 * The next {@link #validate()} only reads the loaded rows, so it can run
+	 * while the database is used by others. If not called, the report is
+	 * loaded by the validation.
+	 */
+	public synchronized void load() {
+		if (incremental) {
+			store = RowValidationStore.getStore(report.getDatabaseId());
+			store.setRules(registry.getId());
+			this.graph = loadGraph(store);
+		} else {
+			store = null;
+			this.graph = ReportGraph.load(report, reportService, daoService);
+		}
+
+		this.recordGroups = null;
+		this.caseReportValidator = new CaseReportValidator(daoService, graph);
+		this.summarizedInfoValidator = new SummarizedInfoValidator(daoService, graph);
+		ArrayList<TableRow> reportRecords = graph.getRecords();
+
+		if (store != null) {
+			computeSignatures(reportRecords, store);
+
+			// forget deleted rows
+			Set<String> keys = new HashSet<>();
+			for (TableRow row : reportRecords) {
+				keys.add(RowValidationStore.getKey(row));
+			}
+			store.retainAll(keys);
+			store.setGraph(graph);
+		} else {
+			signatures = null;
+			crossRowSignatures = null;
+		}
+
+		// the rows whose errors are reused are not checked
+		databaseErrors = new ArrayList<>(reportRecords.size());
+		reusedErrors = new ArrayList<>(reportRecords.size());
+		for (int i = 0; i < reportRecords.size(); i++) {
+			TableRow row = reportRecords.get(i);
+			Collection<ReportError> stored = store != null && !store.isDirty(row, signatures[i])
+					? store.getErrors(row)
+					: null;
+
+			reusedErrors.add(stored);
+			databaseErrors.add(stored == null ? registry.checkDatabaseRules(row, this) : null);
+		}
+	}
+
+	/**
+	 * Get the rows of the report for the incremental validation. If rows were
+	 * edited since the last validation, only them are read again from the
+	 * database, otherwise the whole report is loaded, since it could have been
+	 * changed without marking its rows (see
+	 * {@link RowValidationStore#markAddedOrRemoved(TableRow)}).
+	 * 
+	 * @param store
+	 * @return
+	 */
+	private ReportGraph loadGraph(RowValidationStore store) {
+		ReportGraph previous = store.getGraph();
+		if (previous != null) {
+			List<TableRow> dirtyRows = store.getDirtyRows(previous);
+			if (dirtyRows != null && !dirtyRows.isEmpty()) {
+				ReportGraph refreshed = previous.refresh(report, daoService, dirtyRows);
+				if (refreshed != null) {
+					LOGGER.info("Read again " + dirtyRows.size() + " edited rows of the report=" + report.getSenderId());
+					return refreshed;
+				}
+			}
+		}
+
+		return ReportGraph.load(report, reportService, daoService);
+	}
+
+	private void validate(Consumer<Collection<ReportError>> errors) {
+		List<List<Collection<ReportError>>> loadedErrors;
+		List<Collection<ReportError>> reused;
+		RowValidationStore loadedStore;
+		long[] loadedSignatures;
+		long[] loadedCrossRowSignatures;
+
+		// the loaded report is validated only once
+		synchronized (this) {
+			if (databaseErrors == null)
+				load();
+
+			loadedErrors = databaseErrors;
+			reused = reusedErrors;
+			loadedStore = store;
+			loadedSignatures = signatures;
+			loadedCrossRowSignatures = crossRowSignatures;
+			databaseErrors = null;
+			reusedErrors = null;
+		}
+
+		ArrayList<TableRow> reportRecords = graph.getRecords();
+
 		if (reportRecords.isEmpty()) {
-			errors.add(new EmptyReportError());
+			errors.accept(Collections.singletonList(new EmptyReportError()));
 		}
 
-		// check errors on single row (no interdependency is evaluated)
-		for (TableRow row : reportRecords) {
+		IntFunction<Collection<ReportError>> rowCheck;
+		List<Function<ArrayList<TableRow>, Collection<ReportError>>> crossRowChecks;
+
+		if (loadedStore != null) {
+			rowCheck = getIncrementalRowCheck(loadedStore, reportRecords, loadedSignatures, loadedErrors, reused);
+			crossRowChecks = getIncrementalCrossRowChecks(loadedStore, loadedCrossRowSignatures);
+		} else {
+			rowCheck = i -> registry.check(reportRecords.get(i), this, loadedErrors.get(i));
+			crossRowChecks = getCrossRowChecks();
+		}
+
+		if (parallel && parallelism > 1) {
+			validationThread = Thread.currentThread();
+			try {
+				validateParallel(reportRecords, rowCheck, crossRowChecks, errors);
+			} finally {
+				validationThread = null;
+			}
+		} else {
+			// check errors on single row (no interdependency is evaluated)
+			for (int i = 0; i < reportRecords.size(); i++) {
+				errors.accept(rowCheck.apply(i));
+			}
+
+			// check errors across different rows
+			for (Function<ArrayList<TableRow>, Collection<ReportError>> check : crossRowChecks) {
+				errors.accept(check.apply(reportRecords));
+			}
+		}
+
+		// keep the errors of the rows for the next sessions
+		if (loadedStore != null)
+			loadedStore.save();
+
+		registry.logMetrics();
+	}
+
+	/**
+	 * Run the single row checks and the checks across different rows as
+	 * concurrent tasks on a fork join pool. The rows are checked in blocks of
+	 * consecutive records, whose errors are accepted in the order of the
+	 * records. The rules which read the database were run while loading the
+	 * report, so the tasks only read the report graph.
+	 * 
+	 * @param reportRecords
+	 * @param rowCheck
+	 * @param crossRowChecks
+	 * @param errors
+	 */
+	private void validateParallel(ArrayList<TableRow> reportRecords, IntFunction<Collection<ReportError>> rowCheck,
+			List<Function<ArrayList<TableRow>, Collection<ReportError>>> crossRowChecks,
+			Consumer<Collection<ReportError>> errors) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			// a few blocks for each thread, to balance rows with different checks
+			int blockSize = Math.max(1, reportRecords.size() / (parallelism * ROW_BLOCKS_PER_THREAD));
+
+			List<Future<List<Collection<ReportError>>>> rowErrors = new ArrayList<>();
+			for (int from = 0; from < reportRecords.size(); from += blockSize) {
+				int first = from;
+				int last = Math.min(from + blockSize, reportRecords.size());
+				rowErrors.add(pool.submit(() -> {
+					List<Collection<ReportError>> block = new ArrayList<>(last - first);
+					for (int i = first; i < last; i++) {
+						block.add(rowCheck.apply(i));
+					}
+					return block;
+				}));
+			}
+
+			List<Future<Collection<ReportError>>> crossRowErrors = new ArrayList<>();
+			for (Function<ArrayList<TableRow>, Collection<ReportError>> check : crossRowChecks) {
+				crossRowErrors.add(pool.submit(() -> check.apply(reportRecords)));
+			}
+
+			// check errors on single row (no interdependency is evaluated)
+			for (Future<List<Collection<ReportError>>> block : rowErrors) {
+				for (Collection<ReportError> rowError : block.get()) {
+					errors.accept(rowError);
+				}
+			}
+
+			for (Future<Collection<ReportError>> crossRowError : crossRowErrors) {
+				errors.accept(crossRowError.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Validation interrupted", e);
+		} catch (ExecutionException e) {
+			LOGGER.error("Cannot validate the report=" + report.getSenderId(), e);
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Get the single row check of the i-th record, which returns the stored
+	 * errors for the rows which did not change
+	 * 
+	 * @param store
+	 * @param reportRecords
+	 * @param signatures
+	 * @param loadedErrors errors of the rules which read the database
+	 * @param reused       stored errors of the rows which did not change
+	 * @return
+	 */
+	private IntFunction<Collection<ReportError>> getIncrementalRowCheck(RowValidationStore store,
+			ArrayList<TableRow> reportRecords, long[] signatures, List<List<Collection<ReportError>>> loadedErrors,
+			List<Collection<ReportError>> reused) {
+
+		return i -> {
+			if (reused.get(i) != null)
+				return reused.get(i);
+
+			TableRow row = reportRecords.get(i);
+			Collection<ReportError> errors = registry.check(row, this, loadedErrors.get(i));
+			store.put(row, signatures[i], errors);
+			return errors;
+		};
+	}
+
+	/**
+	 * Compute for each record the signature of the values read by its single
+	 * row checks (see {@link ValidationRuleRegistry#getReadColumns(RowType)})
+	 * and the signature of the values read by the checks across different
+	 * rows: the row itself, the report and the parents (used in the stack
+	 * trace). The hashes of all the values of a row are computed again only if
+	 * the row was read again from the database or marked as dirty.
+	 * 
+	 * @param reportRecords
+	 * @param store
+	 */
+	private void computeSignatures(ArrayList<TableRow> reportRecords, RowValidationStore store) {
+		Map<TableRow, Long> previous = store.getValuesHashes();
+		Map<TableRow, Long> hashes = new IdentityHashMap<>();
+		Function<TableRow, Long> valuesHash = row -> hashes.computeIfAbsent(row, r -> {
+			Long hash = store.isDirty(r) ? null : previous.get(r);
+			return hash != null ? hash : RowValidationStore.getValuesHash(r);
+		});
+
+		// columns read by the checks of each row type, by sheet name
+		Map<RowType, Map<String, List<String>>> readColumns = new EnumMap<>(RowType.class);
+		for (RowType type : RowType.values()) {
+			Map<String, List<String>> columns = new TreeMap<>();
+			for (Map.Entry<String, Set<String>> entry : registry.getReadColumns(type).entrySet()) {
+				List<String> ids = new ArrayList<>(entry.getValue());
+				Collections.sort(ids);
+				columns.put(entry.getKey(), ids);
+			}
+			readColumns.put(type, columns);
+		}
+
+		// preferences or settings key > row
+		Map<String, TableRow> globalParents = new HashMap<>();
+
+		long reportHash = valuesHash.apply(graph.getReport());
+
+		signatures = new long[reportRecords.size()];
+		crossRowSignatures = new long[reportRecords.size()];
+		for (int i = 0; i < reportRecords.size(); i++) {
+			TableRow row = reportRecords.get(i);
+
+			long signature = 17;
+			for (Map.Entry<String, List<String>> entry : readColumns.get(TseReportService.getRowType(row)).entrySet()) {
+				signature = 31 * signature
+						+ getSheetHash(row, entry.getKey(), entry.getValue(), valuesHash, globalParents);
+			}
+			signatures[i] = signature;
+
+			long crossRowSignature = 31 * reportHash + valuesHash.apply(row);
+			for (String parentSheet : new String[] { CustomStrings.SUMMARIZED_INFO_SHEET,
+					CustomStrings.CASE_INFO_SHEET }) {
+				TableRow parent = graph.getParent(row, parentSheet);
+				if (parent != null)
+					crossRowSignature = 31 * crossRowSignature + valuesHash.apply(parent);
+			}
+			crossRowSignatures[i] = crossRowSignature;
+		}
+
+		store.setValuesHashes(hashes);
+	}
+
+	/**
+	 * Hash of the columns of the rows of a sheet which are related to the row:
+	 * the row itself, its parent or its children
+	 * 
+	 * @param row
+	 * @param sheetName
+	 * @param columns       ids of the columns, {@link ValidationRule#ALL_COLUMNS}
+	 *                      for all of them
+	 * @param valuesHash    hash of all the values of a row
+	 * @param globalParents preferences and settings already read, by key
+	 * @return
+	 */
+	private long getSheetHash(TableRow row, String sheetName, List<String> columns,
+			Function<TableRow, Long> valuesHash, Map<String, TableRow> globalParents) {
+
+		if (sheetName.equals(row.getSchema().getSheetName()))
+			return getColumnsHash(row, columns, valuesHash);
+
+		if (sheetName.equals(CustomStrings.REPORT_SHEET))
+			return getColumnsHash(graph.getReport(), columns, valuesHash);
+
+		if (Arrays.asList(GLOBAL_PARENT_SHEETS).contains(sheetName)) {
+			TableRow parent = getGlobalParent(row, sheetName, globalParents);
+			return parent == null ? 0 : getColumnsHash(parent, columns, valuesHash);
+		}
+
+		TableRow parent = graph.getParent(row, sheetName);
+		if (parent != null)
+			return getColumnsHash(parent, columns, valuesHash);
+
+		long hash = 0;
+		for (TableRow child : graph.getChildren(TableSchemaList.getByName(sheetName), row)) {
+			hash += getColumnsHash(child, columns, valuesHash);
+		}
+		return hash;
+	}
+
+	private static long getColumnsHash(TableRow row, List<String> columns, Function<TableRow, Long> valuesHash) {
+		long hash = row.getDatabaseId();
+		if (columns.contains(ValidationRule.ALL_COLUMNS))
+			return 31 * hash + valuesHash.apply(row);
+
+		if (columns.isEmpty())
+			return hash;
+
+		return 31 * hash + RowValidationStore.getValuesHash(row, columns);
+	}
+
+	/**
+	 * Get the preferences or the settings of the row
+	 * 
+	 * @param row
+	 * @param sheetName
+	 * @param globalParents rows already read, by key
+	 * @return the row, null if not found
+	 */
+	private TableRow getGlobalParent(TableRow row, String sheetName, Map<String, TableRow> globalParents) {
+		String foreignKey = Relation.foreignKeyFromParent(sheetName);
+		if (row.get(foreignKey) == null)
+			return null;
+
+		String id = row.getCode(foreignKey);
+		return globalParents.computeIfAbsent(sheetName + ":" + id, k -> {
 			try {
-				errors.addAll(checkMandatoryFields(row));
-			} catch (FormulaException e) {
-				LOGGER.error("Error occurred", e);
-				e.printStackTrace();
+				return daoService.getById(TableSchemaList.getByName(sheetName), Integer.parseInt(id));
+			} catch (NumberFormatException e) {
+				return null;
 			}
+		});
+	}
+
+	/**
+	 * Checks across different rows, in the order in which their errors are
+	 * reported. The checks are independent of each other.
+	 * 
+	 * @return
+	 */
+	private List<Function<ArrayList<TableRow>, Collection<ReportError>>> getCrossRowChecks() {
+		List<Function<ArrayList<TableRow>, Collection<ReportError>>> checks = new ArrayList<>();
+		checks.add(this::checkDuplicatedSummId);
+		checks.add(this::checkDuplicatedSampleId);
+		checks.add(this::checkDuplicatedResId);
+		checks.add(this::checkCaseIdentifiers);
+		checks.add(TseReportValidator::checkUnknownAgeClass);
+		checks.add(this::checkUngeneratedSampleDataAndAnalyticalResults);
+		checks.add(this::checkDateValidity);
+		return checks;
+	}
 
-			RowType type = TseReportService.getRowType(row);
-			if (type == RowType.RESULT) {
-				errors.addAll(checkResult(row));
-			} else if (type == RowType.CASE) {
-				errors.addAll(checkCaseInfo(row));
-			} else if (type == RowType.SUMM) {
-				errors.addAll(checkSummarizedInfo(row));
+	/**
+	 * Checks across different rows of the incremental validation, in the same
+	 * order of {@link #getCrossRowChecks()}. The checks by id are kept by group
+	 * in the store and only the groups of the changed rows are checked again.
+	 * The unknown age class and the ungenerated data checks are run on all the
+	 * records, since they read all the summarized information and their
+	 * children by id.
+	 * 
+	 * @param store
+	 * @param signatures signatures of the values read by the checks across
+	 *                   different rows
+	 * @return
+	 */
+	private List<Function<ArrayList<TableRow>, Collection<ReportError>>> getIncrementalCrossRowChecks(
+			RowValidationStore store, long[] signatures) {
+
+		List<Function<ArrayList<TableRow>, Collection<ReportError>>> checks = new ArrayList<>();
+
+		checks.add(records -> store.getIndex("DUPLICATED_SUMM_ID").check(records, signatures,
+				row -> TseReportService.getRowType(row) == RowType.SUMM ? NaturalKeyGrouper.getFingerprint(row) : null,
+				this::checkDuplicatedSummIdGroup, store));
+
+		checks.add(records -> store.getIndex("DUPLICATED_SAMPLE_ID").check(records, signatures,
+				row -> TseReportService.getRowType(row) == RowType.CASE ? row.getLabel(CustomStrings.SAMPLE_ID_COL)
+						: null,
+				group -> checkDuplicatedIdGroup(group, DuplicatedSampleIdError::new), store));
+
+		checks.add(records -> store.getIndex("DUPLICATED_RES_ID").check(records, signatures,
+				row -> TseReportService.getRowType(row) == RowType.RESULT ? row.getLabel(CustomStrings.RES_ID_COL)
+						: null,
+				group -> checkDuplicatedIdGroup(group, DuplicatedResultIdError::new), store));
+
+		checks.add(records -> {
+			Collection<ReportError> errors = new ArrayList<>();
+			errors.addAll(checkIdFieldGroups(store, signatures, records, CustomStrings.NATIONAL_CASE_ID_COL,
+					TSEMessages.get("inconsistent.national.case.id"), NATIONAL_CASE_ID_FIELDS));
+			errors.addAll(checkIdFieldGroups(store, signatures, records, CustomStrings.ANIMAL_ID_COL,
+					TSEMessages.get("inconsistent.animal.id"), ANIMAL_ID_FIELDS));
+			return errors;
+		});
+
+		checks.add(TseReportValidator::checkUnknownAgeClass);
+		checks.add(this::checkUngeneratedSampleDataAndAnalyticalResults);
+
+		checks.add(records -> store.getIndex("DATE_VALIDITY").check(records, signatures,
+				row -> TseReportService.getRowType(row) == RowType.CASE ? RowValidationStore.getKey(row) : null,
+				this::checkDateValidityGroup, store));
+
+		return checks;
+	}
+
+	/**
+	 * Check the summarized information with the same fingerprint of the natural
+	 * key, as {@link #checkDuplicatedSummId}
+	 * 
+	 * @param group
+	 * @return
+	 */
+	private List<RowError> checkDuplicatedSummIdGroup(List<TableRow> group) {
+		List<RowError> errors = new ArrayList<>();
+		for (List<TableRow> duplicates : NaturalKeyGrouper.getDuplicatedGroups(group)) {
+			TableRow first = duplicates.get(0);
+			String rowId1 = getStackTrace(first);
+			for (int i = 1; i < duplicates.size(); i++) {
+				errors.add(new RowError(first, new DuplicatedContextError(rowId1, getStackTrace(duplicates.get(i)))));
 			}
 		}
+		return errors;
+	}
 
-		// check errors across different rows
-		errors.addAll(checkDuplicatedSummId(reportRecords));
-		errors.addAll(checkDuplicatedSampleId(reportRecords));
-		errors.addAll(checkDuplicatedResId(reportRecords));
-		errors.addAll(checkNationalCaseId(reportRecords));
-		errors.addAll(checkAnimalId(reportRecords));
-		errors.addAll(checkUnknownAgeClass(reportRecords));
-		errors.addAll(checkUngeneratedSampleDataAndAnalyticalResults(reportRecords));
-		errors.addAll(checkDateValidity(reportRecords));
+	/**
+	 * Check the rows with the same id: each row after the first one is a
+	 * duplicate of the first one, as {@link #checkDuplicatedSampleId}
+	 * 
+	 * @param group
+	 * @param error creates the error from the stack traces of the duplicate and
+	 *              of the first row
+	 * @return
+	 */
+	private List<RowError> checkDuplicatedIdGroup(List<TableRow> group, BiFunction<String, String, ReportError> error) {
+		List<RowError> errors = new ArrayList<>();
+		TableRow first = group.get(0);
+		for (int i = 1; i < group.size(); i++) {
+			TableRow row = group.get(i);
+			errors.add(new RowError(row, error.apply(getStackTrace(row), getStackTrace(first))));
+		}
+		return errors;
+	}
+
+	private Collection<ReportError> checkIdFieldGroups(RowValidationStore store, long[] signatures,
+			List<TableRow> records, String idField, String idFieldLabel, String[] fieldsToCheck) {
+
+		CaseConsistencyChecker checker = new CaseConsistencyChecker(this::getStackTrace).addRule(idField, idFieldLabel,
+				fieldsToCheck);
+
+		return store.getIndex("INCONSISTENT_" + idField).check(records, signatures, row -> {
+			if (TseReportService.getRowType(row) != RowType.CASE)
+				return null;
+			String id = row.getLabel(idField);
+			return id.isEmpty() ? null : id;
+		}, group -> {
+			List<RowError> errors = new ArrayList<>();
+			checker.checkGroup(group, (row, error) -> errors.add(new RowError(row, error)));
+			return errors;
+		}, store);
+	}
+
+	private List<RowError> checkDateValidityGroup(List<TableRow> group) {
+		List<RowError> errors = new ArrayList<>();
+		for (TableRow row : group) {
+			ReportError error = checkDateValidity(row);
+			if (error != null)
+				errors.add(new RowError(row, error));
+		}
 		return errors;
 	}
 
@@ -169,35 +776,20 @@ public class TseReportValidator extends ReportValidator {
 	 */
 	public Collection<ReportError> checkDuplicatedSummId(ArrayList<TableRow> reportRecords) {
 		Collection<ReportError> errors = new ArrayList<>();
-		// the set store the values already analysed
-		Set<Integer> indexComputed = new HashSet<>();
 
-		for (int i = 0; i < reportRecords.size() - 1; i++) {
-			TableRow current = reportRecords.get(i);
-			// if the row is not summ or already computed skip
-			if (TseReportService.getRowType(current) != RowType.SUMM || indexComputed.contains(i))
-				continue;
-
-			for (int j = i + 1; j < reportRecords.size(); j++) {
-				TableRow next = reportRecords.get(j);
-
-				// if the row is not summ or already computed or same as the current skip
-				if (TseReportService.getRowType(next) != RowType.SUMM || indexComputed.contains(j))
-					continue;
-
-				// if the records has same values under natural key
-				if (current.sameAs(next)) {
-					// get their ids
-					String rowId1 = getStackTrace(current);
-					String rowId2 = getStackTrace(next);
-
-					// add their indexes to the set
-					indexComputed.add(j);
-					indexComputed.add(i);
+		List<TableRow> summInfos = new ArrayList<>();
+		for (TableRow row : reportRecords) {
+			if (TseReportService.getRowType(row) == RowType.SUMM)
+				summInfos.add(row);
+		}
 
-					// add the error to print
-					errors.add(new DuplicatedContextError(rowId1, rowId2));
-				}
+		// group the rows by natural key, then report each duplicate against the
+		// first row of its group
+		for (List<TableRow> group : NaturalKeyGrouper.getDuplicatedGroups(summInfos)) {
+			String rowId1 = getStackTrace(group.get(0));
+			for (int i = 1; i < group.size(); i++) {
+				String rowId2 = getStackTrace(group.get(i));
+				errors.add(new DuplicatedContextError(rowId1, rowId2));
 			}
 		}
 
@@ -231,6 +823,29 @@ public class TseReportValidator extends ReportValidator {
 		return id;
 	}
 
+	/**
+	 * Get a row of the report, from the report graph if loaded
+	 * 
+	 * @param sheetName
+	 * @param id
+	 * @return
+	 */
+	private TableRow getRow(String sheetName, int id) {
+		TableSchema schema = TableSchemaList.getByName(sheetName);
+		if (graph != null) {
+			TableRow row = graph.getById(schema, id);
+			if (row != null)
+				return row;
+		}
+
+		// the tasks of the parallel mode cannot use the database
+		Thread owner = validationThread;
+		if (owner != null && owner != Thread.currentThread())
+			throw new IllegalStateException("The row " + sheetName + ":" + id + " is not part of the report " + report.getSenderId());
+
+		return daoService.getById(schema, id);
+	}
+
 	public String getStackTrace(TableRow row) {
 		RowType type = TseReportService.getRowType(row);
 		String trace = null;
@@ -241,15 +856,15 @@ public class TseReportValidator extends ReportValidator {
 			break;
 		case CASE:
 			int parentId = Integer.valueOf(row.getCode(Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET)));
-			TableRow summInfo = daoService.getById(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET), parentId);
+			TableRow summInfo = getRow(CustomStrings.SUMMARIZED_INFO_SHEET, parentId);
 			trace = getRowId(summInfo);
 			trace = trace + arrowCharacter + getRowId(row);
 			break;
 		case RESULT:
 			int summParentId = Integer.valueOf(row.getCode(Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET)));
 			int caseParentId = Integer.valueOf(row.getCode(Relation.foreignKeyFromParent(CustomStrings.CASE_INFO_SHEET)));
-			TableRow summ = daoService.getById(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET), summParentId);
-			TableRow caseReport = daoService.getById(TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET), caseParentId);
+			TableRow summ = getRow(CustomStrings.SUMMARIZED_INFO_SHEET, summParentId);
+			TableRow caseReport = getRow(CustomStrings.CASE_INFO_SHEET, caseParentId);
 			trace = getRowId(summ);
 			trace = trace + arrowCharacter + getRowId(caseReport);
 			trace = trace + arrowCharacter + getRowId(row);
@@ -289,52 +904,7 @@ public class TseReportValidator extends ReportValidator {
 	 * @return
 	 */
 	public Collection<ReportError> checkSummarizedInfo(TableRow row) {
-		Collection<ReportError> errors = new ArrayList<>();
-		SummarizedInfoValidator validator = new SummarizedInfoValidator(daoService);
-		Collection<SampleCheck> checks = validator.isSampleCorrect(row);
-		String rowId = getStackTrace(row);
-		for (SampleCheck check : checks) {
-			switch (check) {
-			case TOO_MANY_INCONCLUSIVES:
-				errors.add(new CheckInconclusiveCasesError(rowId));
-				break;
-			case MISSING_RGT_CASE:
-				errors.add(new MissingRGTCaseError(rowId));
-				break;
-			case TOO_MANY_POSITIVES:
-				errors.add(new CheckPositiveCasesError(rowId));
-				break;
-			case NON_WILD_FOR_KILLED:
-				TableSchema schema = TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET);
-
-				String targetLabel = schema.getById(CustomStrings.TARGET_GROUP_COL).getLabel();
-				String prodLabel = schema.getById(CustomStrings.PROD_COL).getLabel();
-
-				String id = getStackTrace(row);
-				TableCell targetGroup = row.get(CustomStrings.TARGET_GROUP_COL);
-				TableCell prod = row.get(CustomStrings.PROD_COL);
-
-				errors.add(new NonWildAndKilledError(id, targetLabel + ": " + targetGroup.getLabel(), prodLabel + ": " + prod.getLabel()));
-
-				break;
-			default:
-				break;
-			}
-		}
-
-		// check declared cases
-		if (!row.getCode(CustomStrings.SUMMARIZED_INFO_TYPE).equals(CustomStrings.SUMMARIZED_INFO_RGT_TYPE)) {
-			// if not RGT type, then check declared cases
-			String total = row.getLabel(CustomStrings.TOT_SAMPLE_TESTED_COL);
-			String unsuitable = row.getLabel(CustomStrings.TOT_SAMPLE_UNSUITABLE_COL);
-
-			// if no declared case, then show error
-			if (total.equals("0") && unsuitable.equals("0")) {
-				errors.add(new NoCaseDeclaredError(getRowId(row)));
-			}
-		}
-
-		return errors;
+		return registry.check(row, this, RowType.SUMM);
 	}
 
 	/**
@@ -344,65 +914,39 @@ public class TseReportValidator extends ReportValidator {
 	 * @return
 	 */
 	public Collection<ReportError> checkCaseInfo(TableRow row) {
-		Collection<ReportError> errors = new ArrayList<>();
-		CaseReportValidator validator = new CaseReportValidator(daoService);
-
-		Collection<Check> checks = validator.isRecordCorrect(row);
-		for (Check check : checks) {
-			switch (check) {
-			case NO_TEST_SPECIFIED:
-				errors.add(new NoTestSpecifiedError(getStackTrace(row)));
-				break;
-			case DUPLICATED_TEST:
-				errors.add(new DuplicatedTestError(getStackTrace(row)));
-				break;
-			case CASE_ID_FOR_NEGATIVE:
-				errors.add(new CaseIdForNegativeError(getStackTrace(row)));
-				break;
-			case INDEX_CASE_FOR_NEGATIVE:
-				errors.add(new IndexCaseForNegativeError(getStackTrace(row)));
-				break;
-			case INDEX_CASE_FOR_FARMED_CWD:
-				errors.add(new IndexCaseForFarmedCwd(getStackTrace(row)));
-				break;
-			case EM_FOR_NOT_INFECTED:
-				errors.add(new NotInfectedStatusForEradicationError(getStackTrace(row)));
-				break;
-			case INDEX_CASE_FOR_INFECTED:
-				errors.add(new IndexCaseInconsistentWithStatusHerdError(getStackTrace(row),
-						row.getLabel(CustomStrings.INDEX_CASE_COL), "Infected"));
-				break;
-			case NOT_INDEX_CASE_FOR_FREE:
-				errors.add(new IndexCaseInconsistentWithStatusHerdError(getStackTrace(row),
-						row.getLabel(CustomStrings.INDEX_CASE_COL), "Not infected"));
-				break;
-			case NOT_CONSTANT_ANALYSIS_YEAR:
-				errors.add(new NotConstantAnalysisYearError(getStackTrace(row)));
-				break;
-			default:
-				break;
-			}
-		}
-
-		errors.addAll(checkAgeClass(row));
-
-		return errors;
+		return registry.check(row, this, RowType.CASE);
 	}
 
 	public Collection<ReportError> checkNationalCaseId(Collection<TableRow> reportRecords) {
-		String[] fieldsToCheck = { CustomStrings.ANIMAL_ID_COL };
 		return checkIdField(reportRecords, CustomStrings.NATIONAL_CASE_ID_COL,
-				TSEMessages.get("inconsistent.national.case.id"), fieldsToCheck);
+				TSEMessages.get("inconsistent.national.case.id"), NATIONAL_CASE_ID_FIELDS);
 	}
 
 	public Collection<ReportError> checkAnimalId(Collection<TableRow> reportRecords) {
-		String[] fieldsToCheck = { CustomStrings.NATIONAL_CASE_ID_COL, CustomStrings.HERD_ID_COL,
-				CustomStrings.STATUS_HERD_COL, CustomStrings.SAMP_HOLDING_ID_COL, CustomStrings.SAMP_DAY_COL,
-				CustomStrings.SAMP_AREA_COL, CustomStrings.INDEX_CASE_COL, CustomStrings.BIRTH_COUNTRY_COL,
-				CustomStrings.BIRTH_YEAR_COL, CustomStrings.BIRTH_MONTH_COL, CustomStrings.BORN_FLOCK_HERD_COL,
-				CustomStrings.BREED_COL, CustomStrings.EVAL_COMMENT_COL };
+		return checkIdField(reportRecords, CustomStrings.ANIMAL_ID_COL, TSEMessages.get("inconsistent.animal.id"),
+				ANIMAL_ID_FIELDS);
+	}
 
-		return checkIdField(reportRecords, CustomStrings.ANIMAL_ID_COL, TSEMessages.get("inconsistent.animal.id"), fieldsToCheck);
+	/**
+	 * Check both the national case id and the animal id with a single
+	 * traversal of the records. Errors are in the same order of
+	 * {@link #checkNationalCaseId} followed by {@link #checkAnimalId}.
+	 * 
+	 * @param reportRecords
+	 * @return
+	 */
+	public Collection<ReportError> checkCaseIdentifiers(Collection<TableRow> reportRecords) {
+		CaseConsistencyChecker checker = new CaseConsistencyChecker(this::getStackTrace)
+				.addRule(CustomStrings.NATIONAL_CASE_ID_COL, TSEMessages.get("inconsistent.national.case.id"),
+						NATIONAL_CASE_ID_FIELDS)
+				.addRule(CustomStrings.ANIMAL_ID_COL, TSEMessages.get("inconsistent.animal.id"), ANIMAL_ID_FIELDS);
+
+		Collection<ReportError> errors = new ArrayList<>();
+		for (Collection<ReportError> ruleErrors : checker.check(reportRecords)) {
+			errors.addAll(ruleErrors);
+		}
+
+		return errors;
 	}
 
 	/**
@@ -418,48 +962,20 @@ public class TseReportValidator extends ReportValidator {
 	public Collection<ReportError> checkIdField(Collection<TableRow> reportRecords, String idField, String idFieldLabel,
 			String[] fieldsToCheck) {
 
-		Collection<ReportError> errors = new ArrayList<>();
-		HashMap<String, TableRow> cases = new HashMap<>();
-		for (TableRow row : reportRecords) {
-			if (TseReportService.getRowType(row) != RowType.CASE)
-				continue;
+		CaseConsistencyChecker checker = new CaseConsistencyChecker(this::getStackTrace).addRule(idField, idFieldLabel,
+				fieldsToCheck);
 
-			String id = row.getLabel(idField);
-			if (id.isEmpty())
-				continue;
-
-			TableRow current = cases.get(id);
-			// if one is already present, check if they are equal or not
-			if (current != null) {
-				// add all the mismatches
-				for (String field : fieldsToCheck) {
-					String currentValue = current.getCode(field);
-					String currentValueLab = current.getLabel(field);
-					String value = row.getCode(field);
-					String label = row.getLabel(field);
-
-					if (!value.equals(currentValue)) {
-						errors.add(new InconsistentCasesError(getStackTrace(current), getStackTrace(row), idFieldLabel,
-								id, field, currentValueLab, label));
-					}
-				}
-			}
-
-			// save the new one
-			cases.put(id, row);
-		}
-
-		return errors;
+		return checker.check(reportRecords).get(0);
 	}
 
 	public Collection<ReportError> checkAgeClass(TableRow row) {
 		Collection<ReportError> errors = new ArrayList<>();
 
 		int reportId = row.getNumCode(Relation.foreignKeyFromParent(CustomStrings.REPORT_SHEET));
-		TableRow report1 = daoService.getById(TableSchemaList.getByName(CustomStrings.REPORT_SHEET), reportId);
+		TableRow report1 = getRow(CustomStrings.REPORT_SHEET, reportId);
 
 		int summId = row.getNumCode(Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET));
-		TableRow summInfo = daoService.getById(TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET), summId);
+		TableRow summInfo = getRow(CustomStrings.SUMMARIZED_INFO_SHEET, summId);
 
 		String reportYear = report1.getCode(AppPaths.REPORT_YEAR_COL);
 		String reportMonth = report1.getCode(AppPaths.REPORT_MONTH_COL);
@@ -484,14 +1000,20 @@ public class TseReportValidator extends ReportValidator {
 		if (birthYear.isEmpty() || birthMonth.isEmpty() || ageClass.isEmpty())
 			return errors;
 
-		AgeClassValidator ageValidator = new AgeClassValidator(ageClass, reportYear, reportMonth, birthYear,
-				birthMonth);
-
 		try {
-			tse_validator.AgeClassValidator.Check check2 = ageValidator.validate();
-			switch (check2) {
+			AgeClassTable ageClasses = AgeClassTable.getInstance();
+
+			int ageClassIndex = ageClasses.indexOf(ageClass);
+			if (ageClassIndex == -1) {
+				throw new IOException("The age " + ageClass + " was not found in the picklist " + CatalogLists.AGE_CLASS_LIST);
+			}
+
+			int months = AgeClassTable.getMonthsDifference(Integer.parseInt(reportYear), Integer.parseInt(reportMonth),
+					Integer.parseInt(birthYear), Integer.parseInt(birthMonth));
+
+			switch (ageClasses.check(ageClassIndex, months)) {
 			case AGE_CLASS_NOT_RESPECTED:
-				errors.add(new WrongAgeClassError(getStackTrace(row), ageClassLabel, ageValidator.getMonthsDifference()));
+				errors.add(new WrongAgeClassError(getStackTrace(row), ageClassLabel, months));
 				break;
 			case REPORT_DATE_EXCEEDED:
 				errors.add(new ReportDateExceededError(getStackTrace(row), reportYear, reportMonthLabel, birthYear, birthMonthLabel));
@@ -499,7 +1021,7 @@ public class TseReportValidator extends ReportValidator {
 			default:
 				break;
 			}
-		} catch (IOException e) {
+		} catch (IOException | NumberFormatException e) {
 			LOGGER.error("Cannot check age class", e);
 			e.printStackTrace();
 		}
@@ -514,33 +1036,7 @@ public class TseReportValidator extends ReportValidator {
 	 * @return
 	 */
 	public Collection<ReportError> checkResult(TableRow row) {
-		Collection<ReportError> errors = new ArrayList<>();
-		ErrorType errorType = ResultValidator.getError(row);
-		String rowId = getStackTrace(row);
-
-		switch (errorType) {
-		case ALLELE_ERROR:
-			errors.add(new AlleleNotReportableError(rowId, row.getLabel(CustomStrings.ALLELE_1_COL), row.getLabel(CustomStrings.ALLELE_2_COL)));
-			break;
-		case WRONG_ALLELE_PAIR:
-			errors.add(new WrongAllelesPairError(rowId, row.getLabel(CustomStrings.ALLELE_1_COL), row.getLabel(CustomStrings.ALLELE_2_COL)));
-			break;
-		default:
-			break;
-		}
-
-		// check analysis year (must be >= than report year)
-		try {
-			TseDate analysisDate = new TseDate(row.getCode(CustomStrings.ANALYSIS_Y_COL), "0");
-			TseDate reportDate = new TseDate(report.getYear(), "0");
-
-			if (analysisDate.compareTo(reportDate) < 0)
-				errors.add(new WrongAnalysisYearError(rowId, analysisDate, reportDate));
-		} catch (NumberFormatException e) {
-			LOGGER.error("Error in parsing a non-numeric String", e);
-			e.printStackTrace();
-		}
-		return errors;
+		return registry.check(row, this, RowType.RESULT);
 	}
 
 	public static Collection<ReportError> checkUnknownAgeClass(Collection<TableRow> rows) {
@@ -570,6 +1066,24 @@ public class TseReportValidator extends ReportValidator {
 		return errors;
 	}
 
+	/**
+	 * Get the records of the report grouped by type and parent. The groups of
+	 * the validated report are computed once and shared by the checks.
+	 * 
+	 * @param reportRecords
+	 * @return
+	 */
+	public ReportRecordGroups getRecordGroups(Collection<TableRow> reportRecords) {
+		if (graph == null || reportRecords != graph.getRecords())
+			return new ReportRecordGroups(reportRecords);
+
+		synchronized (this) {
+			if (recordGroups == null)
+				recordGroups = new ReportRecordGroups(reportRecords);
+			return recordGroups;
+		}
+	}
+
 	public Collection<ReportError> checkUngeneratedSampleDataAndAnalyticalResults(ArrayList<TableRow> reportRecords) {
 		Collection<ReportError> errors = new ArrayList<>();
 		if (reportRecords.size() == 1) {
@@ -582,12 +1096,10 @@ public class TseReportValidator extends ReportValidator {
 				errors.add(new MissingSampleData(getStackTrace(currentRow)));
 			}
 		} else {
-			List<SummarizedInfo> summaryInfos = reportRecords.stream().filter(r -> SUMMARY_INFO_SCHEMA == r.getSchema()).map(SummarizedInfo::new).collect(Collectors.toList());
-			List<CaseReport> caseInfos = reportRecords.stream().filter(r -> CASE_INFO_SCHEMA == r.getSchema()).map(CaseReport::new).collect(Collectors.toList());
-			List<AnalyticalResult> analyticalResults = reportRecords.stream().filter(r -> ANALYTICAL_RESULTS_SCHEMA == r.getSchema()).map(AnalyticalResult::new).collect(Collectors.toList());
+			ReportRecordGroups groups = getRecordGroups(reportRecords);
 
-			for (SummarizedInfo summarizedInfo: summaryInfos) {
-				boolean generatedSampleData = false;
+			for (TableRow row : groups.getSummInfos()) {
+				SummarizedInfo summarizedInfo = new SummarizedInfo(row);
 
 				int negSamples = summarizedInfo.getNegativeSamples();
 				int testedSamples = summarizedInfo.getTotalTestedSamples();
@@ -598,46 +1110,33 @@ public class TseReportValidator extends ReportValidator {
 				boolean isGenotyping = type.equals(CustomStrings.SUMMARIZED_INFO_RGT_TYPE);
 
 				if (negSamples < testedSamples) {
-					for (CaseReport caseReport: caseInfos) {
-						String caseReportSumInfoId = caseReport.getLabel(CustomStrings.SI_ID_COL);
-						// if not child report > continue
-						if (!caseReportSumInfoId.equals(summarizedInfoId)) {
-							continue;
-						}
-						generatedSampleData = true;
-
-						boolean generatedResultData = false;
+					List<TableRow> caseReports = groups.getCases(summarizedInfoId);
+					for (TableRow caseReport : caseReports) {
 						boolean hasGenotype = false;
 
 						String caseReportId = caseReport.getLabel(CustomStrings.CASE_ID_COL);
-						for (AnalyticalResult analyticalResult : analyticalResults) {
-							String analyticalReportCaseReportId = analyticalResult.getLabel(CustomStrings.CASE_ID_COL);
-							// if not child report > continue
-							if (!analyticalReportCaseReportId.equals(caseReportId)) {
-								continue;
-							}
-
-							generatedResultData = true;
+						List<TableRow> analyticalResults = groups.getResults(caseReportId);
+						for (TableRow analyticalResult : analyticalResults) {
 							String anMethCode = analyticalResult.getLabel(CustomStrings.AN_METH_CODE_COL);
 							if (isScrapie && anMethCode.equals(CustomStrings.AN_METH_CODE_GENOTYPING_TYPE)) {
 								hasGenotype = true;
 							}
 						}
 
-						if (!isGenotyping && !generatedResultData) {
+						if (!isGenotyping && analyticalResults.isEmpty()) {
 							errors.add(new MissingResultData(getStackTrace(caseReport)));
 						}
 
 						if (isScrapie && !hasGenotype) {
 							errors.add(new MissingGenotypingForScrapieType(getStackTrace(caseReport)));
 						}
-					} // end for 2
+					}
 
-					if (!generatedSampleData  && !isGenotyping) {
+					if (caseReports.isEmpty() && !isGenotyping) {
 						errors.add(new MissingSampleData(getStackTrace(summarizedInfo)));
 					}
 				}
-			} // end for
+			}
 		}
 
 		return errors;
@@ -648,22 +1147,38 @@ public class TseReportValidator extends ReportValidator {
 		for (TableRow currentRow : reportRecords) {
 			RowType currentRowType = TseReportService.getRowType(currentRow);
 			if (currentRowType == RowType.CASE) {
-				int sampCode = currentRow.getNumCode(CustomStrings.SAMP_DAY_COL);
+				ReportError error = checkDateValidity(currentRow);
+				if (error != null)
+					errors.add(error);
+			}
+		}
 
-				TableRow report = new TseReport(currentRow.getParent(REPORT_SCHEMA));
-				int sampBirthMonth = report.getNumCode(CustomStrings.REPORT_MONTH);
-				int sampBirthYear = report.getNumCode(CustomStrings.REPORT_YEAR);
+		return errors;
+	}
 
-				if (sampCode > 0 && sampBirthMonth > 0 && sampBirthYear > 0) {
-					DateValidator dateValidator = new DateValidator();
-					boolean validDate = dateValidator.validate(sampCode, sampBirthMonth, sampBirthYear);
+	/**
+	 * Check the sampling date of a case
+	 * 
+	 * @param currentRow
+	 * @return the error, null if the date is valid
+	 */
+	private ReportError checkDateValidity(TableRow currentRow) {
+		int sampCode = currentRow.getNumCode(CustomStrings.SAMP_DAY_COL);
 
-					if (!validDate) {
-						errors.add(new DateInvalidError(getStackTrace(currentRow), sampCode, sampBirthMonth, sampBirthYear));
-					}
-				}
+		TableRow parent = graph != null ? graph.getReport() : currentRow.getParent(REPORT_SCHEMA);
+		TableRow report = new TseReport(parent);
+		int sampBirthMonth = report.getNumCode(CustomStrings.REPORT_MONTH);
+		int sampBirthYear = report.getNumCode(CustomStrings.REPORT_YEAR);
+
+		if (sampCode > 0 && sampBirthMonth > 0 && sampBirthYear > 0) {
+			DateValidator dateValidator = new DateValidator();
+			boolean validDate = dateValidator.validate(sampCode, sampBirthMonth, sampBirthYear);
+
+			if (!validDate) {
+				return new DateInvalidError(getStackTrace(currentRow), sampCode, sampBirthMonth, sampBirthYear);
 			}
 		}
 
-		return errors;
-	}}
+		return null;
+	}
+}
@@ -0,0 +1,374 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import app_config.AppPaths;
+import date_comparator.TseDate;
+import formula.FormulaException;
+import providers.TseReportService.RowType;
+import report_validator.ReportError;
+import table_relations.Relation;
+import table_skeleton.TableCell;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import tse_validator.ResultValidator.ErrorType;
+import tse_validator.SummarizedInfoValidator.SampleCheck;
+import xlsx_reader.TableSchema;
+import xlsx_reader.TableSchemaList;
+
+/**
+ * Single row business rules of the TSE reports
+ *
+ */
+public class TseValidationRules {
+
+	private static final Logger LOGGER = LogManager.getLogger(TseValidationRules.class);
+
+	/**
+	 * Rule defined by a function
+	 *
+	 */
+	private static class FunctionRule implements ValidationRule {
+
+		private final String name;
+		private final RowType rowType;
+		private final Function<RowType, Columns> readColumns;
+		private final boolean readsDatabase;
+		private final BiFunction<TableRow, TseReportValidator, Collection<ReportError>> function;
+
+		private FunctionRule(String name, RowType rowType, Columns readColumns,
+				BiFunction<TableRow, TseReportValidator, Collection<ReportError>> function) {
+			this(name, rowType, type -> readColumns, false, function);
+		}
+
+		private FunctionRule(String name, RowType rowType, Function<RowType, Columns> readColumns,
+				boolean readsDatabase, BiFunction<TableRow, TseReportValidator, Collection<ReportError>> function) {
+			this.name = name;
+			this.rowType = rowType;
+			this.readColumns = readColumns;
+			this.readsDatabase = readsDatabase;
+			this.function = function;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public RowType getRowType() {
+			return rowType;
+		}
+
+		@Override
+		public Map<String, Set<String>> getReadColumns(RowType type) {
+			// the errors contain the stack trace of the row
+			return new Columns().and(readColumns.apply(type)).and(getStackTraceColumns(type)).get();
+		}
+
+		@Override
+		public boolean readsDatabase() {
+			return readsDatabase;
+		}
+
+		@Override
+		public Collection<ReportError> check(TableRow row, TseReportValidator validator) {
+			return function.apply(row, validator);
+		}
+	}
+
+	/**
+	 * Columns of the rows, by sheet name
+	 *
+	 */
+	private static class Columns {
+
+		private final Map<String, Set<String>> columns = new HashMap<>();
+
+		private Columns and(String sheetName, String... ids) {
+			Set<String> set = columns.computeIfAbsent(sheetName, k -> new HashSet<>());
+			Collections.addAll(set, ids);
+			return this;
+		}
+
+		private Columns and(Columns other) {
+			for (Map.Entry<String, Set<String>> entry : other.columns.entrySet())
+				and(entry.getKey(), entry.getValue().toArray(new String[0]));
+			return this;
+		}
+
+		private Map<String, Set<String>> get() {
+			Map<String, Set<String>> copy = new HashMap<>();
+			for (Map.Entry<String, Set<String>> entry : columns.entrySet())
+				copy.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<>(entry.getValue())));
+			return Collections.unmodifiableMap(copy);
+		}
+	}
+
+	private static Columns columns(String sheetName, String... ids) {
+		return new Columns().and(sheetName, ids);
+	}
+
+	/**
+	 * Columns read by {@link TseReportValidator#getStackTrace(TableRow)}: the
+	 * ids of the row and of its parents
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static Columns getStackTraceColumns(RowType type) {
+		String summId = Relation.foreignKeyFromParent(CustomStrings.SUMMARIZED_INFO_SHEET);
+		String caseId = Relation.foreignKeyFromParent(CustomStrings.CASE_INFO_SHEET);
+
+		Columns columns = columns(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.PROG_ID_COL);
+		switch (type) {
+		case CASE:
+			return columns.and(CustomStrings.CASE_INFO_SHEET, summId, CustomStrings.SAMPLE_ID_COL);
+		case RESULT:
+			return columns.and(CustomStrings.CASE_INFO_SHEET, CustomStrings.SAMPLE_ID_COL)
+					.and(CustomStrings.RESULT_SHEET, summId, caseId, CustomStrings.RES_ID_COL);
+		default:
+			return columns;
+		}
+	}
+
+	/**
+	 * Columns read by the mandatory fields formulas: all the columns of the row
+	 * and of its parents, preferences and settings included
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static Columns getMandatoryFieldsColumns(RowType type) {
+		Columns columns = columns(CustomStrings.REPORT_SHEET, ValidationRule.ALL_COLUMNS)
+				.and(CustomStrings.PREFERENCES_SHEET, ValidationRule.ALL_COLUMNS)
+				.and(CustomStrings.SETTINGS_SHEET, ValidationRule.ALL_COLUMNS)
+				.and(CustomStrings.SUMMARIZED_INFO_SHEET, ValidationRule.ALL_COLUMNS);
+
+		if (type == RowType.CASE || type == RowType.RESULT)
+			columns.and(CustomStrings.CASE_INFO_SHEET, ValidationRule.ALL_COLUMNS);
+
+		if (type == RowType.RESULT)
+			columns.and(CustomStrings.RESULT_SHEET, ValidationRule.ALL_COLUMNS);
+
+		return columns;
+	}
+
+	/**
+	 * Get the error if the condition is true. The error is created only in
+	 * that case, since it requires the stack trace of the row.
+	 * 
+	 * @param condition
+	 * @param error
+	 * @return
+	 */
+	private static Collection<ReportError> error(boolean condition, Supplier<ReportError> error) {
+		if (!condition)
+			return Collections.emptyList();
+
+		Collection<ReportError> errors = new ArrayList<>(1);
+		errors.add(error.get());
+		return errors;
+	}
+
+	/**
+	 * Register all the rules, in the order in which their errors are reported
+	 * for a row
+	 *
+	 * @param registry
+	 */
+	public static void registerAll(ValidationRuleRegistry registry) {
+
+		// all the rows, the formulas can read the parents from the database
+		registry.register(new FunctionRule("MANDATORY_FIELDS", null, TseValidationRules::getMandatoryFieldsColumns,
+				true, TseValidationRules::checkMandatoryFields));
+
+		// summarized information
+		registry.register(new FunctionRule("SAMPLE_CASES_COUNT", RowType.SUMM,
+				columns(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.SUMMARIZED_INFO_TYPE,
+						CustomStrings.TOT_SAMPLE_INCONCLUSIVE_COL, CustomStrings.TOT_SAMPLE_POSITIVE_COL,
+						CustomStrings.TOT_SAMPLE_TESTED_COL).and(CustomStrings.CASE_INFO_SHEET,
+								CustomStrings.NATIONAL_CASE_ID_COL, CustomStrings.SAMP_EVENT_ASSES_COL),
+				TseValidationRules::checkSampleCases));
+
+		registry.register(new FunctionRule("NO_CASE_DECLARED", RowType.SUMM,
+				columns(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.SUMMARIZED_INFO_TYPE,
+						CustomStrings.TOT_SAMPLE_TESTED_COL, CustomStrings.TOT_SAMPLE_UNSUITABLE_COL),
+				TseValidationRules::checkNoCaseDeclared));
+
+		// cases
+		registry.register(new FunctionRule("CASE_ID_FOR_NEGATIVE", RowType.CASE,
+				columns(CustomStrings.CASE_INFO_SHEET, CustomStrings.NATIONAL_CASE_ID_COL,
+						CustomStrings.SAMP_EVENT_ASSES_COL),
+				(row, validator) -> error(validator.getCaseReportValidator().isCaseIdForNegative(row),
+						() -> new CaseIdForNegativeError(validator.getStackTrace(row)))));
+
+		registry.register(new FunctionRule("INDEX_CASE_FOR_NEGATIVE", RowType.CASE,
+				columns(CustomStrings.CASE_INFO_SHEET, CustomStrings.INDEX_CASE_COL, CustomStrings.SAMP_EVENT_ASSES_COL),
+				(row, validator) -> error(validator.getCaseReportValidator().isIndexCaseForNegative(row),
+						() -> new IndexCaseForNegativeError(validator.getStackTrace(row)))));
+
+		registry.register(new FunctionRule("TSE48", RowType.CASE,
+				columns(CustomStrings.CASE_INFO_SHEET, CustomStrings.INDEX_CASE_COL)
+						.and(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.STATUS_HERD_COL),
+				TseValidationRules::checkIndexCaseForInfected));
+
+		registry.register(new FunctionRule("TSE49", RowType.CASE,
+				columns(CustomStrings.CASE_INFO_SHEET, CustomStrings.INDEX_CASE_COL)
+						.and(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.STATUS_HERD_COL),
+				TseValidationRules::checkNotIndexCaseForFree));
+
+		// only the results of the case are counted
+		registry.register(new FunctionRule("NO_TEST_SPECIFIED", RowType.CASE, columns(CustomStrings.RESULT_SHEET),
+				(row, validator) -> error(validator.getCaseReportValidator().isTestMissing(row),
+						() -> new NoTestSpecifiedError(validator.getStackTrace(row)))));
+
+		registry.register(new FunctionRule("EM_FOR_NOT_INFECTED", RowType.CASE,
+				columns(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.STATUS_HERD_COL,
+						CustomStrings.TARGET_GROUP_COL),
+				TseValidationRules::checkEradicationForNotInfected));
+
+		registry.register(new FunctionRule("AGE_CLASS", RowType.CASE,
+				columns(CustomStrings.CASE_INFO_SHEET, CustomStrings.ANIMAGE_COL, CustomStrings.BIRTH_YEAR_COL,
+						CustomStrings.BIRTH_MONTH_COL)
+						.and(CustomStrings.SUMMARIZED_INFO_SHEET, CustomStrings.SUMMARIZED_INFO_TYPE,
+								CustomStrings.ANIMAGE_COL)
+						.and(CustomStrings.REPORT_SHEET, AppPaths.REPORT_YEAR_COL, AppPaths.REPORT_MONTH_COL),
+				(row, validator) -> validator.checkAgeClass(row)));
+
+		// analytical results
+		registry.register(new FunctionRule("ALLELES", RowType.RESULT,
+				columns(CustomStrings.RESULT_SHEET, CustomStrings.AN_METH_TYPE_COL, CustomStrings.ALLELE_1_COL,
+						CustomStrings.ALLELE_2_COL),
+				TseValidationRules::checkAlleles));
+
+		registry.register(new FunctionRule("ANALYSIS_YEAR", RowType.RESULT,
+				columns(CustomStrings.RESULT_SHEET, CustomStrings.ANALYSIS_Y_COL).and(CustomStrings.REPORT_SHEET,
+						AppPaths.REPORT_YEAR_COL),
+				TseValidationRules::checkAnalysisYear));
+	}
+
+	private static Collection<ReportError> checkMandatoryFields(TableRow row, TseReportValidator validator) {
+		try {
+			return validator.checkMandatoryFields(row);
+		} catch (FormulaException e) {
+			LOGGER.error("Error occurred", e);
+			e.printStackTrace();
+			return Collections.emptyList();
+		}
+	}
+
+	private static Collection<ReportError> checkSampleCases(TableRow row, TseReportValidator validator) {
+		Collection<ReportError> errors = new ArrayList<>();
+		Collection<SampleCheck> checks = validator.getSummarizedInfoValidator().isSampleCorrect(row);
+		String rowId = validator.getStackTrace(row);
+		for (SampleCheck check : checks) {
+			switch (check) {
+			case TOO_MANY_INCONCLUSIVES:
+				errors.add(new CheckInconclusiveCasesError(rowId));
+				break;
+			case MISSING_RGT_CASE:
+				errors.add(new MissingRGTCaseError(rowId));
+				break;
+			case TOO_MANY_POSITIVES:
+				errors.add(new CheckPositiveCasesError(rowId));
+				break;
+			case NON_WILD_FOR_KILLED:
+				TableSchema schema = TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET);
+
+				String targetLabel = schema.getById(CustomStrings.TARGET_GROUP_COL).getLabel();
+				String prodLabel = schema.getById(CustomStrings.PROD_COL).getLabel();
+
+				TableCell targetGroup = row.get(CustomStrings.TARGET_GROUP_COL);
+				TableCell prod = row.get(CustomStrings.PROD_COL);
+
+				errors.add(new NonWildAndKilledError(rowId, targetLabel + ": " + targetGroup.getLabel(),
+						prodLabel + ": " + prod.getLabel()));
+
+				break;
+			default:
+				break;
+			}
+		}
+
+		return errors;
+	}
+
+	private static Collection<ReportError> checkNoCaseDeclared(TableRow row, TseReportValidator validator) {
+		// if RGT type, declared cases are not checked
+		if (row.getCode(CustomStrings.SUMMARIZED_INFO_TYPE).equals(CustomStrings.SUMMARIZED_INFO_RGT_TYPE))
+			return Collections.emptyList();
+
+		String total = row.getLabel(CustomStrings.TOT_SAMPLE_TESTED_COL);
+		String unsuitable = row.getLabel(CustomStrings.TOT_SAMPLE_UNSUITABLE_COL);
+
+		// if no declared case, then show error
+		return error(total.equals("0") && unsuitable.equals("0"),
+				() -> new NoCaseDeclaredError(TseReportValidator.getRowId(row)));
+	}
+
+	private static Collection<ReportError> checkIndexCaseForInfected(TableRow row, TseReportValidator validator) {
+		CaseReportValidator caseValidator = validator.getCaseReportValidator();
+		TableRow summInfo = caseValidator.getSummInfo(row);
+		return error(caseValidator.isIndexCaseForInfected(row, summInfo),
+				() -> new IndexCaseInconsistentWithStatusHerdError(validator.getStackTrace(row),
+						row.getLabel(CustomStrings.INDEX_CASE_COL), "Infected"));
+	}
+
+	private static Collection<ReportError> checkNotIndexCaseForFree(TableRow row, TseReportValidator validator) {
+		CaseReportValidator caseValidator = validator.getCaseReportValidator();
+		TableRow summInfo = caseValidator.getSummInfo(row);
+		return error(caseValidator.isNotIndexCaseForFree(row, summInfo),
+				() -> new IndexCaseInconsistentWithStatusHerdError(validator.getStackTrace(row),
+						row.getLabel(CustomStrings.INDEX_CASE_COL), "Not infected"));
+	}
+
+	private static Collection<ReportError> checkEradicationForNotInfected(TableRow row,
+			TseReportValidator validator) {
+		CaseReportValidator caseValidator = validator.getCaseReportValidator();
+		TableRow summInfo = caseValidator.getSummInfo(row);
+		return error(caseValidator.isEradicationForNotInfected(summInfo),
+				() -> new NotInfectedStatusForEradicationError(validator.getStackTrace(row)));
+	}
+
+	private static Collection<ReportError> checkAlleles(TableRow row, TseReportValidator validator) {
+		ErrorType errorType = ResultValidator.getError(row);
+		switch (errorType) {
+		case ALLELE_ERROR:
+			return error(true, () -> new AlleleNotReportableError(validator.getStackTrace(row),
+					row.getLabel(CustomStrings.ALLELE_1_COL), row.getLabel(CustomStrings.ALLELE_2_COL)));
+		case WRONG_ALLELE_PAIR:
+			return error(true, () -> new WrongAllelesPairError(validator.getStackTrace(row),
+					row.getLabel(CustomStrings.ALLELE_1_COL), row.getLabel(CustomStrings.ALLELE_2_COL)));
+		default:
+			return Collections.emptyList();
+		}
+	}
+
+	private static Collection<ReportError> checkAnalysisYear(TableRow row, TseReportValidator validator) {
+		// check analysis year (must be >= than report year)
+		try {
+			TseDate analysisDate = new TseDate(row.getCode(CustomStrings.ANALYSIS_Y_COL), "0");
+			TseDate reportDate = new TseDate(validator.getReport().getYear(), "0");
+
+			return error(analysisDate.compareTo(reportDate) < 0,
+					() -> new WrongAnalysisYearError(validator.getStackTrace(row), analysisDate, reportDate));
+		} catch (NumberFormatException e) {
+			LOGGER.error("Error in parsing a non-numeric String", e);
+			e.printStackTrace();
+			return Collections.emptyList();
+		}
+	}
+}
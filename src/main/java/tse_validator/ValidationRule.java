@@ -0,0 +1,63 @@
+package tse_validator;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import providers.TseReportService.RowType;
+import report_validator.ReportError;
+import table_skeleton.TableRow;
+
+/**
+ * A business rule checked on a single row of a report
+ *
+ */
+public interface ValidationRule {
+
+	public static final String ALL_COLUMNS = "*";
+
+	/**
+	 * Name of the rule, used in the metrics
+	 * 
+	 * @return
+	 */
+	public String getName();
+
+	/**
+	 * Type of rows checked by the rule
+	 * 
+	 * @return the row type or null if the rule applies to all the rows
+	 */
+	public RowType getRowType();
+
+	/**
+	 * Columns read by the rule when it checks a row of the given type, by sheet
+	 * name. The sheet of the row stands for the row itself, the other sheets
+	 * for its parents or its children. An empty set means that only the ids of
+	 * the rows are read, {@link #ALL_COLUMNS} that any column can be read (e.g.
+	 * by the formulas).
+	 * 
+	 * @param type type of the checked row
+	 * @return
+	 */
+	public Map<String, Set<String>> getReadColumns(RowType type);
+
+	/**
+	 * Check if the rule reads the database or solves formulas. These rules are
+	 * run while the report is loaded (see {@link TseReportValidator#load()}),
+	 * the others only read the loaded rows.
+	 *
+	 * @return
+	 */
+	public boolean readsDatabase();
+
+	/**
+	 * Check the row
+	 * 
+	 * @param row       the row to check
+	 * @param validator validator of the report, used to get the related rows and
+	 *                  the stack trace of the row
+	 * @return the errors found
+	 */
+	public Collection<ReportError> check(TableRow row, TseReportValidator validator);
+}
@@ -0,0 +1,244 @@
+package tse_validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import providers.TseReportService;
+import providers.TseReportService.RowType;
+import report_validator.ReportError;
+import table_skeleton.TableRow;
+
+/**
+ * Registry of the rules checked on the single rows of a report. The rules of
+ * a row are run in one pass, in the order in which they were registered, and
+ * the time spent in each rule is recorded in its {@link RuleMetrics}.
+ *
+ */
+public class ValidationRuleRegistry {
+
+	private static final Logger LOGGER = LogManager.getLogger(ValidationRuleRegistry.class);
+
+	private static ValidationRuleRegistry defaultRegistry;
+
+	private final List<ValidationRule> rules = new CopyOnWriteArrayList<>();
+	private final Map<String, RuleMetrics> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the registry with the TSE rules. The metrics are shared by all the
+	 * validations of the session.
+	 * 
+	 * @return
+	 */
+	public static synchronized ValidationRuleRegistry getDefault() {
+		if (defaultRegistry == null) {
+			defaultRegistry = new ValidationRuleRegistry();
+			TseValidationRules.registerAll(defaultRegistry);
+		}
+		return defaultRegistry;
+	}
+
+	/**
+	 * Add a rule at the end of the registry
+	 * 
+	 * @param rule
+	 * @return
+	 */
+	public ValidationRuleRegistry register(ValidationRule rule) {
+		rules.add(rule);
+		metrics.put(rule.getName(), new RuleMetrics(rule.getName()));
+		return this;
+	}
+
+	public List<ValidationRule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+
+	/**
+	 * Get the columns read by all the rules which check the rows of a type (see
+	 * {@link ValidationRule#getReadColumns(RowType)})
+	 * 
+	 * @param type
+	 * @return the column ids by sheet name
+	 */
+	public Map<String, Set<String>> getReadColumns(RowType type) {
+		Map<String, Set<String>> columns = new HashMap<>();
+		for (ValidationRule rule : rules) {
+			if (rule.getRowType() != null && rule.getRowType() != type)
+				continue;
+
+			for (Map.Entry<String, Set<String>> entry : rule.getReadColumns(type).entrySet()) {
+				columns.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Get an id of the registered rules and of the columns they read, which
+	 * changes when the rules change
+	 * 
+	 * @return
+	 */
+	public String getId() {
+		StringBuilder sb = new StringBuilder();
+		for (ValidationRule rule : rules) {
+			sb.append(rule.getName()).append(',');
+		}
+
+		for (RowType type : RowType.values()) {
+			Map<String, Set<String>> columns = new TreeMap<>();
+			for (Map.Entry<String, Set<String>> entry : getReadColumns(type).entrySet()) {
+				columns.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+			}
+			sb.append(type).append('=').append(columns).append(';');
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Run all the rules which apply to the row
+	 * 
+	 * @param row
+	 * @param validator
+	 * @return
+	 */
+	public Collection<ReportError> check(TableRow row, TseReportValidator validator) {
+		RowType type = TseReportService.getRowType(row);
+		Collection<ReportError> errors = new ArrayList<>();
+		for (ValidationRule rule : rules) {
+			if (rule.getRowType() == null || rule.getRowType() == type)
+				errors.addAll(run(rule, row, validator));
+		}
+		return errors;
+	}
+
+	/**
+	 * Run the rules which apply to the row and read the database (see
+	 * {@link ValidationRule#readsDatabase()})
+	 *
+	 * @param row
+	 * @param validator
+	 * @return the errors of each rule, in the order of registration
+	 */
+	public List<Collection<ReportError>> checkDatabaseRules(TableRow row, TseReportValidator validator) {
+		RowType type = TseReportService.getRowType(row);
+		List<Collection<ReportError>> errors = new ArrayList<>();
+		for (ValidationRule rule : rules) {
+			if (rule.readsDatabase() && (rule.getRowType() == null || rule.getRowType() == type))
+				errors.add(run(rule, row, validator));
+		}
+		return errors;
+	}
+
+	/**
+	 * Run all the rules which apply to the row, except the ones which read the
+	 * database, whose errors were already computed by
+	 * {@link #checkDatabaseRules(TableRow, TseReportValidator)}. The errors are
+	 * in the same order of {@link #check(TableRow, TseReportValidator)}.
+	 *
+	 * @param row
+	 * @param validator
+	 * @param databaseErrors
+	 * @return
+	 */
+	public Collection<ReportError> check(TableRow row, TseReportValidator validator,
+			List<Collection<ReportError>> databaseErrors) {
+		RowType type = TseReportService.getRowType(row);
+		Iterator<Collection<ReportError>> computed = databaseErrors.iterator();
+		Collection<ReportError> errors = new ArrayList<>();
+		for (ValidationRule rule : rules) {
+			if (rule.getRowType() != null && rule.getRowType() != type)
+				continue;
+
+			if (rule.readsDatabase())
+				errors.addAll(computed.next());
+			else
+				errors.addAll(run(rule, row, validator));
+		}
+		return errors;
+	}
+
+	/**
+	 * Run only the rules defined for the row type (rules for all the rows are
+	 * excluded)
+	 * 
+	 * @param row
+	 * @param validator
+	 * @param type
+	 * @return
+	 */
+	public Collection<ReportError> check(TableRow row, TseReportValidator validator, RowType type) {
+		Collection<ReportError> errors = new ArrayList<>();
+		for (ValidationRule rule : rules) {
+			if (rule.getRowType() == type)
+				errors.addAll(run(rule, row, validator));
+		}
+		return errors;
+	}
+
+	private Collection<ReportError> run(ValidationRule rule, TableRow row, TseReportValidator validator) {
+		long start = System.nanoTime();
+		Collection<ReportError> errors = rule.check(row, validator);
+		long elapsed = System.nanoTime() - start;
+
+		RuleMetrics ruleMetrics = metrics.get(rule.getName());
+		if (ruleMetrics != null)
+			ruleMetrics.record(elapsed, errors.size());
+
+		return errors;
+	}
+
+	/**
+	 * Get the metrics of the rules, in the order of registration
+	 * 
+	 * @return
+	 */
+	public List<RuleMetrics> getMetrics() {
+		List<RuleMetrics> list = new ArrayList<>();
+		for (ValidationRule rule : rules) {
+			list.add(metrics.get(rule.getName()));
+		}
+		return list;
+	}
+
+	public void resetMetrics() {
+		for (RuleMetrics ruleMetrics : metrics.values()) {
+			ruleMetrics.reset();
+		}
+	}
+
+	/**
+	 * Print the metrics sorted by total time, one rule for each line
+	 * 
+	 * @return
+	 */
+	public String formatMetrics() {
+		List<RuleMetrics> list = getMetrics();
+		list.sort((m1, m2) -> Long.compare(m2.getTotalNanos(), m1.getTotalNanos()));
+
+		StringBuilder sb = new StringBuilder();
+		for (RuleMetrics ruleMetrics : list) {
+			sb.append(ruleMetrics).append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+
+	public void logMetrics() {
+		LOGGER.info("Validation rules metrics:" + System.lineSeparator() + formatMetrics());
+	}
+}
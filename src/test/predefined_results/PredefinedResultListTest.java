@@ -0,0 +1,121 @@
+package predefined_results;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PredefinedResultListTest {
+
+	// values of the predefined results, with all the kinds of empty values
+	private static final String[] FIELD_VALUES = { null, "", "null", "BSE", "J050A" };
+	private static final String[] CONF_VALUES = { null, "", "true", "false", "Y", "N", "yes", "no", "other" };
+
+	// values of the searches, with values which are not in the results
+	private static final String[] QUERY_VALUES = { null, "", "null", "BSE", "J050A", "CWD" };
+
+	private static List<PredefinedResult> genAllResults() {
+
+		List<PredefinedResult> results = new ArrayList<>();
+
+		for (String recordType : FIELD_VALUES) {
+			for (String source : FIELD_VALUES) {
+				for (String sampEventAsses : FIELD_VALUES) {
+					for (String conf : CONF_VALUES) {
+						PredefinedResult result = new PredefinedResult();
+						result.put(PredefinedResultHeader.RECORD_TYPE, recordType);
+						result.put(PredefinedResultHeader.SOURCE, source);
+						result.put(PredefinedResultHeader.SAMP_EVENT_ASSES, sampEventAsses);
+						result.put(PredefinedResultHeader.CONFIRMATORY_EXECUTED, conf);
+						results.add(result);
+					}
+				}
+			}
+		}
+
+		return results;
+	}
+
+	private static void assertSameAsScan(PredefinedResultList list) {
+		for (String recordType : QUERY_VALUES) {
+			for (String source : QUERY_VALUES) {
+				for (String sampEventAsses : QUERY_VALUES) {
+					for (boolean conf : new boolean[] { true, false }) {
+						assertSame(list.scan(recordType, source, conf, sampEventAsses),
+								list.get(recordType, source, conf, sampEventAsses));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void sameResultsOfScan() {
+
+		List<PredefinedResult> all = genAllResults();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 50; ++i) {
+
+			// different orders and subsets change the first match
+			Collections.shuffle(all, random);
+
+			PredefinedResultList list = new PredefinedResultList();
+			list.addAll(all.subList(0, i == 0 ? all.size() : random.nextInt(all.size())));
+
+			assertSameAsScan(list);
+		}
+	}
+
+	@Test
+	public void indexFollowsChangesOfTheList() {
+
+		PredefinedResultList list = new PredefinedResultList();
+		assertNull(list.get("BSE", "J050A", true, "POS"));
+
+		PredefinedResult result = new PredefinedResult();
+		result.put(PredefinedResultHeader.RECORD_TYPE, "BSE");
+		result.put(PredefinedResultHeader.CONFIRMATORY_EXECUTED, "true");
+		list.add(result);
+
+		assertSameAsScan(list);
+
+		list.remove(0);
+		assertNull(list.get("BSE", "J050A", true, "POS"));
+	}
+
+	@Test
+	public void indexFollowsReplacedResults() {
+
+		PredefinedResultList list = new PredefinedResultList();
+
+		PredefinedResult bse = new PredefinedResult();
+		bse.put(PredefinedResultHeader.RECORD_TYPE, "BSE");
+		bse.put(PredefinedResultHeader.CONFIRMATORY_EXECUTED, "true");
+		list.add(bse);
+
+		assertSame(bse, list.get("BSE", null, true, null));
+
+		PredefinedResult cwd = new PredefinedResult();
+		cwd.put(PredefinedResultHeader.RECORD_TYPE, "CWD");
+		cwd.put(PredefinedResultHeader.CONFIRMATORY_EXECUTED, "true");
+		list.set(0, cwd);
+
+		assertNull(list.get("BSE", null, true, null));
+		assertSame(cwd, list.get("CWD", null, true, null));
+
+		// shuffle replaces the elements through the list iterator
+		List<PredefinedResult> all = genAllResults();
+		list.clear();
+		list.addAll(all);
+		assertSameAsScan(list);
+
+		Collections.shuffle(list, new Random(42));
+		assertSameAsScan(list);
+	}
+}
@@ -0,0 +1,116 @@
+package predefined_results;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PredefinedResultsCacheTest {
+
+	private static final long WATCH_TIMEOUT_MS = 20000;
+
+	private Path folder;
+	private Path snapshot;
+	private Path workbook;
+
+	@BeforeEach
+	public void init() throws IOException {
+		folder = Files.createTempDirectory("config");
+		snapshot = folder.resolve("predefinedResults.snapshot");
+		workbook = folder.resolve("predefinedResults.xlsx");
+	}
+
+	@AfterEach
+	public void clean() throws IOException {
+		PredefinedResultsCache.stopWatching();
+		Files.deleteIfExists(snapshot);
+		Files.deleteIfExists(workbook);
+		Files.deleteIfExists(folder);
+	}
+
+	/**
+	 * Write a workbook with a predefined result for each record type
+	 */
+	private void writeWorkbook(String... recordTypes) throws IOException {
+
+		try (XSSFWorkbook xlsx = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(workbook)) {
+
+			Sheet sheet = xlsx.createSheet();
+			Row header = sheet.createRow(0);
+			header.createCell(0).setCellValue(PredefinedResultHeader.RECORD_TYPE.getHeaderName());
+
+			for (int i = 0; i < recordTypes.length; i++) {
+				Row row = sheet.createRow(i + 1);
+				row.createCell(0).setCellValue(recordTypes[i]);
+			}
+
+			xlsx.write(out);
+		}
+	}
+
+	private PredefinedResultList readWorkbook() throws IOException {
+		try (PredefinedResultsReader reader = new PredefinedResultsReader(workbook.toString())) {
+			reader.readFirstSheet();
+			return reader.getResults();
+		}
+	}
+
+	@Test
+	public void reloadReplacesThePredefinedResults() throws IOException {
+
+		writeWorkbook("BSE");
+		assertTrue(PredefinedResultsCache.reload(workbook, snapshot));
+		assertEquals(readWorkbook(), PredefinedResultsCache.get());
+
+		writeWorkbook("BSE", "CWD");
+		assertTrue(PredefinedResultsCache.reload(workbook, snapshot));
+		assertEquals(readWorkbook(), PredefinedResultsCache.get());
+		assertEquals(2, PredefinedResultsCache.get().size());
+	}
+
+	@Test
+	public void invalidWorkbookKeepsThePreviousPredefinedResults() throws IOException {
+
+		writeWorkbook("BSE");
+		assertTrue(PredefinedResultsCache.reload(workbook, snapshot));
+		PredefinedResultList previous = PredefinedResultsCache.get();
+
+		// a workbook which is still being saved
+		Files.write(workbook, new byte[] { 0x50, 0x4b, 3, 4, 0, 1, 2 });
+
+		assertFalse(PredefinedResultsCache.reload(workbook, snapshot));
+		assertSame(previous, PredefinedResultsCache.get());
+	}
+
+	@Test
+	public void modifiedWorkbookIsReloaded() throws IOException, InterruptedException {
+
+		writeWorkbook("BSE");
+		assertTrue(PredefinedResultsCache.reload(workbook, snapshot));
+		PredefinedResultList previous = PredefinedResultsCache.get();
+
+		PredefinedResultsCache.startWatching(workbook, snapshot);
+
+		writeWorkbook("BSE", "CWD", "SCRAPIE");
+
+		long end = System.currentTimeMillis() + WATCH_TIMEOUT_MS;
+		while (PredefinedResultsCache.get() == previous && System.currentTimeMillis() < end)
+			Thread.sleep(50);
+
+		assertEquals(readWorkbook(), PredefinedResultsCache.get());
+		assertEquals(3, PredefinedResultsCache.get().size());
+	}
+}
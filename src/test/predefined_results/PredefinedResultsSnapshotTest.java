@@ -0,0 +1,126 @@
+package predefined_results;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PredefinedResultsSnapshotTest {
+
+	private Path folder;
+	private Path snapshot;
+	private Path workbook;
+
+	@BeforeEach
+	public void init() throws IOException {
+		folder = Files.createTempDirectory("snapshot");
+		snapshot = folder.resolve("predefinedResults.snapshot");
+		workbook = folder.resolve("predefinedResults.xlsx");
+	}
+
+	@AfterEach
+	public void clean() throws IOException {
+		Files.deleteIfExists(snapshot);
+		Files.deleteIfExists(workbook);
+		Files.deleteIfExists(folder);
+	}
+
+	private static PredefinedResultList genResults() {
+
+		PredefinedResultList results = new PredefinedResultList();
+
+		PredefinedResult bse = new PredefinedResult();
+		bse.put(PredefinedResultHeader.RECORD_TYPE, "BSE");
+		bse.put(PredefinedResultHeader.SOURCE, "");
+		bse.put(PredefinedResultHeader.SAMP_EVENT_ASSES, null);
+		bse.put(PredefinedResultHeader.CONFIRMATORY_EXECUTED, "true");
+		bse.put(PredefinedResultHeader.SCREENING, "Positive (other than Atypical) - \u00e8");
+		results.add(bse);
+
+		// empty row
+		results.add(new PredefinedResult());
+
+		PredefinedResult cwd = new PredefinedResult();
+		cwd.put(PredefinedResultHeader.RECORD_TYPE, "CWD");
+		cwd.put(PredefinedResultHeader.GENOTYPING_BASE_TERM, "RF-00004628-PAR");
+		results.add(cwd);
+
+		return results;
+	}
+
+	@Test
+	public void readWhatWasWritten() throws IOException {
+
+		byte[] hash = new byte[] { 1, 2, 3, 4 };
+		PredefinedResultList results = genResults();
+
+		PredefinedResultsSnapshot.write(results, hash, snapshot);
+
+		assertEquals(results, PredefinedResultsSnapshot.read(snapshot, hash));
+	}
+
+	@Test
+	public void snapshotOfAnotherWorkbookIsNotRead() throws IOException {
+
+		PredefinedResultsSnapshot.write(genResults(), new byte[] { 1, 2, 3, 4 }, snapshot);
+
+		assertNull(PredefinedResultsSnapshot.read(snapshot, new byte[] { 1, 2, 3, 5 }));
+		assertNull(PredefinedResultsSnapshot.read(snapshot, new byte[] { 1, 2, 3 }));
+	}
+
+	@Test
+	public void invalidSnapshotIsNotRead() throws IOException {
+
+		Files.write(snapshot, new byte[] { 0, 1, 2 });
+
+		assertNull(PredefinedResultsSnapshot.read(snapshot, new byte[] { 1, 2, 3, 4 }));
+	}
+
+	@Test
+	public void snapshotCanBeReplacedAfterRead() throws IOException {
+
+		byte[] hash = new byte[] { 1, 2, 3, 4 };
+		PredefinedResultsSnapshot.write(genResults(), hash, snapshot);
+		PredefinedResultsSnapshot.read(snapshot, hash);
+
+		// the snapshot must not be kept open or mapped
+		PredefinedResultsSnapshot.write(genResults(), new byte[] { 4, 3, 2, 1 }, snapshot);
+		Files.move(snapshot, folder.resolve("moved.snapshot"), StandardCopyOption.REPLACE_EXISTING);
+		Files.delete(folder.resolve("moved.snapshot"));
+	}
+
+	@Test
+	public void givenWorkbookIsRead() throws IOException {
+
+		try (XSSFWorkbook xlsx = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(workbook)) {
+			Sheet sheet = xlsx.createSheet();
+			Row header = sheet.createRow(0);
+			header.createCell(0).setCellValue(PredefinedResultHeader.RECORD_TYPE.getHeaderName());
+			Row row = sheet.createRow(1);
+			row.createCell(0).setCellValue("TEST");
+			xlsx.write(out);
+		}
+
+		PredefinedResultList expected;
+		try (PredefinedResultsReader reader = new PredefinedResultsReader(workbook.toString())) {
+			reader.readFirstSheet();
+			expected = reader.getResults();
+		}
+
+		// read from the workbook, then from the snapshot
+		assertEquals(expected, PredefinedResultsSnapshot.load(workbook, snapshot));
+		assertEquals(expected, PredefinedResultsSnapshot.load(workbook, snapshot));
+	}
+}
@@ -0,0 +1,83 @@
+package providers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import formula.Formula;
+import formula.FormulaException;
+import formula.FormulaSolver;
+import mocks.RowCreatorMock;
+import mocks.TableDaoMock;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import tse_summarized_information.SummarizedInfo;
+import xlsx_reader.TableHeaders.XlsxHeader;
+
+public class ColumnFormulaSolverTest {
+
+	private ITableDaoService daoService;
+	private IFormulaService formulaService;
+	private ColumnFormulaSolver solver;
+	private SummarizedInfo summInfo;
+
+	@BeforeEach
+	public void init() {
+		this.daoService = new TableDaoService(new TableDaoMock());
+		this.formulaService = new FormulaService(daoService);
+		this.solver = new ColumnFormulaSolver(formulaService);
+
+		TableRow settings = RowCreatorMock.genRandSettings();
+		TableRow pref = RowCreatorMock.genRandPreferences();
+		daoService.add(settings);
+		daoService.add(pref);
+
+		TableRow report = RowCreatorMock.genRandReport(pref.getDatabaseId());
+		daoService.add(report);
+
+		summInfo = RowCreatorMock.genRandSummInfo(report.getDatabaseId(), settings.getDatabaseId(),
+				pref.getDatabaseId());
+		summInfo.put(CustomStrings.SUMMARIZED_INFO_TYPE, CustomStrings.SUMMARIZED_INFO_BSE_TYPE);
+		daoService.add(summInfo);
+	}
+
+	private String solveAll(TableRow row, String columnId) throws FormulaException {
+		FormulaSolver fullSolver = new FormulaSolver(row, daoService);
+		ArrayList<Formula> formulas = fullSolver.solveAll(XlsxHeader.LABEL_FORMULA.getHeaderName());
+		for (Formula f : formulas) {
+			if (f.getColumn().getId().equals(columnId))
+				return f.getSolvedFormula();
+		}
+		return null;
+	}
+
+	@Test
+	public void sampIdAsFullSolve() throws FormulaException {
+		assertEquals(solveAll(summInfo, CustomStrings.SAMPLE_ID_COL),
+				solver.solve(summInfo, CustomStrings.SAMPLE_ID_COL, XlsxHeader.LABEL_FORMULA));
+	}
+
+	@Test
+	public void dependentFormulaAsFullSolve() throws FormulaException {
+		// sampInfo depends on the sampId formula
+		assertEquals(solveAll(summInfo, CustomStrings.SAMP_INFO_COL),
+				solver.solve(summInfo, CustomStrings.SAMP_INFO_COL, XlsxHeader.LABEL_FORMULA));
+	}
+
+	@Test
+	public void changedRowIsSolvedAgain() throws FormulaException {
+
+		String sampId = solver.solve(summInfo, CustomStrings.SAMPLE_ID_COL, XlsxHeader.LABEL_FORMULA);
+
+		summInfo.put(CustomStrings.PROG_ID_COL, summInfo.getLabel(CustomStrings.PROG_ID_COL) + "1");
+
+		String changed = solver.solve(summInfo, CustomStrings.SAMPLE_ID_COL, XlsxHeader.LABEL_FORMULA);
+
+		assertNotEquals(sampId, changed);
+		assertEquals(solveAll(summInfo, CustomStrings.SAMPLE_ID_COL), changed);
+	}
+}
@@ -1842,6 +1842,21 @@ public class ReportServiceTest {
 		assertEquals(children1.size(), children2.size());
 	}
 
+	@Test
+	public void amendReportNotifiesCopyProgress() {
+
+		TseReport report1 = genRandReportWithChildrenInDatabase();
+
+		TableRowList children1 = daoService.getByParentId(
+				TableSchemaList.getByName(CustomStrings.SUMMARIZED_INFO_SHEET), report1.getSchema().getSheetName(),
+				report1.getDatabaseId(), true);
+
+		int[] copied = { 0 };
+		reportService.amend(report1, (count, total) -> copied[0] = count);
+
+		assertEquals(children1.size(), copied[0]);
+	}
+
 	@Test
 	public void checkRGTDefaultCase() {
 
@@ -1942,6 +1957,47 @@ public class ReportServiceTest {
 		assertTrue(hasLymph1 || hasLymph2);
 	}
 
+	@Test
+	public void checkManyDefaultCasesForCWD() throws IOException {
+
+		TableRow pref = RowCreatorMock.genRandPreferences();
+		int prefId = daoService.add(pref);
+
+		TableRow opt = RowCreatorMock.genRandSettings();
+		int optId = daoService.add(opt);
+
+		SummarizedInfo si = RowCreatorMock.genRandSummInfo(report.getDatabaseId(), optId, prefId);
+		si.put(CustomStrings.SUMMARIZED_INFO_TYPE, new TableCell(CustomStrings.SUMMARIZED_INFO_CWD_TYPE, ""));
+		si.put(CustomStrings.TOT_SAMPLE_INCONCLUSIVE_COL, "3");
+		si.put(CustomStrings.TOT_SAMPLE_POSITIVE_COL, "2");
+		si.put(CustomStrings.TOT_SAMPLE_NEGATIVE_COL, "0");
+
+		reportService.createDefaultCases(report, si);
+
+		TableRowList list = daoService.getAll(TableSchemaList.getByName(CustomStrings.CASE_INFO_SHEET));
+
+		// two cases for each cwd animal
+		assertEquals(10, list.size());
+
+		int inconclusive = 0;
+		int obex = 0;
+		int lymph = 0;
+		for (TableRow caseRow : list) {
+
+			if (CustomStrings.DEFAULT_ASSESS_INC_CASE_CODE.equals(caseRow.getCode(CustomStrings.SAMP_EVENT_ASSES_COL)))
+				inconclusive++;
+
+			if (CustomStrings.OBEX_CODE.equals(caseRow.getCode(CustomStrings.PART_COL)))
+				obex++;
+			else if (CustomStrings.RETROPHARYNGEAL_CODE.equals(caseRow.getCode(CustomStrings.PART_COL)))
+				lymph++;
+		}
+
+		assertEquals(6, inconclusive);
+		assertEquals(5, obex);
+		assertEquals(5, lymph);
+	}
+
 	public void exportReportWithAmendmentsButNoDifferencesException()
 			throws IOException, ParserConfigurationException, SAXException, ReportException, AmendException {
 
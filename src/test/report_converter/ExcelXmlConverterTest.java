@@ -0,0 +1,193 @@
+package report_converter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+public class ExcelXmlConverterTest {
+
+	private Path folder;
+	private File excelFile;
+	private File xmlFile;
+
+	@BeforeEach
+	public void init() throws Exception {
+
+		folder = Files.createTempDirectory("converter");
+		excelFile = folder.resolve("report.xlsx").toFile();
+		xmlFile = folder.resolve("report.xml").toFile();
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(excelFile)) {
+
+			Sheet cases = workbook.createSheet("SampleCases");
+
+			Row header = cases.createRow(0);
+			header.createCell(0).setCellValue("sampId");
+			header.createCell(1).setCellValue("animalsTested");
+			header.createCell(2).setCellValue("confirmed");
+			header.createCell(3).setCellValue("total");
+
+			Row first = cases.createRow(1);
+			first.createCell(0).setCellValue("S1 & <S2>");
+			first.createCell(1).setCellValue(3);
+			first.createCell(2).setCellValue(true);
+			first.createCell(3).setCellFormula("B2*2");
+
+			// empty row
+			cases.createRow(2);
+
+			Row third = cases.createRow(3);
+			third.createCell(0).setCellValue("S1 & <S2>");
+			third.createCell(1).setCellValue(0.25);
+			third.createCell(2);
+
+			Sheet results = workbook.createSheet("AnalyticalResults");
+
+			Row resultsHeader = results.createRow(0);
+			resultsHeader.createCell(0).setCellValue("paramCode");
+			resultsHeader.createCell(1).setCellValue("resVal");
+
+			Row result = results.createRow(1);
+			result.createCell(0).setCellValue("RF-00004629-PAR");
+			result.createCell(1).setCellValue("POS");
+
+			workbook.write(out);
+		}
+	}
+
+	@AfterEach
+	public void clean() throws Exception {
+		Files.deleteIfExists(excelFile.toPath());
+		Files.deleteIfExists(xmlFile.toPath());
+		Files.deleteIfExists(folder.resolve("report.xml.gz"));
+		Files.deleteIfExists(folder.resolve("broken.xlsx"));
+		Files.deleteIfExists(folder);
+	}
+
+	private static Document parse(File file) throws Exception {
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+		document.normalizeDocument();
+		return document;
+	}
+
+	@Test
+	public void streamingWritesSameXml() throws Exception {
+
+		Document expected = parse(ExcelXmlConverter.convertXExcelToXml(excelFile));
+		Document actual = parse(ExcelXmlConverter.convertXExcelToXmlStreaming(excelFile));
+
+		assertTrue(expected.isEqualNode(actual));
+	}
+
+	@Test
+	public void parallelWritesSheetsInOrder() throws Exception {
+
+		Document expected = parse(ExcelXmlConverter.convertXExcelToXml(excelFile));
+		Document actual = parse(ExcelXmlConverter.convertXExcelToXmlParallel(excelFile, false));
+
+		assertTrue(expected.isEqualNode(actual));
+	}
+
+	@Test
+	public void parallelWritesGzip() throws Exception {
+
+		Document expected = parse(ExcelXmlConverter.convertXExcelToXml(excelFile));
+
+		File gzipFile = ExcelXmlConverter.convertXExcelToXmlParallel(excelFile, true);
+
+		Document actual;
+		try (InputStream in = new GZIPInputStream(new FileInputStream(gzipFile))) {
+			actual = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+			actual.normalizeDocument();
+		}
+
+		assertTrue(expected.isEqualNode(actual));
+	}
+
+	@Test
+	public void missingFileIsNotConverted() throws Exception {
+		assertNull(ExcelXmlConverter.convertXExcelToXmlStreaming(folder.resolve("missing.xlsx").toFile()));
+		assertNull(ExcelXmlConverter.convertXExcelToXmlParallel(folder.resolve("missing.xlsx").toFile(), true));
+	}
+
+	/**
+	 * Replace the second sheet of the workbook with a truncated one
+	 * 
+	 * @throws Exception
+	 */
+	private void breakSecondSheet() throws Exception {
+
+		Path broken = folder.resolve("broken.xlsx");
+
+		try (ZipInputStream in = new ZipInputStream(new FileInputStream(excelFile));
+				ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(broken))) {
+
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				out.putNextEntry(new ZipEntry(entry.getName()));
+				if (entry.getName().equals("xl/worksheets/sheet2.xml"))
+					out.write("<worksheet><sheetData><row r=\"1\">".getBytes("UTF-8"));
+				else
+					copy(in, out);
+				out.closeEntry();
+			}
+		}
+
+		Files.move(broken, excelFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws Exception {
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > 0)
+			out.write(buffer, 0, read);
+	}
+
+	@Test
+	public void failedConversionKeepsPreviousXml() throws Exception {
+
+		byte[] previous = "<previous/>".getBytes("UTF-8");
+		Files.write(xmlFile.toPath(), previous);
+		Files.write(folder.resolve("report.xml.gz"), previous);
+
+		breakSecondSheet();
+
+		assertThrows(Exception.class, () -> ExcelXmlConverter.convertXExcelToXmlStreaming(excelFile));
+		assertThrows(Exception.class, () -> ExcelXmlConverter.convertXExcelToXmlParallel(excelFile, false));
+		assertThrows(Exception.class, () -> ExcelXmlConverter.convertXExcelToXmlParallel(excelFile, true));
+
+		assertArrayEquals(previous, Files.readAllBytes(xmlFile.toPath()));
+		assertArrayEquals(previous, Files.readAllBytes(folder.resolve("report.xml.gz")));
+
+		// no temporary file is left
+		try (Stream<Path> files = Files.list(folder)) {
+			assertEquals(3, files.count());
+		}
+	}
+}
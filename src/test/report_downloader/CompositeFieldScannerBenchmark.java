@@ -0,0 +1,83 @@
+package report_downloader;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import table_skeleton.TableCell;
+import tse_config.CustomStrings;
+
+/**
+ * Compare the decomposition of the composite fields of a row with
+ * {@link CompositeFieldScanner} and with {@link TSEFormulaDecomposer}.
+ *
+ * It is not run with the tests, run the main method from the test classpath
+ * to get the time and the allocated bytes ({@code gc.alloc.rate.norm}) per
+ * row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeFieldScannerBenchmark {
+
+	// composite fields of an analytical result of a scrapie case, as exported
+	// by the data collection
+	private static final String[][] ROW = {
+			{ CustomStrings.PROG_INFO_COL, "progId=0404_000069" },
+			{ CustomStrings.SAMP_INFO_COL, "origSampId=AT1706.00.0404_000069" },
+			{ CustomStrings.SAMP_UNIT_IDS_COL, "animalId=AT 0123$herdId=H1$sampHoldingId=SH-1$PSUId=my samp" },
+			{ CustomStrings.EVAL_INFO_COL, "tseNationalCaseId=N1$tseIndexCase=Y$sampEventAsses=J01$com=index case" },
+			{ CustomStrings.SAMP_MAT_INFO_COL,
+					"birthCountry=AT$statusHerd=F$birthInFlockHerd=Y$birthYear=2010$birthMonth=3$com=Cross" },
+			{ CustomStrings.SAMP_MAT_CODE_COL, "A04MQ#F01.A057G$F02.A06AM$F21.A07RV$F31.A16NK$F32.A0C8Z" },
+			{ CustomStrings.PARAM_CODE_COL, "RF-00004629-PAR#allele=ARR$allele=ARQ" } };
+
+	@Benchmark
+	public void scanner(Blackhole bh) throws ParseException {
+
+		HashMap<String, TableCell> values = new HashMap<>();
+		for (String[] field : ROW)
+			CompositeFieldScanner.decompose(field[0], field[1], values::put);
+
+		bh.consume(values);
+	}
+
+	@Benchmark
+	public void decomposer(Blackhole bh) throws ParseException {
+
+		TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
+
+		HashMap<String, TableCell> values = new HashMap<>();
+		for (String[] field : ROW)
+			values.putAll(decomposer.decompose(field[0], field[1]));
+
+		bh.consume(values);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options options = new OptionsBuilder().include(CompositeFieldScannerBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+
+		new Runner(options).run();
+	}
+}
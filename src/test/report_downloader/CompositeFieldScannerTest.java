@@ -0,0 +1,85 @@
+package report_downloader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.text.ParseException;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import table_skeleton.TableCell;
+import tse_config.CustomStrings;
+
+public class CompositeFieldScannerTest {
+
+	// values in the form produced by the tables schema formulas
+	private static final String[][] FIELDS = {
+			{ CustomStrings.PROG_INFO_COL, "progId=0404_000069" },
+			{ CustomStrings.SAMP_INFO_COL, "origSampId=AT1706.00.0404_000069" },
+			{ CustomStrings.SAMP_UNIT_IDS_COL, "animalId=AT 0123$herdId=H1$sampHoldingId=SH-1$PSUId=my samp" },
+			{ CustomStrings.SAMP_UNIT_IDS_COL, "animalId=AT 0123 $sampHoldingId=SH-1" },
+			{ CustomStrings.EVAL_INFO_COL, "tseNationalCaseId=N1$tseIndexCase=Y$sampEventAsses=J01$com=index case" },
+			{ CustomStrings.EVAL_INFO_COL, "tseNationalCaseId=N1$com=no event" },
+			{ CustomStrings.EVAL_INFO_COL, "tseNationalCaseId=N1$$com=no event" },
+			{ CustomStrings.SAMP_EVENT_INFO_COL,
+					"tseTargetGroup=EM$totSamplesTested=10$totSamplesPositive=1$totSamplesNegative=9"
+							+ "$totSamplesInconclusive=0$totSamplesUnsuitable=0" },
+			{ CustomStrings.SAMP_MAT_INFO_COL,
+					"birthCountry=AT$statusHerd=F$birthInFlockHerd=Y$birthYear=2010$birthMonth=3$com=Cross" },
+			{ CustomStrings.SAMP_MAT_CODE_COL, "A04MQ#F01.A057G$F02.A06AM$F21.A07RV$F31.A16NK$F32.A0C8Z" },
+			{ CustomStrings.SAMP_MAT_CODE_COL, "A04MQ#F01.A057G$F02.A06AM$F21.A07RV" },
+			{ CustomStrings.SAMP_MAT_CODE_COL, "A04MQ" },
+			{ CustomStrings.PARAM_CODE_COL, "RF-00004629-PAR#allele=ARR$allele=ARQ" },
+			{ CustomStrings.PARAM_CODE_COL, "RF-00004628-PAR" } };
+
+	@Test
+	public void sameValuesOfDecomposer() throws ParseException {
+
+		TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
+
+		for (String[] field : FIELDS) {
+
+			HashMap<String, TableCell> expected = decomposer.decompose(field[0], field[1]);
+
+			HashMap<String, TableCell> values = new HashMap<>();
+			CompositeFieldScanner.decompose(field[0], field[1], values::put);
+
+			assertEquals(expected.keySet(), values.keySet(), field[1]);
+
+			for (String key : expected.keySet()) {
+				assertEquals(expected.get(key).getCode(), values.get(key).getCode(), field[1]);
+				assertEquals(expected.get(key).getLabel(), values.get(key).getLabel(), field[1]);
+			}
+		}
+	}
+
+	@Test
+	public void sameBaseTermOfDecomposer() throws ParseException {
+
+		TSEFormulaDecomposer decomposer = new TSEFormulaDecomposer();
+
+		for (String code : new String[] { "RF-00004629-PAR#allele=ARR$allele=ARQ", "RF-00004628-PAR" }) {
+			assertEquals(decomposer.getBaseTerm(code), CompositeFieldScanner.getBaseTerm(code));
+		}
+	}
+
+	@Test
+	public void attributeIdsAreShared() throws ParseException {
+
+		HashMap<String, TableCell> values = new HashMap<>();
+		CompositeFieldScanner.decompose(CustomStrings.PROG_INFO_COL, "progId=P1", values::put);
+
+		String id = values.keySet().iterator().next();
+		assertSame(CustomStrings.PROG_ID_COL, id);
+	}
+
+	@Test
+	public void findSingleAttribute() throws ParseException {
+		assertEquals("AT.1", CompositeFieldScanner.find("origSampId=AT.1", CustomStrings.ORIG_SAMP_ID_COL));
+		assertEquals("AT.1", CompositeFieldScanner.find("com=x$origSampId=AT.1", CustomStrings.ORIG_SAMP_ID_COL));
+		assertNull(CompositeFieldScanner.find("com=x", CustomStrings.ORIG_SAMP_ID_COL));
+		assertNull(CompositeFieldScanner.find("", CustomStrings.ORIG_SAMP_ID_COL));
+	}
+}
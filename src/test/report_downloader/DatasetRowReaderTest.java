@@ -0,0 +1,99 @@
+package report_downloader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.Test;
+
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+
+public class DatasetRowReaderTest {
+
+	private static final String DATASET = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<message><header><senderMessageId>1</senderMessageId></header><payload><dataset>"
+			+ "<operation><opType>Insert</opType></operation>"
+			+ "<result><paramType>P002A</paramType><sampId>AT.1</sampId></result>"
+			+ "<result><paramType>P001A</paramType><sampId>AT.1.1</sampId><unknownTag>x</unknownTag>"
+			+ "<sampInfo>origSampId=AT.1</sampInfo></result>"
+			+ "</dataset></payload></message>";
+
+	private static DatasetRowReader open() throws XMLStreamException {
+		return new DatasetRowReader(new ByteArrayInputStream(DATASET.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void readResultsOneAtATime() throws XMLStreamException, IOException {
+
+		try (DatasetRowReader reader = open()) {
+
+			TableRow summInfo = reader.next();
+			assertEquals("P002A", summInfo.getCode(CustomStrings.PARAM_TYPE_COL));
+			assertEquals("AT.1", summInfo.getCode(CustomStrings.SAMPLE_ID_COL));
+
+			TableRow result = reader.next();
+			assertEquals("P001A", result.getCode(CustomStrings.PARAM_TYPE_COL));
+			assertEquals("origSampId=AT.1", result.getCode(CustomStrings.SAMP_INFO_COL));
+
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void spilledRowsAreReadInOrder() throws XMLStreamException, IOException {
+
+		try (DatasetRowReader reader = open(); RowSpillFile spill = new RowSpillFile()) {
+
+			TableRow row;
+			while ((row = reader.next()) != null) {
+				spill.write(row);
+			}
+
+			assertEquals(2, spill.size());
+
+			TableRow first = spill.read();
+			assertEquals(CustomStrings.RESULT_SHEET, first.getSchema().getSheetName());
+			assertEquals("AT.1", first.getCode(CustomStrings.SAMPLE_ID_COL));
+
+			TableRow second = spill.read();
+			assertEquals("AT.1.1", second.getCode(CustomStrings.SAMPLE_ID_COL));
+			assertEquals("origSampId=AT.1", second.getLabel(CustomStrings.SAMP_INFO_COL));
+
+			assertNull(spill.read());
+		}
+	}
+
+	@Test
+	public void datasetIsWrittenWithoutRows() throws XMLStreamException, IOException {
+
+		File dataset = Files.createTempFile("dataset", ".xml").toFile();
+		File metadata = Files.createTempFile("metadata", ".xml").toFile();
+
+		try {
+			Files.write(dataset.toPath(), DATASET.getBytes(StandardCharsets.UTF_8));
+
+			DatasetRowReader.writeWithoutRows(dataset, metadata);
+
+			String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+					+ "<message><header><senderMessageId>1</senderMessageId></header><payload><dataset>"
+					+ "<operation><opType>Insert</opType></operation></dataset></payload></message>";
+
+			assertEquals(expected, new String(Files.readAllBytes(metadata.toPath()), StandardCharsets.UTF_8));
+
+			try (DatasetRowReader reader = new DatasetRowReader(metadata)) {
+				assertNull(reader.next());
+			}
+		} finally {
+			Files.deleteIfExists(dataset.toPath());
+			Files.deleteIfExists(metadata.toPath());
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package report_downloader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import xlsx_reader.TableSchemaList;
+
+public class ImportPipelineTest {
+
+	private static List<TableRow> genSummInfoRows(int count) {
+
+		List<TableRow> rows = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			TableRow row = new TableRow(TableSchemaList.getByName(CustomStrings.RESULT_SHEET));
+			row.put(CustomStrings.PARAM_TYPE_COL, CustomStrings.SUMMARIZED_INFO_PARAM_TYPE);
+			row.put(CustomStrings.PROG_INFO_COL, "progId=P" + i);
+			rows.add(row);
+		}
+
+		return rows;
+	}
+
+	private static ImportPipeline.RowSource sourceOf(List<TableRow> rows) {
+		Iterator<TableRow> iterator = rows.iterator();
+		return () -> iterator.hasNext() ? iterator.next() : null;
+	}
+
+	@Test
+	public void rowsAreWrittenInOrder() throws Exception {
+
+		List<TableRow> rows = genSummInfoRows(200);
+		List<DecomposedRow> written = new ArrayList<>();
+
+		try (ImportPipeline pipeline = new ImportPipeline(4)) {
+
+			pipeline.run(sourceOf(rows), written::add);
+
+			assertEquals(200, pipeline.getMetrics().getRows());
+			assertTrue(pipeline.getMetrics().getMaxQueueDepth() <= pipeline.getWindowSize());
+		}
+
+		assertEquals(rows.size(), written.size());
+
+		for (int i = 0; i < rows.size(); ++i) {
+			DecomposedRow row = written.get(i);
+			assertTrue(row.isSummarizedInfo());
+			assertEquals(rows.get(i), row.getRow());
+			assertEquals(CustomStrings.SUMMARIZED_INFO_SHEET, row.getRow().getSchema().getSheetName());
+			assertEquals("P" + i, row.getValues().get(CustomStrings.PROG_ID_COL).getCode());
+		}
+	}
+
+	@Test
+	public void writerErrorStopsTheImport() throws Exception {
+
+		List<TableRow> rows = genSummInfoRows(50);
+		List<DecomposedRow> written = new ArrayList<>();
+
+		try (ImportPipeline pipeline = new ImportPipeline(2)) {
+
+			assertThrows(IllegalArgumentException.class, () -> pipeline.run(sourceOf(rows), row -> {
+				if (written.size() == 10)
+					throw new IllegalArgumentException();
+				written.add(row);
+			}));
+		}
+
+		assertEquals(10, written.size());
+	}
+}
@@ -3,14 +3,26 @@ package report_downloader;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.ParseException;
 
 import javax.xml.stream.XMLStreamException;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -20,6 +32,7 @@ import dataset.DatasetList;
 import dataset.DcfDatasetStatus;
 import dataset.IDataset;
 import dataset.NoAttachmentException;
+import dataset.RCLDatasetStatus;
 import formula.FormulaException;
 import mocks.TableDaoMock;
 import providers.FormulaService;
@@ -33,9 +46,15 @@ import soap_test.GetDatasetMock;
 import soap_test.GetDatasetsListMock;
 import soap_test.SendMessageMock;
 import table_relations.Relation;
+import table_skeleton.TableCell;
 import table_skeleton.TableRow;
 import table_skeleton.TableRowList;
+import table_skeleton.TableVersion;
 import tse_config.CustomStrings;
+import tse_database_utils.ImportCheckpointStore;
+import tse_database_utils.ImportCheckpointStore.Checkpoint;
+import tse_report.TseReport;
+import tse_summarized_information.SummarizedInfo;
 import xlsx_reader.TableSchemaList;
 
 public class ReportImporterTest {
@@ -48,6 +67,20 @@ public class ReportImporterTest {
 	private ITableDaoService daoService;
 	private IFormulaService formulaService;
 
+	private Connection conn;
+	private ImportCheckpointStore checkpoints;
+	private File datasetFile;
+
+	// summarized information written in the database of the checkpoints
+	private boolean importedRowsTable;
+	private int failingSummInfo;
+
+	private static final String SUMMARIZED_INFOS = "<result><paramType>P002A</paramType><sampId>AT.1</sampId></result>"
+			+ "<result><paramType>P002A</paramType><sampId>AT.2</sampId></result>";
+
+	// result without sample id, which cannot be imported
+	private static final String BAD_RESULT = "<result><paramType>P001A</paramType></result>";
+
 	@BeforeEach
 	public void init() {
 
@@ -63,6 +96,282 @@ public class ReportImporterTest {
 				formulaService);
 	}
 
+	@AfterEach
+	public void clean() throws SQLException, IOException {
+
+		if (datasetFile != null)
+			Files.deleteIfExists(datasetFile.toPath());
+
+		if (conn == null)
+			return;
+
+		conn.setAutoCommit(true);
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("DROP TABLE REPORTIMPORTCHECKPOINT");
+			if (importedRowsTable)
+				st.executeUpdate("DROP TABLE IMPORTEDROW");
+		}
+		conn.close();
+	}
+
+	/**
+	 * Save the checkpoints of the imports in an in-memory database
+	 */
+	private void useCheckpoints() throws SQLException {
+
+		conn = DriverManager.getConnection("jdbc:derby:memory:imports;create=true");
+
+		checkpoints = new ImportCheckpointStore() {
+			@Override
+			public Connection getConnection() {
+				return conn;
+			}
+		};
+
+		reportService.setImportCheckpointStore(checkpoints);
+	}
+
+	/**
+	 * Write the summarized information also in the database of the
+	 * checkpoints, with the same connection. The n-th summarized information
+	 * set in {@link #failingSummInfo} cannot be written.
+	 */
+	private void useCheckpointsConnection() throws SQLException {
+
+		useCheckpoints();
+
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("CREATE TABLE IMPORTEDROW (SAMPID VARCHAR(64))");
+		}
+		importedRowsTable = true;
+
+		this.daoService = new TableDaoService(new TableDaoMock()) {
+
+			private int summInfos;
+
+			@Override
+			public int add(TableRow row) {
+
+				if (row.getSchema().getSheetName().equals(CustomStrings.SUMMARIZED_INFO_SHEET)) {
+
+					if (++summInfos == failingSummInfo)
+						throw new IllegalStateException("Cannot write the summarized information " + summInfos);
+
+					try (PreparedStatement st = conn.prepareStatement("INSERT INTO IMPORTEDROW (SAMPID) VALUES (?)")) {
+						st.setString(1, row.getLabel(CustomStrings.SAMPLE_ID_COL));
+						st.executeUpdate();
+					} catch (SQLException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+
+				return super.add(row);
+			}
+		};
+
+		this.reportService = new TseReportService(getAck, getDatasetsList, sendMessage, getDataset, daoService,
+				new FormulaService(daoService));
+		reportService.setImportCheckpointStore(checkpoints);
+	}
+
+	/**
+	 * Rows of the table written with the connection of the checkpoints, as
+	 * seen by another connection (only the committed ones)
+	 */
+	private int countCommittedImportedRows() throws SQLException {
+		try (Connection other = DriverManager.getConnection("jdbc:derby:memory:imports");
+				Statement st = other.createStatement();
+				ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM IMPORTEDROW")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	private int countImportedRows() throws SQLException {
+		try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM IMPORTEDROW")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	private void writeDataset(String rows) throws IOException {
+
+		if (datasetFile == null)
+			datasetFile = Files.createTempFile("dataset", ".xml").toFile();
+
+		String dataset = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<message><header><senderMessageId>1</senderMessageId></header><payload><dataset>"
+				+ "<operation><opType>Insert</opType></operation>" + rows + "</dataset></payload></message>";
+
+		Files.write(datasetFile.toPath(), dataset.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Add a report whose import was started from the dataset file, but no row
+	 * was imported yet
+	 */
+	private TseReport addImportingReport() throws SQLException {
+
+		TseReport report = new TseReport();
+		report.setId("11234");
+		report.setSenderId("AT1704");
+		report.setVersion(TableVersion.getFirstVersion());
+		report.setStatus(RCLDatasetStatus.DRAFT);
+		daoService.add(report);
+
+		// first pass (summarized information), saved before the first row
+		checkpoints.save(conn, new Checkpoint(report.getDatabaseId(), datasetFile.getAbsolutePath(), 1, 0));
+
+		return report;
+	}
+
+	private int count(String sheet) {
+		return daoService.getAll(TableSchemaList.getByName(sheet)).size();
+	}
+
+	/**
+	 * Importer whose summarized information have the sample id written in the
+	 * row, instead of the one solved from the formula
+	 */
+	private TseReportImporter importerWithFixedSampIds() {
+
+		TseReportService service = new TseReportService(getAck, getDatasetsList, sendMessage, getDataset,
+				daoService, formulaService) {
+			@Override
+			public String getSampId(SummarizedInfo summInfo) {
+				return summInfo.getLabel(CustomStrings.SAMPLE_ID_COL);
+			}
+		};
+
+		return new TseReportImporter(service, daoService);
+	}
+
+	private static SummarizedInfo summInfo(String sampId, String origSampId) {
+		SummarizedInfo summInfo = new SummarizedInfo();
+		summInfo.put(CustomStrings.SAMPLE_ID_COL, new TableCell(sampId, sampId));
+		summInfo.put(CustomStrings.SAMP_INFO_COL, new TableCell("origSampId=" + origSampId, "origSampId=" + origSampId));
+		return summInfo;
+	}
+
+	@Test
+	public void firstSummarizedInfoWithTheSameSampIdIsKept() throws FormulaException {
+
+		TseReportImporter imp = importerWithFixedSampIds();
+
+		SummarizedInfo first = summInfo("AT.1", "o1");
+		SummarizedInfo duplicated = summInfo("AT.1", "o2");
+		SummarizedInfo other = summInfo("AT.2", "o3");
+
+		assertEquals("AT.1", imp.cacheSummInfo(first));
+		assertEquals("AT.1", imp.cacheSummInfo(duplicated));
+		assertEquals("AT.2", imp.cacheSummInfo(other));
+
+		assertSame(first, imp.getSummInfoByOrigSampId("AT.1"));
+		assertSame(other, imp.getSummInfoByOrigSampId("AT.2"));
+	}
+
+	@Test
+	public void missingSummarizedInfoListsTheOrigSampIds() throws FormulaException, ParseException {
+
+		TseReportImporter imp = importerWithFixedSampIds();
+		imp.cacheSummInfo(summInfo("AT.1", "o1"));
+		imp.cacheSummInfo(summInfo("AT.2", "o2"));
+
+		assertNull(imp.getSummInfoByOrigSampId("AT.3"));
+
+		TableRow row = new TableRow(TableSchemaList.getByName(CustomStrings.RESULT_SHEET));
+		ParseException e = imp.missingSummInfo(row, null);
+
+		// the origSampIds of the summarized information, not their sampIds
+		assertTrue(e.getMessage().contains("o1\no2\n"));
+		assertFalse(e.getMessage().contains("AT.1\n"));
+	}
+
+	@Test
+	public void failedImportIsResumedFromTheCheckpoint() throws Exception {
+
+		useCheckpoints();
+		writeDataset(SUMMARIZED_INFOS + BAD_RESULT);
+		TseReport report = addImportingReport();
+
+		TseReportImporter imp = new TseReportImporter(reportService, daoService);
+		assertThrows(ParseException.class, () -> imp.resumeImport(report));
+
+		// the summarized information were committed before the results
+		assertNotNull(imp.getIncompleteReport());
+		assertEquals(2, count(CustomStrings.SUMMARIZED_INFO_SHEET));
+
+		Checkpoint checkpoint = checkpoints.get(report.getDatabaseId());
+		assertEquals(2, checkpoint.getPass());
+		assertEquals(0, checkpoint.getRows());
+
+		// the file is fixed and the import continued
+		writeDataset(SUMMARIZED_INFOS);
+
+		TseReportImporter resumed = new TseReportImporter(reportService, daoService);
+		assertTrue(resumed.resumeImport(report));
+
+		// the summarized information are not imported again
+		assertEquals(2, count(CustomStrings.SUMMARIZED_INFO_SHEET));
+		assertNull(checkpoints.get(report.getDatabaseId()));
+		assertNull(resumed.getIncompleteReport());
+
+		// nothing left to resume
+		assertFalse(resumed.resumeImport(report));
+	}
+
+	@Test
+	public void failedBatchLeavesNoUncommittedRows() throws Exception {
+
+		useCheckpointsConnection();
+		writeDataset(SUMMARIZED_INFOS + "<result><paramType>P002A</paramType><sampId>AT.3</sampId></result>");
+		TseReport report = addImportingReport();
+
+		// the third summarized information fails in the middle of the first batch
+		failingSummInfo = 3;
+
+		TseReportImporter imp = new TseReportImporter(reportService, daoService);
+		assertThrows(IllegalStateException.class, () -> imp.resumeImport(report));
+
+		// the rows of the batch are rolled back with its checkpoint
+		assertEquals(0, countImportedRows());
+		assertEquals(0, countCommittedImportedRows());
+
+		Checkpoint checkpoint = checkpoints.get(report.getDatabaseId());
+		assertEquals(1, checkpoint.getPass());
+		assertEquals(0, checkpoint.getRows());
+
+		// the connection is left as it was
+		assertTrue(conn.getAutoCommit());
+
+		failingSummInfo = 0;
+
+		TseReportImporter resumed = new TseReportImporter(reportService, daoService);
+		assertTrue(resumed.resumeImport(report));
+
+		// each summarized information is written once
+		assertEquals(3, countCommittedImportedRows());
+		assertNull(checkpoints.get(report.getDatabaseId()));
+	}
+
+	@Test
+	public void failedImportIsRolledBack() throws Exception {
+
+		useCheckpoints();
+		writeDataset(SUMMARIZED_INFOS + BAD_RESULT);
+		TseReport report = addImportingReport();
+
+		TseReportImporter imp = new TseReportImporter(reportService, daoService);
+		assertThrows(ParseException.class, () -> imp.resumeImport(report));
+
+		imp.rollbackImport(report);
+
+		assertEquals(0, count(AppPaths.REPORT_SHEET));
+		assertEquals(0, count(CustomStrings.SUMMARIZED_INFO_SHEET));
+		assertNull(checkpoints.get(report.getDatabaseId()));
+		assertNull(imp.getIncompleteReport());
+	}
+
 	@Test
 	public void importFirstVersionOfReport() throws DetailedSOAPException, XMLStreamException, IOException,
 			FormulaException, NoAttachmentException, ParseException {
@@ -0,0 +1,216 @@
+package tse_database_utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static tse_database_utils.ReportTablesFixture.CASE;
+import static tse_database_utils.ReportTablesFixture.CASE_ID;
+import static tse_database_utils.ReportTablesFixture.REPORT_ID;
+import static tse_database_utils.ReportTablesFixture.SETTINGS_ID;
+import static tse_database_utils.ReportTablesFixture.SUMM;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReportSqlCopierTest {
+
+	private ReportTablesFixture db;
+	private Connection conn;
+
+	@BeforeEach
+	public void init() throws SQLException {
+		db = new ReportTablesFixture("copier");
+		conn = db.getConnection();
+	}
+
+	@AfterEach
+	public void clean() throws SQLException {
+		db.drop();
+	}
+
+	@Test
+	public void childrenReferToTheCopiesOfTheirParents() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+
+		// rows of another report between the rows of the source
+		int other = db.addSumm(3, "other");
+		db.addCase(3, other, "otherCase");
+
+		int s2 = db.addSumm(1, "s2");
+
+		// cases added in a different order than their parents
+		int c2 = db.addCase(1, s2, "c2");
+		int c1 = db.addCase(1, s1, "c1");
+		int c3 = db.addCase(1, s2, "c3");
+
+		db.addResult(1, s2, c3, "r3");
+		db.addResult(1, s1, c1, "r1");
+		db.addResult(1, s2, c2, "r2");
+
+		assertEquals(8, ReportSqlCopier.copyRecords(conn, 1, 2, -1, Collections.emptyMap(), null));
+
+		assertEquals(db.getTree(1), db.getTree(2));
+	}
+
+	@Test
+	public void repeatedCopiesReferToTheirOwnParents() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+		int s2 = db.addSumm(1, "s2");
+		int c1 = db.addCase(1, s2, "c1");
+		int c2 = db.addCase(1, s1, "c2");
+		db.addResult(1, s1, c2, "r1");
+		db.addResult(1, s2, c1, "r2");
+
+		// the second copy is paired with the rows added after the first one
+		assertEquals(6, ReportSqlCopier.copyRecords(conn, 1, 2, -1, Collections.emptyMap(), null));
+		assertEquals(6, ReportSqlCopier.copyRecords(conn, 2, 3, -1, Collections.emptyMap(), null));
+
+		assertEquals(db.getTree(1), db.getTree(2));
+		assertEquals(db.getTree(1), db.getTree(3));
+	}
+
+	@Test
+	public void onlyTheSummarizedInformationIsCopied() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+		int s2 = db.addSumm(1, "s2");
+		int c1 = db.addCase(1, s1, "c1");
+		int c2 = db.addCase(1, s2, "c2");
+		db.addResult(1, s1, c1, "r1");
+		db.addResult(1, s2, c2, "r2");
+
+		assertEquals(3, ReportSqlCopier.copyRecords(conn, 1, 2, s2, Collections.emptyMap(), null));
+
+		List<String> expected = new ArrayList<>();
+		expected.add("s2");
+		expected.add("s2/c2");
+		expected.add("s2/c2/r2");
+
+		assertEquals(expected, db.getTree(2));
+	}
+
+	@Test
+	public void childWithoutParentMakesTheCopyFail() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+		db.addCase(1, s1, "c1");
+		db.addResult(1, s1, null, "orphan");
+
+		assertThrows(SQLException.class, () -> ReportSqlCopier.copyRecords(conn, 1, 2, -1, Collections.emptyMap(), null));
+	}
+
+	@Test
+	public void copiesReferToTheGivenGlobalParents() throws SQLException {
+
+		db.insert(SUMM, REPORT_ID + ", " + SETTINGS_ID + ", NAME", 1, 5, "s1");
+		db.insert(SUMM, REPORT_ID + ", " + SETTINGS_ID + ", NAME", 1, 6, "s2");
+
+		Map<String, Integer> globalParents = new HashMap<>();
+		globalParents.put(CustomStrings.SETTINGS_SHEET, 9);
+
+		assertEquals(2, ReportSqlCopier.copyRecords(conn, 1, 2, -1, globalParents, null));
+
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery(
+						"SELECT " + SETTINGS_ID + " FROM " + SUMM + " WHERE " + REPORT_ID + " = 2")) {
+			int copies = 0;
+			while (rs.next()) {
+				assertEquals(9, rs.getInt(1));
+				copies++;
+			}
+			assertEquals(2, copies);
+		}
+
+		// the source keeps its own settings
+		assertEquals(Arrays.asList("s1", "s2"), db.getTree(1));
+	}
+
+	@Test
+	public void bulkCopyGivesTheSameRecords() throws SQLException {
+
+		int s1 = db.insert(SUMM, REPORT_ID + ", " + SETTINGS_ID + ", NAME", 1, 5, "s1");
+		int s2 = db.insert(SUMM, REPORT_ID + ", " + SETTINGS_ID + ", NAME", 1, 5, "s2");
+		int c1 = db.addCase(1, s1, "c1");
+		int c2 = db.addCase(1, s2, "c2");
+		int c3 = db.addCase(1, s2, "c3");
+		db.addResult(1, s2, c3, "r3");
+		db.addResult(1, s1, c1, "r1");
+		db.addResult(1, s2, c2, "r2");
+
+		Map<String, Integer> globalParents = new HashMap<>();
+		globalParents.put(CustomStrings.SETTINGS_SHEET, 9);
+
+		// small batches, in order to write several of them
+		assertEquals(8, ReportSqlCopier.copyRecords(conn, 1, 2, -1, globalParents, null));
+		assertEquals(8, new ReportBulkCopier(2).copyRecords(conn, 1, 3, globalParents, null));
+
+		assertEquals(db.getTree(2), db.getTree(3));
+
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + SUMM + " WHERE " + REPORT_ID + " = 3 AND "
+						+ SETTINGS_ID + " = 9")) {
+			rs.next();
+			assertEquals(2, rs.getInt(1));
+		}
+	}
+
+	@Test
+	public void copyRowsReturnsTheIdOfEachCopy() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+		int c1 = db.addCase(1, s1, "c1");
+		int c2 = db.addCase(1, s1, "c2");
+
+		// the same row can be copied several times
+		List<Integer> copies = ReportSqlCopier.copyRows(conn, CASE, Arrays.asList(c2, c1, c2));
+
+		assertEquals(3, copies.size());
+		assertEquals("c2", db.getName(CASE, CASE_ID, copies.get(0)));
+		assertEquals("c1", db.getName(CASE, CASE_ID, copies.get(1)));
+		assertEquals("c2", db.getName(CASE, CASE_ID, copies.get(2)));
+		assertNotEquals(copies.get(0), copies.get(2));
+	}
+
+	@Test
+	public void copyRowsInsertsSeveralBatches() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+		int c1 = db.addCase(1, s1, "c1");
+		int c2 = db.addCase(1, s1, "c2");
+
+		List<Integer> sources = new ArrayList<>();
+		for (int i = 0; i < 1200; i++)
+			sources.add(i % 3 == 0 ? c1 : c2);
+
+		List<Integer> copies = ReportSqlCopier.copyRows(conn, CASE, sources);
+
+		assertEquals(sources.size(), copies.size());
+		assertEquals("c1", db.getName(CASE, CASE_ID, copies.get(0)));
+		assertEquals("c2", db.getName(CASE, CASE_ID, copies.get(1)));
+		assertEquals("c1", db.getName(CASE, CASE_ID, copies.get(1199)));
+		assertEquals(sources.size(), new HashSet<>(copies).size());
+	}
+
+	@Test
+	public void copyOfMissingRowFails() throws SQLException {
+
+		int s1 = db.addSumm(1, "s1");
+
+		assertThrows(SQLException.class, () -> ReportSqlCopier.copyRows(conn, SUMM, Arrays.asList(s1, s1 + 100)));
+	}
+}
@@ -0,0 +1,187 @@
+package tse_database_utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import table_relations.Relation;
+import tse_config.CustomStrings;
+
+/**
+ * Summarized information, cases and analytical results tables in an in-memory
+ * Derby database, with only the columns needed to copy and compare the records
+ * of the reports
+ */
+class ReportTablesFixture {
+
+	static final String SUMM = CustomStrings.SUMMARIZED_INFO_SHEET;
+	static final String CASE = CustomStrings.CASE_INFO_SHEET;
+	static final String RESULT = CustomStrings.RESULT_SHEET;
+
+	static final String REPORT_ID = Relation.foreignKeyFromParent(CustomStrings.REPORT_SHEET);
+	static final String SUMM_ID = Relation.foreignKeyFromParent(SUMM);
+	static final String CASE_ID = Relation.foreignKeyFromParent(CASE);
+	static final String RESULT_ID = Relation.foreignKeyFromParent(RESULT);
+	static final String SETTINGS_ID = Relation.foreignKeyFromParent(CustomStrings.SETTINGS_SHEET);
+
+	private final Connection conn;
+
+	/**
+	 * Create the tables in the database, the connection is left in manual
+	 * commit mode
+	 *
+	 * @param database name of the in-memory database
+	 * @throws SQLException
+	 */
+	ReportTablesFixture(String database) throws SQLException {
+
+		conn = DriverManager.getConnection("jdbc:derby:memory:" + database + ";create=true");
+
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("CREATE TABLE " + SUMM + " (" + SUMM_ID
+					+ " INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY, " + REPORT_ID + " INTEGER, " + SETTINGS_ID
+					+ " INTEGER, NAME VARCHAR(32), AMOUNT INTEGER)");
+			st.executeUpdate("CREATE TABLE " + CASE + " (" + CASE_ID
+					+ " INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY, " + REPORT_ID + " INTEGER, " + SUMM_ID
+					+ " INTEGER, NAME VARCHAR(32))");
+			st.executeUpdate("CREATE TABLE " + RESULT + " (" + RESULT_ID
+					+ " INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY, " + REPORT_ID + " INTEGER, " + SUMM_ID
+					+ " INTEGER, " + CASE_ID + " INTEGER, NAME VARCHAR(32))");
+		}
+
+		conn.setAutoCommit(false);
+	}
+
+	Connection getConnection() {
+		return conn;
+	}
+
+	/**
+	 * Roll back the pending changes, drop the tables and close the connection
+	 *
+	 * @param otherTables other tables created by the test, dropped first
+	 * @throws SQLException
+	 */
+	void drop(String... otherTables) throws SQLException {
+
+		conn.rollback();
+		conn.setAutoCommit(true);
+
+		try (Statement st = conn.createStatement()) {
+			for (String table : otherTables)
+				st.executeUpdate("DROP TABLE " + table);
+
+			st.executeUpdate("DROP TABLE " + RESULT);
+			st.executeUpdate("DROP TABLE " + CASE);
+			st.executeUpdate("DROP TABLE " + SUMM);
+		}
+
+		conn.close();
+	}
+
+	int insert(String table, String columns, Object... values) throws SQLException {
+
+		StringBuilder params = new StringBuilder();
+		for (int i = 0; i < values.length; i++)
+			params.append(i == 0 ? "?" : ", ?");
+
+		try (PreparedStatement ps = conn.prepareStatement(
+				"INSERT INTO " + table + " (" + columns + ") VALUES (" + params + ")",
+				Statement.RETURN_GENERATED_KEYS)) {
+
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null)
+					ps.setNull(i + 1, Types.INTEGER);
+				else
+					ps.setObject(i + 1, values[i]);
+			}
+
+			ps.executeUpdate();
+
+			try (ResultSet rs = ps.getGeneratedKeys()) {
+				rs.next();
+				return rs.getInt(1);
+			}
+		}
+	}
+
+	int addSumm(int reportId, String name) throws SQLException {
+		return insert(SUMM, REPORT_ID + ", NAME", reportId, name);
+	}
+
+	int addSumm(int reportId, String name, Integer amount) throws SQLException {
+		return insert(SUMM, REPORT_ID + ", NAME, AMOUNT", reportId, name, amount);
+	}
+
+	int addCase(int reportId, int summId, String name) throws SQLException {
+		return insert(CASE, REPORT_ID + ", " + SUMM_ID + ", NAME", reportId, summId, name);
+	}
+
+	void addResult(int reportId, int summId, Integer caseId, String name) throws SQLException {
+		insert(RESULT, REPORT_ID + ", " + SUMM_ID + ", " + CASE_ID + ", NAME", reportId, summId, caseId, name);
+	}
+
+	/**
+	 * Get the names of the rows of a report with the names of their parents. The
+	 * amount of the summarized information is added to their name, if set.
+	 */
+	List<String> getTree(int reportId) throws SQLException {
+
+		Map<Integer, String> summs = new HashMap<>();
+		Map<Integer, String> cases = new HashMap<>();
+		List<String> tree = new ArrayList<>();
+
+		try (Statement st = conn.createStatement()) {
+
+			try (ResultSet rs = st.executeQuery("SELECT " + SUMM_ID + ", NAME, AMOUNT FROM " + SUMM + " WHERE "
+					+ REPORT_ID + " = " + reportId)) {
+				while (rs.next()) {
+					String amount = rs.getString(3);
+					String summ = amount == null ? rs.getString(2) : rs.getString(2) + "(" + amount + ")";
+					summs.put(rs.getInt(1), summ);
+					tree.add(summ);
+				}
+			}
+
+			try (ResultSet rs = st.executeQuery("SELECT " + CASE_ID + ", " + SUMM_ID + ", NAME FROM " + CASE
+					+ " WHERE " + REPORT_ID + " = " + reportId)) {
+				while (rs.next()) {
+					cases.put(rs.getInt(1), rs.getString(3));
+					tree.add(summs.get(rs.getInt(2)) + "/" + rs.getString(3));
+				}
+			}
+
+			try (ResultSet rs = st.executeQuery("SELECT " + SUMM_ID + ", " + CASE_ID + ", NAME FROM " + RESULT
+					+ " WHERE " + REPORT_ID + " = " + reportId)) {
+				while (rs.next()) {
+					tree.add(summs.get(rs.getInt(1)) + "/" + cases.get(rs.getInt(2)) + "/" + rs.getString(3));
+				}
+			}
+		}
+
+		tree.sort(null);
+		return tree;
+	}
+
+	String getName(String table, String idColumn, int id) throws SQLException {
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery("SELECT NAME FROM " + table + " WHERE " + idColumn + " = " + id)) {
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+
+	int count(String sql) throws SQLException {
+		try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package tse_database_utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tse_database_utils.ReportTablesFixture.CASE;
+import static tse_database_utils.ReportTablesFixture.REPORT_ID;
+import static tse_database_utils.ReportTablesFixture.RESULT;
+import static tse_database_utils.ReportTablesFixture.SUMM;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReportVersionStoreTest {
+
+	private ReportTablesFixture db;
+	private Connection conn;
+
+	@BeforeEach
+	public void init() throws SQLException {
+		db = new ReportTablesFixture("versions");
+		conn = db.getConnection();
+		new ReportVersionStore().createTable(conn);
+		conn.commit();
+	}
+
+	@AfterEach
+	public void clean() throws SQLException {
+		db.drop("REPORTARCHIVEDSUMMINFO", "REPORTARCHIVE");
+	}
+
+	/**
+	 * Add a report with three summarized information, one without cases
+	 */
+	private void addReport(int reportId) throws SQLException {
+
+		int s1 = db.addSumm(reportId, "s1", 3);
+		int s2 = db.addSumm(reportId, "s2", null);
+		db.addSumm(reportId, "empty", 0);
+
+		int c2 = db.addCase(reportId, s2, "c2");
+		int c1 = db.addCase(reportId, s1, "c1");
+		int c3 = db.addCase(reportId, s2, "c3");
+
+		db.addResult(reportId, s2, c3, "r3");
+		db.addResult(reportId, s1, c1, "r1");
+		db.addResult(reportId, s2, c2, "r2");
+	}
+
+	private int countArchives() throws SQLException {
+		return db.count("SELECT COUNT(*) FROM REPORTARCHIVE");
+	}
+
+	@Test
+	public void compactedReportIsRestoredAsItWas() throws SQLException {
+
+		addReport(1);
+		db.addResult(1, db.addSumm(1, "s3", 2), null, "withoutCase");
+		List<String> expected = db.getTree(1);
+
+		assertEquals(4, ReportVersionStore.compact(conn, 1));
+		assertTrue(ReportVersionStore.isCompacted(conn, 1));
+		assertTrue(db.getTree(1).isEmpty());
+
+		assertEquals(expected.size(), ReportVersionStore.restore(conn, 1));
+		assertFalse(ReportVersionStore.isCompacted(conn, 1));
+		assertEquals(expected, db.getTree(1));
+
+		// already restored
+		assertEquals(0, ReportVersionStore.restore(conn, 1));
+		assertEquals(expected, db.getTree(1));
+	}
+
+	@Test
+	public void identicalVersionsShareTheArchives() throws SQLException {
+
+		addReport(1);
+		ReportSqlCopier.copyRecords(conn, 1, 2, -1, Collections.emptyMap(), null);
+
+		// a change in the next version
+		db.addCase(2, db.addSumm(2, "s4", 1), "c4");
+
+		List<String> expected = db.getTree(1);
+
+		ReportVersionStore.compact(conn, 1);
+		ReportVersionStore.compact(conn, 2);
+
+		// one archive for each different summarized information
+		assertEquals(4, countArchives());
+
+		assertEquals(expected.size(), ReportVersionStore.restore(conn, 1));
+		assertEquals(expected, db.getTree(1));
+	}
+
+	@Test
+	public void versionIsRestoredAfterTheNextIsDeleted() throws SQLException {
+
+		addReport(1);
+		ReportSqlCopier.copyRecords(conn, 1, 2, -1, Collections.emptyMap(), null);
+		List<String> expected = db.getTree(1);
+
+		ReportVersionStore.compact(conn, 1);
+
+		// the next version is deleted without dropping anything
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("DELETE FROM " + RESULT + " WHERE " + REPORT_ID + " = 2");
+			st.executeUpdate("DELETE FROM " + CASE + " WHERE " + REPORT_ID + " = 2");
+			st.executeUpdate("DELETE FROM " + SUMM + " WHERE " + REPORT_ID + " = 2");
+		}
+
+		ReportVersionStore.restore(conn, 1);
+		assertEquals(expected, db.getTree(1));
+	}
+
+	@Test
+	public void restoredVersionIsCompactedAgainWithTheSameArchives() throws SQLException {
+
+		addReport(1);
+		List<String> expected = db.getTree(1);
+
+		ReportVersionStore.compact(conn, 1);
+		ReportVersionStore.restore(conn, 1);
+
+		assertEquals(3, ReportVersionStore.compact(conn, 1));
+		assertTrue(db.getTree(1).isEmpty());
+		assertEquals(3, countArchives());
+		assertEquals(3, db.count("SELECT COUNT(*) FROM REPORTARCHIVEDSUMMINFO"));
+
+		ReportVersionStore.restore(conn, 1);
+		assertEquals(expected, db.getTree(1));
+	}
+
+	@Test
+	public void onlyRestoredVersionsAreCompactedAgain() throws SQLException {
+
+		addReport(1);
+		addReport(2);
+
+		// never compacted
+		assertEquals(0, ReportVersionStore.recompact(conn, 2));
+		assertFalse(db.getTree(2).isEmpty());
+
+		ReportVersionStore.compact(conn, 1);
+		ReportVersionStore.restore(conn, 1);
+
+		assertEquals(3, ReportVersionStore.recompact(conn, 1));
+		assertTrue(ReportVersionStore.isCompacted(conn, 1));
+		assertTrue(db.getTree(1).isEmpty());
+		assertEquals(3, countArchives());
+
+		// the records of a released version are kept
+		ReportVersionStore.release(conn, 1);
+		assertEquals(0, ReportVersionStore.recompact(conn, 1));
+		assertFalse(db.getTree(1).isEmpty());
+	}
+
+	@Test
+	public void readVersionIsNotWrittenBack() throws SQLException {
+
+		addReport(1);
+		List<String> expected = db.getTree(1);
+
+		ReportVersionStore.compact(conn, 1);
+
+		List<String> read = new ArrayList<>();
+		ReportVersionStore.read(conn, 1, () -> {
+			try {
+				read.addAll(db.getTree(1));
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		assertEquals(expected, read);
+		assertTrue(ReportVersionStore.isCompacted(conn, 1));
+		assertTrue(db.getTree(1).isEmpty());
+		assertEquals(3, countArchives());
+
+		ReportVersionStore.restore(conn, 1);
+		assertEquals(expected, db.getTree(1));
+	}
+
+	@Test
+	public void releasedVersionKeepsItsRecords() throws SQLException {
+
+		addReport(1);
+		List<String> expected = db.getTree(1);
+
+		ReportVersionStore.compact(conn, 1);
+
+		assertEquals(expected.size(), ReportVersionStore.release(conn, 1));
+		assertFalse(ReportVersionStore.isCompacted(conn, 1));
+		assertEquals(0, countArchives());
+
+		// the records can be changed
+		try (Statement st = conn.createStatement()) {
+			st.executeUpdate("UPDATE " + SUMM + " SET AMOUNT = 5 WHERE NAME = 's1'");
+		}
+
+		assertEquals(0, ReportVersionStore.restore(conn, 1));
+		assertTrue(db.getTree(1).contains("s1(5)"));
+	}
+
+	@Test
+	public void archivesOfDeletedReportsArePurged() throws SQLException {
+
+		addReport(1);
+		ReportSqlCopier.copyRecords(conn, 1, 2, -1, Collections.emptyMap(), null);
+		db.addSumm(2, "s4", 1);
+		List<String> expected = db.getTree(1);
+
+		ReportVersionStore.compact(conn, 1);
+		ReportVersionStore.compact(conn, 2);
+
+		// the report 2 was deleted
+		assertEquals(1, ReportVersionStore.purge(conn, Arrays.asList(1, 3)));
+
+		// the archives shared with the report 1 are kept
+		assertEquals(3, countArchives());
+		assertFalse(ReportVersionStore.isCompacted(conn, 2));
+
+		ReportVersionStore.restore(conn, 1);
+		assertEquals(expected, db.getTree(1));
+	}
+}
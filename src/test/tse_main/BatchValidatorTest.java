@@ -0,0 +1,146 @@
+package tse_main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dataset.IDataset;
+import mocks.RowCreatorMock;
+import mocks.TableDaoMock;
+import providers.FormulaService;
+import providers.IFormulaService;
+import providers.TableDaoService;
+import providers.TseReportService;
+import soap_test.GetAckMock;
+import soap_test.GetDatasetMock;
+import soap_test.GetDatasetsListMock;
+import soap_test.SendMessageMock;
+import table_skeleton.TableRow;
+import tse_analytical_result.AnalyticalResult;
+import tse_case_report.CaseReport;
+import tse_main.BatchValidator.Arguments;
+import tse_main.BatchValidator.Result;
+import tse_report.TseReport;
+import tse_summarized_information.SummarizedInfo;
+
+public class BatchValidatorTest {
+
+	private TableDaoService daoService;
+	private TseReportService reportService;
+	private List<TseReport> reports;
+
+	@BeforeEach
+	public void init() {
+		this.daoService = new TableDaoService(new TableDaoMock());
+		IFormulaService formulaService = new FormulaService(daoService);
+
+		this.reportService = new TseReportService(new GetAckMock(), new GetDatasetsListMock<IDataset>(),
+				new SendMessageMock(), new GetDatasetMock(), daoService, formulaService);
+
+		TableRow pref = RowCreatorMock.genRandPreferences();
+		int prefId = daoService.add(pref);
+
+		TableRow opt = RowCreatorMock.genRandSettings();
+		int optId = daoService.add(opt);
+
+		this.reports = new ArrayList<>();
+
+		// some reports with one record for each level
+		for (int i = 0; i < 3; i++) {
+			TseReport report = RowCreatorMock.genRandReport(prefId);
+			int reportId = daoService.add(report);
+
+			SummarizedInfo si = RowCreatorMock.genRandSummInfo(reportId, optId, prefId);
+			int siId = daoService.add(si);
+
+			CaseReport cr = RowCreatorMock.genRandCase(reportId, siId, optId, siId);
+			int caseId = daoService.add(cr);
+
+			AnalyticalResult result = RowCreatorMock.genRandResult(reportId, siId, caseId, optId, prefId);
+			daoService.add(result);
+
+			reports.add(report);
+		}
+	}
+
+	@Test
+	public void validateSeveralReports() throws IOException {
+
+		File output = Files.createTempDirectory("tse_batch_test").toFile();
+
+		BatchValidator validator = new BatchValidator(reportService, daoService, 2, output);
+		List<Result> results = validator.validate(reports);
+
+		assertEquals(reports.size(), results.size());
+
+		for (int i = 0; i < reports.size(); i++) {
+			Result result = results.get(i);
+			assertEquals(reports.get(i), result.getReport());
+			assertNull(result.getFailure());
+			assertEquals(3, result.getRecords());
+		}
+
+		assertTrue(new File(output, "summary.csv").exists());
+		assertEquals(reports.size() + 1, Files.readAllLines(new File(output, "summary.csv").toPath()).size());
+
+		String json = new String(Files.readAllBytes(new File(output, "summary.json").toPath()),
+				StandardCharsets.UTF_8);
+		for (TseReport report : reports) {
+			assertTrue(json.contains(report.getSenderId()));
+		}
+	}
+
+	@Test
+	public void failedReportDoesNotStopTheOthers() throws IOException {
+
+		TseReport broken = reports.get(1);
+
+		TseReportService failingService = new TseReportService(new GetAckMock(),
+				new GetDatasetsListMock<IDataset>(), new SendMessageMock(), new GetDatasetMock(), daoService,
+				new FormulaService(daoService)) {
+			@Override
+			public ArrayList<TableRow> getAllRecords(TseReport report) {
+				if (report.getDatabaseId() == broken.getDatabaseId())
+					throw new IllegalStateException("broken report");
+				return super.getAllRecords(report);
+			}
+		};
+
+		File output = Files.createTempDirectory("tse_batch_test").toFile();
+
+		List<Result> results = new BatchValidator(failingService, daoService, 2, output).validate(reports);
+
+		assertEquals(reports.size(), results.size());
+		assertNull(results.get(0).getFailure());
+		assertNotNull(results.get(1).getFailure());
+		assertNull(results.get(2).getFailure());
+		assertEquals(3, results.get(2).getRecords());
+	}
+
+	@Test
+	public void reportAndAllDraftsAreExclusive() {
+
+		assertThrows(IllegalArgumentException.class,
+				() -> Arguments.parse(new String[] { "--report", "A", "--all-drafts" }));
+		assertThrows(IllegalArgumentException.class,
+				() -> Arguments.parse(new String[] { "--all-drafts", "--report", "A" }));
+		assertThrows(IllegalArgumentException.class, () -> Arguments.parse(new String[] { "--report" }));
+
+		assertTrue(Arguments.parse(new String[] { "--all-drafts" }).getSenderIds().isEmpty());
+		assertEquals(Arrays.asList("A", "B"),
+				Arguments.parse(new String[] { "--report", "A", "--report", "B" }).getSenderIds());
+	}
+}
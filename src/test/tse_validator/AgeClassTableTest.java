@@ -0,0 +1,91 @@
+package tse_validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tse_validator.AgeClassValidator.Check;
+
+public class AgeClassTableTest {
+
+	private AgeClassTable table;
+	private Set<String> codes;
+
+	@BeforeEach
+	public void init() throws IOException {
+
+		this.table = AgeClassTable.getInstance();
+
+		// all the codes of the picklist
+		String xml = new String(Files.readAllBytes(Paths.get(AgeClassTable.AGE_CLASS_FILE)), StandardCharsets.UTF_8);
+		Matcher matcher = Pattern.compile("code=\"([^\"]+)\"").matcher(xml);
+
+		this.codes = new LinkedHashSet<>();
+		while (matcher.find())
+			codes.add(matcher.group(1));
+	}
+
+	@Test
+	public void allAgeClassesAreCompiled() {
+		assertEquals(codes.size(), table.size());
+		assertEquals(-1, table.indexOf("not-an-age-class"));
+	}
+
+	@Test
+	public void sameResultsOfAgeClassValidator() throws IOException {
+
+		for (String code : codes) {
+
+			int index = table.indexOf(code);
+			assertTrue(index >= 0);
+
+			// report in 2010/6, birth from 2012/6 to 1990/6
+			for (int months = -24; months <= 240; months++) {
+
+				// months counted from zero to get the year
+				int birth = 2010 * 12 + 5 - months;
+				int year = birth / 12;
+				int month = birth % 12 + 1;
+
+				String birthYear = String.valueOf(year);
+				String birthMonth = String.valueOf(month);
+
+				AgeClassValidator validator = new AgeClassValidator(code, "2010", "6", birthYear, birthMonth);
+				Check expected = validator.validate();
+
+				int diff = AgeClassTable.getMonthsDifference(2010, 6, year, month);
+				assertEquals(months, diff);
+				assertEquals(expected, table.check(index, diff), code + " with " + months + " months");
+			}
+		}
+	}
+
+	@Test
+	public void batchCheck() {
+
+		int index = table.indexOf("F31.A16NK"); // < 24 months
+
+		int[] months = { -1, 0, 23, 24, 100 };
+		Check[] results = new Check[months.length];
+		table.check(index, months, results);
+
+		assertEquals(Check.REPORT_DATE_EXCEEDED, results[0]);
+		assertEquals(Check.OK, results[1]);
+		assertEquals(Check.OK, results[2]);
+		assertEquals(Check.AGE_CLASS_NOT_RESPECTED, results[3]);
+		assertEquals(Check.AGE_CLASS_NOT_RESPECTED, results[4]);
+
+		assertEquals(3, table.countErrors(index, months));
+	}
+}
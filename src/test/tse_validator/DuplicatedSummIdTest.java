@@ -0,0 +1,224 @@
+package tse_validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dataset.IDataset;
+import mocks.RowCreatorMock;
+import mocks.TableDaoMock;
+import providers.FormulaService;
+import providers.IFormulaService;
+import providers.ITableDaoService;
+import providers.TableDaoService;
+import providers.TseReportService;
+import report_validator.ReportError;
+import soap_test.GetAckMock;
+import soap_test.GetDatasetMock;
+import soap_test.GetDatasetsListMock;
+import soap_test.SendMessageMock;
+import table_skeleton.TableCell;
+import table_skeleton.TableRow;
+import tse_config.CustomStrings;
+import tse_report.TseReport;
+import tse_summarized_information.SummarizedInfo;
+
+public class DuplicatedSummIdTest {
+
+	private static final String[] SOURCES = { "F01.A057A", "F01.A057B", "F01.A057C", "F01.A057D" };
+	private static final String[] AGE_CLASSES = { "F31.A16NK", "F31.A16NL", "F31.A16NM", "F31.A16NN", "F31.A16PN" };
+	private static final String[] TARGET_GROUPS = { "TG001A", "TG002A", "TG003A", "TG004A", "TG005A" };
+
+	private TseReportValidator validator;
+	private ITableDaoService daoService;
+	private int reportId;
+	private int settingsId;
+	private int prefId;
+
+	@BeforeEach
+	public void init() {
+
+		this.daoService = new TableDaoService(new TableDaoMock());
+		IFormulaService formulaService = new FormulaService(daoService);
+
+		TseReportService reportService = new TseReportService(new GetAckMock(), new GetDatasetsListMock<IDataset>(),
+				new SendMessageMock(), new GetDatasetMock(), daoService, formulaService);
+
+		this.prefId = daoService.add(RowCreatorMock.genRandPreferences());
+		this.settingsId = daoService.add(RowCreatorMock.genRandSettings());
+
+		TseReport report = RowCreatorMock.genRandReport(prefId);
+		this.reportId = daoService.add(report);
+
+		this.validator = new TseReportValidator(report, reportService, daoService);
+	}
+
+	/**
+	 * Create {@code size} summarized information with a limited set of natural
+	 * keys, in order to have both unique and duplicated rows
+	 *
+	 * @param size
+	 * @return
+	 */
+	private ArrayList<TableRow> genRows(int size, int distinctKeys) {
+
+		Random random = new Random(size);
+		ArrayList<TableRow> rows = new ArrayList<>();
+
+		for (int i = 0; i < size; i++) {
+
+			int key = random.nextInt(distinctKeys);
+
+			SummarizedInfo si = RowCreatorMock.genRandSummInfo(reportId, settingsId, prefId);
+			si.put(CustomStrings.SOURCE_COL, new TableCell(SOURCES[key % SOURCES.length], ""));
+			si.put(CustomStrings.ANIMAGE_COL, new TableCell(AGE_CLASSES[(key / 4) % AGE_CLASSES.length], ""));
+			si.put(CustomStrings.TARGET_GROUP_COL, new TableCell(TARGET_GROUPS[(key / 20) % TARGET_GROUPS.length], ""));
+			si.put(CustomStrings.PSU_ID_COL, String.valueOf(key / 100));
+			si.put(CustomStrings.PROG_ID_COL, "prog" + i);
+
+			rows.add(si);
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Previous implementation, compares each row with the following ones
+	 *
+	 * @param rows
+	 * @return
+	 */
+	private Collection<ReportError> checkPairwise(ArrayList<TableRow> rows) {
+
+		Collection<ReportError> errors = new ArrayList<>();
+		Set<Integer> indexComputed = new HashSet<>();
+
+		for (int i = 0; i < rows.size() - 1; i++) {
+			TableRow current = rows.get(i);
+			if (indexComputed.contains(i))
+				continue;
+
+			for (int j = i + 1; j < rows.size(); j++) {
+				TableRow next = rows.get(j);
+				if (indexComputed.contains(j))
+					continue;
+
+				if (current.sameAs(next)) {
+					indexComputed.add(j);
+					indexComputed.add(i);
+					errors.add(new DuplicatedContextError(validator.getStackTrace(current),
+							validator.getStackTrace(next)));
+				}
+			}
+		}
+
+		return errors;
+	}
+
+	private void assertSameErrors(Collection<ReportError> expected, Collection<ReportError> actual) {
+
+		assertEquals(expected.size(), actual.size());
+
+		Iterator<ReportError> it = actual.iterator();
+		for (ReportError error : expected) {
+			ReportError other = it.next();
+			assertTrue(other instanceof DuplicatedContextError);
+			assertEquals(error.getInvolvedRowsIdsMessage(), other.getInvolvedRowsIdsMessage());
+		}
+	}
+
+	@Test
+	public void sameErrorsOfPairwiseCheckWith1kRows() {
+
+		ArrayList<TableRow> rows = genRows(1000, 300);
+
+		Collection<ReportError> expected = checkPairwise(rows);
+		Collection<ReportError> actual = validator.checkDuplicatedSummId(rows);
+
+		assertTrue(!expected.isEmpty());
+		assertSameErrors(expected, actual);
+	}
+
+	@Test
+	public void noErrorsWithoutDuplicates() {
+
+		ArrayList<TableRow> rows = genRows(1, 1);
+		rows.addAll(genRows(1, 1));
+		rows.get(1).put(CustomStrings.SOURCE_COL, new TableCell(SOURCES[1], ""));
+
+		assertTrue(validator.checkDuplicatedSummId(rows).isEmpty());
+	}
+
+	@Test
+	public void groupsFollowTheInputOrder() {
+
+		// keys: 0 1 0 2 1 0
+		int[] keys = { 0, 1, 0, 2, 1, 0 };
+
+		ArrayList<TableRow> rows = new ArrayList<>();
+		for (int key : keys) {
+			TableRow row = genRows(1, 1).get(0);
+			row.put(CustomStrings.SOURCE_COL, new TableCell(SOURCES[key], ""));
+			rows.add(row);
+		}
+
+		List<List<TableRow>> groups = NaturalKeyGrouper.getDuplicatedGroups(rows);
+
+		assertEquals(2, groups.size());
+
+		assertEquals(3, groups.get(0).size());
+		assertSame(rows.get(0), groups.get(0).get(0));
+		assertSame(rows.get(2), groups.get(0).get(1));
+		assertSame(rows.get(5), groups.get(0).get(2));
+
+		assertEquals(2, groups.get(1).size());
+		assertSame(rows.get(1), groups.get(1).get(0));
+		assertSame(rows.get(4), groups.get(1).get(1));
+
+		// each duplicate is reported against the first row of its group
+		Collection<ReportError> expected = new ArrayList<>();
+		expected.add(new DuplicatedContextError(validator.getStackTrace(rows.get(0)),
+				validator.getStackTrace(rows.get(2))));
+		expected.add(new DuplicatedContextError(validator.getStackTrace(rows.get(0)),
+				validator.getStackTrace(rows.get(5))));
+		expected.add(new DuplicatedContextError(validator.getStackTrace(rows.get(1)),
+				validator.getStackTrace(rows.get(4))));
+
+		assertSameErrors(expected, validator.checkDuplicatedSummId(rows));
+	}
+
+	@Test
+	public void rowsAreComparedOnlyInsideTheirBucket() {
+
+		AtomicInteger comparisons = new AtomicInteger();
+
+		ArrayList<TableRow> rows = new ArrayList<>();
+		for (TableRow row : genRows(10000, 2500)) {
+			rows.add(new SummarizedInfo(row) {
+				@Override
+				public boolean sameAs(TableRow other) {
+					comparisons.incrementAndGet();
+					return super.sameAs(other);
+				}
+			});
+		}
+
+		NaturalKeyGrouper.getDuplicatedGroups(rows);
+
+		// the pairwise comparison would need millions of comparisons, here
+		// each row is compared at most once with the first row of its group
+		assertTrue(comparisons.get() <= rows.size(), comparisons.get() + " comparisons");
+	}
+}
@@ -4,7 +4,17 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +28,7 @@ import providers.IFormulaService;
 import providers.ITableDaoService;
 import providers.TableDaoService;
 import providers.TseReportService;
+import providers.TseReportService.RowType;
 import report_validator.ReportError;
 import soap_test.GetAckMock;
 import soap_test.GetDatasetMock;
@@ -213,6 +224,356 @@ public class ReportValidatorTest {
 		assertFalse(checks.contains(SampleCheck.TOO_MANY_INCONCLUSIVES));
 	}
 	
+	@Test
+	public void reportGraphResolvesParentsAndChildren() {
+		
+		ReportGraph graph = ReportGraph.load(report, reportService, daoService);
+		
+		assertEquals(3, graph.getRecords().size());
+		assertEquals(si.getDatabaseId(), graph.getParent(cr, CustomStrings.SUMMARIZED_INFO_SHEET).getDatabaseId());
+		assertEquals(cr.getDatabaseId(), graph.getParent(result, CustomStrings.CASE_INFO_SHEET).getDatabaseId());
+		assertEquals(1, graph.getChildren(cr.getSchema(), si).size());
+		assertEquals(1, graph.getChildren(result.getSchema(), cr).size());
+		assertTrue(graph.getChildren(result.getSchema(), result).isEmpty());
+	}
+	
+	@Test
+	public void sameChecksWithReportGraph() {
+		
+		si.put(CustomStrings.SUMMARIZED_INFO_TYPE, 
+				new TableCell(CustomStrings.SUMMARIZED_INFO_BSE_TYPE, ""));
+		si.put(CustomStrings.TOT_SAMPLE_INCONCLUSIVE_COL, "0");
+		cr.put(CustomStrings.SAMP_EVENT_ASSES_COL, 
+				new TableCell(CustomStrings.DEFAULT_ASSESS_INC_CASE_CODE, ""));
+		
+		ReportGraph graph = ReportGraph.load(report, reportService, daoService);
+		
+		assertEquals(new SummarizedInfoValidator(daoService).isSampleCorrect(si), 
+				new SummarizedInfoValidator(daoService, graph).isSampleCorrect(si));
+		
+		assertEquals(new CaseReportValidator(daoService).isRecordCorrect(cr), 
+				new CaseReportValidator(daoService, graph).isRecordCorrect(cr));
+	}
+	
+	@Test
+	public void parallelValidationKeepsSerialOrder() {
+		
+		// some errors on different rows
+		cr.put(CustomStrings.BIRTH_MONTH_COL, "6");
+		cr.put(CustomStrings.BIRTH_YEAR_COL, "2005");
+		result.put(CustomStrings.ALLELE_1_COL, new TableCell(CustomStrings.ALLELE_AFRR, ""));
+		result.put(CustomStrings.AN_METH_TYPE_COL, new TableCell(CustomStrings.SCREENING_TEST_CODE, ""));
+		
+		TseReportValidator serial = new TseReportValidator(report, reportService, daoService);
+		serial.setParallel(false);
+		
+		TseReportValidator parallel = new TseReportValidator(report, reportService, daoService);
+		parallel.setParallel(true);
+		parallel.setParallelism(4);
+		
+		Collection<ReportError> expected = serial.validate();
+		Collection<ReportError> actual = parallel.validate();
+		
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.size(), actual.size());
+		
+		Iterator<ReportError> it = actual.iterator();
+		for (ReportError error : expected) {
+			ReportError other = it.next();
+			assertEquals(error.getClass(), other.getClass());
+			assertEquals(error.getInvolvedRowsIdsMessage(), other.getInvolvedRowsIdsMessage());
+		}
+	}
+	
+	@Test
+	public void errorSinkWritesAllErrors() throws IOException {
+		
+		cr.put(CustomStrings.BIRTH_MONTH_COL, "6");
+		cr.put(CustomStrings.BIRTH_YEAR_COL, "2005");
+		result.put(CustomStrings.ALLELE_1_COL, new TableCell(CustomStrings.ALLELE_AFRR, ""));
+		result.put(CustomStrings.AN_METH_TYPE_COL, new TableCell(CustomStrings.SCREENING_TEST_CODE, ""));
+		
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		Collection<ReportError> expected = validator.validate();
+		assertTrue(expected.size() > 1);
+		
+		File folder = Files.createTempDirectory("tse_errors_test").toFile();
+		ReportErrorSink sink = new ReportErrorSink(folder, 1, 1);
+		try {
+			validator.validate(sink);
+		} finally {
+			sink.close();
+		}
+		
+		// only the first error is kept in memory
+		assertEquals(expected.size(), sink.getCount());
+		assertEquals(1, sink.getErrors().size());
+		assertEquals(expected.iterator().next().getClass(), sink.getErrors().get(0).getClass());
+		assertTrue(sink.isTruncated());
+		
+		int counted = 0;
+		for (int count : sink.getCountsByError().values())
+			counted += count;
+		assertEquals(expected.size(), counted);
+		
+		// one page for each error, plus the header in the csv
+		assertEquals(expected.size(), sink.getPagesCount());
+		assertTrue(sink.getIndexFile().exists());
+		assertTrue(sink.getPageFile(expected.size()).exists());
+		assertFalse(sink.getPageFile(expected.size() + 1).exists());
+		assertEquals(expected.size() + 1, Files.readAllLines(sink.getCsvFile().toPath()).size());
+		
+		// the arrow between the involved rows is written as a character
+		String csv = new String(Files.readAllBytes(sink.getCsvFile().toPath()), StandardCharsets.UTF_8);
+		String page = new String(Files.readAllBytes(sink.getPageFile(1).toPath()), StandardCharsets.UTF_8);
+		assertFalse(csv.contains("&#10148;"));
+		assertFalse(page.contains("&amp;#10148;"));
+	}
+	
+	@Test
+	public void errorSinkNotifiesTruncationBeforeClosing() throws IOException {
+		
+		cr.put(CustomStrings.BIRTH_MONTH_COL, "6");
+		cr.put(CustomStrings.BIRTH_YEAR_COL, "2005");
+		result.put(CustomStrings.ALLELE_1_COL, new TableCell(CustomStrings.ALLELE_AFRR, ""));
+		result.put(CustomStrings.AN_METH_TYPE_COL, new TableCell(CustomStrings.SCREENING_TEST_CODE, ""));
+		
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		Collection<ReportError> expected = validator.validate();
+		assertTrue(expected.size() > 1);
+		
+		File folder = Files.createTempDirectory("tse_errors_test").toFile();
+		ReportErrorSink sink = new ReportErrorSink(folder, 1, 1);
+		
+		List<String> notifiedIndex = new ArrayList<>();
+		sink.setTruncationListener(s -> {
+			try {
+				notifiedIndex.add(new String(Files.readAllBytes(s.getIndexFile().toPath()), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			
+			// the first errors are complete when notified
+			assertEquals(1, s.getErrors().size());
+			assertEquals(2, s.getCount());
+		});
+		
+		try {
+			validator.validate(sink);
+		} finally {
+			sink.close();
+		}
+		
+		// notified once, with a provisional index linking the pages written so far
+		assertEquals(1, notifiedIndex.size());
+		assertTrue(notifiedIndex.get(0).contains("still running"));
+		assertTrue(notifiedIndex.get(0).contains(sink.getPageFile(2).getName()));
+		
+		String index = new String(Files.readAllBytes(sink.getIndexFile().toPath()), StandardCharsets.UTF_8);
+		assertFalse(index.contains("still running"));
+	}
+	
+	@Test
+	public void recordGroupsByParentId() {
+		
+		CaseReport cr2 = new CaseReport();
+		cr2.copyValues(cr);
+		daoService.add(cr2);
+		
+		ReportRecordGroups groups = new ReportRecordGroups(reportService.getAllRecords(report));
+		
+		assertEquals(1, groups.getSummInfos().size());
+		assertEquals(2, groups.getCases().size());
+		assertEquals(2, groups.getCases(cr.getLabel(CustomStrings.SI_ID_COL)).size());
+		assertEquals(1, groups.getResults(result.getLabel(CustomStrings.CASE_ID_COL)).size());
+		assertTrue(groups.getResults("unknown").isEmpty());
+	}
+	
+	@Test
+	public void incrementalValidationChecksChangedRows() {
+		
+		RowValidationStore.invalidate(report.getDatabaseId());
+		
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		validator.setIncremental(true);
+		
+		Collection<ReportError> errors = validator.validate();
+		assertEquals(3, RowValidationStore.getStore(report.getDatabaseId()).size());
+		
+		boolean myError = false;
+		for(ReportError err: errors) {
+			if (err instanceof ReportDateExceededError)
+				myError = true;
+		}
+		assertFalse(myError);
+		
+		// born after the report date
+		cr.put(CustomStrings.BIRTH_MONTH_COL, "6");
+		cr.put(CustomStrings.BIRTH_YEAR_COL, "2005");
+		RowValidationStore.markDirty(cr);
+		
+		errors = validator.validate();
+		
+		myError = false;
+		for(ReportError err: errors) {
+			if (err instanceof ReportDateExceededError)
+				myError = true;
+		}
+		assertTrue(myError);
+		
+		// same result as the full validation
+		validator.setIncremental(false);
+		assertEquals(errors.size(), validator.validate().size());
+	}
+
+	@Test
+	public void incrementalCrossRowChecksMatchFullValidation() {
+
+		RowValidationStore.invalidate(report.getDatabaseId());
+
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		validator.setIncremental(true);
+		validator.validate();
+
+		// same sample id of the first case
+		CaseReport cr2 = new CaseReport();
+		cr2.copyValues(cr);
+		daoService.add(cr2);
+
+		assertSameErrors(validator);
+
+		// the duplicate is fixed, its group is checked again
+		cr2.put(CustomStrings.SAMPLE_ID_COL, "otherSample");
+		daoService.update(cr2);
+
+		assertSameErrors(validator);
+
+		// removed rows are dropped from their groups
+		daoService.delete(cr2.getSchema(), cr2.getDatabaseId());
+
+		assertSameErrors(validator);
+	}
+
+	@Test
+	public void incrementalValidationResultsAreSaved() throws IOException {
+
+		RowValidationStore.invalidate(report.getDatabaseId());
+		RowValidationStore.setFolder(Files.createTempDirectory("tse_validation_test"));
+
+		try {
+			TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+			validator.setIncremental(true);
+			Collection<ReportError> saved = validator.validate();
+
+			// the store of another report replaces it in memory
+			RowValidationStore.getStore(report.getDatabaseId() + 1);
+
+			RowValidationStore store = RowValidationStore.getStore(report.getDatabaseId());
+			assertEquals(3, store.size());
+
+			Collection<ReportError> read = validator.validate();
+			assertEquals(saved.size(), read.size());
+
+			Iterator<ReportError> expected = saved.iterator();
+			for (ReportError err : read) {
+				ReportError savedErr = expected.next();
+				assertEquals(StoredReportError.getName(savedErr), StoredReportError.getName(err));
+				assertEquals(savedErr.getErrorMessage(), err.getErrorMessage());
+			}
+		} finally {
+			RowValidationStore.invalidate(report.getDatabaseId());
+			RowValidationStore.setFolder(null);
+		}
+	}
+
+	private void assertSameErrors(TseReportValidator validator) {
+
+		validator.setIncremental(true);
+		Collection<ReportError> incremental = validator.validate();
+
+		validator.setIncremental(false);
+		Collection<ReportError> full = validator.validate();
+
+		assertEquals(full.size(), incremental.size());
+
+		Iterator<ReportError> expected = full.iterator();
+		for (ReportError err : incremental)
+			assertEquals(expected.next().getClass(), err.getClass());
+	}
+
+	@Test
+	public void inconsistentCasesWithSameAnimalId() {
+		
+		cr.put(CustomStrings.ANIMAL_ID_COL, "animal1");
+		cr.put(CustomStrings.NATIONAL_CASE_ID_COL, "case1");
+		cr.put(CustomStrings.BREED_COL, "breed1");
+		
+		CaseReport cr2 = new CaseReport();
+		cr2.copyValues(cr);
+		cr2.put(CustomStrings.NATIONAL_CASE_ID_COL, "case2");
+		cr2.put(CustomStrings.BREED_COL, "breed2");
+		daoService.add(cr2);
+		
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		Collection<TableRow> records = reportService.getAllRecords(report);
+		
+		Collection<ReportError> expected = new ArrayList<>();
+		expected.addAll(validator.checkNationalCaseId(records));
+		expected.addAll(validator.checkAnimalId(records));
+		
+		Collection<ReportError> errors = validator.checkCaseIdentifiers(records);
+		
+		// national case id and breed differ
+		assertEquals(2, errors.size());
+		assertEquals(expected.size(), errors.size());
+		for (ReportError err : errors)
+			assertTrue(err instanceof InconsistentCasesError);
+	}
+	
+	@Test
+	public void ruleMetricsAreRecorded() {
+		
+		ValidationRuleRegistry registry = new ValidationRuleRegistry();
+		TseValidationRules.registerAll(registry);
+		
+		TseReportValidator validator = new TseReportValidator(report, reportService, daoService);
+		validator.setRegistry(registry);
+		validator.setIncremental(false);
+		validator.validate();
+		
+		for (RuleMetrics metrics : registry.getMetrics()) {
+			if (metrics.getRuleName().equals("MANDATORY_FIELDS"))
+				assertEquals(3, metrics.getInvocations());
+			else if (metrics.getRuleName().equals("AGE_CLASS"))
+				assertEquals(1, metrics.getInvocations());
+		}
+		
+		assertFalse(registry.formatMetrics().isEmpty());
+	}
+	
+	@Test
+	public void readColumnsOfTheRules() {
+		
+		ValidationRuleRegistry registry = new ValidationRuleRegistry();
+		TseValidationRules.registerAll(registry);
+		
+		// the cases are read by the summarized information checks, not the results
+		Map<String, Set<String>> summColumns = registry.getReadColumns(RowType.SUMM);
+		assertTrue(summColumns.get(CustomStrings.SUMMARIZED_INFO_SHEET).contains(ValidationRule.ALL_COLUMNS));
+		assertTrue(summColumns.get(CustomStrings.CASE_INFO_SHEET).contains(CustomStrings.SAMP_EVENT_ASSES_COL));
+		assertFalse(summColumns.get(CustomStrings.CASE_INFO_SHEET).contains(ValidationRule.ALL_COLUMNS));
+		assertFalse(summColumns.containsKey(CustomStrings.RESULT_SHEET));
+		
+		// only the ids of the results of a case are read
+		Map<String, Set<String>> caseColumns = registry.getReadColumns(RowType.CASE);
+		assertTrue(caseColumns.get(CustomStrings.RESULT_SHEET).isEmpty());
+		assertTrue(caseColumns.get(CustomStrings.REPORT_SHEET).contains(ValidationRule.ALL_COLUMNS));
+		
+		Map<String, Set<String>> resultColumns = registry.getReadColumns(RowType.RESULT);
+		assertTrue(resultColumns.get(CustomStrings.RESULT_SHEET).contains(CustomStrings.ALLELE_1_COL));
+		assertTrue(resultColumns.get(CustomStrings.CASE_INFO_SHEET).contains(ValidationRule.ALL_COLUMNS));
+	}
+	
 	@Test
 	public void missingRGTCaseCheck() {
 